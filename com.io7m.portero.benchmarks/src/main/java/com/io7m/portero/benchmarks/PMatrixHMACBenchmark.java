@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.benchmarks;
+
+import com.io7m.portero.server.internal.PMatrixClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computing the shared-secret registration HMAC.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PMatrixHMACBenchmark
+{
+  private final String secret =
+    "b07b6614ecb96d689f835e4798f24e05b552d12aedfbda2ff54fb610cd2b0e29";
+  private final String nonce =
+    "f1f4d4ac2ecfbe2c5e2ba4de00bcd4c8a8fcd4a8b2e01b0d2f4e0e86e3c4f5a1";
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PMatrixHMACBenchmark()
+  {
+
+  }
+
+  /**
+   * Sign a registration request.
+   *
+   * @return The hex-encoded HMAC
+   */
+
+  @Benchmark
+  public String sign()
+  {
+    return PMatrixClient.sign(
+      this.secret, this.nonce, "user", "correct horse battery staple");
+  }
+}
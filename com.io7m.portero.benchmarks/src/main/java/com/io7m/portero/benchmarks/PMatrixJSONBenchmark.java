@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.server.internal.PMatrixJSON;
+import com.io7m.portero.server.internal.PMatrixObjectMappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Parsing Matrix responses and serializing Matrix requests, using the
+ * same object mapper configuration as the Matrix client.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PMatrixJSONBenchmark
+{
+  private static final byte[] NONCE =
+    """
+      {"nonce": "f1f4d4ac2ecfbe2c5e2ba4de00bcd4c8a8fcd4a8b2e01b0d2f4e0e86e3c4f5a1"}
+      """.getBytes(UTF_8);
+
+  private static final byte[] REGISTERED =
+    """
+      {
+        "access_token": "syt_dXNlcg_yGkYTQWfvqkmcOEvqbXp_1s8XZf",
+        "user_id": "@user:chat.example.com",
+        "home_server": "chat.example.com",
+        "device_id": "LAKHXYVPHQ"
+      }
+      """.getBytes(UTF_8);
+
+  private static final byte[] ERROR =
+    """
+      {"errcode": "M_USER_IN_USE", "error": "User ID already taken."}
+      """.getBytes(UTF_8);
+
+  private ObjectMapper mapper;
+  private PMatrixJSON.PAdminCreateUser createUser;
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PMatrixJSONBenchmark()
+  {
+
+  }
+
+  /**
+   * Create the object mapper.
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    this.mapper = PMatrixObjectMappers.createObjectMapper();
+    this.createUser = new PMatrixJSON.PAdminCreateUser();
+    this.createUser.nonce =
+      "f1f4d4ac2ecfbe2c5e2ba4de00bcd4c8a8fcd4a8b2e01b0d2f4e0e86e3c4f5a1";
+    this.createUser.username = "user";
+    this.createUser.password = "correct horse battery staple";
+    this.createUser.mac = "3f5c1a0d8a6f02c1bba9e5b7e6a1f43c9d2f0e11";
+  }
+
+  /**
+   * Parse a nonce response.
+   *
+   * @return The response
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public PMatrixJSON.PAdminNonce parseNonce()
+    throws IOException
+  {
+    return this.mapper.readValue(NONCE, PMatrixJSON.PAdminNonce.class);
+  }
+
+  /**
+   * Parse a successful registration response.
+   *
+   * @return The response
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public PMatrixJSON.PAdminCreateUserResponse parseRegistered()
+    throws IOException
+  {
+    return this.mapper.readValue(
+      REGISTERED, PMatrixJSON.PAdminCreateUserResponse.class);
+  }
+
+  /**
+   * Parse an error response.
+   *
+   * @return The response
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public PMatrixJSON.PError parseError()
+    throws IOException
+  {
+    return this.mapper.readValue(ERROR, PMatrixJSON.PError.class);
+  }
+
+  /**
+   * Serialize a registration request.
+   *
+   * @return The serialized request
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public byte[] serializeCreateUser()
+    throws IOException
+  {
+    return this.mapper.writeValueAsBytes(this.createUser);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.benchmarks;
+
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.internal.PServerPages;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Page rendering.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PPagesBenchmark
+{
+  private PServerPages pages;
+  private PServerConfiguration configuration;
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PPagesBenchmark()
+  {
+
+  }
+
+  /**
+   * Load the page templates.
+   *
+   * @throws IOException On errors
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+    throws IOException
+  {
+    this.pages =
+      new PServerPages(Locale.ROOT);
+    this.configuration =
+      PServerConfiguration.builder()
+        .setMatrixServerAdminConnectionURI(URI.create("http://127.0.0.1:8008/"))
+        .setMatrixServerAdminRegistrationSecret("secret")
+        .setBindPrivateAddress(InetAddress.getLoopbackAddress())
+        .setBindPrivatePort(20001)
+        .setBindPublicAddress(InetAddress.getLoopbackAddress())
+        .setBindPublicPort(20000)
+        .setServerTitle("chat.example.com")
+        .setPublicURI(URI.create("http://invite.example.com"))
+        .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+        .build();
+  }
+
+  /**
+   * Render the main page.
+   *
+   * @return The page
+   */
+
+  @Benchmark
+  public String mainPage()
+  {
+    return this.pages.mainPage(this.configuration);
+  }
+
+  /**
+   * Render the signup form.
+   *
+   * @return The page
+   */
+
+  @Benchmark
+  public String signupPage()
+  {
+    return this.pages.signupPage(
+      this.configuration, "QxJRgS6xMc3Hd0Lg2dXc0pVGxGyYqKxJBsTVSrwE0mE");
+  }
+
+  /**
+   * Render the success page.
+   *
+   * @return The page
+   */
+
+  @Benchmark
+  public String successPage()
+  {
+    return this.pages.successPage(this.configuration);
+  }
+
+  /**
+   * Render an error page.
+   *
+   * @return The page
+   */
+
+  @Benchmark
+  public String errorPage()
+  {
+    return this.pages.errorPage(
+      this.configuration, 400, "The passwords do not match.");
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.benchmarks;
+
+import com.io7m.portero.server.internal.PMatrixClient;
+import com.io7m.portero.server.internal.PServerController;
+import com.io7m.portero.server.internal.PServerControllerParameters;
+import com.io7m.portero.server.internal.PServerStrings;
+import com.io7m.portero.server.internal.PTokenStoreMemory;
+import com.io7m.portero.server.tokens.PTokenStoreEvictionPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation and lookup through the server controller, with several
+ * threads contending for the token store.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class PTokenBenchmark
+{
+  /**
+   * The number of tokens issued before lookups begin.
+   */
+
+  @Param({"1000", "100000"})
+  public int tokenCount;
+
+  private PServerController controller;
+  private String[] tokens;
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PTokenBenchmark()
+  {
+
+  }
+
+  /**
+   * Create a controller and issue the initial tokens.
+   *
+   * @throws IOException On errors
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+    throws IOException
+  {
+    final var limit = this.tokenCount * 2;
+    this.controller =
+      PServerController.create(
+        PServerControllerParameters.builder()
+          .setStrings(new PServerStrings(Locale.ROOT))
+          .setExpiry(Duration.ofHours(48L))
+          .setTokenStores((expiry, onExpired) -> PTokenStoreMemory.create(
+            expiry, limit, PTokenStoreEvictionPolicy.EVICT_OLDEST, onExpired))
+          .setClient(PMatrixClient.create(
+            HttpClient.newHttpClient(),
+            URI.create("http://127.0.0.1:1/")))
+          .build()
+      );
+
+    this.tokens =
+      this.controller.generateTokens(this.tokenCount).toArray(new String[0]);
+  }
+
+  /**
+   * Close the controller.
+   *
+   * @throws IOException On errors
+   */
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+    throws IOException
+  {
+    this.controller.close();
+  }
+
+  /**
+   * Generate a token.
+   *
+   * @return The token
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public String generateToken()
+    throws IOException
+  {
+    return this.controller.generateToken();
+  }
+
+  /**
+   * Look up a token that was issued during setup. Tokens may have been
+   * evicted by concurrent generation, so the result is not checked.
+   *
+   * @return {@code true} if the token is valid
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public boolean lookupIssued()
+    throws IOException
+  {
+    final var index =
+      ThreadLocalRandom.current().nextInt(this.tokens.length);
+    return this.controller.tokenIsValid(this.tokens[index]);
+  }
+
+  /**
+   * Look up a token that was never issued.
+   *
+   * @return {@code false}
+   *
+   * @throws IOException On errors
+   */
+
+  @Benchmark
+  public boolean lookupNonexistent()
+    throws IOException
+  {
+    return this.controller.tokenIsValid("0000000000000000000000000000000000");
+  }
+}
@@ -21,8 +21,13 @@ import com.io7m.claypot.core.CLPCommandConstructorType;
 import com.io7m.claypot.core.CLPCommandType;
 import com.io7m.claypot.core.Claypot;
 import com.io7m.claypot.core.ClaypotType;
+import com.io7m.portero.cmdline.internal.PCommandAudit;
+import com.io7m.portero.cmdline.internal.PCommandImport;
 import com.io7m.portero.cmdline.internal.PCommandInvite;
+import com.io7m.portero.cmdline.internal.PCommandLoadTest;
+import com.io7m.portero.cmdline.internal.PCommandReplay;
 import com.io7m.portero.cmdline.internal.PCommandServer;
+import com.io7m.portero.cmdline.internal.PCommandStats;
 import com.io7m.portero.cmdline.internal.PCommandVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,8 +63,13 @@ public final class Main implements Runnable
 
     final List<CLPCommandConstructorType> commands =
       List.of(
+        PCommandAudit::new,
+        PCommandImport::new,
         PCommandInvite::new,
+        PCommandLoadTest::new,
+        PCommandReplay::new,
         PCommandServer::new,
+        PCommandStats::new,
         PCommandVersion::new
       );
 
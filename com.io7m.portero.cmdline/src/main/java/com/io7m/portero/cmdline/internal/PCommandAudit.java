@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.cmdline.internal;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.io7m.claypot.core.CLPCommandContextType;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.audit.PAuditLogs;
+import com.io7m.portero.server.audit.PAuditRecord;
+import com.io7m.portero.server.tokens.PTokenEventKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The "audit" command.
+ */
+
+@Parameters(commandDescription = "Show the audit log")
+public final class PCommandAudit extends PCommand
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PCommandAudit.class);
+
+  @Parameter(
+    required = false,
+    description = "The audit log file (overrides the configuration file)",
+    names = "--file")
+  private Path file;
+
+  @Parameter(
+    required = false,
+    description = "Only show events of the given kind",
+    names = "--event")
+  private PTokenEventKind event;
+
+  @Parameter(
+    required = false,
+    description = "Only show events for the given token",
+    names = "--token")
+  private String token;
+
+  @Parameter(
+    required = false,
+    description = "Only show events for the given Matrix user ID",
+    names = "--user")
+  private String user;
+
+  @Parameter(
+    required = false,
+    description = "Only show events at or after the given ISO 8601 time",
+    names = "--since")
+  private String since;
+
+  @Parameter(
+    required = false,
+    description = "Wait for and show new events as they are written",
+    names = "--follow")
+  private boolean follow;
+
+  /**
+   * Construct a command.
+   *
+   * @param inContext The command context
+   */
+
+  public PCommandAudit(
+    final CLPCommandContextType inContext)
+  {
+    super(inContext);
+  }
+
+  @Override
+  protected Status executeCommand(
+    final PServerConfiguration configuration)
+    throws Exception
+  {
+    final Path target;
+    if (this.file != null) {
+      target = this.file;
+    } else {
+      final var fileOpt = configuration.serverAuditLog();
+      if (fileOpt.isEmpty()) {
+        LOG.error("No audit log is configured (server.auditLog)");
+        return Status.FAILURE;
+      }
+      target = fileOpt.get();
+    }
+
+    final OffsetDateTime sinceTime;
+    if (this.since != null) {
+      sinceTime = OffsetDateTime.parse(this.since);
+    } else {
+      sinceTime = null;
+    }
+
+    try (var reader = Files.newBufferedReader(target, UTF_8)) {
+      final var line = new StringBuilder(256);
+      while (true) {
+        if (!readLine(reader, line)) {
+          if (!this.follow) {
+            return Status.SUCCESS;
+          }
+          Thread.sleep(250L);
+          continue;
+        }
+
+        final PAuditRecord record;
+        try {
+          record = PAuditLogs.parse(line.toString());
+        } catch (final IOException e) {
+          LOG.warn("{}", e.getMessage());
+          line.setLength(0);
+          continue;
+        }
+
+        if (this.matches(record, sinceTime)) {
+          System.out.println(line);
+        }
+        line.setLength(0);
+      }
+    }
+  }
+
+  /**
+   * Read characters until the end of the current line. A partial line
+   * remains in the buffer if the end of the file is reached first, so that
+   * the rest of the line can be read once it has been written.
+   */
+
+  private static boolean readLine(
+    final BufferedReader reader,
+    final StringBuilder line)
+    throws IOException
+  {
+    while (true) {
+      final var c = reader.read();
+      if (c == -1) {
+        return false;
+      }
+      if (c == '\n') {
+        return true;
+      }
+      line.append((char) c);
+    }
+  }
+
+  private boolean matches(
+    final PAuditRecord record,
+    final OffsetDateTime sinceTime)
+  {
+    if (this.event != null && record.event() != this.event) {
+      return false;
+    }
+    if (this.token != null && !this.token.equals(record.token())) {
+      return false;
+    }
+    if (this.user != null
+        && !record.userId().map(this.user::equals).orElse(Boolean.FALSE)) {
+      return false;
+    }
+    return sinceTime == null || !record.time().isBefore(sinceTime);
+  }
+
+  @Override
+  public String extendedHelp()
+  {
+    return this.commandStrings().format("audit.help");
+  }
+
+  @Override
+  public String name()
+  {
+    return "audit";
+  }
+}
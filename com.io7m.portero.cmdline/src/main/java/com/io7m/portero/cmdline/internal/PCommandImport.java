@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.cmdline.internal;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.io7m.claypot.core.CLPCommandContextType;
+import com.io7m.portero.server.PServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The "import" command.
+ */
+
+@Parameters(commandDescription = "Import existing users without invites")
+public final class PCommandImport extends PCommand
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PCommandImport.class);
+
+  /**
+   * The input formats.
+   */
+
+  public enum Format
+  {
+    /**
+     * One {@code user_name,password} pair per line.
+     */
+
+    CSV,
+
+    /**
+     * One JSON object per line with {@code user_name} and
+     * {@code password} fields.
+     */
+
+    NDJSON
+  }
+
+  @Parameter(
+    required = true,
+    description = "The file of users to import",
+    names = "--file")
+  private Path file;
+
+  @Parameter(
+    required = false,
+    description = "The input format (csv, ndjson); default from the file name",
+    names = "--format")
+  private Format format;
+
+  @Parameter(
+    required = false,
+    description = "The maximum number of registrations in progress at once",
+    names = "--parallelism")
+  private int parallelism = 4;
+
+  @Parameter(
+    required = false,
+    description = "The maximum number of registrations started per second",
+    names = "--rate")
+  private double rate = 10.0;
+
+  /**
+   * Construct a command.
+   *
+   * @param inContext The command context
+   */
+
+  public PCommandImport(
+    final CLPCommandContextType inContext)
+  {
+    super(inContext);
+  }
+
+  @Override
+  protected Status executeCommand(
+    final PServerConfiguration configuration)
+    throws Exception
+  {
+    final var inputFormat = this.inputFormat();
+    final var contentType =
+      inputFormat == Format.CSV ? "text/csv" : "application/x-ndjson";
+
+    final var target =
+      URI.create(
+        String.format(
+          "http://%s:%d/import?parallelism=%d&rate=%s",
+          configuration.bindPrivateAddress().getHostAddress(),
+          Integer.valueOf(configuration.bindPrivatePort()),
+          Integer.valueOf(this.parallelism),
+          Double.toString(this.rate)
+        ));
+
+    final var client =
+      HttpClient.newHttpClient();
+
+    final var response =
+      client.send(
+        HttpRequest.newBuilder(target)
+          .header("Content-Type", contentType)
+          .POST(HttpRequest.BodyPublishers.ofFile(this.file))
+          .build(),
+        HttpResponse.BodyHandlers.ofLines());
+
+    final var statusCode = response.statusCode();
+    if (statusCode >= 300) {
+      try (var lines = response.body()) {
+        LOG.error(
+          "Server returned: {} {}",
+          Integer.valueOf(statusCode),
+          String.join(" ", lines.toList()).trim());
+      }
+      return Status.FAILURE;
+    }
+
+    long registered = 0L;
+    long other = 0L;
+    try (var lines = response.body()) {
+      final var iterator = lines.iterator();
+      while (iterator.hasNext()) {
+        final var line = iterator.next();
+        if (line.isBlank()) {
+          continue;
+        }
+        System.out.println(line);
+        System.out.flush();
+        if (line.contains("\"status\":\"registered\"")) {
+          ++registered;
+        } else {
+          ++other;
+        }
+      }
+    }
+
+    LOG.info(
+      "{} users registered, {} not registered",
+      Long.valueOf(registered),
+      Long.valueOf(other));
+    return other == 0L ? Status.SUCCESS : Status.FAILURE;
+  }
+
+  private Format inputFormat()
+  {
+    if (this.format != null) {
+      return this.format;
+    }
+    final var name =
+      this.file.getFileName().toString().toLowerCase(Locale.ROOT);
+    return name.endsWith(".csv") ? Format.CSV : Format.NDJSON;
+  }
+
+  @Override
+  public String extendedHelp()
+  {
+    return this.commandStrings().format("import.help");
+  }
+
+  @Override
+  public String name()
+  {
+    return "import";
+  }
+}
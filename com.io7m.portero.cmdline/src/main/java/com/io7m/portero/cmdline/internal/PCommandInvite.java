@@ -1,5 +1,5 @@
 /*
- * Copyright © 2021 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
  *
  * Permission to use, copy, modify, and/or distribute this software for any
  * purpose with or without fee is hereby granted, provided that the above
@@ -14,29 +14,105 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
+
 package com.io7m.portero.cmdline.internal;
 
+import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.io7m.claypot.core.CLPCommandContextType;
 import com.io7m.portero.server.PServerConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * The "invite" command.
  */
 
-@Parameters(commandDescription = "Create an invite URL")
+@Parameters(commandDescription = "Create invite URLs")
 public final class PCommandInvite extends PCommand
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(PCommandInvite.class);
 
+  private static final String EXPIRY_PREFIX =
+    "The token will expire at ";
+
+  /**
+   * The largest number of invites requested from the server at once. This
+   * matches the limit enforced by the server.
+   */
+
+  private static final int MAXIMUM_BATCH = 1000;
+
+  /**
+   * The output formats.
+   */
+
+  public enum Format
+  {
+    /**
+     * One URL per line, followed by the expiration time.
+     */
+
+    TEXT,
+
+    /**
+     * CSV with a header row and the columns url, token, and expires.
+     */
+
+    CSV,
+
+    /**
+     * One JSON object per line with the fields url, token, and expires.
+     */
+
+    JSON
+  }
+
+  @Parameter(
+    required = false,
+    description = "The number of invites to create",
+    names = "--count")
+  private int count = 1;
+
+  @Parameter(
+    required = false,
+    description = "The number of invites requested from the server at once",
+    names = "--batch-size")
+  private int batchSize = 100;
+
+  @Parameter(
+    required = false,
+    description = "The maximum number of requests in progress at once",
+    names = "--parallelism")
+  private int parallelism = 4;
+
+  @Parameter(
+    required = false,
+    description = "The output format (text, csv, json)",
+    names = "--format")
+  private Format format = Format.TEXT;
+
   /**
    * Construct a command.
    *
@@ -54,31 +130,178 @@ public final class PCommandInvite extends PCommand
     final PServerConfiguration configuration)
     throws Exception
   {
+    if (this.count < 1 || this.batchSize < 1 || this.parallelism < 1) {
+      LOG.error("--count, --batch-size, and --parallelism must be positive");
+      return Status.FAILURE;
+    }
+
     final var client =
       HttpClient.newHttpClient();
 
     final var target =
-      String.format(
-        "http://%s:%d/",
-        configuration.bindPrivateAddress().getHostAddress(),
-        Integer.valueOf(configuration.bindPrivatePort())
-      );
-
-    final var request =
-      HttpRequest.newBuilder(URI.create(target))
-        .build();
-
-    final var response =
-      client.send(request, HttpResponse.BodyHandlers.ofString());
-
-    final var statusCode = response.statusCode();
-    if (statusCode < 300) {
-      System.out.println(response.body());
-      return Status.SUCCESS;
+      URI.create(
+        String.format(
+          "http://%s:%d/",
+          configuration.bindPrivateAddress().getHostAddress(),
+          Integer.valueOf(configuration.bindPrivatePort())
+        ));
+
+    final var writer =
+      new BufferedWriter(new OutputStreamWriter(System.out, UTF_8));
+    final var invites =
+      new InviteWriter(writer, this.format);
+
+    invites.begin();
+
+    final var remaining = new AtomicInteger(this.count);
+    final var failed = new AtomicBoolean(false);
+    final var batch = Math.min(this.batchSize, MAXIMUM_BATCH);
+    final var workers = Math.min(
+      this.parallelism,
+      (this.count + batch - 1) / batch);
+
+    final var executor = Executors.newFixedThreadPool(workers, r -> {
+      final var thread = new Thread(r, "com.io7m.portero.cmdline.invite");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      final var futures = new ArrayList<Future<?>>(workers);
+      for (int index = 0; index < workers; ++index) {
+        futures.add(executor.submit(() -> {
+          fetchBatches(client, target, batch, remaining, failed, invites);
+          return null;
+        }));
+      }
+      for (final var future : futures) {
+        try {
+          future.get();
+        } catch (final ExecutionException e) {
+          failed.set(true);
+          LOG.error("Invite request failed: ", e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    invites.end();
+    writer.flush();
+
+    LOG.debug("created {} invites", Integer.valueOf(invites.written()));
+    return failed.get() ? Status.FAILURE : Status.SUCCESS;
+  }
+
+  /**
+   * Request batches of invites until the requested number have been
+   * written or a request fails. A server that returns fewer invites than
+   * were requested has the shortfall requested again.
+   */
+
+  private static void fetchBatches(
+    final HttpClient client,
+    final URI target,
+    final int batch,
+    final AtomicInteger remaining,
+    final AtomicBoolean failed,
+    final InviteWriter invites)
+    throws IOException, InterruptedException
+  {
+    while (!failed.get()) {
+      final var wanted = claim(remaining, batch);
+      if (wanted == 0) {
+        return;
+      }
+
+      final var uri =
+        wanted == 1 ? target : target.resolve("/?count=" + wanted);
+      final var response =
+        client.send(
+          HttpRequest.newBuilder(uri).build(),
+          HttpResponse.BodyHandlers.ofString());
+
+      final var statusCode = response.statusCode();
+      if (statusCode >= 300) {
+        LOG.error(
+          "Server returned: {} {}",
+          Integer.valueOf(statusCode),
+          response.body().trim());
+        failed.set(true);
+        return;
+      }
+
+      final var received = parseInvites(response.body(), wanted);
+      if (received.isEmpty()) {
+        LOG.error("Server returned no invites");
+        failed.set(true);
+        return;
+      }
+
+      invites.write(received);
+      remaining.addAndGet(wanted - received.size());
     }
+  }
 
-    LOG.error("Server returned: {}", Integer.valueOf(statusCode));
-    return Status.FAILURE;
+  private static int claim(
+    final AtomicInteger remaining,
+    final int batch)
+  {
+    while (true) {
+      final var current = remaining.get();
+      if (current <= 0) {
+        return 0;
+      }
+      final var wanted = Math.min(current, batch);
+      if (remaining.compareAndSet(current, current - wanted)) {
+        return wanted;
+      }
+    }
+  }
+
+  /**
+   * Parse the invite URLs and expiration time from a response. URLs are
+   * listed one per line up to the first blank line.
+   */
+
+  private static List<Invite> parseInvites(
+    final String body,
+    final int wanted)
+  {
+    final var urls = new ArrayList<String>(wanted);
+    String expires = "";
+    var inUrls = true;
+
+    for (final var line : body.lines().toList()) {
+      final var trimmed = line.trim();
+      if (inUrls) {
+        if (trimmed.isEmpty()) {
+          inUrls = false;
+        } else if (urls.size() < wanted) {
+          urls.add(trimmed);
+        }
+      } else if (trimmed.startsWith(EXPIRY_PREFIX)) {
+        expires = trimmed.substring(EXPIRY_PREFIX.length());
+      }
+    }
+
+    final var results = new ArrayList<Invite>(urls.size());
+    for (final var url : urls) {
+      results.add(new Invite(url, tokenOf(url), expires));
+    }
+    return results;
+  }
+
+  private static String tokenOf(
+    final String url)
+  {
+    final var index = url.indexOf("token=");
+    if (index < 0) {
+      return "";
+    }
+    final var start = index + "token=".length();
+    final var end = url.indexOf('&', start);
+    return end < 0 ? url.substring(start) : url.substring(start, end);
   }
 
   @Override
@@ -92,4 +315,118 @@ public final class PCommandInvite extends PCommand
   {
     return "invite";
   }
+
+  private static final class Invite
+  {
+    private final String url;
+    private final String token;
+    private final String expires;
+
+    Invite(
+      final String inUrl,
+      final String inToken,
+      final String inExpires)
+    {
+      this.url = inUrl;
+      this.token = inToken;
+      this.expires = inExpires;
+    }
+  }
+
+  /**
+   * A writer of invites in a given format. Batches are written as they
+   * arrive, so that a consumer of the output can start work before the
+   * last batch has been received.
+   */
+
+  private static final class InviteWriter
+  {
+    private final Writer writer;
+    private final Format format;
+    private final ObjectMapper mapper;
+    private int written;
+    private String expires;
+
+    InviteWriter(
+      final Writer inWriter,
+      final Format inFormat)
+    {
+      this.writer = inWriter;
+      this.format = inFormat;
+      this.mapper = new ObjectMapper();
+    }
+
+    synchronized void begin()
+      throws IOException
+    {
+      if (this.format == Format.CSV) {
+        this.writer.write("url,token,expires\n");
+      }
+    }
+
+    synchronized void write(
+      final List<Invite> invites)
+    {
+      try {
+        for (final var invite : invites) {
+          switch (this.format) {
+            case TEXT -> {
+              this.writer.write(invite.url);
+              this.writer.write('\n');
+            }
+            case CSV -> {
+              this.writer.write(csv(invite.url));
+              this.writer.write(',');
+              this.writer.write(csv(invite.token));
+              this.writer.write(',');
+              this.writer.write(csv(invite.expires));
+              this.writer.write('\n');
+            }
+            case JSON -> {
+              final var node = this.mapper.createObjectNode();
+              node.put("url", invite.url);
+              node.put("token", invite.token);
+              node.put("expires", invite.expires);
+              this.writer.write(this.mapper.writeValueAsString(node));
+              this.writer.write('\n');
+            }
+          }
+          if (this.expires == null && !invite.expires.isEmpty()) {
+            this.expires = invite.expires;
+          }
+          ++this.written;
+        }
+        this.writer.flush();
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    synchronized void end()
+      throws IOException
+    {
+      if (this.format == Format.TEXT && this.expires != null) {
+        this.writer.write('\n');
+        this.writer.write(EXPIRY_PREFIX);
+        this.writer.write(this.expires);
+        this.writer.write('\n');
+      }
+    }
+
+    synchronized int written()
+    {
+      return this.written;
+    }
+
+    private static String csv(
+      final String text)
+    {
+      if (text.indexOf(',') < 0
+          && text.indexOf('"') < 0
+          && text.indexOf('\n') < 0) {
+        return text;
+      }
+      return '"' + text.replace("\"", "\"\"") + '"';
+    }
+  }
 }
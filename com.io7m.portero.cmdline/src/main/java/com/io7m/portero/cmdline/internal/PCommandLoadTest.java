@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.cmdline.internal;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.io7m.claypot.core.CLPCommandContextType;
+import com.io7m.portero.loadtest.PLoadTestConfiguration;
+import com.io7m.portero.loadtest.PLoadTests;
+import com.io7m.portero.server.PServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The "load-test" command.
+ */
+
+@Parameters(commandDescription = "Run a load test against a local server")
+public final class PCommandLoadTest extends PCommand
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PCommandLoadTest.class);
+
+  @Parameter(
+    required = false,
+    description = "The number of invites to issue and signups to perform",
+    names = "--invites")
+  private int invites = 1000;
+
+  @Parameter(
+    required = false,
+    description = "The target number of signups started per second",
+    names = "--rate")
+  private double rate = 50.0;
+
+  @Parameter(
+    required = false,
+    description = "The maximum number of signups in progress at once",
+    names = "--concurrency")
+  private int concurrency = 16;
+
+  @Parameter(
+    required = false,
+    description = "Fail if the fraction of failed signups exceeds this value",
+    names = "--max-error-rate")
+  private double maxErrorRate = 1.0;
+
+  /**
+   * Construct a command.
+   *
+   * @param inContext The command context
+   */
+
+  public PCommandLoadTest(
+    final CLPCommandContextType inContext)
+  {
+    super(inContext);
+  }
+
+  @Override
+  protected Status executeCommand(
+    final PServerConfiguration configuration)
+    throws Exception
+  {
+    final var report =
+      PLoadTests.run(
+        PLoadTestConfiguration.builder()
+          .setServer(configuration)
+          .setInvites(this.invites)
+          .setRate(this.rate)
+          .setConcurrency(this.concurrency)
+          .build()
+      );
+
+    System.out.print(PLoadTests.format(report));
+
+    if (report.errorRate() > this.maxErrorRate) {
+      LOG.error(
+        "Error rate {} exceeds the maximum {}",
+        Double.valueOf(report.errorRate()),
+        Double.valueOf(this.maxErrorRate));
+      return Status.FAILURE;
+    }
+    return Status.SUCCESS;
+  }
+
+  @Override
+  public String extendedHelp()
+  {
+    return this.commandStrings().format("load-test.help");
+  }
+
+  @Override
+  public String name()
+  {
+    return "load-test";
+  }
+}
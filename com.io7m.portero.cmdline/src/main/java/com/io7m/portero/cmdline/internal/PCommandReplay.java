@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+
+package com.io7m.portero.cmdline.internal;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.io7m.claypot.core.CLPCommandContextType;
+import com.io7m.portero.loadtest.PLoadTestReplayConfiguration;
+import com.io7m.portero.loadtest.PLoadTests;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.traffic.PTrafficRecordings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The "replay" command.
+ */
+
+@Parameters(commandDescription = "Replay recorded traffic against a server")
+public final class PCommandReplay extends PCommand
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PCommandReplay.class);
+
+  @Parameter(
+    required = true,
+    description = "The traffic recording file",
+    names = "--recording")
+  private Path recording;
+
+  @Parameter(
+    required = false,
+    description = "The replay speed relative to the recording",
+    names = "--speed")
+  private double speed = 1.0;
+
+  @Parameter(
+    required = false,
+    description = "The longest gap between requests to preserve, in seconds",
+    names = "--max-gap")
+  private Double maxGap;
+
+  @Parameter(
+    required = false,
+    description = "The maximum number of requests in progress at once",
+    names = "--concurrency")
+  private int concurrency = 64;
+
+  @Parameter(
+    required = false,
+    description = "Fail if the fraction of failed requests exceeds this value",
+    names = "--max-error-rate")
+  private double maxErrorRate = 1.0;
+
+  /**
+   * Construct a command.
+   *
+   * @param inContext The command context
+   */
+
+  public PCommandReplay(
+    final CLPCommandContextType inContext)
+  {
+    super(inContext);
+  }
+
+  @Override
+  protected Status executeCommand(
+    final PServerConfiguration configuration)
+    throws Exception
+  {
+    final var records = PTrafficRecordings.read(this.recording);
+    LOG.info("loaded {} recorded requests", Integer.valueOf(records.size()));
+
+    final var report =
+      PLoadTests.replay(
+        PLoadTestReplayConfiguration.builder()
+          .setServer(configuration)
+          .setRecords(records)
+          .setSpeed(this.speed)
+          .setMaximumGap(
+            Optional.ofNullable(this.maxGap)
+              .map(s -> Duration.ofMillis((long) (s.doubleValue() * 1000.0))))
+          .setConcurrency(this.concurrency)
+          .build()
+      );
+
+    System.out.print(PLoadTests.format(report));
+
+    if (report.errorRate() > this.maxErrorRate) {
+      LOG.error(
+        "Error rate {} exceeds the maximum {}",
+        Double.valueOf(report.errorRate()),
+        Double.valueOf(this.maxErrorRate));
+      return Status.FAILURE;
+    }
+    return Status.SUCCESS;
+  }
+
+  @Override
+  public String extendedHelp()
+  {
+    return this.commandStrings().format("replay.help");
+  }
+
+  @Override
+  public String name()
+  {
+    return "replay";
+  }
+}
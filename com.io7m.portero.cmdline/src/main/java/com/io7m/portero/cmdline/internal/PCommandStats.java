@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.cmdline.internal;
+
+import com.beust.jcommander.Parameters;
+import com.io7m.claypot.core.CLPCommandContextType;
+import com.io7m.portero.server.PServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * The "stats" command.
+ */
+
+@Parameters(commandDescription = "Show latency statistics")
+public final class PCommandStats extends PCommand
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PCommandStats.class);
+
+  /**
+   * Construct a command.
+   *
+   * @param inContext The command context
+   */
+
+  public PCommandStats(
+    final CLPCommandContextType inContext)
+  {
+    super(inContext);
+  }
+
+  @Override
+  protected Status executeCommand(
+    final PServerConfiguration configuration)
+    throws Exception
+  {
+    final var client =
+      HttpClient.newHttpClient();
+
+    final var target =
+      String.format(
+        "http://%s:%d/stats",
+        configuration.bindPrivateAddress().getHostAddress(),
+        Integer.valueOf(configuration.bindPrivatePort())
+      );
+
+    final var request =
+      HttpRequest.newBuilder(URI.create(target))
+        .build();
+
+    final var response =
+      client.send(request, HttpResponse.BodyHandlers.ofString());
+
+    final var statusCode = response.statusCode();
+    if (statusCode < 300) {
+      System.out.print(response.body());
+      return Status.SUCCESS;
+    }
+
+    LOG.error("Server returned: {}", Integer.valueOf(statusCode));
+    return Status.FAILURE;
+  }
+
+  @Override
+  public String extendedHelp()
+  {
+    return this.commandStrings().format("stats.help");
+  }
+
+  @Override
+  public String name()
+  {
+    return "stats";
+  }
+}
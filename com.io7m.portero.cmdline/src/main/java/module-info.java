@@ -23,8 +23,10 @@ module com.io7m.portero.cmdline
   requires static org.osgi.annotation.bundle;
   requires static org.osgi.annotation.versioning;
 
+  requires com.fasterxml.jackson.databind;
   requires com.io7m.claypot.core;
   requires com.io7m.jxtrand.vanilla;
+  requires com.io7m.portero.loadtest;
   requires com.io7m.portero.server;
   requires java.net.http;
   requires jcommander;
@@ -0,0 +1,584 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.jdbc;
+
+import com.io7m.portero.server.tokens.PTokenStoreFullException;
+import com.io7m.portero.server.tokens.PTokenStoreType;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A token store that holds tokens in a database table. Several server
+ * processes may share the same table.
+ *
+ * Each operation borrows a connection from a pool and executes a single
+ * prepared statement, so the cost of an operation is one round trip to the
+ * database. Expired tokens are removed by a background task that queries an
+ * index on the expiry time.
+ *
+ * The number of outstanding tokens is not counted on each request. The
+ * store keeps a count that it adjusts as it issues, consumes, and expires
+ * tokens, and that it periodically replaces with a count taken from the
+ * table. The count, and therefore the limit on the number of outstanding
+ * tokens, is approximate when several processes share the table: tokens
+ * issued by other processes are only seen when the count is refreshed.
+ */
+
+public final class PTokenStoreJDBC implements PTokenStoreType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTokenStoreJDBC.class);
+
+  private static final Duration CLAIM_LEASE = Duration.ofMinutes(5L);
+  private static final int BATCH_SIZE = 500;
+  private static final Duration RECOUNT_INTERVAL = Duration.ofSeconds(5L);
+
+  /**
+   * The default limit on the number of outstanding tokens (none).
+   */
+
+  public static final int DEFAULT_LIMIT = Integer.MAX_VALUE;
+
+  private static final String TABLE =
+    "portero_tokens";
+
+  private static final String CREATE_TABLE = """
+    CREATE TABLE portero_tokens (
+      token         VARCHAR(128) NOT NULL PRIMARY KEY,
+      expires       BIGINT       NOT NULL,
+      claimed_until BIGINT       NOT NULL
+    )
+    """;
+
+  private static final String CREATE_INDEX = """
+    CREATE INDEX portero_tokens_expires ON portero_tokens (expires)
+    """;
+
+  private static final String INSERT = """
+    INSERT INTO portero_tokens (token, expires, claimed_until) VALUES (?, ?, 0)
+    """;
+
+  private static final String SELECT_VALID = """
+    SELECT 1 FROM portero_tokens WHERE token = ? AND expires > ?
+    """;
+
+  private static final String CLAIM = """
+    UPDATE portero_tokens SET claimed_until = ?
+      WHERE token = ? AND expires > ? AND claimed_until <= ?
+    """;
+
+  private static final String RELEASE = """
+    UPDATE portero_tokens SET claimed_until = 0 WHERE token = ?
+    """;
+
+  private static final String CONSUME = """
+    DELETE FROM portero_tokens WHERE token = ? AND expires > ?
+    """;
+
+  private static final String COUNT = """
+    SELECT COUNT(*) FROM portero_tokens WHERE expires > ?
+    """;
+
+  private static final String SELECT_EXPIRED = """
+    SELECT token FROM portero_tokens WHERE expires <= ?
+    """;
+
+  private static final String DELETE_EXPIRED = """
+    DELETE FROM portero_tokens WHERE token = ? AND expires <= ?
+    """;
+
+  private final HikariDataSource dataSource;
+  private final long expiryMillis;
+  private final Consumer<String> onExpired;
+  private final ScheduledExecutorService sweeper;
+  private final int limit;
+  private final AtomicInteger count;
+
+  private PTokenStoreJDBC(
+    final HikariDataSource inDataSource,
+    final Duration inExpiry,
+    final int inLimit,
+    final Consumer<String> inOnExpired)
+  {
+    this.dataSource =
+      Objects.requireNonNull(inDataSource, "dataSource");
+    this.expiryMillis =
+      Objects.requireNonNull(inExpiry, "expiry").toMillis();
+    this.onExpired =
+      Objects.requireNonNull(inOnExpired, "onExpired");
+
+    if (inLimit <= 0) {
+      throw new IllegalArgumentException("Token limit must be positive");
+    }
+    this.limit = inLimit;
+    this.count = new AtomicInteger(0);
+
+    this.sweeper =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        final var thread = new Thread(r);
+        thread.setName("com.io7m.portero.jdbc.PTokenStoreJDBC.sweeper");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    final var period =
+      Math.max(100L, Math.min(60_000L, this.expiryMillis / 4L));
+
+    this.sweeper.scheduleAtFixedRate(() -> {
+      try {
+        this.sweep();
+      } catch (final Exception e) {
+        LOG.error("sweep failed: ", e);
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+
+    final var recount = RECOUNT_INTERVAL.toMillis();
+    this.sweeper.scheduleAtFixedRate(() -> {
+      try {
+        this.recount();
+      } catch (final Exception e) {
+        LOG.error("recount failed: ", e);
+      }
+    }, recount, recount, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Open a token store, creating the token table if it does not exist. The
+   * store takes ownership of the data source, and closes it when the store
+   * is closed.
+   *
+   * @param dataSource The data source
+   * @param expiry     The expiration time for individual tokens
+   * @param onExpired  A function called whenever a token expires
+   *
+   * @return A token store
+   *
+   * @throws IOException On errors
+   */
+
+  public static PTokenStoreJDBC open(
+    final HikariDataSource dataSource,
+    final Duration expiry,
+    final Consumer<String> onExpired)
+    throws IOException
+  {
+    return open(dataSource, expiry, DEFAULT_LIMIT, onExpired);
+  }
+
+  /**
+   * Open a token store, creating the token table if it does not exist. The
+   * store takes ownership of the data source, and closes it when the store
+   * is closed.
+   *
+   * @param dataSource The data source
+   * @param expiry     The expiration time for individual tokens
+   * @param limit      The maximum number of outstanding tokens
+   * @param onExpired  A function called whenever a token expires
+   *
+   * @return A token store
+   *
+   * @throws IOException On errors
+   */
+
+  public static PTokenStoreJDBC open(
+    final HikariDataSource dataSource,
+    final Duration expiry,
+    final int limit,
+    final Consumer<String> onExpired)
+    throws IOException
+  {
+    Objects.requireNonNull(dataSource, "dataSource");
+
+    try (var connection = dataSource.getConnection()) {
+      createSchema(connection);
+    } catch (final SQLException e) {
+      dataSource.close();
+      throw new IOException(e);
+    }
+
+    final var store = new PTokenStoreJDBC(dataSource, expiry, limit, onExpired);
+    try {
+      store.recount();
+    } catch (final IOException e) {
+      store.close();
+      throw e;
+    }
+    return store;
+  }
+
+  private static void createSchema(
+    final Connection connection)
+    throws SQLException
+  {
+    final var metadata = connection.getMetaData();
+
+    final String tableName;
+    if (metadata.storesUpperCaseIdentifiers()) {
+      tableName = TABLE.toUpperCase(Locale.ROOT);
+    } else {
+      tableName = TABLE;
+    }
+
+    try (var tables =
+           metadata.getTables(null, null, tableName, new String[]{"TABLE"})) {
+      if (tables.next()) {
+        return;
+      }
+    }
+
+    LOG.info("creating table {}", TABLE);
+    try (var statement = connection.createStatement()) {
+      statement.execute(CREATE_TABLE);
+      statement.execute(CREATE_INDEX);
+    }
+  }
+
+  private static boolean isConstraintViolation(
+    final SQLException e)
+  {
+    final var state = e.getSQLState();
+    return state != null && state.startsWith("23");
+  }
+
+  private long now()
+  {
+    return System.currentTimeMillis();
+  }
+
+  private void checkLimit(
+    final int additional)
+  {
+    if (this.count.get() + (long) additional > this.limit) {
+      throw new PTokenStoreFullException(
+        String.format(
+          "Too many outstanding tokens (limit %d)",
+          Integer.valueOf(this.limit))
+      );
+    }
+  }
+
+  @Override
+  public boolean issue(
+    final String token)
+    throws IOException
+  {
+    Objects.requireNonNull(token, "token");
+    this.checkLimit(1);
+
+    try (var connection = this.dataSource.getConnection();
+         var statement = connection.prepareStatement(INSERT)) {
+      statement.setString(1, token);
+      statement.setLong(2, this.now() + this.expiryMillis);
+      statement.executeUpdate();
+      this.count.incrementAndGet();
+      return true;
+    } catch (final SQLException e) {
+      if (isConstraintViolation(e)) {
+        return false;
+      }
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Issue a list of tokens using batched inserts in a single transaction. If
+   * the tokens would exceed the limit, none of them are issued. If any token
+   * already exists, the transaction is rolled back and the tokens are issued
+   * one at a time instead.
+   */
+
+  @Override
+  public List<String> issueAll(
+    final List<String> tokens)
+    throws IOException
+  {
+    Objects.requireNonNull(tokens, "tokens");
+    this.checkLimit(tokens.size());
+
+    final var expires = this.now() + this.expiryMillis;
+    try (var connection = this.dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      try (var statement = connection.prepareStatement(INSERT)) {
+        var pending = 0;
+        for (final var token : tokens) {
+          statement.setString(1, token);
+          statement.setLong(2, expires);
+          statement.addBatch();
+          if (++pending == BATCH_SIZE) {
+            statement.executeBatch();
+            pending = 0;
+          }
+        }
+        if (pending > 0) {
+          statement.executeBatch();
+        }
+        connection.commit();
+        this.count.addAndGet(tokens.size());
+        return List.copyOf(tokens);
+      } catch (final BatchUpdateException e) {
+        connection.rollback();
+        if (!isConstraintViolation(e)) {
+          throw e;
+        }
+        LOG.debug("batch issue collided with an existing token");
+      } catch (final SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    } catch (final SQLException e) {
+      throw new IOException(e);
+    }
+
+    return PTokenStoreType.super.issueAll(tokens);
+  }
+
+  @Override
+  public boolean isValid(
+    final String token)
+    throws IOException
+  {
+    Objects.requireNonNull(token, "token");
+
+    try (var connection = this.dataSource.getConnection();
+         var statement = connection.prepareStatement(SELECT_VALID)) {
+      statement.setString(1, token);
+      statement.setLong(2, this.now());
+      try (var result = statement.executeQuery()) {
+        return result.next();
+      }
+    } catch (final SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public boolean claim(
+    final String token)
+    throws IOException
+  {
+    Objects.requireNonNull(token, "token");
+
+    final var timeNow = this.now();
+    try (var connection = this.dataSource.getConnection();
+         var statement = connection.prepareStatement(CLAIM)) {
+      statement.setLong(1, timeNow + CLAIM_LEASE.toMillis());
+      statement.setString(2, token);
+      statement.setLong(3, timeNow);
+      statement.setLong(4, timeNow);
+      return statement.executeUpdate() == 1;
+    } catch (final SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void release(
+    final String token)
+    throws IOException
+  {
+    Objects.requireNonNull(token, "token");
+
+    try (var connection = this.dataSource.getConnection();
+         var statement = connection.prepareStatement(RELEASE)) {
+      statement.setString(1, token);
+      statement.executeUpdate();
+    } catch (final SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public boolean consume(
+    final String token)
+    throws IOException
+  {
+    Objects.requireNonNull(token, "token");
+
+    try (var connection = this.dataSource.getConnection();
+         var statement = connection.prepareStatement(CONSUME)) {
+      statement.setString(1, token);
+      statement.setLong(2, this.now());
+      if (statement.executeUpdate() == 1) {
+        this.count.updateAndGet(c -> Math.max(0, c - 1));
+        return true;
+      }
+      return false;
+    } catch (final SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * @return The approximate number of outstanding tokens
+   */
+
+  @Override
+  public int size()
+  {
+    return this.count.get();
+  }
+
+  /**
+   * Remove expired tokens. This is called periodically by the store, and
+   * does not normally need to be called directly. If several processes
+   * share the table, each expired token is reported by exactly one process.
+   *
+   * @throws IOException On errors
+   */
+
+  public void sweep()
+    throws IOException
+  {
+    final var timeNow = this.now();
+
+    try {
+      var more = true;
+      while (more) {
+        more = this.sweepBatch(timeNow) == BATCH_SIZE;
+      }
+    } catch (final SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private int sweepBatch(
+    final long timeNow)
+    throws SQLException
+  {
+    final List<String> candidates;
+    final List<String> expired;
+    try (var connection = this.dataSource.getConnection()) {
+      candidates = selectExpired(connection, timeNow);
+      if (candidates.isEmpty()) {
+        return 0;
+      }
+      expired = deleteExpired(connection, candidates, timeNow);
+    }
+
+    this.count.updateAndGet(c -> Math.max(0, c - expired.size()));
+    for (final var token : expired) {
+      this.onExpired.accept(token);
+    }
+    return candidates.size();
+  }
+
+  private static List<String> selectExpired(
+    final Connection connection,
+    final long timeNow)
+    throws SQLException
+  {
+    final var candidates = new ArrayList<String>();
+    try (var statement = connection.prepareStatement(SELECT_EXPIRED)) {
+      statement.setMaxRows(BATCH_SIZE);
+      statement.setLong(1, timeNow);
+      try (var result = statement.executeQuery()) {
+        while (result.next()) {
+          candidates.add(result.getString(1));
+        }
+      }
+    }
+    return candidates;
+  }
+
+  private static List<String> deleteExpired(
+    final Connection connection,
+    final List<String> candidates,
+    final long timeNow)
+    throws SQLException
+  {
+    final var expired = new ArrayList<String>();
+
+    connection.setAutoCommit(false);
+    try (var statement = connection.prepareStatement(DELETE_EXPIRED)) {
+      for (final var token : candidates) {
+        statement.setString(1, token);
+        statement.setLong(2, timeNow);
+        statement.addBatch();
+      }
+
+      final var counts = statement.executeBatch();
+      connection.commit();
+
+      for (int index = 0; index < counts.length; ++index) {
+        final var count = counts[index];
+        if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+          expired.add(candidates.get(index));
+        }
+      }
+      return expired;
+    } catch (final SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  /**
+   * Count the outstanding tokens in the table. This is called periodically
+   * by the store, and does not normally need to be called directly.
+   *
+   * @throws IOException On errors
+   */
+
+  public void recount()
+    throws IOException
+  {
+    try (var connection = this.dataSource.getConnection();
+         var statement = connection.prepareStatement(COUNT)) {
+      statement.setLong(1, this.now());
+      try (var result = statement.executeQuery()) {
+        result.next();
+        this.count.set(result.getInt(1));
+      }
+    } catch (final SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    this.sweeper.shutdown();
+    try {
+      this.sweeper.awaitTermination(5L, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.dataSource.close();
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.jdbc;
+
+import com.io7m.portero.server.tokens.PTokenStoreProviderType;
+import com.io7m.portero.server.tokens.PTokenStoreType;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * The provider of JDBC token stores.
+ *
+ * The provider recognizes the following properties:
+ *
+ * <ul>
+ *   <li>{@code url}: The JDBC URL of the database (required)</li>
+ *   <li>{@code user}: The database user</li>
+ *   <li>{@code password}: The database password</li>
+ *   <li>{@code poolSize}: The number of pooled connections (default 8)</li>
+ *   <li>{@code limit}: The maximum number of outstanding tokens (default
+ *   unlimited). New tokens are rejected when the limit is reached.</li>
+ *   <li>{@code dataSource.*}: Properties passed directly to the driver</li>
+ * </ul>
+ */
+
+public final class PTokenStoreJDBCProvider implements PTokenStoreProviderType
+{
+  private static final String DATA_SOURCE_PREFIX = "dataSource.";
+
+  /**
+   * The provider of JDBC token stores.
+   */
+
+  public PTokenStoreJDBCProvider()
+  {
+
+  }
+
+  @Override
+  public String name()
+  {
+    return "jdbc";
+  }
+
+  @Override
+  public PTokenStoreType open(
+    final Map<String, String> properties,
+    final Duration expiry,
+    final Consumer<String> onExpired)
+    throws IOException
+  {
+    Objects.requireNonNull(properties, "properties");
+
+    final var url = properties.get("url");
+    if (url == null) {
+      throw new IOException(
+        "The JDBC token store requires a tokenStore.url property");
+    }
+
+    final var poolSize =
+      intProperty(properties, "poolSize", 8);
+    final var limit =
+      intProperty(properties, "limit", PTokenStoreJDBC.DEFAULT_LIMIT);
+    if (limit <= 0) {
+      throw new IOException("Invalid tokenStore.limit: must be positive");
+    }
+
+    final var policy =
+      properties.getOrDefault("evictionPolicy", "REJECT_NEW");
+    if (!"REJECT_NEW".equals(policy)) {
+      throw new IOException(
+        "The JDBC token store only supports the REJECT_NEW eviction policy");
+    }
+
+    final var config = poolConfiguration(properties, url, poolSize);
+    final HikariDataSource dataSource;
+    try {
+      dataSource = new HikariDataSource(config);
+    } catch (final RuntimeException e) {
+      throw new IOException(e);
+    }
+    return PTokenStoreJDBC.open(dataSource, expiry, limit, onExpired);
+  }
+
+  private static int intProperty(
+    final Map<String, String> properties,
+    final String name,
+    final int defaultValue)
+    throws IOException
+  {
+    final var text = properties.get(name);
+    if (text == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(text);
+    } catch (final NumberFormatException e) {
+      throw new IOException("Invalid tokenStore." + name, e);
+    }
+  }
+
+  private static HikariConfig poolConfiguration(
+    final Map<String, String> properties,
+    final String url,
+    final int poolSize)
+  {
+    /*
+     * A fixed-size pool: Connections are opened once at startup and never
+     * closed for being idle, so requests never wait for a new connection.
+     */
+
+    final var config = new HikariConfig();
+    config.setPoolName("portero-tokens");
+    config.setJdbcUrl(url);
+    config.setUsername(properties.get("user"));
+    config.setPassword(properties.get("password"));
+    config.setMaximumPoolSize(poolSize);
+    config.setMinimumIdle(poolSize);
+
+    for (final var entry : properties.entrySet()) {
+      final var key = entry.getKey();
+      if (key.startsWith(DATA_SOURCE_PREFIX)) {
+        config.addDataSourceProperty(
+          key.substring(DATA_SOURCE_PREFIX.length()),
+          entry.getValue()
+        );
+      }
+    }
+    return config;
+  }
+}
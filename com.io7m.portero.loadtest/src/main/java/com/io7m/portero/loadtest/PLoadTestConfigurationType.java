@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.loadtest;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.immutables.value.Value;
+
+import java.util.Optional;
+
+/**
+ * The configuration of a load test.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PLoadTestConfigurationType
+{
+  /**
+   * The configuration of the server under test. The Matrix server admin
+   * URI is replaced with the URI of a Synapse simulator.
+   *
+   * @return The server configuration
+   */
+
+  PServerConfiguration server();
+
+  /**
+   * The configuration of the Synapse simulator. The shared secret is
+   * replaced with the registration secret of the server under test. If no
+   * configuration is given, the simulator adds no latency and no faults.
+   *
+   * @return The simulator configuration
+   */
+
+  Optional<PSimulatorConfiguration> simulator();
+
+  /**
+   * @return The number of invites to issue, and signups to perform
+   */
+
+  @Value.Default
+  default int invites()
+  {
+    return 1000;
+  }
+
+  /**
+   * @return The target rate at which signups are started, per second
+   */
+
+  @Value.Default
+  default double rate()
+  {
+    return 50.0;
+  }
+
+  /**
+   * @return The maximum number of signups in progress at any one time
+   */
+
+  @Value.Default
+  default int concurrency()
+  {
+    return 16;
+  }
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    if (this.invites() < 1) {
+      throw new IllegalArgumentException("Invites must be positive");
+    }
+    if (!(this.rate() > 0.0)) {
+      throw new IllegalArgumentException("Rate must be positive");
+    }
+    if (this.concurrency() < 1) {
+      throw new IllegalArgumentException("Concurrency must be positive");
+    }
+  }
+}
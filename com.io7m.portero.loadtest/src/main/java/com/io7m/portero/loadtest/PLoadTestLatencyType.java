@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.loadtest;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+/**
+ * Latency percentiles for one kind of request. All values are in
+ * nanoseconds.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PLoadTestLatencyType
+{
+  /**
+   * @return The name of the request kind
+   */
+
+  String name();
+
+  /**
+   * @return The number of recorded values
+   */
+
+  long count();
+
+  /**
+   * @return The 50th percentile value
+   */
+
+  long p50();
+
+  /**
+   * @return The 90th percentile value
+   */
+
+  long p90();
+
+  /**
+   * @return The 99th percentile value
+   */
+
+  long p99();
+
+  /**
+   * @return The 99.9th percentile value
+   */
+
+  long p999();
+
+  /**
+   * @return The maximum value
+   */
+
+  long max();
+}
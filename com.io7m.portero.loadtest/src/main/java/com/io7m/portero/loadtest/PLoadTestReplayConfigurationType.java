@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.loadtest;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.traffic.PTrafficRecord;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.immutables.value.Value;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The configuration of a traffic replay.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PLoadTestReplayConfigurationType
+{
+  /**
+   * The configuration of the server under test. The Matrix server admin
+   * URI is replaced with the URI of a Synapse simulator.
+   *
+   * @return The server configuration
+   */
+
+  PServerConfiguration server();
+
+  /**
+   * The configuration of the Synapse simulator. The shared secret is
+   * replaced with the registration secret of the server under test.
+   *
+   * @return The simulator configuration
+   */
+
+  Optional<PSimulatorConfiguration> simulator();
+
+  /**
+   * @return The recorded requests to replay
+   */
+
+  List<PTrafficRecord> records();
+
+  /**
+   * @return The replay speed relative to the recording, such as {@code 1.0}
+   * for real time or {@code 60.0} to replay an hour in a minute
+   */
+
+  @Value.Default
+  default double speed()
+  {
+    return 1.0;
+  }
+
+  /**
+   * The longest recorded gap between consecutive requests that is
+   * preserved. Longer gaps, such as quiet nights, are shortened to this
+   * length before the speed is applied, so that recordings covering long
+   * periods can be replayed without waiting through idle time.
+   *
+   * @return The maximum gap, if any
+   */
+
+  Optional<Duration> maximumGap();
+
+  /**
+   * @return The maximum number of requests in progress at any one time
+   */
+
+  @Value.Default
+  default int concurrency()
+  {
+    return 64;
+  }
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    if (!(this.speed() > 0.0)) {
+      throw new IllegalArgumentException("Speed must be positive");
+    }
+    if (this.concurrency() < 1) {
+      throw new IllegalArgumentException("Concurrency must be positive");
+    }
+    this.maximumGap().ifPresent(gap -> {
+      if (gap.isNegative()) {
+        throw new IllegalArgumentException(
+          "Maximum gap must be non-negative");
+      }
+    });
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.loadtest;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of a load test or traffic replay. Each operation is a
+ * complete signup for a load test, and a single request for a replay.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PLoadTestReportType
+{
+  /**
+   * @return The name of the operations counted, such as {@code signups}
+   */
+
+  @Value.Default
+  default String unit()
+  {
+    return "signups";
+  }
+
+  /**
+   * @return The number of operations attempted
+   */
+
+  long attempted();
+
+  /**
+   * @return The number of operations that completed successfully
+   */
+
+  long succeeded();
+
+  /**
+   * @return The number of failed operations, by kind of failure, in name
+   * order
+   */
+
+  Map<String, Long> failures();
+
+  /**
+   * @return The time taken to perform all operations
+   */
+
+  Duration elapsed();
+
+  /**
+   * @return The target rate at which operations were started, per second
+   */
+
+  double targetRate();
+
+  /**
+   * @return The latency percentiles, by request kind
+   */
+
+  List<PLoadTestLatency> latencies();
+
+  /**
+   * @return The number of failed operations
+   */
+
+  default long failed()
+  {
+    return this.attempted() - this.succeeded();
+  }
+
+  /**
+   * @return The fraction of operations that failed
+   */
+
+  default double errorRate()
+  {
+    if (this.attempted() == 0L) {
+      return 0.0;
+    }
+    return (double) this.failed() / (double) this.attempted();
+  }
+
+  /**
+   * @return The number of successful operations per second
+   */
+
+  default double throughput()
+  {
+    final var seconds = (double) this.elapsed().toNanos() / 1_000_000_000.0;
+    if (seconds <= 0.0) {
+      return 0.0;
+    }
+    return (double) this.succeeded() / seconds;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.loadtest;
+
+import com.io7m.portero.loadtest.internal.PLoadTestReplayRunner;
+import com.io7m.portero.loadtest.internal.PLoadTestRunner;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Functions to run load tests.
+ */
+
+public final class PLoadTests
+{
+  private PLoadTests()
+  {
+
+  }
+
+  /**
+   * Run a load test. A server is started with the given configuration,
+   * backed by a Synapse simulator; invites are issued through the private
+   * server, and then signups are performed through the public server at
+   * the configured rate.
+   *
+   * @param configuration The load test configuration
+   *
+   * @return The results
+   *
+   * @throws Exception On errors
+   */
+
+  public static PLoadTestReport run(
+    final PLoadTestConfiguration configuration)
+    throws Exception
+  {
+    return PLoadTestRunner.run(
+      Objects.requireNonNull(configuration, "configuration"));
+  }
+
+  /**
+   * Replay recorded traffic. A server is started with the given
+   * configuration, backed by a Synapse simulator, and each recorded request
+   * is sent at its recorded time, scaled by the replay speed. Requests that
+   * carried the same (anonymized) token are sent in their recorded order,
+   * using a fresh token issued when the recorded invite is replayed.
+   *
+   * @param configuration The replay configuration
+   *
+   * @return The results, with one operation per request
+   *
+   * @throws Exception On errors
+   */
+
+  public static PLoadTestReport replay(
+    final PLoadTestReplayConfiguration configuration)
+    throws Exception
+  {
+    return PLoadTestReplayRunner.run(
+      Objects.requireNonNull(configuration, "configuration"));
+  }
+
+  /**
+   * Format a report as plain text.
+   *
+   * @param report The report
+   *
+   * @return The report text
+   */
+
+  public static String format(
+    final PLoadTestReport report)
+  {
+    Objects.requireNonNull(report, "report");
+
+    final var text = new StringBuilder(1024);
+    text.append(String.format(
+      Locale.ROOT,
+      "attempted   %d%n",
+      Long.valueOf(report.attempted())));
+    text.append(String.format(
+      Locale.ROOT,
+      "succeeded   %d%n",
+      Long.valueOf(report.succeeded())));
+    text.append(String.format(
+      Locale.ROOT,
+      "failed      %d (%.2f%%)%n",
+      Long.valueOf(report.failed()),
+      Double.valueOf(report.errorRate() * 100.0)));
+    for (final var entry : report.failures().entrySet()) {
+      text.append(String.format(
+        Locale.ROOT,
+        "  %-24s %d%n",
+        entry.getKey(),
+        entry.getValue()));
+    }
+    text.append(String.format(
+      Locale.ROOT,
+      "elapsed     %.3f s%n",
+      Double.valueOf(report.elapsed().toNanos() / 1_000_000_000.0)));
+    text.append(String.format(
+      Locale.ROOT,
+      "throughput  %.2f %s/s (target %.2f/s)%n",
+      Double.valueOf(report.throughput()),
+      report.unit(),
+      Double.valueOf(report.targetRate())));
+    text.append(System.lineSeparator());
+
+    text.append(String.format(
+      Locale.ROOT,
+      "%-24s %10s %10s %10s %10s %10s %10s%n",
+      "# name",
+      "count",
+      "p50_ms",
+      "p90_ms",
+      "p99_ms",
+      "p999_ms",
+      "max_ms"
+    ));
+    for (final var latency : report.latencies()) {
+      text.append(String.format(
+        Locale.ROOT,
+        "%-24s %10d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+        latency.name(),
+        Long.valueOf(latency.count()),
+        Double.valueOf(millis(latency.p50())),
+        Double.valueOf(millis(latency.p90())),
+        Double.valueOf(millis(latency.p99())),
+        Double.valueOf(millis(latency.p999())),
+        Double.valueOf(millis(latency.max()))
+      ));
+    }
+    return text.toString();
+  }
+
+  private static double millis(
+    final long nanos)
+  {
+    return (double) nanos / 1_000_000.0;
+  }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.loadtest.internal;
+
+import com.io7m.portero.loadtest.PLoadTestReplayConfiguration;
+import com.io7m.portero.loadtest.PLoadTestReport;
+import com.io7m.portero.server.PServers;
+import com.io7m.portero.server.traffic.PTrafficRecord;
+import com.io7m.portero.server.traffic.PTrafficRoute;
+import com.io7m.portero.simulator.PSimulator;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.HIGHEST_TRACKABLE;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.REQUEST_TIMEOUT;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.formOf;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.latencyOf;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.privateBase;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.publicBase;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.record;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A replay of recorded traffic against a server backed by a Synapse
+ * simulator.
+ *
+ * Each request is started at its recorded time, scaled by the replay
+ * speed, so bursts in the recording are reproduced as bursts. Requests
+ * that carried the same anonymized token are chained so that each starts
+ * only when the previous one has finished, preserving the order of the
+ * invite, signup form, and signup completion for each invite. Latencies
+ * are measured from the time each request was scheduled to start, so
+ * queueing during bursts shows up in the percentiles. A request succeeds
+ * if its response status is in the same class (2xx, 4xx, and so on) as the
+ * recorded status.
+ */
+
+public final class PLoadTestReplayRunner
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PLoadTestReplayRunner.class);
+
+  private final PLoadTestReplayConfiguration configuration;
+  private final HttpClient client;
+  private final EnumMap<PTrafficRoute, Histogram> latencies;
+  private final ConcurrentHashMap<Integer, String> tokens;
+  private final LongAdder succeeded;
+  private final ConcurrentHashMap<String, LongAdder> failures;
+  private final AtomicLong users;
+  private URI publicBase;
+  private URI privateBase;
+
+  private PLoadTestReplayRunner(
+    final PLoadTestReplayConfiguration inConfiguration)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.client =
+      PLoadTestSupport.createClient();
+    this.latencies =
+      new EnumMap<>(PTrafficRoute.class);
+    for (final var route : PTrafficRoute.values()) {
+      this.latencies.put(
+        route, new ConcurrentHistogram(HIGHEST_TRACKABLE, 3));
+    }
+    this.tokens =
+      new ConcurrentHashMap<>();
+    this.succeeded =
+      new LongAdder();
+    this.failures =
+      new ConcurrentHashMap<>();
+    this.users =
+      new AtomicLong();
+  }
+
+  /**
+   * Replay recorded traffic.
+   *
+   * @param configuration The replay configuration
+   *
+   * @return The results
+   *
+   * @throws Exception On errors
+   */
+
+  public static PLoadTestReport run(
+    final PLoadTestReplayConfiguration configuration)
+    throws Exception
+  {
+    return new PLoadTestReplayRunner(configuration).execute();
+  }
+
+  /**
+   * Compute the time at which each record should be replayed, relative to
+   * the start of the replay.
+   *
+   * @param records    The records, in time order
+   * @param speed      The replay speed
+   * @param maximumGap The maximum preserved gap between records, if any
+   *
+   * @return The offset of each record, in nanoseconds
+   */
+
+  static long[] schedule(
+    final List<PTrafficRecord> records,
+    final double speed,
+    final Duration maximumGap)
+  {
+    final var offsets = new long[records.size()];
+    final var gapLimit =
+      maximumGap == null ? Long.MAX_VALUE : maximumGap.toNanos() / 1_000L;
+
+    long recorded = 0L;
+    for (int index = 1; index < records.size(); ++index) {
+      final var gap =
+        records.get(index).timeMicros() - records.get(index - 1).timeMicros();
+      recorded += Math.min(gapLimit, Math.max(0L, gap));
+      offsets[index] = (long) ((recorded * 1_000.0) / speed);
+    }
+    return offsets;
+  }
+
+  private PLoadTestReport execute()
+    throws Exception
+  {
+    final var simulatorConfiguration =
+      PLoadTestSupport.simulatorConfiguration(
+        this.configuration.simulator(),
+        this.configuration.server());
+
+    try (var synapse = PSimulator.start(simulatorConfiguration)) {
+      final var serverConfiguration =
+        this.configuration.server()
+          .withMatrixServerAdminConnectionURI(synapse.uri());
+
+      this.publicBase = publicBase(serverConfiguration);
+      this.privateBase = privateBase(serverConfiguration);
+
+      try (var server = PServers.createServer(serverConfiguration)) {
+        server.start();
+
+        final var executor =
+          Executors.newFixedThreadPool(this.configuration.concurrency());
+        try {
+          return this.replay(executor);
+        } finally {
+          executor.shutdownNow();
+        }
+      }
+    }
+  }
+
+  private PLoadTestReport replay(
+    final ExecutorService executor)
+  {
+    final var records =
+      new ArrayList<>(this.configuration.records());
+    records.sort((x, y) -> Long.compare(x.timeMicros(), y.timeMicros()));
+
+    final var offsets =
+      schedule(
+        records,
+        this.configuration.speed(),
+        this.configuration.maximumGap().orElse(null));
+
+    LOG.info(
+      "replaying {} requests at {}x with concurrency {}",
+      Integer.valueOf(records.size()),
+      Double.valueOf(this.configuration.speed()),
+      Integer.valueOf(this.configuration.concurrency()));
+
+    final var chains = new HashMap<Integer, CompletableFuture<Void>>();
+    final var pending = new ArrayList<CompletableFuture<Void>>(records.size());
+
+    final var timeStart = System.nanoTime();
+    for (int index = 0; index < records.size(); ++index) {
+      final var scheduled = timeStart + offsets[index];
+      final var wait = scheduled - System.nanoTime();
+      if (wait > 0L) {
+        LockSupport.parkNanos(wait);
+      }
+
+      final var item = records.get(index);
+      final Runnable task = () -> this.send(item, scheduled);
+
+      final CompletableFuture<Void> future;
+      if (item.token() != 0) {
+        final var key = Integer.valueOf(item.token());
+        final var previous =
+          chains.getOrDefault(key, CompletableFuture.completedFuture(null));
+        future = previous.thenRunAsync(task, executor);
+        chains.put(key, future);
+      } else {
+        future = CompletableFuture.runAsync(task, executor);
+      }
+      pending.add(future);
+    }
+
+    CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+      .join();
+
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeStart);
+
+    final var failureCounts = new TreeMap<String, Long>();
+    for (final var entry : this.failures.entrySet()) {
+      failureCounts.put(entry.getKey(), Long.valueOf(entry.getValue().sum()));
+    }
+
+    final var span =
+      records.isEmpty() ? 0L : offsets[offsets.length - 1];
+    final var targetRate =
+      span > 0L ? records.size() / (span / 1_000_000_000.0) : 0.0;
+
+    final var report =
+      PLoadTestReport.builder()
+        .setUnit("requests")
+        .setAttempted(records.size())
+        .setSucceeded(this.succeeded.sum())
+        .setFailures(failureCounts)
+        .setElapsed(elapsed)
+        .setTargetRate(targetRate);
+
+    for (final var entry : this.latencies.entrySet()) {
+      if (entry.getValue().getTotalCount() > 0L) {
+        report.addLatencies(
+          latencyOf(routeName(entry.getKey()), entry.getValue()));
+      }
+    }
+    return report.build();
+  }
+
+  private static String routeName(
+    final PTrafficRoute route)
+  {
+    return route.server() + " " + route.method() + " " + route.path();
+  }
+
+  private void fail(
+    final String kind)
+  {
+    this.failures.computeIfAbsent(kind, k -> new LongAdder()).increment();
+  }
+
+  private void send(
+    final PTrafficRecord item,
+    final long scheduled)
+  {
+    final var route = item.route();
+    try {
+      final var status = this.sendActual(item);
+      record(this.latencies.get(route), scheduled);
+
+      if (status / 100 == item.status() / 100) {
+        this.succeeded.increment();
+      } else {
+        this.fail(
+          String.format(
+            "%s %d (recorded %d)",
+            route.name(),
+            Integer.valueOf(status),
+            Integer.valueOf(item.status())));
+      }
+    } catch (final IOException e) {
+      this.fail("i/o " + e.getClass().getSimpleName());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.fail("interrupted");
+    }
+  }
+
+  private int sendActual(
+    final PTrafficRecord item)
+    throws IOException, InterruptedException
+  {
+    final var route = item.route();
+    return switch (route) {
+      case PRIVATE_INVITE -> this.sendInvite(item);
+      case PUBLIC_SIGNUP -> this.sendSignup(item);
+      case PUBLIC_SIGNUP_COMPLETE -> this.sendSignupComplete(item);
+      case PUBLIC_API_SIGNUP -> this.sendSignupAPI(item);
+      default -> this.sendPlain(route);
+    };
+  }
+
+  private int sendPlain(
+    final PTrafficRoute route)
+    throws IOException, InterruptedException
+  {
+    final var base =
+      "private".equals(route.server()) ? this.privateBase : this.publicBase;
+
+    return this.client.send(
+      HttpRequest.newBuilder(base.resolve(route.path()))
+        .timeout(REQUEST_TIMEOUT)
+        .build(),
+      HttpResponse.BodyHandlers.discarding()
+    ).statusCode();
+  }
+
+  private int sendInvite(
+    final PTrafficRecord item)
+    throws IOException, InterruptedException
+  {
+    final var token =
+      PLoadTestSupport.issueInvite(this.client, this.privateBase);
+    if (item.token() != 0) {
+      this.tokens.put(Integer.valueOf(item.token()), token);
+    }
+    return 200;
+  }
+
+  /**
+   * Find the token to use for a recorded request. Requests whose invite
+   * was issued before the recording started are given a freshly issued
+   * token; this extra invite is not timed.
+   */
+
+  private String tokenFor(
+    final PTrafficRecord item)
+    throws IOException, InterruptedException
+  {
+    if (item.token() == 0) {
+      return null;
+    }
+
+    final var key = Integer.valueOf(item.token());
+    final var existing = this.tokens.get(key);
+    if (existing != null) {
+      return existing;
+    }
+
+    final var token =
+      PLoadTestSupport.issueInvite(this.client, this.privateBase);
+    this.tokens.put(key, token);
+    return token;
+  }
+
+  private int sendSignup(
+    final PTrafficRecord item)
+    throws IOException, InterruptedException
+  {
+    final var token = this.tokenFor(item);
+    final var target =
+      token == null
+        ? this.publicBase.resolve("/signup/")
+        : this.publicBase.resolve(
+        "/signup/?token=" + URLEncoder.encode(token, UTF_8));
+
+    return this.client.send(
+      HttpRequest.newBuilder(target)
+        .timeout(REQUEST_TIMEOUT)
+        .build(),
+      HttpResponse.BodyHandlers.discarding()
+    ).statusCode();
+  }
+
+  private int sendSignupComplete(
+    final PTrafficRecord item)
+    throws IOException, InterruptedException
+  {
+    final var token = this.tokenFor(item);
+    final var user = "replay" + this.users.incrementAndGet();
+
+    final var values = new TreeMap<String, String>();
+    if (token != null) {
+      values.put("token", token);
+    }
+    values.put("user_name", user);
+    values.put("email", user + "@example.com");
+    values.put("password", "replay-password");
+    values.put("password_confirm", "replay-password");
+
+    return this.client.send(
+      HttpRequest.newBuilder(this.publicBase.resolve("/signup-complete/"))
+        .timeout(REQUEST_TIMEOUT)
+        .header("content-type", "application/x-www-form-urlencoded")
+        .POST(HttpRequest.BodyPublishers.ofString(formOf(values)))
+        .build(),
+      HttpResponse.BodyHandlers.discarding()
+    ).statusCode();
+  }
+
+  private int sendSignupAPI(
+    final PTrafficRecord item)
+    throws IOException, InterruptedException
+  {
+    final var token = this.tokenFor(item);
+    final var user = "replay" + this.users.incrementAndGet();
+
+    final var body = new StringBuilder(128);
+    body.append('{');
+    if (token != null) {
+      body.append("\"token\":\"").append(token).append("\",");
+    }
+    body.append("\"user_name\":\"").append(user).append("\",");
+    body.append("\"password\":\"replay-password\"}");
+
+    return this.client.send(
+      HttpRequest.newBuilder(this.publicBase.resolve("/api/v1/signup"))
+        .timeout(REQUEST_TIMEOUT)
+        .header("content-type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+        .build(),
+      HttpResponse.BodyHandlers.discarding()
+    ).statusCode();
+  }
+}
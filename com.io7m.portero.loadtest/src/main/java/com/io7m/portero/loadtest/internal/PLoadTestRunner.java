@@ -0,0 +1,293 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.loadtest.internal;
+
+import com.io7m.portero.loadtest.PLoadTestConfiguration;
+import com.io7m.portero.loadtest.PLoadTestReport;
+import com.io7m.portero.server.PServers;
+import com.io7m.portero.simulator.PSimulator;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.HIGHEST_TRACKABLE;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.REQUEST_TIMEOUT;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.formOf;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.latencyOf;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.privateBase;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.publicBase;
+import static com.io7m.portero.loadtest.internal.PLoadTestSupport.record;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A load test run against a server backed by a Synapse simulator.
+ *
+ * Signups are started on a fixed schedule derived from the target rate.
+ * If the concurrency limit is reached, later signups start late, and the
+ * "signup total" latency is measured from the time at which each signup
+ * was scheduled to start rather than when it actually started, so that
+ * queueing caused by a saturated server shows up in the percentiles.
+ */
+
+public final class PLoadTestRunner
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PLoadTestRunner.class);
+
+  private final PLoadTestConfiguration configuration;
+  private final HttpClient client;
+  private final Histogram signupLatency;
+  private final Histogram completeLatency;
+  private final Histogram totalLatency;
+  private final LongAdder succeeded;
+  private final ConcurrentHashMap<String, LongAdder> failures;
+  private URI publicBase;
+  private URI privateBase;
+
+  private PLoadTestRunner(
+    final PLoadTestConfiguration inConfiguration)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.client =
+      PLoadTestSupport.createClient();
+    this.signupLatency =
+      new ConcurrentHistogram(HIGHEST_TRACKABLE, 3);
+    this.completeLatency =
+      new ConcurrentHistogram(HIGHEST_TRACKABLE, 3);
+    this.totalLatency =
+      new ConcurrentHistogram(HIGHEST_TRACKABLE, 3);
+    this.succeeded =
+      new LongAdder();
+    this.failures =
+      new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Run a load test.
+   *
+   * @param configuration The load test configuration
+   *
+   * @return The results
+   *
+   * @throws Exception On errors
+   */
+
+  public static PLoadTestReport run(
+    final PLoadTestConfiguration configuration)
+    throws Exception
+  {
+    return new PLoadTestRunner(configuration).execute();
+  }
+
+  private PLoadTestReport execute()
+    throws Exception
+  {
+    final var simulatorConfiguration =
+      PLoadTestSupport.simulatorConfiguration(
+        this.configuration.simulator(),
+        this.configuration.server());
+
+    try (var synapse = PSimulator.start(simulatorConfiguration)) {
+      final var serverConfiguration =
+        this.configuration.server()
+          .withMatrixServerAdminConnectionURI(synapse.uri());
+
+      this.publicBase = publicBase(serverConfiguration);
+      this.privateBase = privateBase(serverConfiguration);
+
+      try (var server = PServers.createServer(serverConfiguration)) {
+        server.start();
+
+        final var executor =
+          Executors.newFixedThreadPool(this.configuration.concurrency());
+        try {
+          final var tokens = this.issueInvites(executor);
+          return this.signups(executor, tokens);
+        } finally {
+          executor.shutdownNow();
+        }
+      }
+    }
+  }
+
+  private List<String> issueInvites(
+    final ExecutorService executor)
+    throws Exception
+  {
+    final var count = this.configuration.invites();
+    LOG.info("issuing {} invites", Integer.valueOf(count));
+
+    final var futures = new ArrayList<Future<String>>(count);
+    for (int index = 0; index < count; ++index) {
+      futures.add(executor.submit(this::issueInvite));
+    }
+
+    final var tokens = new ArrayList<String>(count);
+    for (final var future : futures) {
+      tokens.add(future.get());
+    }
+    return tokens;
+  }
+
+  private String issueInvite()
+    throws IOException, InterruptedException
+  {
+    return PLoadTestSupport.issueInvite(this.client, this.privateBase);
+  }
+
+  private PLoadTestReport signups(
+    final ExecutorService executor,
+    final List<String> tokens)
+    throws InterruptedException
+  {
+    final var concurrency = this.configuration.concurrency();
+    final var permits = new Semaphore(concurrency);
+    final var periodNanos =
+      (long) (1_000_000_000.0 / this.configuration.rate());
+
+    LOG.info(
+      "starting {} signups at {}/s with concurrency {}",
+      Integer.valueOf(tokens.size()),
+      Double.valueOf(this.configuration.rate()),
+      Integer.valueOf(concurrency));
+
+    final var timeStart = System.nanoTime();
+    for (int index = 0; index < tokens.size(); ++index) {
+      final var scheduled = timeStart + (index * periodNanos);
+      final var wait = scheduled - System.nanoTime();
+      if (wait > 0L) {
+        LockSupport.parkNanos(wait);
+      }
+
+      permits.acquire();
+      final var token = tokens.get(index);
+      final var user = "load" + index;
+      executor.execute(() -> {
+        try {
+          this.signup(token, user, scheduled);
+        } finally {
+          permits.release();
+        }
+      });
+    }
+
+    permits.acquire(concurrency);
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeStart);
+
+    final var failureCounts = new TreeMap<String, Long>();
+    for (final var entry : this.failures.entrySet()) {
+      failureCounts.put(entry.getKey(), Long.valueOf(entry.getValue().sum()));
+    }
+
+    return PLoadTestReport.builder()
+      .setAttempted(tokens.size())
+      .setSucceeded(this.succeeded.sum())
+      .setFailures(failureCounts)
+      .setElapsed(elapsed)
+      .setTargetRate(this.configuration.rate())
+      .addLatencies(latencyOf("signup", this.signupLatency))
+      .addLatencies(latencyOf("signup-complete", this.completeLatency))
+      .addLatencies(latencyOf("signup total", this.totalLatency))
+      .build();
+  }
+
+  private void fail(
+    final String kind)
+  {
+    this.failures.computeIfAbsent(kind, k -> new LongAdder()).increment();
+  }
+
+  private void signup(
+    final String token,
+    final String user,
+    final long scheduled)
+  {
+    try {
+      final var signupStart = System.nanoTime();
+      final var signup =
+        this.client.send(
+          HttpRequest.newBuilder(
+              this.publicBase.resolve(
+                "/signup/?token=" + URLEncoder.encode(token, UTF_8)))
+            .timeout(REQUEST_TIMEOUT)
+            .build(),
+          HttpResponse.BodyHandlers.discarding());
+      record(this.signupLatency, signupStart);
+
+      if (signup.statusCode() != 200) {
+        this.fail("signup " + signup.statusCode());
+        return;
+      }
+
+      final var form =
+        formOf(Map.of(
+          "token", token,
+          "user_name", user,
+          "email", user + "@example.com",
+          "password", "load-test-password",
+          "password_confirm", "load-test-password"
+        ));
+
+      final var completeStart = System.nanoTime();
+      final var complete =
+        this.client.send(
+          HttpRequest.newBuilder(this.publicBase.resolve("/signup-complete/"))
+            .timeout(REQUEST_TIMEOUT)
+            .header("content-type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form))
+            .build(),
+          HttpResponse.BodyHandlers.discarding());
+      record(this.completeLatency, completeStart);
+
+      if (complete.statusCode() != 200) {
+        this.fail("signup-complete " + complete.statusCode());
+        return;
+      }
+
+      record(this.totalLatency, scheduled);
+      this.succeeded.increment();
+    } catch (final IOException e) {
+      this.fail("i/o " + e.getClass().getSimpleName());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.fail("interrupted");
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.loadtest.internal;
+
+import com.io7m.portero.loadtest.PLoadTestLatency;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Functions shared by load tests and traffic replays.
+ */
+
+final class PLoadTestSupport
+{
+  static final long HIGHEST_TRACKABLE =
+    TimeUnit.MINUTES.toNanos(10L);
+
+  static final Duration REQUEST_TIMEOUT =
+    Duration.ofSeconds(60L);
+
+  private PLoadTestSupport()
+  {
+
+  }
+
+  static HttpClient createClient()
+  {
+    return HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(10L))
+      .build();
+  }
+
+  static PSimulatorConfiguration simulatorConfiguration(
+    final Optional<PSimulatorConfiguration> simulator,
+    final PServerConfiguration server)
+  {
+    return simulator
+      .orElseGet(() -> {
+        return PSimulatorConfiguration.builder()
+          .setSharedSecret("unused")
+          .build();
+      })
+      .withSharedSecret(server.matrixServerAdminRegistrationSecret());
+  }
+
+  static URI publicBase(
+    final PServerConfiguration configuration)
+  {
+    return baseOf(
+      configuration.bindPublicAddress().getHostAddress(),
+      configuration.bindPublicPort());
+  }
+
+  static URI privateBase(
+    final PServerConfiguration configuration)
+  {
+    return baseOf(
+      configuration.bindPrivateAddress().getHostAddress(),
+      configuration.bindPrivatePort());
+  }
+
+  private static URI baseOf(
+    final String host,
+    final int port)
+  {
+    return URI.create(String.format("http://%s:%d/", host, port));
+  }
+
+  static String issueInvite(
+    final HttpClient client,
+    final URI privateBase)
+    throws IOException, InterruptedException
+  {
+    final var response =
+      client.send(
+        HttpRequest.newBuilder(privateBase)
+          .timeout(REQUEST_TIMEOUT)
+          .build(),
+        HttpResponse.BodyHandlers.ofString());
+
+    if (response.statusCode() != 200) {
+      throw new IOException(
+        String.format(
+          "Invite request failed with status %d",
+          Integer.valueOf(response.statusCode())));
+    }
+
+    final var line = response.body().lines().findFirst().orElse("");
+    final var index = line.indexOf("token=");
+    if (index < 0) {
+      throw new IOException("Invite response did not contain a token");
+    }
+    return line.substring(index + "token=".length()).trim();
+  }
+
+  static String formOf(
+    final Map<String, String> values)
+  {
+    final var text = new StringBuilder(128);
+    for (final var entry : values.entrySet()) {
+      if (!text.isEmpty()) {
+        text.append('&');
+      }
+      text.append(URLEncoder.encode(entry.getKey(), UTF_8));
+      text.append('=');
+      text.append(URLEncoder.encode(entry.getValue(), UTF_8));
+    }
+    return text.toString();
+  }
+
+  static PLoadTestLatency latencyOf(
+    final String name,
+    final Histogram histogram)
+  {
+    return PLoadTestLatency.builder()
+      .setName(name)
+      .setCount(histogram.getTotalCount())
+      .setP50(histogram.getValueAtPercentile(50.0))
+      .setP90(histogram.getValueAtPercentile(90.0))
+      .setP99(histogram.getValueAtPercentile(99.0))
+      .setP999(histogram.getValueAtPercentile(99.9))
+      .setMax(histogram.getMaxValue())
+      .build();
+  }
+
+  static void record(
+    final Histogram histogram,
+    final long start)
+  {
+    histogram.recordValue(
+      Math.min(HIGHEST_TRACKABLE, Math.max(0L, System.nanoTime() - start)));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.server;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The cluster configuration. When a cluster is configured, every node
+ * replicates token events to every other node, and an invite issued on any
+ * node may be redeemed on any other node.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PServerClusterConfigurationType
+{
+  /**
+   * @return The unique name of this node within the cluster
+   */
+
+  String nodeId();
+
+  /**
+   * The base URIs of the private servers of every other node in the
+   * cluster. Nodes exchange events with each other using the private
+   * servers, so the private servers must be reachable from every node.
+   *
+   * @return The private server URIs of the other nodes
+   */
+
+  List<URI> peers();
+
+  /**
+   * @return The timeout for requests made to other nodes
+   */
+
+  @Value.Default
+  default Duration requestTimeout()
+  {
+    return Duration.ofSeconds(2L);
+  }
+
+  /**
+   * @return The interval at which events are sent to other nodes
+   */
+
+  @Value.Default
+  default Duration replicationInterval()
+  {
+    return Duration.ofMillis(100L);
+  }
+
+  /**
+   * The time after which a node that has not acknowledged any replicated
+   * events is considered to be down. Events are retained until every node
+   * that is not down has acknowledged them, so a node that is down no
+   * longer prevents the event log from being truncated. When the node
+   * returns, it is sent a snapshot of the token table instead of the
+   * events it missed.
+   *
+   * @return The time after which an unresponsive node is considered down
+   */
+
+  @Value.Default
+  default Duration peerTimeout()
+  {
+    return Duration.ofMinutes(1L);
+  }
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    if (this.nodeId().isBlank()) {
+      throw new IllegalArgumentException(
+        "The cluster node ID must not be blank");
+    }
+
+    final var timeout = this.peerTimeout();
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException(
+        "The cluster peer timeout must be positive");
+    }
+  }
+}
@@ -21,8 +21,11 @@ import org.immutables.value.Value;
 
 import java.net.InetAddress;
 import java.net.URI;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * The server configuration.
@@ -104,6 +107,24 @@ public interface PServerConfigurationType
 
   int bindPrivatePort();
 
+  /**
+   * Whether the public and private servers should bind with
+   * {@code SO_REUSEPORT}. This allows several server processes on the same
+   * host to listen on the same ports, with the operating system distributing
+   * connections between them. This should only be enabled in combination
+   * with a shared token store, as otherwise each process will only accept
+   * the tokens that it issued itself.
+   *
+   * @return {@code true} if ports should be shared between processes
+   * @see #serverTokenStoreFile()
+   */
+
+  @Value.Default
+  default boolean bindReusePort()
+  {
+    return false;
+  }
+
   /**
    * @return The number of threads used
    */
@@ -130,6 +151,146 @@ public interface PServerConfigurationType
     return Duration.ofHours(48L);
   }
 
+  /**
+   * The interval at which the Matrix server admin API is probed for the
+   * readiness check. The readiness check only reads the result of the most
+   * recent probe.
+   *
+   * @return The interval between probes of the Matrix server
+   */
+
+  @Value.Default
+  default Duration serverHealthProbeInterval()
+  {
+    return Duration.ofSeconds(10L);
+  }
+
+  /**
+   * The file in which tokens are stored. If a file is specified, tokens are
+   * held in a memory-mapped file that can be shared between any number of
+   * server processes on the same host. Otherwise, tokens are held in memory
+   * and are lost when the server exits.
+   *
+   * @return The token store file, if any
+   */
+
+  Optional<Path> serverTokenStoreFile();
+
+  /**
+   * The name of the token store provider that will be used if neither a
+   * token store file nor a cluster is configured.
+   *
+   * @return The name of the token store provider
+   */
+
+  @Value.Default
+  default String serverTokenStore()
+  {
+    return "memory";
+  }
+
+  /**
+   * @return The configuration properties passed to the token store provider
+   */
+
+  Map<String, String> serverTokenStoreProperties();
+
+  /**
+   * The cluster configuration. If a cluster is configured, tokens are
+   * replicated between all nodes of the cluster, and the token store file
+   * is ignored.
+   *
+   * @return The cluster configuration, if any
+   */
+
+  Optional<PServerClusterConfiguration> cluster();
+
+  /**
+   * The file to which the audit log is written. If a file is specified,
+   * every issued, consumed, and expired token is recorded in the file along
+   * with the Matrix user created using the token.
+   *
+   * @return The audit log file, if any
+   */
+
+  Optional<Path> serverAuditLog();
+
+  /**
+   * The file to which trace spans are written. Every request is given a
+   * trace ID, which is placed in the logging MDC and sent to the Matrix
+   * server in a {@code traceparent} header. If a file is specified, the
+   * spans recorded for each request are also written to the file.
+   *
+   * @return The trace file, if any
+   */
+
+  Optional<Path> serverTraceFile();
+
+  /**
+   * The file to which the access log is written. If a file is specified,
+   * requests to both servers are written to the file as lines of JSON.
+   *
+   * @return The access log file, if any
+   */
+
+  Optional<Path> serverAccessLog();
+
+  /**
+   * The fraction of requests, in the range {@code [0, 1]}, that are
+   * written to the access log, by route. A request uses the rate of the
+   * longest route that is a prefix of its path. Requests that do not
+   * match any route, and requests that fail with a server error, are
+   * always logged.
+   *
+   * @return The access log sampling rates
+   */
+
+  Map<String, Double> serverAccessLogSampling();
+
+  /**
+   * The file to which request traffic is recorded. If a file is specified,
+   * the timing, route, status, and sizes of requests to both servers are
+   * appended to the file in a compact binary format that can be replayed
+   * by the load testing tools. Tokens are anonymized, and passwords and
+   * user names are not recorded.
+   *
+   * @return The traffic recording file, if any
+   */
+
+  Optional<Path> serverTrafficRecording();
+
+  /**
+   * Whether signup responses should include a {@code Server-Timing} header
+   * describing the time spent in each phase of the signup. The header is
+   * visible to users, so it is disabled by default.
+   *
+   * @return {@code true} if the header should be sent
+   */
+
+  @Value.Default
+  default boolean serverTiming()
+  {
+    return false;
+  }
+
+  /**
+   * The number of iterations of the warm-up phase run after the server
+   * starts. The warm-up renders pages, encodes and decodes JSON, and
+   * computes registration HMACs so that the code on the signup path is
+   * loaded and compiled before the first user arrives, and then probes the
+   * Matrix server to open a connection to it. The server reports itself as
+   * not ready until the warm-up completes. A value of zero disables the
+   * warm-up.
+   *
+   * @return The number of warm-up iterations
+   */
+
+  @Value.Default
+  default int serverWarmupIterations()
+  {
+    return 0;
+  }
+
   /**
    * @return The locale for string resources
    */
@@ -151,5 +312,26 @@ public interface PServerConfigurationType
       throw new IllegalArgumentException(
         "The Matrix server admin URI must end with /");
     }
+
+    final var probeInterval = this.serverHealthProbeInterval();
+    if (probeInterval.isNegative() || probeInterval.isZero()) {
+      throw new IllegalArgumentException(
+        "The health probe interval must be positive");
+    }
+
+    if (this.serverWarmupIterations() < 0) {
+      throw new IllegalArgumentException(
+        "The number of warm-up iterations must be non-negative");
+    }
+
+    for (final var entry : this.serverAccessLogSampling().entrySet()) {
+      final var rate = entry.getValue().doubleValue();
+      if (!(rate >= 0.0 && rate <= 1.0)) {
+        throw new IllegalArgumentException(
+          String.format(
+            "The access log sampling rate for %s must be in [0, 1]",
+            entry.getKey()));
+      }
+    }
   }
 }
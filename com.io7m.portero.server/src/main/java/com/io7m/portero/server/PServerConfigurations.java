@@ -21,6 +21,8 @@ import com.io7m.jproperties.JProperties;
 
 import java.io.InputStream;
 import java.net.InetAddress;
+import java.net.URI;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.Objects;
@@ -58,6 +60,7 @@ public final class PServerConfigurations
 
     readMatrixProperties(properties, builder, tracker);
     readServerProperties(properties, builder, tracker);
+    readClusterProperties(properties, builder, tracker);
 
     tracker.throwIfNecessary();
     return builder.build();
@@ -114,6 +117,79 @@ public final class PServerConfigurations
       );
     });
 
+    tracker.catching(() -> {
+      config.setBindReusePort(
+        JProperties.getBooleanWithDefault(props, "server.reusePort", false)
+      );
+    });
+
+    tracker.catching(() -> {
+      config.setServerTokenStoreFile(
+        JProperties.getStringOptional(props, "server.tokenStoreFile")
+          .map(Path::of)
+      );
+    });
+
+    tracker.catching(() -> {
+      config.setServerTiming(
+        JProperties.getBooleanWithDefault(props, "server.serverTiming", false)
+      );
+    });
+
+    tracker.catching(() -> {
+      config.setServerTraceFile(
+        JProperties.getStringOptional(props, "server.traceFile")
+          .map(Path::of)
+      );
+    });
+
+    tracker.catching(() -> {
+      config.setServerAuditLog(
+        JProperties.getStringOptional(props, "server.auditLog")
+          .map(Path::of)
+      );
+    });
+
+    tracker.catching(() -> {
+      config.setServerTokenStore(
+        JProperties.getStringWithDefault(props, "server.tokenStore", "memory")
+      );
+    });
+
+    for (final var name : props.stringPropertyNames()) {
+      if (name.startsWith("tokenStore.")) {
+        config.putServerTokenStoreProperties(
+          name.substring("tokenStore.".length()),
+          props.getProperty(name)
+        );
+      }
+    }
+
+    tracker.catching(() -> {
+      config.setServerAccessLog(
+        JProperties.getStringOptional(props, "server.accessLog")
+          .map(Path::of)
+      );
+    });
+
+    tracker.catching(() -> {
+      config.setServerTrafficRecording(
+        JProperties.getStringOptional(props, "server.trafficRecording")
+          .map(Path::of)
+      );
+    });
+
+    for (final var name : props.stringPropertyNames()) {
+      if (name.startsWith("accessLog.sample.")) {
+        tracker.catching(() -> {
+          config.putServerAccessLogSampling(
+            name.substring("accessLog.sample.".length()),
+            Double.valueOf(JProperties.getDouble(props, name))
+          );
+        });
+      }
+    }
+
     tracker.catching(() -> {
       config.setServerTitle(
         JProperties.getString(props, "server.title")
@@ -129,6 +205,15 @@ public final class PServerConfigurations
       );
     });
 
+    tracker.catching(() -> {
+      config.setServerHealthProbeInterval(
+        JProperties.getDurationWithDefault(
+          props,
+          "server.healthProbeInterval",
+          Duration.ofSeconds(10L))
+      );
+    });
+
     tracker.catching(() -> {
       config.setPublicURI(JProperties.getURI(props, "server.publicURL"));
     });
@@ -138,6 +223,66 @@ public final class PServerConfigurations
         JProperties.getIntegerWithDefault(props, "server.threadCount", 4)
       );
     });
+
+    tracker.catching(() -> {
+      config.setServerWarmupIterations(
+        JProperties.getIntegerWithDefault(props, "server.warmupIterations", 0)
+      );
+    });
+  }
+
+  private static void readClusterProperties(
+    final Properties props,
+    final PServerConfiguration.Builder config,
+    final ExceptionTracker<Exception> tracker)
+  {
+    final var nodeIdOpt =
+      JProperties.getStringOptional(props, "cluster.nodeId");
+    if (nodeIdOpt.isEmpty()) {
+      return;
+    }
+
+    final var cluster = PServerClusterConfiguration.builder();
+    cluster.setNodeId(nodeIdOpt.get());
+
+    tracker.catching(() -> {
+      final var peers =
+        JProperties.getStringWithDefault(props, "cluster.peers", "");
+      for (final var peer : peers.split("[\\s,]+")) {
+        if (!peer.isBlank()) {
+          cluster.addPeers(URI.create(peer.trim()));
+        }
+      }
+    });
+
+    tracker.catching(() -> {
+      cluster.setRequestTimeout(
+        JProperties.getDurationWithDefault(
+          props,
+          "cluster.requestTimeout",
+          Duration.ofSeconds(2L))
+      );
+    });
+
+    tracker.catching(() -> {
+      cluster.setReplicationInterval(
+        JProperties.getDurationWithDefault(
+          props,
+          "cluster.replicationInterval",
+          Duration.ofMillis(100L))
+      );
+    });
+
+    tracker.catching(() -> {
+      cluster.setPeerTimeout(
+        JProperties.getDurationWithDefault(
+          props,
+          "cluster.peerTimeout",
+          Duration.ofMinutes(1L))
+      );
+    });
+
+    tracker.catching(() -> config.setCluster(cluster.build()));
   }
 
   private static void readMatrixProperties(
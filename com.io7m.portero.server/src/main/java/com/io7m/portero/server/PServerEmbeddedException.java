@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server;
+
+import java.util.Objects;
+
+/**
+ * The exception raised when an invite cannot be redeemed, such as when the
+ * token does not exist or the Matrix server refuses the registration. The
+ * message is suitable for showing to the user.
+ */
+
+public final class PServerEmbeddedException extends Exception
+{
+  private final String errorCode;
+
+  /**
+   * Construct an exception.
+   *
+   * @param inErrorCode The machine-readable error code
+   * @param message     The message
+   * @param cause       The cause
+   */
+
+  public PServerEmbeddedException(
+    final String inErrorCode,
+    final String message,
+    final Throwable cause)
+  {
+    super(
+      Objects.requireNonNull(message, "message"),
+      Objects.requireNonNull(cause, "cause"));
+    this.errorCode = Objects.requireNonNull(inErrorCode, "errorCode");
+  }
+
+  /**
+   * The machine-readable error code. This is one of {@code
+   * P_TOKEN_NONEXISTENT}, {@code P_TOKEN_IN_USE}, or {@code P_IO_ERROR}, or
+   * the {@code M_*} error code returned by the Matrix server, such as
+   * {@code M_USER_IN_USE}.
+   *
+   * @return The error code
+   */
+
+  public String errorCode()
+  {
+    return this.errorCode;
+  }
+}
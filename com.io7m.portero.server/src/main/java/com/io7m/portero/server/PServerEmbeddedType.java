@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An embedded portero instance. Invites are issued, validated, and
+ * redeemed by direct calls from the embedding application rather than by
+ * HTTP requests, and no servers are started. Operations run on an executor
+ * and never block the caller.
+ */
+
+public interface PServerEmbeddedType extends AutoCloseable
+{
+  /**
+   * Issue a new invite.
+   *
+   * @return The invite
+   */
+
+  CompletableFuture<PServerInvite> issueInvite();
+
+  /**
+   * Issue a number of new invites. The tokens are issued to the token
+   * store in bulk.
+   *
+   * @param count The number of invites
+   *
+   * @return The invites
+   */
+
+  CompletableFuture<List<PServerInvite>> issueInvites(int count);
+
+  /**
+   * Determine whether an invite has been issued and has not yet been
+   * redeemed or expired.
+   *
+   * @param token The invite token
+   *
+   * @return {@code true} if the invite can be redeemed
+   */
+
+  CompletableFuture<Boolean> isInviteValid(String token);
+
+  /**
+   * Redeem an invite by registering a user on the Matrix server. The
+   * returned future fails with {@link PServerEmbeddedException} if the
+   * token is not valid or the registration is refused.
+   *
+   * @param token    The invite token
+   * @param userName The user name
+   * @param password The password
+   *
+   * @return The Matrix user ID of the new user
+   */
+
+  CompletableFuture<String> redeemInvite(
+    String token,
+    String userName,
+    String password);
+
+  /**
+   * Close the instance. Operations in progress are allowed to finish.
+   *
+   * @throws Exception On errors
+   */
+
+  @Override
+  void close()
+    throws Exception;
+}
@@ -16,10 +16,12 @@
 
 package com.io7m.portero.server;
 
+import com.io7m.portero.server.internal.PServerEmbedded;
 import com.io7m.portero.server.internal.PServerMain;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Functions to create servers.
@@ -49,4 +51,47 @@ public final class PServers
     return PServerMain.create(
       Objects.requireNonNull(configuration, "configuration"));
   }
+
+  /**
+   * Create a new embedded instance. No servers are started; invites are
+   * issued and redeemed by calling the instance directly. Operations run
+   * on a new executor with {@code serverThreadCount} threads, which is
+   * shut down when the instance is closed.
+   *
+   * @param configuration The server configuration
+   *
+   * @return A new embedded instance
+   *
+   * @throws IOException On errors
+   */
+
+  public static PServerEmbeddedType createEmbedded(
+    final PServerConfiguration configuration)
+    throws IOException
+  {
+    return PServerEmbedded.create(
+      Objects.requireNonNull(configuration, "configuration"), null);
+  }
+
+  /**
+   * Create a new embedded instance whose operations run on the given
+   * executor. The executor is not shut down when the instance is closed.
+   *
+   * @param configuration The server configuration
+   * @param executor      The executor
+   *
+   * @return A new embedded instance
+   *
+   * @throws IOException On errors
+   */
+
+  public static PServerEmbeddedType createEmbedded(
+    final PServerConfiguration configuration,
+    final ExecutorService executor)
+    throws IOException
+  {
+    return PServerEmbedded.create(
+      Objects.requireNonNull(configuration, "configuration"),
+      Objects.requireNonNull(executor, "executor"));
+  }
 }
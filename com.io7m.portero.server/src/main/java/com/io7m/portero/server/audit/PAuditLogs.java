@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.audit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.server.internal.PAuditJSON;
+import com.io7m.portero.server.internal.PAuditObjectMappers;
+import com.io7m.portero.server.tokens.PTokenEventKind;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Functions to serialize and parse audit log records. The audit log is a
+ * file containing one JSON object per line.
+ */
+
+public final class PAuditLogs
+{
+  private static final ObjectMapper MAPPER =
+    PAuditObjectMappers.createObjectMapper();
+
+  private PAuditLogs()
+  {
+
+  }
+
+  /**
+   * Serialize a record as a single line of JSON, without a line terminator.
+   *
+   * @param record The record
+   *
+   * @return The serialized record
+   */
+
+  public static String serialize(
+    final PAuditRecord record)
+  {
+    Objects.requireNonNull(record, "record");
+
+    final var json = new PAuditJSON();
+    json.time = record.time().toString();
+    json.event = record.event().name();
+    json.token = record.token();
+    json.user = record.userId().orElse(null);
+
+    try {
+      return MAPPER.writeValueAsString(json);
+    } catch (final JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Parse a single line of the audit log.
+   *
+   * @param line The line
+   *
+   * @return The parsed record
+   *
+   * @throws IOException If the line is not a valid record
+   */
+
+  public static PAuditRecord parse(
+    final String line)
+    throws IOException
+  {
+    Objects.requireNonNull(line, "line");
+
+    final var json = MAPPER.readValue(line, PAuditJSON.class);
+    try {
+      return PAuditRecord.builder()
+        .setTime(OffsetDateTime.parse(json.time))
+        .setEvent(PTokenEventKind.valueOf(json.event))
+        .setToken(json.token)
+        .setUserId(Optional.ofNullable(json.user))
+        .build();
+    } catch (final DateTimeParseException
+                   | IllegalArgumentException
+                   | NullPointerException e) {
+      throw new IOException("Malformed audit record: " + line, e);
+    }
+  }
+}
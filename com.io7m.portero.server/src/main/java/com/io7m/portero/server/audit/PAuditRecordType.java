@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.audit;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import com.io7m.portero.server.tokens.PTokenEventKind;
+import org.immutables.value.Value;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+/**
+ * A record in the audit log.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PAuditRecordType
+{
+  /**
+   * @return The time of the event
+   */
+
+  OffsetDateTime time();
+
+  /**
+   * @return The kind of event
+   */
+
+  PTokenEventKind event();
+
+  /**
+   * @return The token
+   */
+
+  String token();
+
+  /**
+   * @return The Matrix user ID created using the token, if any
+   */
+
+  Optional<String> userId();
+}
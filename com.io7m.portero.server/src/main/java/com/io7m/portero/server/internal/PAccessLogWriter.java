@@ -0,0 +1,304 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A writer that appends access log entries to a file as lines of JSON.
+ *
+ * Request threads offer entries to a {@link PBatchWriter} and return
+ * immediately. An entry that does not fit in the writer's queue is dropped
+ * and counted, so a slow disk never slows down request handling.
+ */
+
+public final class PAccessLogWriter implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PAccessLogWriter.class);
+
+  /**
+   * The default queue capacity.
+   */
+
+  public static final int DEFAULT_CAPACITY = 16384;
+
+  private static final int BATCH_SIZE = 1024;
+
+  private static final PAccessLogWriter DISABLED =
+    new PAccessLogWriter(null, 1);
+
+  private final BufferedWriter writer;
+  private final JsonGenerator generator;
+  private final LongAdder written;
+  private final LongAdder dropped;
+  private final PBatchWriter<Entry> batches;
+
+  private PAccessLogWriter(
+    final BufferedWriter inWriter,
+    final int inCapacity)
+  {
+    this.writer = inWriter;
+    this.written = new LongAdder();
+    this.dropped = new LongAdder();
+
+    if (inWriter != null) {
+      try {
+        this.generator = new JsonFactory().createGenerator(inWriter);
+      } catch (final IOException e) {
+        throw new IllegalStateException(e);
+      }
+      this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      this.batches = PBatchWriter.start(
+        "com.io7m.portero.server.internal.PAccessLogWriter",
+        inCapacity,
+        BATCH_SIZE,
+        this::writeAll
+      );
+    } else {
+      this.generator = null;
+      this.batches = null;
+    }
+  }
+
+  /**
+   * @return A writer that discards all entries
+   */
+
+  public static PAccessLogWriter disabled()
+  {
+    return DISABLED;
+  }
+
+  /**
+   * Open a writer that appends entries to the given file.
+   *
+   * @param file     The file
+   * @param capacity The queue capacity
+   *
+   * @return A writer
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static PAccessLogWriter open(
+    final Path file,
+    final int capacity)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+
+    final var writer =
+      Files.newBufferedWriter(file, UTF_8, CREATE, WRITE, APPEND);
+    final var log = new PAccessLogWriter(writer, capacity);
+    LOG.info("access log {}", file);
+    return log;
+  }
+
+  /**
+   * @return {@code true} if entries are being written
+   */
+
+  public boolean isEnabled()
+  {
+    return this.writer != null;
+  }
+
+  /**
+   * Submit an entry for writing. This method never blocks.
+   *
+   * @param entry The entry
+   */
+
+  public void submit(
+    final Entry entry)
+  {
+    Objects.requireNonNull(entry, "entry");
+
+    if (this.writer == null) {
+      return;
+    }
+    if (!this.batches.offer(entry)) {
+      this.dropped.increment();
+    }
+  }
+
+  /**
+   * @return The number of entries written
+   */
+
+  public long written()
+  {
+    return this.written.sum();
+  }
+
+  /**
+   * @return The number of entries dropped because the queue was full
+   */
+
+  public long dropped()
+  {
+    return this.dropped.sum();
+  }
+
+  private void writeAll(
+    final List<Entry> batch)
+  {
+    try {
+      for (final var entry : batch) {
+        this.write(entry);
+      }
+      this.generator.flush();
+      this.written.add(batch.size());
+    } catch (final IOException e) {
+      LOG.error("could not write access log entries: ", e);
+      this.dropped.add(batch.size());
+    }
+  }
+
+  private void write(
+    final Entry entry)
+    throws IOException
+  {
+    final var g = this.generator;
+    g.writeStartObject();
+    g.writeStringField("time", entry.time.toString());
+    g.writeStringField("server", entry.server);
+    g.writeStringField("method", entry.method);
+    g.writeStringField("path", entry.path);
+    if (entry.query != null) {
+      g.writeStringField("query", entry.query);
+    }
+    g.writeNumberField("status", entry.status);
+    g.writeNumberField("duration_ms", entry.durationMillis);
+    g.writeNumberField("bytes", entry.bytes);
+    if (entry.remote != null) {
+      g.writeStringField("remote", entry.remote);
+    }
+    if (entry.traceId != null) {
+      g.writeStringField("trace_id", entry.traceId);
+    }
+    g.writeEndObject();
+    g.writeRaw('\n');
+  }
+
+  /**
+   * Close the writer, writing any entries remaining in the queue.
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (this.writer == null) {
+      return;
+    }
+
+    if (!this.batches.isClosed()) {
+      try {
+        this.dropped.add(this.batches.closeAndDrain().size());
+      } finally {
+        try {
+          this.generator.close();
+        } finally {
+          this.writer.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * A single access log entry.
+   */
+
+  public static final class Entry
+  {
+    private final Instant time;
+    private final String server;
+    private final String method;
+    private final String path;
+    private final String query;
+    private final int status;
+    private final long durationMillis;
+    private final long bytes;
+    private final String remote;
+    private final String traceId;
+
+    /**
+     * A single access log entry.
+     *
+     * @param inTime           The time the request was received
+     * @param inServer         The server name
+     * @param inMethod         The request method
+     * @param inPath           The request path
+     * @param inQuery          The (redacted) query string, if any
+     * @param inStatus         The response status
+     * @param inDurationMillis The time taken to handle the request
+     * @param inBytes          The number of response bytes written
+     * @param inRemote         The remote address, if known
+     * @param inTraceId        The trace ID, if any
+     */
+
+    public Entry(
+      final Instant inTime,
+      final String inServer,
+      final String inMethod,
+      final String inPath,
+      final String inQuery,
+      final int inStatus,
+      final long inDurationMillis,
+      final long inBytes,
+      final String inRemote,
+      final String inTraceId)
+    {
+      this.time =
+        Objects.requireNonNull(inTime, "time");
+      this.server =
+        Objects.requireNonNull(inServer, "server");
+      this.method =
+        Objects.requireNonNull(inMethod, "method");
+      this.path =
+        Objects.requireNonNull(inPath, "path");
+      this.query = inQuery;
+      this.status = inStatus;
+      this.durationMillis = inDurationMillis;
+      this.bytes = inBytes;
+      this.remote = inRemote;
+      this.traceId = inTraceId;
+    }
+  }
+}
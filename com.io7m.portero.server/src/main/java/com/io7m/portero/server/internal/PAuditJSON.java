@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+// CHECKSTYLE:OFF
+
+/**
+ * The JSON form of an audit log record.
+ */
+
+@JsonDeserialize
+@JsonSerialize
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class PAuditJSON
+{
+  @JsonProperty(required = true, value = "time")
+  public String time;
+  @JsonProperty(required = true, value = "event")
+  public String event;
+  @JsonProperty(required = true, value = "token")
+  public String token;
+  @JsonProperty(value = "user")
+  public String user;
+
+  public PAuditJSON()
+  {
+
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder("PAuditJSON{");
+    sb.append("time='").append(this.time).append('\'');
+    sb.append(", event='").append(this.event).append('\'');
+    sb.append(", token='").append(this.token).append('\'');
+    sb.append(", user='").append(this.user).append('\'');
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.audit.PAuditLogs;
+import com.io7m.portero.server.audit.PAuditRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An append-only audit log.
+ *
+ * Records are serialized on the appending thread and placed into the queue
+ * of a {@link PBatchWriter}. Each batch it hands over is written to the
+ * file, and then forces the file to storage once for the
+ * whole batch (group commit). The future returned for each record completes
+ * only after the record has been forced to storage, so callers that wait
+ * for it share a single flush with every other record in the same batch
+ * rather than paying for a flush each.
+ */
+
+public final class PAuditLog implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PAuditLog.class);
+
+  /**
+   * The default queue capacity.
+   */
+
+  public static final int DEFAULT_CAPACITY = 65536;
+
+  /**
+   * The default maximum number of records written per flush.
+   */
+
+  public static final int DEFAULT_BATCH_SIZE = 4096;
+
+  private static final CompletableFuture<Void> COMPLETED =
+    CompletableFuture.completedFuture(null);
+
+  private final FileChannel channel;
+  private final LongAdder written;
+  private final LongAdder syncs;
+  private final PBatchWriter<Pending> batches;
+
+  private static final class Pending
+  {
+    private final ByteBuffer data;
+    private final CompletableFuture<Void> future;
+
+    Pending(
+      final ByteBuffer inData,
+      final CompletableFuture<Void> inFuture)
+    {
+      this.data = inData;
+      this.future = inFuture;
+    }
+  }
+
+  private PAuditLog(
+    final FileChannel inChannel,
+    final int inCapacity,
+    final int inBatchSize)
+  {
+    this.channel = inChannel;
+    this.written = new LongAdder();
+    this.syncs = new LongAdder();
+
+    if (inChannel != null) {
+      this.batches = PBatchWriter.start(
+        "com.io7m.portero.server.internal.PAuditLog",
+        inCapacity,
+        inBatchSize,
+        this::commit
+      );
+    } else {
+      this.batches = null;
+    }
+  }
+
+  /**
+   * @return An audit log that discards all records
+   */
+
+  public static PAuditLog disabled()
+  {
+    return new PAuditLog(null, 1, 1);
+  }
+
+  /**
+   * Open an audit log with the default settings.
+   *
+   * @param file The file
+   *
+   * @return An audit log
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static PAuditLog open(
+    final Path file)
+    throws IOException
+  {
+    return open(file, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Open an audit log. Records are appended to the file if it already
+   * exists.
+   *
+   * @param file      The file
+   * @param capacity  The queue capacity
+   * @param batchSize The maximum number of records written per flush
+   *
+   * @return An audit log
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static PAuditLog open(
+    final Path file,
+    final int capacity,
+    final int batchSize)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+
+    final var channel = FileChannel.open(file, CREATE, WRITE, APPEND);
+    final PAuditLog log;
+    try {
+      log = new PAuditLog(channel, capacity, batchSize);
+    } catch (final IllegalArgumentException e) {
+      channel.close();
+      throw e;
+    }
+    LOG.info("audit log {}", file);
+    return log;
+  }
+
+  /**
+   * Append a record to the log. This method blocks if the queue is full.
+   *
+   * @param record The record
+   *
+   * @return A future that completes when the record has been forced to
+   * storage, or fails if the log is closed before the record is written
+   */
+
+  public CompletableFuture<Void> append(
+    final PAuditRecord record)
+  {
+    Objects.requireNonNull(record, "record");
+
+    if (this.channel == null) {
+      return COMPLETED;
+    }
+    if (this.batches.isClosed()) {
+      return CompletableFuture.failedFuture(closedException());
+    }
+
+    final var data =
+      ByteBuffer.wrap((PAuditLogs.serialize(record) + "\n").getBytes(UTF_8));
+    final var future = new CompletableFuture<Void>();
+    final var pending = new Pending(data, future);
+    try {
+      if (!this.batches.put(pending)) {
+        future.completeExceptionally(closedException());
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private static IllegalStateException closedException()
+  {
+    return new IllegalStateException("Audit log is closed");
+  }
+
+  /**
+   * @return The number of records written and forced to storage
+   */
+
+  public long written()
+  {
+    return this.written.sum();
+  }
+
+  /**
+   * @return The number of times the file has been forced to storage
+   */
+
+  public long syncs()
+  {
+    return this.syncs.sum();
+  }
+
+  private void commit(
+    final List<Pending> batch)
+  {
+    final var buffers = new ByteBuffer[batch.size()];
+    for (int index = 0; index < buffers.length; ++index) {
+      buffers[index] = batch.get(index).data;
+    }
+
+    try {
+      var remaining = 0L;
+      for (final var buffer : buffers) {
+        remaining += buffer.remaining();
+      }
+      while (remaining > 0L) {
+        remaining -= this.channel.write(buffers);
+      }
+      this.channel.force(false);
+    } catch (final IOException e) {
+      LOG.error("could not write audit log: ", e);
+      for (final var pending : batch) {
+        pending.future.completeExceptionally(e);
+      }
+      return;
+    }
+
+    this.syncs.increment();
+    this.written.add(batch.size());
+    for (final var pending : batch) {
+      pending.future.complete(null);
+    }
+  }
+
+  /**
+   * Close the log, writing any records remaining in the queue.
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (this.channel == null) {
+      return;
+    }
+
+    if (!this.batches.isClosed()) {
+      final var remaining = this.batches.closeAndDrain();
+      try {
+        this.channel.close();
+      } finally {
+        for (final var pending : remaining) {
+          pending.future.completeExceptionally(closedException());
+        }
+      }
+    }
+  }
+}
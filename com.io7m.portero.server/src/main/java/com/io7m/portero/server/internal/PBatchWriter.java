@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.server.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue drained by a single background thread.
+ *
+ * Items are placed into a queue of fixed capacity, either without blocking
+ * (an item offered to a full queue is refused) or by waiting for space. The
+ * background thread takes every item currently in the queue, up to a
+ * maximum batch size, and passes the batch to a consumer. The consumer is
+ * responsible for writing the batch and for handling any errors that occur
+ * while doing so. Closing the writer stops it accepting items, and waits for
+ * the background thread to consume the items that remain in the queue.
+ *
+ * @param <T> The type of items
+ */
+
+public final class PBatchWriter<T> implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PBatchWriter.class);
+
+  private static final long CLOSE_TIMEOUT_MILLIS = 5_000L;
+
+  private final ArrayBlockingQueue<T> queue;
+  private final int batchSize;
+  private final Consumer<List<T>> consumer;
+  private final AtomicBoolean closed;
+  private final Thread thread;
+
+  private PBatchWriter(
+    final String inName,
+    final int inCapacity,
+    final int inBatchSize,
+    final Consumer<List<T>> inConsumer)
+  {
+    Objects.requireNonNull(inName, "name");
+
+    if (inCapacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    if (inBatchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive");
+    }
+
+    this.queue = new ArrayBlockingQueue<>(inCapacity);
+    this.batchSize = inBatchSize;
+    this.consumer = Objects.requireNonNull(inConsumer, "consumer");
+    this.closed = new AtomicBoolean(false);
+    this.thread = new Thread(this::run);
+    this.thread.setName(inName);
+    this.thread.setDaemon(true);
+  }
+
+  /**
+   * Start a writer.
+   *
+   * @param name      The name of the background thread
+   * @param capacity  The queue capacity
+   * @param batchSize The maximum number of items passed to the consumer at
+   *                  once
+   * @param consumer  The consumer of batches
+   * @param <T>       The type of items
+   *
+   * @return A writer
+   */
+
+  public static <T> PBatchWriter<T> start(
+    final String name,
+    final int capacity,
+    final int batchSize,
+    final Consumer<List<T>> consumer)
+  {
+    final var writer =
+      new PBatchWriter<>(name, capacity, batchSize, consumer);
+    writer.thread.start();
+    return writer;
+  }
+
+  /**
+   * @return {@code true} if the writer has been closed
+   */
+
+  public boolean isClosed()
+  {
+    return this.closed.get();
+  }
+
+  /**
+   * Offer an item to the queue. This method never blocks.
+   *
+   * @param item The item
+   *
+   * @return {@code false} if the writer is closed or the queue is full
+   */
+
+  public boolean offer(
+    final T item)
+  {
+    Objects.requireNonNull(item, "item");
+    return !this.closed.get() && this.queue.offer(item);
+  }
+
+  /**
+   * Place an item into the queue, waiting for space if the queue is full.
+   *
+   * @param item The item
+   *
+   * @return {@code false} if the writer was closed before the item could
+   * be consumed
+   *
+   * @throws InterruptedException If interrupted while waiting
+   */
+
+  public boolean put(
+    final T item)
+    throws InterruptedException
+  {
+    Objects.requireNonNull(item, "item");
+
+    if (this.closed.get()) {
+      return false;
+    }
+    this.queue.put(item);
+
+    /*
+     * The writer may have been closed while the item was being queued, in
+     * which case the background thread might already have exited. If the
+     * item is still in the queue, nothing will ever consume it.
+     */
+
+    return !(this.closed.get() && this.queue.remove(item));
+  }
+
+  private void run()
+  {
+    final var batch = new ArrayList<T>(this.batchSize);
+
+    while (true) {
+      try {
+        final var first = this.queue.poll(100L, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          if (this.closed.get()) {
+            return;
+          }
+          continue;
+        }
+        batch.add(first);
+      } catch (final InterruptedException e) {
+        continue;
+      }
+
+      this.queue.drainTo(batch, this.batchSize - 1);
+      try {
+        this.consumer.accept(batch);
+      } catch (final Exception e) {
+        LOG.error("{}: batch consumer failed: ", this.thread.getName(), e);
+      }
+      batch.clear();
+    }
+  }
+
+  /**
+   * Close the writer, waiting for the items remaining in the queue to be
+   * consumed.
+   *
+   * @return The items that were not consumed before the background thread
+   * exited or the wait timed out
+   */
+
+  public List<T> closeAndDrain()
+  {
+    if (this.closed.compareAndSet(false, true)) {
+      try {
+        this.thread.join(CLOSE_TIMEOUT_MILLIS);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    final var remaining = new ArrayList<T>();
+    this.queue.drainTo(remaining);
+    return remaining;
+  }
+
+  @Override
+  public void close()
+  {
+    this.closeAndDrain();
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// CHECKSTYLE:OFF
+
+/**
+ * The messages exchanged between cluster nodes.
+ */
+
+public final class PClusterJSON
+{
+  private PClusterJSON()
+  {
+
+  }
+
+  /**
+   * An entry in the replicated event log of a node.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PClusterLogEntry
+  {
+    @JsonProperty(required = true, value = "seq")
+    public long sequence;
+    @JsonProperty(required = true, value = "type")
+    public String type;
+    @JsonProperty(required = true, value = "token")
+    public String token;
+    @JsonProperty(required = true, value = "expires")
+    public long expires;
+
+    public PClusterLogEntry()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder sb = new StringBuilder("PClusterLogEntry{");
+      sb.append("sequence=").append(this.sequence);
+      sb.append(", type='").append(this.type).append('\'');
+      sb.append(", token='").append(this.token).append('\'');
+      sb.append(", expires=").append(this.expires);
+      sb.append('}');
+      return sb.toString();
+    }
+  }
+
+  /**
+   * A batch of log entries sent from one node to another. If the batch is
+   * a snapshot, the entries describe the state of the sending node's token
+   * table rather than events, and are unsequenced; the receiving node
+   * applies all of them and then continues from the given sequence number.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PClusterReplicate
+  {
+    @JsonProperty(required = true, value = "node")
+    public String node;
+    @JsonProperty(required = true, value = "epoch")
+    public String epoch;
+    @JsonProperty(required = true, value = "entries")
+    public List<PClusterLogEntry> entries = new ArrayList<>();
+    @JsonProperty(value = "snapshot")
+    public boolean snapshot;
+    @JsonProperty(value = "seq")
+    public long sequence;
+
+    public PClusterReplicate()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder sb = new StringBuilder("PClusterReplicate{");
+      sb.append("node='").append(this.node).append('\'');
+      sb.append(", epoch='").append(this.epoch).append('\'');
+      sb.append(", entries=").append(this.entries.size());
+      sb.append(", snapshot=").append(this.snapshot);
+      sb.append(", sequence=").append(this.sequence);
+      sb.append('}');
+      return sb.toString();
+    }
+  }
+
+  /**
+   * The response to a batch of log entries.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PClusterReplicateResponse
+  {
+    @JsonProperty(required = true, value = "applied")
+    public long applied;
+
+    public PClusterReplicateResponse()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      return "PClusterReplicateResponse{applied=" + this.applied + '}';
+    }
+  }
+
+  /**
+   * A request to claim (or release a claim on) a token.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PClusterClaim
+  {
+    @JsonProperty(required = true, value = "node")
+    public String node;
+    @JsonProperty(required = true, value = "token")
+    public String token;
+    @JsonProperty(value = "claim")
+    public String claim;
+
+    public PClusterClaim()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder sb = new StringBuilder("PClusterClaim{");
+      sb.append("node='").append(this.node).append('\'');
+      sb.append(", token='").append(this.token).append('\'');
+      sb.append(", claim='").append(this.claim).append('\'');
+      sb.append('}');
+      return sb.toString();
+    }
+  }
+
+  /**
+   * A notification that a token has been consumed.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PClusterConsume
+  {
+    @JsonProperty(required = true, value = "node")
+    public String node;
+    @JsonProperty(required = true, value = "token")
+    public String token;
+    @JsonProperty(required = true, value = "expires")
+    public long expires;
+
+    public PClusterConsume()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder sb = new StringBuilder("PClusterConsume{");
+      sb.append("node='").append(this.node).append('\'');
+      sb.append(", token='").append(this.token).append('\'');
+      sb.append(", expires=").append(this.expires);
+      sb.append('}');
+      return sb.toString();
+    }
+  }
+
+  /**
+   * The response to a claim request.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PClusterClaimResponse
+  {
+    @JsonProperty(required = true, value = "granted")
+    public boolean granted;
+
+    public PClusterClaimResponse()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      return "PClusterClaimResponse{granted=" + this.granted + '}';
+    }
+  }
+}
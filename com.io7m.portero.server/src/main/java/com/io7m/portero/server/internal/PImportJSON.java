@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+// CHECKSTYLE:OFF
+
+/**
+ * The messages used to import users.
+ */
+
+public final class PImportJSON
+{
+  private PImportJSON()
+  {
+
+  }
+
+  /**
+   * A user to be imported.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PImportUser
+  {
+    @JsonProperty(required = true, value = "user_name")
+    public String userName;
+    @JsonProperty(required = true, value = "password")
+    public String password;
+
+    public PImportUser()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      return "PImportUser{userName='" + this.userName + "'}";
+    }
+  }
+
+  /**
+   * The result of importing a single user.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public static final class PImportResult
+  {
+    @JsonProperty(required = true, value = "line")
+    public long line;
+    @JsonProperty(value = "user_name")
+    public String userName;
+    @JsonProperty(required = true, value = "status")
+    public String status;
+    @JsonProperty(value = "user_id")
+    public String userId;
+    @JsonProperty(value = "error")
+    public String error;
+
+    public PImportResult()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder sb = new StringBuilder("PImportResult{");
+      sb.append("line=").append(this.line);
+      sb.append(", userName='").append(this.userName).append('\'');
+      sb.append(", status='").append(this.status).append('\'');
+      sb.append(", userId='").append(this.userId).append('\'');
+      sb.append(", error='").append(this.error).append('\'');
+      sb.append('}');
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// CHECKSTYLE:OFF
+
+/**
+ * An event recorded when a page is rendered.
+ */
+
+@Name("com.io7m.portero.PageRender")
+@Label("Page Rendering")
+@Category({"Portero", "Pages"})
+@Description("An event recorded when a page is rendered.")
+@StackTrace(false)
+public final class PJFRPageRenderEvent extends Event
+{
+  @Label("Page")
+  @Description("The name of the page")
+  public String page;
+
+  @Label("Characters")
+  @Description("The length of the rendered page")
+  public int length;
+
+  /**
+   * Construct an event.
+   */
+
+  public PJFRPageRenderEvent()
+  {
+
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A high dynamic range latency histogram.
+ *
+ * Values are recorded into an HdrHistogram {@link Recorder}, which is
+ * wait-free and does not allocate, so recording is safe on request paths.
+ * Taking a snapshot moves the values recorded since the previous snapshot
+ * into a cumulative histogram, from which percentiles are computed.
+ */
+
+public final class PLatencyHistogram
+{
+  /**
+   * The largest value that can be recorded; larger values are clamped.
+   */
+
+  public static final long HIGHEST_TRACKABLE =
+    Duration.ofMinutes(10L).toNanos();
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final String name;
+  private final Recorder recorder;
+  private final Histogram total;
+  private Histogram interval;
+
+  /**
+   * Create a histogram.
+   *
+   * @param inName The histogram name
+   */
+
+  public PLatencyHistogram(
+    final String inName)
+  {
+    this.name = Objects.requireNonNull(inName, "name");
+    this.recorder = new Recorder(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS);
+    this.total = new Histogram(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS);
+    this.interval = null;
+  }
+
+  /**
+   * @return The histogram name
+   */
+
+  public String name()
+  {
+    return this.name;
+  }
+
+  /**
+   * Record a latency value.
+   *
+   * @param nanos The latency in nanoseconds
+   */
+
+  public void record(
+    final long nanos)
+  {
+    this.recorder.recordValue(
+      Math.min(Math.max(nanos, 1L), HIGHEST_TRACKABLE));
+  }
+
+  /**
+   * Record the time elapsed since the given {@link System#nanoTime()} value.
+   *
+   * @param startNanos The start time
+   */
+
+  public void recordSince(
+    final long startNanos)
+  {
+    this.record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * @return A snapshot of every value recorded so far
+   */
+
+  public synchronized PLatencySnapshot snapshot()
+  {
+    this.interval = this.recorder.getIntervalHistogram(this.interval);
+    this.total.add(this.interval);
+
+    return PLatencySnapshot.builder()
+      .setName(this.name)
+      .setCount(this.total.getTotalCount())
+      .setMean(this.total.getMean())
+      .setP50(this.total.getValueAtPercentile(50.0))
+      .setP90(this.total.getValueAtPercentile(90.0))
+      .setP99(this.total.getValueAtPercentile(99.0))
+      .setP999(this.total.getValueAtPercentile(99.9))
+      .setMax(this.total.getMaxValue())
+      .build();
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A set of named latency histograms.
+ */
+
+public final class PLatencyHistograms
+{
+  private final ConcurrentSkipListMap<String, PLatencyHistogram> histograms;
+
+  /**
+   * Create an empty set of histograms.
+   */
+
+  public PLatencyHistograms()
+  {
+    this.histograms = new ConcurrentSkipListMap<>();
+  }
+
+  /**
+   * Find or create the histogram with the given name.
+   *
+   * @param name The name
+   *
+   * @return The histogram
+   */
+
+  public PLatencyHistogram histogram(
+    final String name)
+  {
+    Objects.requireNonNull(name, "name");
+    return this.histograms.computeIfAbsent(name, PLatencyHistogram::new);
+  }
+
+  /**
+   * Add an existing histogram to the set, replacing any histogram with the
+   * same name.
+   *
+   * @param histogram The histogram
+   */
+
+  public void add(
+    final PLatencyHistogram histogram)
+  {
+    Objects.requireNonNull(histogram, "histogram");
+    this.histograms.put(histogram.name(), histogram);
+  }
+
+  /**
+   * @return Snapshots of every histogram, ordered by name
+   */
+
+  public List<PLatencySnapshot> snapshot()
+  {
+    final var results = new ArrayList<PLatencySnapshot>(this.histograms.size());
+    for (final var histogram : this.histograms.values()) {
+      results.add(histogram.snapshot());
+    }
+    return results;
+  }
+}
@@ -31,7 +31,12 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.io7m.portero.server.internal.PMatrixJSON.PAdminCreateUser;
 import static com.io7m.portero.server.internal.PMatrixJSON.PAdminCreateUserResponse;
@@ -52,6 +57,12 @@ public final class PMatrixClient
   private final HttpClient client;
   private final ObjectMapper objectMapper;
   private final URI serverBaseURI;
+  private final LongAdder nonceCalls;
+  private final LongAdder registerCalls;
+  private final LongAdder failures;
+  private final ConcurrentHashMap<String, LongAdder> errors;
+  private final PLatencyHistogram nonceLatency;
+  private final PLatencyHistogram registerLatency;
 
   private PMatrixClient(
     final HttpClient inClient,
@@ -64,6 +75,13 @@ public final class PMatrixClient
       Objects.requireNonNull(inObjectMapper, "inObjectMapper");
     this.serverBaseURI =
       Objects.requireNonNull(inServerBaseURI, "serverBaseURI");
+
+    this.nonceCalls = new LongAdder();
+    this.registerCalls = new LongAdder();
+    this.failures = new LongAdder();
+    this.errors = new ConcurrentHashMap<>();
+    this.nonceLatency = new PLatencyHistogram("matrix nonce");
+    this.registerLatency = new PLatencyHistogram("matrix register");
   }
 
   private static String agent()
@@ -107,14 +125,40 @@ public final class PMatrixClient
 
   public PMatrixJSONResponseType nonce()
     throws IOException, InterruptedException
+  {
+    this.nonceCalls.increment();
+
+    final var event = new PJFRMatrixNonceEvent();
+    event.begin();
+    event.outcome = "failed";
+
+    final var start = System.nanoTime();
+    try (var span = PTraceSpan.open("matrix nonce")) {
+      try {
+        final var response = this.nonceActual(span);
+        event.outcome = outcomeOf(response);
+        return response;
+      } finally {
+        span.setStatus(event.outcome);
+      }
+    } finally {
+      this.nonceLatency.recordSince(start);
+      event.commit();
+    }
+  }
+
+  private PMatrixJSONResponseType nonceActual(
+    final PTraceSpan span)
+    throws IOException, InterruptedException
   {
     final var targetURI =
       this.serverBaseURI.resolve("/_synapse/admin/v1/register");
     final var httpRequest =
       HttpRequest.newBuilder(targetURI)
+        .header(PTraceSpan.TRACEPARENT, span.traceparent())
         .build();
     final var response =
-      this.client.send(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+      this.send(httpRequest);
 
     final var statusCode =
       response.statusCode();
@@ -158,6 +202,94 @@ public final class PMatrixClient
     Objects.requireNonNull(userName, "userName");
     Objects.requireNonNull(password, "password");
 
+    this.registerCalls.increment();
+
+    final var event = new PJFRMatrixRegisterEvent();
+    event.begin();
+    event.outcome = "failed";
+
+    final var start = System.nanoTime();
+    try (var span = PTraceSpan.open("matrix register")) {
+      try {
+        final var response =
+          this.registerActual(span, sharedSecret, nonce, userName, password);
+        event.outcome = outcomeOf(response);
+        return response;
+      } finally {
+        span.setStatus(event.outcome);
+      }
+    } finally {
+      this.registerLatency.recordSince(start);
+      event.commit();
+    }
+  }
+
+  private PMatrixJSONResponseType registerActual(
+    final PTraceSpan span,
+    final String sharedSecret,
+    final String nonce,
+    final String userName,
+    final String password)
+    throws IOException, InterruptedException
+  {
+    final var request = new PAdminCreateUser();
+    request.username = userName;
+    request.password = password;
+    request.nonce = nonce;
+    request.mac = sign(sharedSecret, nonce, userName, password);
+
+    final var targetURI =
+      this.serverBaseURI.resolve("/_synapse/admin/v1/register");
+    final var serialized =
+      this.objectMapper.writeValueAsBytes(request);
+    final var httpRequest =
+      HttpRequest.newBuilder(targetURI)
+        .POST(HttpRequest.BodyPublishers.ofByteArray(serialized))
+        .header("User-Agent", agent())
+        .header(PTraceSpan.TRACEPARENT, span.traceparent())
+        .build();
+    final var response =
+      this.send(httpRequest);
+
+    final var statusCode =
+      response.statusCode();
+    final var contentType =
+      response.headers().firstValue("content-type")
+        .orElse("application/octet-stream");
+
+    LOG.debug("{} status {}", targetURI, Integer.valueOf(statusCode));
+    try (var stream = response.body()) {
+      return this.parseResponse(
+        statusCode,
+        contentType,
+        stream,
+        PAdminCreateUserResponse.class
+      );
+    }
+  }
+
+  /**
+   * Compute the registration HMAC for a user, as required by the Synapse
+   * shared-secret registration API.
+   *
+   * @param sharedSecret The registration shared secret
+   * @param nonce        The nonce
+   * @param userName     The user name
+   * @param password     The password
+   *
+   * @return The hex-encoded HMAC-SHA1 digest
+   */
+
+  public static String sign(
+    final String sharedSecret,
+    final String nonce,
+    final String userName,
+    final String password)
+  {
+    final var event = new PJFRMatrixHMACEvent();
+    event.begin();
+    event.outcome = "failed";
+
     try {
       final var keyBytes =
         sharedSecret.getBytes(UTF_8);
@@ -180,44 +312,136 @@ public final class PMatrixClient
       final var digestText =
         Hex.encodeHexString(digest, true);
 
-      final var request = new PAdminCreateUser();
-      request.username = userName;
-      request.password = password;
-      request.nonce = nonce;
-      request.mac = digestText;
-
-      final var targetURI =
-        this.serverBaseURI.resolve("/_synapse/admin/v1/register");
-      final var serialized =
-        this.objectMapper.writeValueAsBytes(request);
-      final var httpRequest =
-        HttpRequest.newBuilder(targetURI)
-          .POST(HttpRequest.BodyPublishers.ofByteArray(serialized))
-          .header("User-Agent", agent())
-          .build();
-      final var response =
-        this.client.send(
-          httpRequest,
-          HttpResponse.BodyHandlers.ofInputStream());
-
-      final var statusCode =
-        response.statusCode();
-      final var contentType =
-        response.headers().firstValue("content-type")
-          .orElse("application/octet-stream");
-
-      LOG.debug("{} status {}", targetURI, Integer.valueOf(statusCode));
-      try (var stream = response.body()) {
-        return this.parseResponse(
-          statusCode,
-          contentType,
-          stream,
-          PAdminCreateUserResponse.class
-        );
-      }
+      event.outcome = "ok";
+      return digestText;
     } catch (final NoSuchAlgorithmException | InvalidKeyException e) {
       throw new IllegalStateException(e);
+    } finally {
+      event.commit();
+    }
+  }
+
+  private static String outcomeOf(
+    final PMatrixJSONResponseType response)
+  {
+    if (response instanceof PError) {
+      return Objects.requireNonNullElse(
+        ((PError) response).errorCode, "M_UNKNOWN");
+    }
+    return "ok";
+  }
+
+  /**
+   * Check that the server's admin API is reachable by requesting the
+   * server version. The request is not counted in the request metrics.
+   *
+   * @param timeout The request timeout
+   *
+   * @return The HTTP status code of the response
+   *
+   * @throws IOException          On I/O errors
+   * @throws InterruptedException If the operation is interrupted
+   */
+
+  public int probe(
+    final Duration timeout)
+    throws IOException, InterruptedException
+  {
+    Objects.requireNonNull(timeout, "timeout");
+
+    final var targetURI =
+      this.serverBaseURI.resolve("/_synapse/admin/v1/server_version");
+    final var httpRequest =
+      HttpRequest.newBuilder(targetURI)
+        .timeout(timeout)
+        .build();
+    final var response =
+      this.client.send(httpRequest, HttpResponse.BodyHandlers.discarding());
+
+    final var statusCode = response.statusCode();
+    LOG.trace("{} status {}", targetURI, Integer.valueOf(statusCode));
+    return statusCode;
+  }
+
+  private HttpResponse<InputStream> send(
+    final HttpRequest httpRequest)
+    throws IOException, InterruptedException
+  {
+    try {
+      return this.client.send(
+        httpRequest,
+        HttpResponse.BodyHandlers.ofInputStream());
+    } catch (final IOException e) {
+      this.failures.increment();
+      throw e;
+    }
+  }
+
+  /**
+   * @return The object mapper used to encode and decode Matrix messages
+   */
+
+  public ObjectMapper objectMapper()
+  {
+    return this.objectMapper;
+  }
+
+  /**
+   * @return The latency of nonce requests
+   */
+
+  public PLatencyHistogram nonceLatency()
+  {
+    return this.nonceLatency;
+  }
+
+  /**
+   * @return The latency of registration requests
+   */
+
+  public PLatencyHistogram registerLatency()
+  {
+    return this.registerLatency;
+  }
+
+  /**
+   * @return The number of nonce requests made
+   */
+
+  public long nonceCalls()
+  {
+    return this.nonceCalls.sum();
+  }
+
+  /**
+   * @return The number of registration requests made
+   */
+
+  public long registerCalls()
+  {
+    return this.registerCalls.sum();
+  }
+
+  /**
+   * @return The number of requests that failed without a usable response
+   */
+
+  public long failures()
+  {
+    return this.failures.sum();
+  }
+
+  /**
+   * @return The number of error responses received, by Matrix error code
+   */
+
+  public Map<String, Long> errors()
+  {
+    final var results = new TreeMap<String, Long>();
+    for (final var entry : this.errors.entrySet()) {
+      results.put(entry.getKey(), Long.valueOf(entry.getValue().sum()));
     }
+    return results;
   }
 
   private PMatrixJSONResponseType parseResponse(
@@ -228,6 +452,7 @@ public final class PMatrixClient
     throws IOException
   {
     if (!Objects.equals(contentType, "application/json")) {
+      this.failures.increment();
       throw new IOException(String.format(
         "Server responded with an unexpected content type '%s'",
         contentType)
@@ -245,6 +470,10 @@ public final class PMatrixClient
         this.objectMapper.readValue(text, PError.class);
 
       LOG.trace("error: {}", error);
+      this.errors.computeIfAbsent(
+        Objects.requireNonNullElse(error.errorCode, "M_UNKNOWN"),
+        k -> new LongAdder()
+      ).increment();
       return error;
     }
 
@@ -73,7 +73,12 @@ final class PMatrixJSONDeserializers extends SimpleDeserializers
 
   public static PMatrixJSONDeserializers create()
   {
-    final Set<String> whiteList = classWhitelist();
+    return create(classWhitelist());
+  }
+
+  public static PMatrixJSONDeserializers create(
+    final Set<String> whiteList)
+  {
     for (final var entry : whiteList) {
       LOG.trace("whitelist: {}", entry);
     }
@@ -39,6 +39,12 @@ public final class PMatrixObjectMappers
    */
 
   public static ObjectMapper createObjectMapper()
+  {
+    return createObjectMapperWith(PMatrixJSONDeserializers.create());
+  }
+
+  static ObjectMapper createObjectMapperWith(
+    final PMatrixJSONDeserializers deserializers)
   {
     final JsonMapper mapper =
       JsonMapper.builder()
@@ -46,7 +52,6 @@ public final class PMatrixObjectMappers
         .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
         .build();
 
-    final var deserializers = PMatrixJSONDeserializers.create();
     final var simpleModule = new SimpleModule();
     simpleModule.setDeserializers(deserializers);
     mapper.registerModule(simpleModule);
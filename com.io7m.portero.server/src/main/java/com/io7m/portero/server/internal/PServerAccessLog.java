@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+
+import java.net.URLDecoder;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A request log that submits sampled, redacted entries to an access log
+ * writer.
+ */
+
+public final class PServerAccessLog implements RequestLog
+{
+  /**
+   * The request attribute that holds the trace ID of the request.
+   */
+
+  public static final String TRACE_ID_ATTRIBUTE =
+    "com.io7m.portero.trace_id";
+
+  private static final String REDACTED = "REDACTED";
+
+  private static final Set<String> SENSITIVE_PARAMETERS =
+    Set.of("token");
+
+  private final String server;
+  private final PAccessLogWriter writer;
+  private final TreeMap<String, Double> sampling;
+
+  /**
+   * A request log that submits sampled, redacted entries to an access log
+   * writer.
+   *
+   * @param inServer   The server name
+   * @param inWriter   The writer
+   * @param inSampling The sampling rates by route prefix
+   */
+
+  public PServerAccessLog(
+    final String inServer,
+    final PAccessLogWriter inWriter,
+    final Map<String, Double> inSampling)
+  {
+    this.server =
+      Objects.requireNonNull(inServer, "server");
+    this.writer =
+      Objects.requireNonNull(inWriter, "writer");
+    this.sampling =
+      new TreeMap<>(Objects.requireNonNull(inSampling, "sampling"));
+  }
+
+  /**
+   * Find the sampling rate for the given path. The rate of the longest
+   * configured route that is a prefix of the path is used; paths that
+   * match no route have a rate of {@code 1.0}.
+   *
+   * @param path The request path
+   *
+   * @return The sampling rate
+   */
+
+  public double samplingRate(
+    final String path)
+  {
+    Objects.requireNonNull(path, "path");
+
+    var bestLength = -1;
+    var best = 1.0;
+    for (final var entry : this.sampling.entrySet()) {
+      final var route = entry.getKey();
+      if (path.startsWith(route) && route.length() > bestLength) {
+        bestLength = route.length();
+        best = entry.getValue().doubleValue();
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Redact the values of any {@code token} parameters in the given query
+   * string. Parameter names are URL-decoded and compared without regard to
+   * case, and a parameter whose name cannot be decoded is redacted.
+   *
+   * @param query The query string
+   *
+   * @return The redacted query string
+   */
+
+  public static String redact(
+    final String query)
+  {
+    if (query == null || query.isEmpty()) {
+      return query;
+    }
+
+    final var text = new StringBuilder(query.length());
+    final var parameters = query.split("&", -1);
+    for (int index = 0; index < parameters.length; ++index) {
+      if (index > 0) {
+        text.append('&');
+      }
+      final var parameter = parameters[index];
+      final var equals = parameter.indexOf('=');
+      final var name =
+        equals == -1 ? parameter : parameter.substring(0, equals);
+      if (isSensitive(name)) {
+        text.append(name);
+        text.append('=');
+        text.append(REDACTED);
+      } else {
+        text.append(parameter);
+      }
+    }
+    return text.toString();
+  }
+
+  private static boolean isSensitive(
+    final String name)
+  {
+    try {
+      final var decoded = URLDecoder.decode(name, UTF_8);
+      return SENSITIVE_PARAMETERS.contains(decoded.toLowerCase(Locale.ROOT));
+    } catch (final IllegalArgumentException e) {
+      return true;
+    }
+  }
+
+  @Override
+  public void log(
+    final Request request,
+    final Response response)
+  {
+    if (!this.writer.isEnabled()) {
+      return;
+    }
+
+    final var status = statusOf(response);
+    final var path = request.getRequestURI();
+    if (status < 500) {
+      final var rate = this.samplingRate(path);
+      if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) {
+        return;
+      }
+    }
+
+    final var received = request.getTimeStamp();
+    final var traceId = request.getAttribute(TRACE_ID_ATTRIBUTE);
+
+    this.writer.submit(
+      new PAccessLogWriter.Entry(
+        Instant.ofEpochMilli(received),
+        this.server,
+        request.getMethod(),
+        path,
+        redact(request.getQueryString()),
+        status,
+        Math.max(0L, System.currentTimeMillis() - received),
+        response.getHttpChannel().getBytesWritten(),
+        request.getRemoteAddr(),
+        traceId instanceof String ? (String) traceId : null
+      )
+    );
+  }
+
+  private static int statusOf(
+    final Response response)
+  {
+    final var committed = response.getCommittedMetaData();
+    if (committed != null) {
+      return committed.getStatus();
+    }
+    return response.getStatus();
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterClaim;
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterConsume;
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterReplicate;
+
+/**
+ * A handler that accepts messages from other cluster nodes.
+ */
+
+public final class PServerClusterHandler extends AbstractHandler
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PServerClusterHandler.class);
+
+  private final PTokenStoreReplicated store;
+  private final ObjectMapper mapper;
+
+  PServerClusterHandler(
+    final PTokenStoreReplicated inStore)
+  {
+    this.store =
+      Objects.requireNonNull(inStore, "store");
+    this.mapper =
+      PClusterObjectMappers.createObjectMapper();
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    if (!"POST".equals(request.getMethod())) {
+      response.setStatus(405);
+      baseRequest.setHandled(true);
+      return;
+    }
+
+    final Object result;
+    try (var input = request.getInputStream()) {
+      switch (target) {
+        case "/replicate" -> {
+          result = this.store.onReplicate(
+            this.mapper.readValue(input, PClusterReplicate.class));
+        }
+        case "/claim" -> {
+          result = this.store.onClaim(
+            this.mapper.readValue(input, PClusterClaim.class));
+        }
+        case "/consume" -> {
+          this.store.onConsume(
+            this.mapper.readValue(input, PClusterConsume.class));
+          result = null;
+        }
+        case "/release" -> {
+          this.store.onRelease(
+            this.mapper.readValue(input, PClusterClaim.class));
+          result = null;
+        }
+        default -> {
+          response.setStatus(404);
+          baseRequest.setHandled(true);
+          return;
+        }
+      }
+    } catch (final IOException | IllegalArgumentException e) {
+      LOG.warn("malformed cluster message: ", e);
+      response.setStatus(400);
+      baseRequest.setHandled(true);
+      return;
+    }
+
+    response.setStatus(200);
+    response.setContentType("application/json");
+    if (result != null) {
+      try (var output = response.getOutputStream()) {
+        this.mapper.writeValue(output, result);
+      }
+    }
+    baseRequest.setHandled(true);
+  }
+}
@@ -16,7 +16,10 @@
 
 package com.io7m.portero.server.internal;
 
-import net.jodah.expiringmap.ExpiringMap;
+import com.io7m.portero.server.audit.PAuditRecord;
+import com.io7m.portero.server.tokens.PTokenEventKind;
+import com.io7m.portero.server.tokens.PTokenStoreFullException;
+import com.io7m.portero.server.tokens.PTokenStoreType;
 import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,173 +27,639 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.time.Clock;
 import java.time.Duration;
-import java.util.Collections;
-import java.util.Map;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
+import static com.io7m.portero.server.internal.PMatrixJSON.PAdminCreateUserResponse;
 import static com.io7m.portero.server.internal.PMatrixJSON.PError;
+import static com.io7m.portero.server.internal.PMatrixJSON.PMatrixJSONResponseType;
+import static com.io7m.portero.server.tokens.PTokenEventKind.CONSUMED;
+import static com.io7m.portero.server.tokens.PTokenEventKind.EXPIRED;
+import static com.io7m.portero.server.tokens.PTokenEventKind.ISSUED;
 
 /**
  * The main server controller.
  */
 
-public final class PServerController
+public final class PServerController implements AutoCloseable
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(PServerController.class);
 
+  private static final Duration AUDIT_TIMEOUT =
+    Duration.ofSeconds(10L);
+
   private final SecureRandom rng;
-  private final Map<String, String> tokens;
+  private final PTokenStoreType tokens;
   private final PServerStrings strings;
   private final PMatrixClient client;
+  private final PTokenExpiryPipeline expiries;
+  private final PTokenEventBus events;
+  private final PAuditLog audit;
+  private final Clock clock;
+  private final LongAdder issuedCount;
+  private final LongAdder consumedCount;
+  private final LongAdder expiredCount;
+  private final LongAdder importedCount;
 
   private PServerController(
     final Duration inExpiry,
+    final PTokenStoreFactoryType inTokenStores,
+    final PAuditLog inAudit,
+    final Clock inClock,
     final PServerStrings inStrings,
-    final PMatrixClient inClient)
+    final PMatrixClient inClient,
+    final SecureRandom inRng)
+    throws IOException
   {
     Objects.requireNonNull(inExpiry, "inExpiry");
+    Objects.requireNonNull(inTokenStores, "inTokenStores");
+
+    this.audit =
+      Objects.requireNonNull(inAudit, "audit");
+    this.clock =
+      Objects.requireNonNull(inClock, "clock");
+    this.issuedCount = new LongAdder();
+    this.consumedCount = new LongAdder();
+    this.expiredCount = new LongAdder();
+    this.importedCount = new LongAdder();
 
     this.strings =
       Objects.requireNonNull(inStrings, "strings");
     this.client =
       Objects.requireNonNull(inClient, "client");
 
-    try {
-      this.tokens =
-        Collections.synchronizedMap(
-          ExpiringMap.builder()
-            .expiration(inExpiry.toSeconds(), TimeUnit.SECONDS)
-            .expirationListener(PServerController::onExpired)
-            .build()
-        );
-
-      this.rng = SecureRandom.getInstanceStrong();
-    } catch (final NoSuchAlgorithmException e) {
-      throw new IllegalStateException(e);
-    }
-  }
+    this.rng =
+      Objects.requireNonNull(inRng, "rng");
 
-  private static void onExpired(
-    final String key,
-    final String value)
-  {
-    LOG.info("token {} expired", key);
+    this.events =
+      PTokenEventBus.create();
+    this.expiries =
+      PTokenExpiryPipeline.create();
+    this.expiries.addListener(this::onTokensExpired);
+    this.tokens =
+      inTokenStores.open(inExpiry, this::onTokenExpired);
   }
 
   /**
    * Create a new server controller.
    *
-   * @param inExpiry The expiration time for individual tokens
-   * @param strings  String resources
-   * @param client   The client
+   * @param parameters The controller parameters
    *
    * @return A new server controller
+   *
+   * @throws IOException On I/O errors
    */
 
   public static PServerController create(
-    final PServerStrings strings,
-    final Duration inExpiry,
-    final PMatrixClient client)
+    final PServerControllerParameters parameters)
+    throws IOException
+  {
+    Objects.requireNonNull(parameters, "parameters");
+
+    return new PServerController(
+      parameters.expiry(),
+      parameters.tokenStores(),
+      parameters.audit(),
+      parameters.clock(),
+      parameters.strings(),
+      parameters.client(),
+      parameters.rng()
+    );
+  }
+
+  /**
+   * Create the strong random number generator used to generate tokens. The
+   * generator is seeded before it is returned; seeding a strong generator
+   * can block until the operating system has gathered enough entropy, and
+   * so this is best done before the first token is requested.
+   *
+   * @return A seeded random number generator
+   */
+
+  public static SecureRandom createRandom()
   {
-    return new PServerController(inExpiry, strings, client);
+    try {
+      final var random = SecureRandom.getInstanceStrong();
+      random.nextBytes(new byte[32]);
+      return random;
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
   }
 
   /**
    * Generate a fresh token.
    *
    * @return The token
+   *
+   * @throws IOException On I/O errors
    */
 
   public String generateToken()
+    throws IOException
   {
-    while (true) {
-      final var data = new byte[32];
-      this.rng.nextBytes(data);
-      final var token = Hex.encodeHexString(data, true);
-      if (!this.tokens.containsKey(token)) {
-        this.tokens.put(token, token);
-        LOG.info("generated new token {}", token);
-        return token;
+    final var event = new PJFRTokenGenerateEvent();
+    event.begin();
+    event.count = 1;
+    event.outcome = "failed";
+
+    try {
+      while (true) {
+        final var token = this.randomToken();
+        if (this.tokens.issue(token)) {
+          LOG.info("generated new token {}", token);
+          this.issuedCount.increment();
+          this.events.publish(ISSUED, token, null);
+          this.audit(ISSUED, token, null);
+          event.outcome = "issued";
+          return token;
+        }
       }
+    } catch (final PTokenStoreFullException e) {
+      event.outcome = "rejected";
+      throw e;
+    } finally {
+      event.commit();
     }
   }
 
+  /**
+   * Generate a number of fresh tokens. The tokens are issued to the token
+   * store in bulk.
+   *
+   * @param count The number of tokens
+   *
+   * @return The tokens
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public List<String> generateTokens(
+    final int count)
+    throws IOException
+  {
+    if (count < 0) {
+      throw new IllegalArgumentException("Token count must be non-negative");
+    }
+
+    final var event = new PJFRTokenGenerateEvent();
+    event.begin();
+    event.count = count;
+    event.outcome = "failed";
+
+    try {
+      final var results = new ArrayList<String>(count);
+      while (results.size() < count) {
+        final var remaining = count - results.size();
+        final var batch = new ArrayList<String>(remaining);
+        for (int index = 0; index < remaining; ++index) {
+          batch.add(this.randomToken());
+        }
+        for (final var token : this.tokens.issueAll(batch)) {
+          this.issuedCount.increment();
+          this.events.publish(ISSUED, token, null);
+          this.audit(ISSUED, token, null);
+          results.add(token);
+        }
+      }
+
+      LOG.info("generated {} new tokens", Integer.valueOf(count));
+      event.outcome = "issued";
+      return results;
+    } catch (final PTokenStoreFullException e) {
+      event.outcome = "rejected";
+      throw e;
+    } finally {
+      event.commit();
+    }
+  }
+
+  private String randomToken()
+  {
+    final var data = new byte[32];
+    this.rng.nextBytes(data);
+    return Hex.encodeHexString(data, true);
+  }
+
   /**
    * Process the given invite request.
    *
    * @param request The request
    *
+   * @return The Matrix user ID of the new user
+   *
    * @throws PServerControllerException On errors
    * @throws InterruptedException       If the operation is interrupted
    */
 
-  public void processInvite(
+  public String processInvite(
     final PInviteRequest request)
     throws PServerControllerException, InterruptedException
+  {
+    return this.processInvite(request, new PSignupTimings());
+  }
+
+  /**
+   * Process the given invite request, recording the time spent in each
+   * phase of the request.
+   *
+   * @param request The request
+   * @param timings The phase timings
+   *
+   * @return The Matrix user ID of the new user
+   *
+   * @throws PServerControllerException On errors
+   * @throws InterruptedException       If the operation is interrupted
+   */
+
+  public String processInvite(
+    final PInviteRequest request,
+    final PSignupTimings timings)
+    throws PServerControllerException, InterruptedException
   {
     Objects.requireNonNull(request, "request");
+    Objects.requireNonNull(timings, "timings");
 
-    final var token = request.token();
-    if (!this.tokens.containsKey(token)) {
-      LOG.warn("nonexistent token: {}", token);
-      throw new PServerControllerException(
-        this.strings.format("errorTokenNonexistent"));
+    try (var span = PTraceSpan.open("invite")) {
+      try {
+        return this.processInviteActual(request, timings);
+      } catch (final PServerControllerException | InterruptedException e) {
+        span.setStatus("error");
+        throw e;
+      }
     }
+  }
+
+  private String processInviteActual(
+    final PInviteRequest request,
+    final PSignupTimings timings)
+    throws PServerControllerException, InterruptedException
+  {
+    final var token = request.token();
+
+    final var event = new PJFRTokenValidateEvent();
+    event.begin();
+    event.outcome = "failed";
+
+    final var tokenStart = System.nanoTime();
 
     try {
-      final var nonceResponse = this.client.nonce();
-      if (nonceResponse instanceof PError) {
-        final var error = (PError) nonceResponse;
+      if (!this.tokens.claim(token)) {
+        if (this.tokens.isValid(token)) {
+          LOG.warn("token already in use: {}", token);
+          event.outcome = "in-use";
+          throw new PServerControllerException(
+            PServerControllerException.TOKEN_IN_USE,
+            this.strings.format("errorTokenInUse"));
+        }
+        LOG.warn("nonexistent token: {}", token);
+        event.outcome = "nonexistent";
         throw new PServerControllerException(
-          this.strings.format(
-            "errorServerRegister",
-            error.errorCode,
-            error.errorMessage)
-        );
+          PServerControllerException.TOKEN_NONEXISTENT,
+          this.strings.format("errorTokenNonexistent"));
       }
+      event.outcome = "valid";
+    } catch (final IOException e) {
+      LOG.error("i/o error: ", e);
+      throw new PServerControllerException(e);
+    } finally {
+      event.commit();
+      timings.recordSince(PSignupPhase.TOKEN, tokenStart);
+    }
 
-      final var nonceR = (PMatrixJSON.PAdminNonce) nonceResponse;
-
-      final var registerResponse =
-        this.client.register(
+    var consumed = false;
+    try {
+      final var userId =
+        this.register(
           request.registrationSharedSecret(),
-          nonceR.nonce,
           request.userName(),
-          request.password()
+          request.password(),
+          timings
         );
 
-      if (registerResponse instanceof PError) {
-        final var error = (PError) registerResponse;
-        throw new PServerControllerException(
-          this.strings.format(
-            "errorServerRegister",
-            error.errorCode,
-            error.errorMessage)
-        );
+      final var commitStart = System.nanoTime();
+      this.tokens.consume(token);
+      consumed = true;
+      this.consumedCount.increment();
+      this.events.publish(CONSUMED, token, userId);
+      this.awaitAudit(token, this.audit(CONSUMED, token, userId));
+      timings.recordSince(PSignupPhase.COMMIT, commitStart);
+      LOG.info("consumed token {} for user '{}'", token, request.userName());
+      return userId;
+    } catch (final IOException e) {
+      LOG.error("i/o error: ", e);
+      throw new PServerControllerException(e);
+    } finally {
+      if (!consumed) {
+        this.releaseClaim(token);
       }
+    }
+  }
+
+  /**
+   * Register a user directly, without an invite token. This is used to
+   * import existing accounts.
+   *
+   * @param sharedSecret The registration shared secret
+   * @param userName     The user name
+   * @param password     The password
+   *
+   * @return The Matrix user ID of the new user
+   *
+   * @throws PServerControllerException On errors
+   * @throws InterruptedException       If the operation is interrupted
+   */
+
+  public String importUser(
+    final String sharedSecret,
+    final String userName,
+    final String password)
+    throws PServerControllerException, InterruptedException
+  {
+    Objects.requireNonNull(sharedSecret, "sharedSecret");
+    Objects.requireNonNull(userName, "userName");
+    Objects.requireNonNull(password, "password");
 
-      this.tokens.remove(token);
-      LOG.info(
-        "consumed token {} for user '{}' ({} tokens left)",
-        token,
-        request.userName(),
-        Integer.valueOf(this.tokenCount())
+    try (var span = PTraceSpan.open("import")) {
+      try {
+        final var userId =
+          this.register(sharedSecret, userName, password, new PSignupTimings());
+        this.importedCount.increment();
+        LOG.info("imported user '{}' as {}", userName, userId);
+        return userId;
+      } catch (final IOException e) {
+        span.setStatus("error");
+        LOG.error("i/o error: ", e);
+        throw new PServerControllerException(e);
+      } catch (final PServerControllerException | InterruptedException e) {
+        span.setStatus("error");
+        throw e;
+      }
+    }
+  }
+
+  private String register(
+    final String sharedSecret,
+    final String userName,
+    final String password,
+    final PSignupTimings timings)
+    throws PServerControllerException, IOException, InterruptedException
+  {
+    final PMatrixJSONResponseType nonceResponse;
+    final var nonceStart = System.nanoTime();
+    try {
+      nonceResponse = this.client.nonce();
+    } finally {
+      timings.recordSince(PSignupPhase.NONCE, nonceStart);
+    }
+
+    if (nonceResponse instanceof PError) {
+      final var error = (PError) nonceResponse;
+      throw new PServerControllerException(
+        errorCodeOf(error),
+        this.strings.format(
+          "errorServerRegister",
+          error.errorCode,
+          error.errorMessage)
       );
+    }
+
+    final var nonceR = (PMatrixJSON.PAdminNonce) nonceResponse;
+
+    final PMatrixJSONResponseType registerResponse;
+    final var registerStart = System.nanoTime();
+    try {
+      registerResponse =
+        this.client.register(
+          sharedSecret,
+          nonceR.nonce,
+          userName,
+          password
+        );
+    } finally {
+      timings.recordSince(PSignupPhase.REGISTER, registerStart);
+    }
+
+    if (registerResponse instanceof PError) {
+      final var error = (PError) registerResponse;
+      throw new PServerControllerException(
+        errorCodeOf(error),
+        this.strings.format(
+          "errorServerRegister",
+          error.errorCode,
+          error.errorMessage)
+      );
+    }
+
+    return ((PAdminCreateUserResponse) registerResponse).userId;
+  }
+
+  private static String errorCodeOf(
+    final PError error)
+  {
+    return Objects.requireNonNullElse(error.errorCode, "M_UNKNOWN");
+  }
+
+  private CompletableFuture<Void> audit(
+    final PTokenEventKind kind,
+    final String token,
+    final String userId)
+  {
+    return this.audit.append(
+      PAuditRecord.builder()
+        .setTime(OffsetDateTime.now(this.clock))
+        .setEvent(kind)
+        .setToken(token)
+        .setUserId(Optional.ofNullable(userId))
+        .build()
+    );
+  }
+
+  /**
+   * Wait for an audit record to reach storage. The user has already been
+   * created at this point and cannot be removed again, so a failure to
+   * record the event is logged rather than reported to the user.
+   */
+
+  private void awaitAudit(
+    final String token,
+    final CompletableFuture<Void> future)
+    throws InterruptedException
+  {
+    try {
+      future.get(AUDIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (final ExecutionException | TimeoutException e) {
+      LOG.error("could not write audit record for token {}: ", token, e);
+    }
+  }
+
+  private void releaseClaim(
+    final String token)
+  {
+    try {
+      this.tokens.release(token);
     } catch (final IOException e) {
-      LOG.error("i/o error: ", e);
-      throw new PServerControllerException(e);
+      LOG.error("could not release token {}: ", token, e);
     }
   }
 
   /**
    * @return The number of active tokens
+   *
+   * @throws IOException On I/O errors
    */
 
   public int tokenCount()
+    throws IOException
   {
     return this.tokens.size();
   }
+
+  /**
+   * Determine whether a token has been issued and has not yet been
+   * consumed or expired.
+   *
+   * @param token The token
+   *
+   * @return {@code true} if the token is valid
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public boolean tokenIsValid(
+    final String token)
+    throws IOException
+  {
+    return this.tokens.isValid(Objects.requireNonNull(token, "token"));
+  }
+
+  /**
+   * Record an expired token. The audit record is appended directly rather
+   * than through the expiry pipeline, because the pipeline drops events
+   * when it is saturated and the audit log must not lose records.
+   */
+
+  private void onTokenExpired(
+    final String token)
+  {
+    this.audit(EXPIRED, token, null);
+    this.expiries.submit(token);
+  }
+
+  private void onTokensExpired(
+    final List<String> expired)
+  {
+    this.expiredCount.add(expired.size());
+    for (final var token : expired) {
+      this.events.publish(EXPIRED, token, null);
+    }
+  }
+
+  /**
+   * @return The number of tokens issued
+   */
+
+  public long tokensIssued()
+  {
+    return this.issuedCount.sum();
+  }
+
+  /**
+   * @return The number of tokens consumed
+   */
+
+  public long tokensConsumed()
+  {
+    return this.consumedCount.sum();
+  }
+
+  /**
+   * @return The number of users imported without an invite
+   */
+
+  public long usersImported()
+  {
+    return this.importedCount.sum();
+  }
+
+  /**
+   * @return The number of tokens that expired
+   */
+
+  public long tokensExpired()
+  {
+    return this.expiredCount.sum();
+  }
+
+  /**
+   * @return The number of tokens evicted from the token store
+   */
+
+  public long tokensEvicted()
+  {
+    return this.tokens.evictions();
+  }
+
+  /**
+   * @return The number of tokens rejected by the token store
+   */
+
+  public long tokensRejected()
+  {
+    return this.tokens.rejections();
+  }
+
+  /**
+   * @return The audit log
+   */
+
+  public PAuditLog audit()
+  {
+    return this.audit;
+  }
+
+  /**
+   * @return The bus on which token lifecycle events are published
+   */
+
+  public PTokenEventBus events()
+  {
+    return this.events;
+  }
+
+  /**
+   * @return The pipeline through which token expiry events are delivered
+   */
+
+  public PTokenExpiryPipeline expiries()
+  {
+    return this.expiries;
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    try {
+      this.tokens.close();
+    } finally {
+      this.expiries.close();
+      try {
+        this.audit.close();
+      } finally {
+        this.events.close();
+      }
+    }
+  }
 }
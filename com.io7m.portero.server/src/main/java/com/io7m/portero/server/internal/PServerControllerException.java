@@ -24,16 +24,40 @@ import java.util.Objects;
 
 public final class PServerControllerException extends Exception
 {
+  /**
+   * The error code used when a token does not exist or has expired.
+   */
+
+  public static final String TOKEN_NONEXISTENT = "P_TOKEN_NONEXISTENT";
+
+  /**
+   * The error code used when a token is being used by another request.
+   */
+
+  public static final String TOKEN_IN_USE = "P_TOKEN_IN_USE";
+
+  /**
+   * The error code used when an I/O error occurred.
+   */
+
+  public static final String IO_ERROR = "P_IO_ERROR";
+
+  private final String errorCode;
+
   /**
    * Construct an exception.
    *
-   * @param message The message
+   * @param inErrorCode The machine-readable error code, such as one of the
+   *                    constants in this class or a Matrix error code
+   * @param message     The message
    */
 
   public PServerControllerException(
+    final String inErrorCode,
     final String message)
   {
     super(Objects.requireNonNull(message, "message"));
+    this.errorCode = Objects.requireNonNull(inErrorCode, "errorCode");
   }
 
   /**
@@ -46,5 +70,15 @@ public final class PServerControllerException extends Exception
     final Throwable cause)
   {
     super(Objects.requireNonNull(cause, "cause"));
+    this.errorCode = IO_ERROR;
+  }
+
+  /**
+   * @return The machine-readable error code
+   */
+
+  public String errorCode()
+  {
+    return this.errorCode;
   }
 }
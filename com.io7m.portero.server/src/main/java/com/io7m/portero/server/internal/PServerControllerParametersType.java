@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * The parameters used to create a server controller.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PServerControllerParametersType
+{
+  /**
+   * @return String resources
+   */
+
+  PServerStrings strings();
+
+  /**
+   * @return The expiration time for individual tokens
+   */
+
+  Duration expiry();
+
+  /**
+   * @return The Matrix client
+   */
+
+  PMatrixClient client();
+
+  /**
+   * @return A factory of token stores
+   */
+
+  @Value.Default
+  default PTokenStoreFactoryType tokenStores()
+  {
+    return PTokenStoreMemory::create;
+  }
+
+  /**
+   * The audit log. The controller takes ownership of the audit log, and
+   * closes it when the controller is closed.
+   *
+   * @return The audit log
+   */
+
+  @Value.Default
+  default PAuditLog audit()
+  {
+    return PAuditLog.disabled();
+  }
+
+  /**
+   * The clock used for the timestamps of audit records. Token expiry is
+   * decided by the token store, and a store that should observe the same
+   * clock must be given it by the token store factory.
+   *
+   * @return The clock
+   */
+
+  @Value.Default
+  default Clock clock()
+  {
+    return Clock.systemDefaultZone();
+  }
+
+  /**
+   * @return The random number generator used to generate tokens
+   *
+   * @see PServerController#createRandom()
+   */
+
+  @Value.Default
+  default SecureRandom rng()
+  {
+    return PServerController.createRandom();
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.PServerEmbeddedException;
+import com.io7m.portero.server.PServerEmbeddedType;
+import com.io7m.portero.server.PServerInvite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An embedded instance that calls the server controller directly.
+ */
+
+public final class PServerEmbedded implements PServerEmbeddedType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PServerEmbedded.class);
+
+  private static final AtomicInteger THREAD_COUNT =
+    new AtomicInteger();
+
+  private final PServerConfiguration configuration;
+  private final PServerController controller;
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+  private final AtomicBoolean closed;
+
+  private PServerEmbedded(
+    final PServerConfiguration inConfiguration,
+    final PServerController inController,
+    final ExecutorService inExecutor,
+    final boolean inOwnsExecutor)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.controller =
+      Objects.requireNonNull(inController, "controller");
+    this.executor =
+      Objects.requireNonNull(inExecutor, "executor");
+    this.ownsExecutor = inOwnsExecutor;
+    this.closed = new AtomicBoolean(false);
+  }
+
+  /**
+   * Create an embedded instance.
+   *
+   * @param configuration The server configuration
+   * @param executor      The executor on which operations run, or
+   *                      {@code null} to create one with
+   *                      {@code serverThreadCount} threads that is shut
+   *                      down when the instance is closed
+   *
+   * @return An embedded instance
+   *
+   * @throws IOException On errors
+   */
+
+  public static PServerEmbedded create(
+    final PServerConfiguration configuration,
+    final ExecutorService executor)
+    throws IOException
+  {
+    Objects.requireNonNull(configuration, "configuration");
+
+    if (configuration.cluster().isPresent()) {
+      throw new IllegalArgumentException(
+        "Clustered token stores require the HTTP servers");
+    }
+
+    final var controller =
+      PServerMain.createController(
+        configuration,
+        new PServerStrings(configuration.locale()),
+        PServerMain.createMatrixClient(configuration),
+        PServerController.createRandom(),
+        null
+      );
+
+    if (executor != null) {
+      return new PServerEmbedded(configuration, controller, executor, false);
+    }
+
+    final var created =
+      Executors.newFixedThreadPool(configuration.serverThreadCount(), r -> {
+        final var thread = new Thread(r);
+        thread.setName(
+          String.format(
+            "com.io7m.portero.server.embedded[%d]",
+            Integer.valueOf(THREAD_COUNT.incrementAndGet())));
+        thread.setDaemon(true);
+        return thread;
+      });
+    return new PServerEmbedded(configuration, controller, created, true);
+  }
+
+  private PServerInvite inviteOf(
+    final String token,
+    final OffsetDateTime expires)
+  {
+    return PServerInvite.builder()
+      .setToken(token)
+      .setUri(
+        this.configuration.publicURI()
+          .resolve(String.format("/signup/?token=%s", token)))
+      .setExpires(expires)
+      .build();
+  }
+
+  private OffsetDateTime expiry()
+  {
+    return OffsetDateTime.now(ZoneOffset.UTC)
+      .plus(this.configuration.serverTokenExpiry());
+  }
+
+  private void checkNotClosed()
+  {
+    if (this.closed.get()) {
+      throw new IllegalStateException("Embedded instance is closed");
+    }
+  }
+
+  @Override
+  public CompletableFuture<PServerInvite> issueInvite()
+  {
+    this.checkNotClosed();
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        final var expires = this.expiry();
+        return this.inviteOf(this.controller.generateToken(), expires);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, this.executor);
+  }
+
+  @Override
+  public CompletableFuture<List<PServerInvite>> issueInvites(
+    final int count)
+  {
+    if (count < 0) {
+      throw new IllegalArgumentException("Invite count must be non-negative");
+    }
+
+    this.checkNotClosed();
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        final var expires = this.expiry();
+        final var tokens = this.controller.generateTokens(count);
+        final var invites = new ArrayList<PServerInvite>(tokens.size());
+        for (final var token : tokens) {
+          invites.add(this.inviteOf(token, expires));
+        }
+        return List.copyOf(invites);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, this.executor);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> isInviteValid(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+
+    this.checkNotClosed();
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return Boolean.valueOf(this.controller.tokenIsValid(token));
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, this.executor);
+  }
+
+  @Override
+  public CompletableFuture<String> redeemInvite(
+    final String token,
+    final String userName,
+    final String password)
+  {
+    final var request =
+      PInviteRequest.builder()
+        .setToken(token)
+        .setUserName(userName)
+        .setPassword(password)
+        .setRegistrationSharedSecret(
+          this.configuration.matrixServerAdminRegistrationSecret())
+        .build();
+
+    this.checkNotClosed();
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return this.controller.processInvite(request);
+      } catch (final PServerControllerException e) {
+        throw new CompletionException(
+          new PServerEmbeddedException(e.errorCode(), messageOf(e), e));
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CompletionException(e);
+      }
+    }, this.executor);
+  }
+
+  private static String messageOf(
+    final PServerControllerException e)
+  {
+    final var message = e.getMessage();
+    if (message != null) {
+      return message;
+    }
+    return e.getClass().getSimpleName();
+  }
+
+  @Override
+  public void close()
+    throws Exception
+  {
+    if (this.closed.compareAndSet(false, true)) {
+      if (this.ownsExecutor) {
+        this.executor.shutdown();
+        if (!this.executor.awaitTermination(10L, TimeUnit.SECONDS)) {
+          LOG.warn("embedded operations did not finish in time");
+          this.executor.shutdownNow();
+        }
+      }
+      this.controller.close();
+    }
+  }
+}
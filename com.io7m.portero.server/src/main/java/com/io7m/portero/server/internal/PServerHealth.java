@@ -0,0 +1,256 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The health of the server.
+ *
+ * The Matrix server is probed periodically on a background thread, and
+ * health checks only ever read the cached result, so a load balancer
+ * polling the readiness endpoint never causes requests to the Matrix
+ * server.
+ */
+
+public final class PServerHealth implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PServerHealth.class);
+
+  private final PMatrixClient client;
+  private final Map<String, QueuedThreadPool> threadPools;
+  private final Duration interval;
+  private final Clock clock;
+  private final AtomicReference<PUpstreamStatus> upstream;
+  private final AtomicBoolean stopping;
+  private final AtomicBoolean warmingUp;
+  private final ScheduledExecutorService executor;
+
+  private PServerHealth(
+    final PMatrixClient inClient,
+    final Map<String, QueuedThreadPool> inThreadPools,
+    final Duration inInterval,
+    final Clock inClock)
+  {
+    this.client =
+      Objects.requireNonNull(inClient, "client");
+    this.threadPools =
+      Objects.requireNonNull(inThreadPools, "threadPools");
+    this.interval =
+      Objects.requireNonNull(inInterval, "interval");
+    this.clock =
+      Objects.requireNonNull(inClock, "clock");
+
+    if (inInterval.isNegative() || inInterval.isZero()) {
+      throw new IllegalArgumentException("Probe interval must be positive");
+    }
+
+    this.upstream =
+      new AtomicReference<>(
+        PUpstreamStatus.builder()
+          .setReachable(false)
+          .setDetail("Matrix server not yet probed")
+          .setTime(inClock.instant())
+          .build()
+      );
+    this.stopping =
+      new AtomicBoolean(false);
+    this.warmingUp =
+      new AtomicBoolean(false);
+    this.executor =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setName("com.io7m.portero.server.internal.PServerHealth");
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
+
+  /**
+   * Create a health monitor. The monitor does not probe the Matrix server
+   * until {@link #start()} is called.
+   *
+   * @param client      The Matrix client
+   * @param threadPools The server thread pools
+   * @param interval    The interval between probes
+   *
+   * @return A health monitor
+   */
+
+  public static PServerHealth create(
+    final PMatrixClient client,
+    final Map<String, QueuedThreadPool> threadPools,
+    final Duration interval)
+  {
+    return new PServerHealth(
+      client, threadPools, interval, Clock.systemUTC());
+  }
+
+  /**
+   * Start probing the Matrix server.
+   */
+
+  public void start()
+  {
+    this.executor.scheduleWithFixedDelay(
+      this::probe,
+      0L,
+      this.interval.toMillis(),
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  /**
+   * Probe the Matrix server now, updating the cached status.
+   *
+   * @return The new status
+   */
+
+  public PUpstreamStatus probe()
+  {
+    PUpstreamStatus status;
+    try {
+      final var code = this.client.probe(this.interval);
+      status =
+        PUpstreamStatus.builder()
+          .setReachable(code >= 200 && code < 300)
+          .setDetail(String.format("Matrix server returned status %d", code))
+          .setTime(this.clock.instant())
+          .build();
+    } catch (final IOException e) {
+      status =
+        PUpstreamStatus.builder()
+          .setReachable(false)
+          .setDetail(
+            String.format(
+              "Matrix server unreachable: %s",
+              e.getClass().getSimpleName()))
+          .setTime(this.clock.instant())
+          .build();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return this.upstream.get();
+    }
+
+    final var previous = this.upstream.getAndSet(status);
+    if (previous.reachable() != status.reachable()) {
+      if (status.reachable()) {
+        LOG.info("matrix server reachable: {}", status.detail());
+      } else {
+        LOG.warn("matrix server not reachable: {}", status.detail());
+      }
+    }
+    return status;
+  }
+
+  /**
+   * @return The most recent Matrix server status
+   */
+
+  public PUpstreamStatus upstream()
+  {
+    return this.upstream.get();
+  }
+
+  /**
+   * Indicate that the server is shutting down, so that it reports itself
+   * as not ready and the load balancer stops sending it requests.
+   */
+
+  public void setStopping()
+  {
+    this.stopping.set(true);
+  }
+
+  /**
+   * Indicate whether the server is running its warm-up phase. The server
+   * reports itself as not ready while it is warming up.
+   *
+   * @param warming {@code true} if the server is warming up
+   */
+
+  public void setWarmingUp(
+    final boolean warming)
+  {
+    this.warmingUp.set(warming);
+  }
+
+  /**
+   * Determine whether the server is ready to accept requests. The server
+   * is not ready if it is stopping or warming up, if the most recent probe
+   * of the Matrix server failed or is too old, or if any thread pool is low
+   * on threads.
+   *
+   * @return The reasons the server is not ready, or an empty list if the
+   * server is ready
+   */
+
+  public List<String> readiness()
+  {
+    final var problems = new ArrayList<String>();
+    if (this.stopping.get()) {
+      problems.add("server is stopping");
+    }
+    if (this.warmingUp.get()) {
+      problems.add("server is warming up");
+    }
+
+    final var status = this.upstream.get();
+    if (!status.reachable()) {
+      problems.add(status.detail());
+    } else {
+      final var age = Duration.between(status.time(), this.clock.instant());
+      if (age.compareTo(this.interval.multipliedBy(3L)) > 0) {
+        problems.add(
+          String.format(
+            "Matrix server last probed %d seconds ago",
+            Long.valueOf(age.toSeconds())));
+      }
+    }
+
+    for (final var entry : this.threadPools.entrySet()) {
+      if (entry.getValue().isLowOnThreads()) {
+        problems.add(
+          String.format("%s thread pool is saturated", entry.getKey()));
+      }
+    }
+    return List.copyOf(problems);
+  }
+
+  @Override
+  public void close()
+  {
+    this.executor.shutdownNow();
+  }
+}
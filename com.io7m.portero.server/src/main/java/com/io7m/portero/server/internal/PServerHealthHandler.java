@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A handler that serves liveness ({@code /live}) and readiness
+ * ({@code /ready}) checks. Neither check does any work beyond reading
+ * cached state.
+ */
+
+public final class PServerHealthHandler extends AbstractHandler
+{
+  private final PServerHealth health;
+
+  PServerHealthHandler(
+    final PServerHealth inHealth)
+  {
+    this.health =
+      Objects.requireNonNull(inHealth, "health");
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    final int status;
+    final String text;
+    switch (target) {
+      case "/live" -> {
+        status = 200;
+        text = "live\n";
+      }
+      case "/ready" -> {
+        final var problems = this.health.readiness();
+        if (problems.isEmpty()) {
+          status = 200;
+          text = "ready\n";
+        } else {
+          status = 503;
+          text = String.join("\n", problems) + "\n";
+        }
+      }
+      default -> {
+        response.setStatus(404);
+        baseRequest.setHandled(true);
+        return;
+      }
+    }
+
+    final var data = text.getBytes(UTF_8);
+    response.setStatus(status);
+    response.setContentType("text/plain");
+    response.setHeader("Cache-Control", "no-store");
+    response.setContentLength(data.length);
+    try (var output = response.getOutputStream()) {
+      output.write(data);
+    }
+    baseRequest.setHandled(true);
+  }
+}
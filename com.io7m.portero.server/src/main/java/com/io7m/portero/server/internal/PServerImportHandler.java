@@ -0,0 +1,374 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.server.PServerConfiguration;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.io7m.portero.server.internal.PImportJSON.PImportResult;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A handler that imports existing users without invites.
+ *
+ * The request body is a list of users, as CSV ({@code text/csv}) or as
+ * newline-delimited JSON ({@code application/x-ndjson}). The whole list is
+ * read and parsed before any user is registered, so that a client that
+ * only reads the response after sending the entire request cannot deadlock
+ * against a server that is streaming results. Users are then registered
+ * with at most {@code parallelism} registrations in progress and at most
+ * {@code rate} registrations started per second, and a result is written
+ * as a line of JSON as each registration finishes.
+ */
+
+public final class PServerImportHandler extends AbstractHandler
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PServerImportHandler.class);
+
+  /**
+   * The largest number of users that can be imported at once.
+   */
+
+  public static final int MAXIMUM_USERS = 100_000;
+
+  /**
+   * The largest number of registrations that can be in progress at once.
+   */
+
+  public static final int MAXIMUM_PARALLELISM = 64;
+
+  private static final int DEFAULT_PARALLELISM = 4;
+  private static final double DEFAULT_RATE = 10.0;
+  private static final double MAXIMUM_RATE = 1000.0;
+
+  private static final long TASK_SHUTDOWN_TIMEOUT_NANOS =
+    TimeUnit.SECONDS.toNanos(30L);
+
+  private static final AtomicInteger THREAD_COUNT =
+    new AtomicInteger();
+
+  private final PServerController controller;
+  private final PServerConfiguration configuration;
+  private final ObjectMapper mapper;
+
+  PServerImportHandler(
+    final PServerController inController,
+    final PServerConfiguration inConfiguration)
+  {
+    this.controller =
+      Objects.requireNonNull(inController, "controller");
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.mapper =
+      PImportObjectMappers.createObjectMapper();
+  }
+
+  private static void sendText(
+    final Request baseRequest,
+    final HttpServletResponse response,
+    final int status,
+    final String text)
+    throws IOException
+  {
+    final var data = (text + "\n").getBytes(UTF_8);
+    response.setStatus(status);
+    response.setContentType("text/plain");
+    response.setContentLength(data.length);
+    try (var output = response.getOutputStream()) {
+      output.write(data);
+    }
+    baseRequest.setHandled(true);
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    if (!"POST".equals(request.getMethod())) {
+      sendText(baseRequest, response, 405, "Method not allowed");
+      return;
+    }
+
+    final int parallelism;
+    final double rate;
+    try {
+      parallelism = parseParallelism(request.getParameter("parallelism"));
+      rate = parseRate(request.getParameter("rate"));
+    } catch (final IllegalArgumentException e) {
+      sendText(baseRequest, response, 400, e.getMessage());
+      return;
+    }
+
+    final var contentType =
+      Objects.requireNonNullElse(request.getContentType(), "")
+        .toLowerCase(Locale.ROOT);
+
+    final List<PServerImportReader.Entry> entries;
+    try (var reader = new BufferedReader(
+      new InputStreamReader(request.getInputStream(), UTF_8))) {
+      if (contentType.startsWith("text/csv")) {
+        entries = PServerImportReader.readCSV(reader, MAXIMUM_USERS);
+      } else if (contentType.startsWith("application/x-ndjson")
+                 || contentType.startsWith("application/json")) {
+        entries =
+          PServerImportReader.readNDJSON(reader, this.mapper, MAXIMUM_USERS);
+      } else {
+        sendText(
+          baseRequest,
+          response,
+          415,
+          "Expected text/csv or application/x-ndjson");
+        return;
+      }
+    } catch (final IOException e) {
+      sendText(baseRequest, response, 400, e.getMessage());
+      return;
+    }
+
+    LOG.info(
+      "importing {} users (parallelism {}, rate {}/s)",
+      Integer.valueOf(entries.size()),
+      Integer.valueOf(parallelism),
+      Double.valueOf(rate));
+
+    response.setStatus(200);
+    response.setContentType("application/x-ndjson");
+
+    try (var output = response.getOutputStream()) {
+      this.importAll(entries, parallelism, rate, output);
+    }
+    baseRequest.setHandled(true);
+  }
+
+  private void importAll(
+    final List<PServerImportReader.Entry> entries,
+    final int parallelism,
+    final double rate,
+    final ServletOutputStream output)
+  {
+    final var permits = new Semaphore(parallelism);
+    final var broken = new AtomicBoolean(false);
+    final var interval = (long) (1_000_000_000.0 / rate);
+    final var executor = Executors.newFixedThreadPool(parallelism, r -> {
+      final var thread = new Thread(r);
+      thread.setName(
+        String.format(
+          "com.io7m.portero.server.import[%d]",
+          Integer.valueOf(THREAD_COUNT.incrementAndGet())));
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      var next = System.nanoTime();
+      for (final var entry : entries) {
+        if (broken.get()) {
+          break;
+        }
+
+        final var user = entry.user();
+        if (entry.error() != null) {
+          final var result = new PImportResult();
+          result.line = entry.line();
+          result.userName = user == null ? null : user.userName;
+          result.status = "invalid";
+          result.error = entry.error();
+          this.write(output, result, broken);
+          continue;
+        }
+
+        final var wait = next - System.nanoTime();
+        if (wait > 0L) {
+          LockSupport.parkNanos(wait);
+        }
+        permits.acquire();
+        next = Math.max(next + interval, System.nanoTime());
+
+        executor.execute(() -> {
+          try {
+            this.write(output, this.importOne(entry), broken);
+          } finally {
+            permits.release();
+          }
+        });
+      }
+
+      permits.acquire(parallelism);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdownNow();
+      awaitTasks(executor, broken);
+    }
+  }
+
+  /*
+   * The caller closes the output stream as soon as this method returns, so
+   * every task that might still write to it must have finished by then. The
+   * executor has already interrupted the tasks, and an interrupted
+   * registration reports itself as failed promptly, so the wait is normally
+   * short. The wait itself is not interruptible: the thread's interrupt
+   * status is restored afterwards instead.
+   */
+
+  private static void awaitTasks(
+    final ExecutorService executor,
+    final AtomicBoolean broken)
+  {
+    final var deadline = System.nanoTime() + TASK_SHUTDOWN_TIMEOUT_NANOS;
+    var interrupted = false;
+
+    while (!executor.isTerminated()) {
+      final var remaining = deadline - System.nanoTime();
+      if (remaining <= 0L) {
+        LOG.warn("import tasks did not finish; discarding their results");
+        broken.set(true);
+        break;
+      }
+      try {
+        executor.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+      } catch (final InterruptedException e) {
+        interrupted = true;
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private PImportResult importOne(
+    final PServerImportReader.Entry entry)
+  {
+    final var user = entry.user();
+    final var result = new PImportResult();
+    result.line = entry.line();
+    result.userName = user.userName;
+
+    try {
+      result.userId =
+        this.controller.importUser(
+          this.configuration.matrixServerAdminRegistrationSecret(),
+          user.userName,
+          user.password
+        );
+      result.status = "registered";
+    } catch (final PServerControllerException e) {
+      result.status = "failed";
+      result.error = e.getMessage();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.status = "failed";
+      result.error = "Interrupted";
+    }
+    return result;
+  }
+
+  private void write(
+    final ServletOutputStream output,
+    final PImportResult result,
+    final AtomicBoolean broken)
+  {
+    if (broken.get()) {
+      return;
+    }
+
+    try {
+      final var data = this.mapper.writeValueAsBytes(result);
+      synchronized (output) {
+        output.write(data);
+        output.write('\n');
+        output.flush();
+      }
+    } catch (final IOException e) {
+      if (broken.compareAndSet(false, true)) {
+        LOG.warn("import client went away: ", e);
+      }
+    }
+  }
+
+  private static int parseParallelism(
+    final String text)
+  {
+    if (text == null) {
+      return DEFAULT_PARALLELISM;
+    }
+
+    final int value;
+    try {
+      value = Integer.parseInt(text);
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException("Unparseable parallelism");
+    }
+    if (value < 1 || value > MAXIMUM_PARALLELISM) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Parallelism must be in the range [1, %d]",
+          Integer.valueOf(MAXIMUM_PARALLELISM)));
+    }
+    return value;
+  }
+
+  private static double parseRate(
+    final String text)
+  {
+    if (text == null) {
+      return DEFAULT_RATE;
+    }
+
+    final double value;
+    try {
+      value = Double.parseDouble(text);
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException("Unparseable rate");
+    }
+    if (!(value > 0.0 && value <= MAXIMUM_RATE)) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Rate must be in the range (0, %.0f]",
+          Double.valueOf(MAXIMUM_RATE)));
+    }
+    return value;
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static com.io7m.portero.server.internal.PImportJSON.PImportUser;
+
+/**
+ * Functions to parse lists of users to be imported. Users are given either
+ * as CSV, one {@code user_name,password} pair per line with an optional
+ * header row, or as one JSON object per line with {@code user_name} and
+ * {@code password} fields. Lines that cannot be parsed are returned as
+ * errors so that they can be reported alongside the other results.
+ */
+
+public final class PServerImportReader
+{
+  private PServerImportReader()
+  {
+
+  }
+
+  /**
+   * Read users in CSV form.
+   *
+   * @param reader  The reader
+   * @param maximum The maximum number of users
+   *
+   * @return The parsed lines
+   *
+   * @throws IOException On I/O errors, or if there are too many users
+   */
+
+  public static List<Entry> readCSV(
+    final BufferedReader reader,
+    final int maximum)
+    throws IOException
+  {
+    Objects.requireNonNull(reader, "reader");
+
+    final var entries = new ArrayList<Entry>();
+    long lineNumber = 0L;
+    boolean first = true;
+
+    while (true) {
+      final var line = reader.readLine();
+      if (line == null) {
+        return entries;
+      }
+      ++lineNumber;
+      if (line.isBlank()) {
+        continue;
+      }
+
+      final List<String> fields;
+      try {
+        fields = parseCSVLine(line);
+      } catch (final IllegalArgumentException e) {
+        add(entries, maximum, Entry.error(lineNumber, e.getMessage()));
+        first = false;
+        continue;
+      }
+
+      if (first && isHeader(fields)) {
+        first = false;
+        continue;
+      }
+      first = false;
+
+      if (fields.size() != 2) {
+        add(entries, maximum, Entry.error(
+          lineNumber,
+          String.format(
+            "Expected 2 fields (user_name, password) but got %d",
+            Integer.valueOf(fields.size()))));
+        continue;
+      }
+
+      final var user = new PImportUser();
+      user.userName = fields.get(0).trim();
+      user.password = fields.get(1);
+      add(entries, maximum, checked(lineNumber, user));
+    }
+  }
+
+  /**
+   * Read users in newline-delimited JSON form.
+   *
+   * @param reader  The reader
+   * @param mapper  The object mapper
+   * @param maximum The maximum number of users
+   *
+   * @return The parsed lines
+   *
+   * @throws IOException On I/O errors, or if there are too many users
+   */
+
+  public static List<Entry> readNDJSON(
+    final BufferedReader reader,
+    final ObjectMapper mapper,
+    final int maximum)
+    throws IOException
+  {
+    Objects.requireNonNull(reader, "reader");
+    Objects.requireNonNull(mapper, "mapper");
+
+    final var entries = new ArrayList<Entry>();
+    long lineNumber = 0L;
+
+    while (true) {
+      final var line = reader.readLine();
+      if (line == null) {
+        return entries;
+      }
+      ++lineNumber;
+      if (line.isBlank()) {
+        continue;
+      }
+
+      final PImportUser user;
+      try {
+        user = mapper.readValue(line, PImportUser.class);
+      } catch (final IOException e) {
+        add(entries, maximum, Entry.error(lineNumber, "Malformed JSON"));
+        continue;
+      }
+      add(entries, maximum, checked(lineNumber, user));
+    }
+  }
+
+  private static Entry checked(
+    final long lineNumber,
+    final PImportUser user)
+  {
+    if (user.userName == null || user.userName.isBlank()) {
+      return Entry.error(lineNumber, "Missing user name");
+    }
+    if (user.password == null || user.password.isEmpty()) {
+      return new Entry(lineNumber, user, "Missing password");
+    }
+    return new Entry(lineNumber, user, null);
+  }
+
+  private static void add(
+    final List<Entry> entries,
+    final int maximum,
+    final Entry entry)
+    throws IOException
+  {
+    if (entries.size() >= maximum) {
+      throw new IOException(
+        String.format(
+          "Too many users (at most %d may be imported at once)",
+          Integer.valueOf(maximum)));
+    }
+    entries.add(entry);
+  }
+
+  private static boolean isHeader(
+    final List<String> fields)
+  {
+    if (fields.size() != 2) {
+      return false;
+    }
+    final var name = fields.get(0).trim();
+    return ("user_name".equalsIgnoreCase(name)
+            || "username".equalsIgnoreCase(name))
+           && "password".equalsIgnoreCase(fields.get(1).trim());
+  }
+
+  /**
+   * Split a line of CSV into fields. Fields may be quoted with double
+   * quotes, in which case commas are permitted and a doubled quote stands
+   * for a single quote.
+   *
+   * @param line The line
+   *
+   * @return The fields
+   */
+
+  static List<String> parseCSVLine(
+    final String line)
+  {
+    final var fields = new ArrayList<String>(2);
+    final var field = new StringBuilder(line.length());
+    var quoted = false;
+    var wasQuoted = false;
+
+    var cursor = 0;
+    while (cursor < line.length()) {
+      final var c = line.charAt(cursor);
+      cursor += 1;
+
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (cursor < line.length() && line.charAt(cursor) == '"') {
+          field.append('"');
+          cursor += 1;
+        } else {
+          quoted = false;
+        }
+        continue;
+      }
+
+      switch (c) {
+        case ',' -> {
+          fields.add(field.toString());
+          field.setLength(0);
+          wasQuoted = false;
+        }
+        case '"' -> {
+          if (!field.isEmpty() || wasQuoted) {
+            throw new IllegalArgumentException("Misplaced quote");
+          }
+          quoted = true;
+          wasQuoted = true;
+        }
+        default -> {
+          if (wasQuoted) {
+            throw new IllegalArgumentException("Text after closing quote");
+          }
+          field.append(c);
+        }
+      }
+    }
+
+    if (quoted) {
+      throw new IllegalArgumentException("Unterminated quote");
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  /**
+   * A parsed line of input.
+   */
+
+  public static final class Entry
+  {
+    private final long line;
+    private final PImportUser user;
+    private final String error;
+
+    /**
+     * A parsed line of input.
+     *
+     * @param inLine  The line number
+     * @param inUser  The user, if the line named one
+     * @param inError The reason the line cannot be imported, if any
+     */
+
+    public Entry(
+      final long inLine,
+      final PImportUser inUser,
+      final String inError)
+    {
+      this.line = inLine;
+      this.user = inUser;
+      this.error = inError;
+    }
+
+    private static Entry error(
+      final long inLine,
+      final String inError)
+    {
+      return new Entry(inLine, null, inError);
+    }
+
+    /**
+     * @return The line number
+     */
+
+    public long line()
+    {
+      return this.line;
+    }
+
+    /**
+     * @return The user, if the line named one
+     */
+
+    public PImportUser user()
+    {
+      return this.user;
+    }
+
+    /**
+     * @return The reason the line cannot be imported, if any
+     */
+
+    public String error()
+    {
+      return this.error;
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package com.io7m.portero.server.internal;
 
 import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.tokens.PTokenStoreFullException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.server.Request;
@@ -28,14 +29,23 @@ import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Objects;
 
 /**
- * A handler that generates an invite URL.
+ * A handler that generates invite URLs. A single invite is generated by
+ * default; the {@code count} parameter requests a batch of invites, which
+ * are issued to the token store together and returned one URL per line.
  */
 
 public final class PServerInviteHandler extends AbstractHandler
 {
+  /**
+   * The largest number of invites that can be requested at once.
+   */
+
+  public static final int MAXIMUM_BATCH = 1000;
+
   private final PServerPages pages;
   private final PServerController controller;
   private final PServerConfiguration configuration;
@@ -61,11 +71,35 @@ public final class PServerInviteHandler extends AbstractHandler
     final HttpServletResponse response)
     throws IOException
   {
-    final var token = this.controller.generateToken();
+    final int count;
+    try {
+      count = parseCount(request.getParameter("count"));
+    } catch (final IllegalArgumentException e) {
+      sendText(baseRequest, response, 400, e.getMessage());
+      return;
+    }
+
+    final List<String> tokens;
+    try {
+      if (count == 1) {
+        tokens = List.of(this.controller.generateToken());
+      } else {
+        tokens = this.controller.generateTokens(count);
+      }
+    } catch (final PTokenStoreFullException e) {
+      sendText(baseRequest, response, 503, e.getMessage());
+      return;
+    }
+
+    if (count == 1) {
+      request.setAttribute(PServerTrafficLog.TOKEN_ATTRIBUTE, tokens.get(0));
+    }
     response.setContentType("text/plain");
 
     try (var output = response.getOutputStream()) {
-      output.println(this.tokenURI(token));
+      for (final var token : tokens) {
+        output.println(this.tokenURI(token));
+      }
       output.println();
       output.println(this.tokenExpiration());
       output.flush();
@@ -73,6 +107,44 @@ public final class PServerInviteHandler extends AbstractHandler
     baseRequest.setHandled(true);
   }
 
+  private static int parseCount(
+    final String text)
+  {
+    if (text == null) {
+      return 1;
+    }
+
+    final int count;
+    try {
+      count = Integer.parseInt(text);
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException("Unparseable count");
+    }
+    if (count < 1 || count > MAXIMUM_BATCH) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Count must be in the range [1, %d]",
+          Integer.valueOf(MAXIMUM_BATCH)));
+    }
+    return count;
+  }
+
+  private static void sendText(
+    final Request baseRequest,
+    final HttpServletResponse response,
+    final int status,
+    final String message)
+    throws IOException
+  {
+    response.setStatus(status);
+    response.setContentType("text/plain");
+    try (var output = response.getOutputStream()) {
+      output.println(message);
+      output.flush();
+    }
+    baseRequest.setHandled(true);
+  }
+
   private String tokenURI(
     final String token)
   {
@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A handler that controls a Java Flight Recorder recording.
+ *
+ * <ul>
+ *   <li>{@code POST /jfr/start[?duration=PT60S]} starts a recording using
+ *   the JDK "profile" settings and every portero event.</li>
+ *   <li>{@code GET /jfr/dump} returns the events recorded so far as a
+ *   {@code .jfr} file.</li>
+ *   <li>{@code POST /jfr/stop} stops and discards the recording.</li>
+ * </ul>
+ *
+ * <p>A recording started with a duration stops by itself; its events can
+ * still be dumped until it is discarded, and a new recording can be started
+ * at any time after it has stopped. Any recording is discarded when the
+ * server stops.</p>
+ */
+
+public final class PServerJFRHandler extends AbstractHandler
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PServerJFRHandler.class);
+
+  private static final long MAXIMUM_SIZE = 256L * 1024L * 1024L;
+
+  private static final List<Class<? extends Event>> EVENTS =
+    List.of(
+      PJFRMatrixHMACEvent.class,
+      PJFRMatrixNonceEvent.class,
+      PJFRMatrixRegisterEvent.class,
+      PJFRPageRenderEvent.class,
+      PJFRTokenGenerateEvent.class,
+      PJFRTokenValidateEvent.class
+    );
+
+  private Recording recording;
+
+  PServerJFRHandler()
+  {
+
+  }
+
+  private static void sendText(
+    final Request baseRequest,
+    final HttpServletResponse response,
+    final int status,
+    final String text)
+    throws IOException
+  {
+    final var data = (text + "\n").getBytes(UTF_8);
+    response.setStatus(status);
+    response.setContentType("text/plain");
+    response.setContentLength(data.length);
+    try (var output = response.getOutputStream()) {
+      output.write(data);
+    }
+    baseRequest.setHandled(true);
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    final var method = request.getMethod();
+    switch (target) {
+      case "/start" -> {
+        if (!"POST".equals(method)) {
+          sendText(baseRequest, response, 405, "Method not allowed");
+          return;
+        }
+        this.start(baseRequest, request, response);
+      }
+      case "/dump" -> {
+        if (!"GET".equals(method)) {
+          sendText(baseRequest, response, 405, "Method not allowed");
+          return;
+        }
+        this.dump(baseRequest, response);
+      }
+      case "/stop" -> {
+        if (!"POST".equals(method)) {
+          sendText(baseRequest, response, 405, "Method not allowed");
+          return;
+        }
+        this.stop(baseRequest, response);
+      }
+      default -> {
+        sendText(baseRequest, response, 404, "Not found");
+      }
+    }
+  }
+
+  private synchronized void start(
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    this.discardIfStopped();
+    if (this.recording != null) {
+      sendText(baseRequest, response, 409, "A recording is already running");
+      return;
+    }
+
+    final Duration duration;
+    try {
+      final var durationText = request.getParameter("duration");
+      duration = durationText == null ? null : Duration.parse(durationText);
+    } catch (final DateTimeParseException e) {
+      sendText(baseRequest, response, 400, "Unparseable duration");
+      return;
+    }
+
+    final Configuration configuration;
+    try {
+      configuration = Configuration.getConfiguration("profile");
+    } catch (final ParseException e) {
+      throw new IOException(e);
+    }
+
+    final var newRecording = new Recording(configuration);
+    newRecording.setName("portero");
+    newRecording.setToDisk(true);
+    newRecording.setMaxSize(MAXIMUM_SIZE);
+    for (final var eventClass : EVENTS) {
+      newRecording.enable(eventClass);
+    }
+    if (duration != null) {
+      newRecording.setDuration(duration);
+    }
+    newRecording.start();
+    this.recording = newRecording;
+
+    LOG.info("flight recording started");
+    sendText(baseRequest, response, 200, "Recording started");
+  }
+
+  private synchronized void dump(
+    final Request baseRequest,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    if (this.recording == null) {
+      sendText(baseRequest, response, 404, "No recording is running");
+      return;
+    }
+
+    final var file = Files.createTempFile("portero-", ".jfr");
+    try {
+      this.recording.dump(file);
+      response.setStatus(200);
+      response.setContentType("application/octet-stream");
+      response.setHeader(
+        "Content-Disposition", "attachment; filename=\"portero.jfr\"");
+      response.setContentLengthLong(Files.size(file));
+      try (var output = response.getOutputStream()) {
+        Files.copy(file, output);
+      }
+      baseRequest.setHandled(true);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private synchronized void stop(
+    final Request baseRequest,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    if (this.recording == null) {
+      sendText(baseRequest, response, 404, "No recording is running");
+      return;
+    }
+
+    this.discard();
+    sendText(baseRequest, response, 200, "Recording stopped");
+  }
+
+  /**
+   * Discard a recording that was started with a duration and has since
+   * stopped by itself, so that it does not block new recordings.
+   */
+
+  private void discardIfStopped()
+  {
+    if (this.recording != null) {
+      final var state = this.recording.getState();
+      if (state == RecordingState.STOPPED || state == RecordingState.CLOSED) {
+        this.discard();
+      }
+    }
+  }
+
+  private void discard()
+  {
+    this.recording.close();
+    this.recording = null;
+    LOG.info("flight recording stopped");
+  }
+
+  @Override
+  protected void doStop()
+    throws Exception
+  {
+    synchronized (this) {
+      if (this.recording != null) {
+        this.discard();
+      }
+    }
+    super.doStop();
+  }
+}
@@ -17,23 +17,40 @@
 
 package com.io7m.portero.server.internal;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.io7m.portero.server.PServerConfiguration;
 import com.io7m.portero.server.PServerType;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.http.HttpClient;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The main server.
@@ -44,17 +61,46 @@ public final class PServerMain implements PServerType
   private static final Logger LOG =
     LoggerFactory.getLogger(PServerMain.class);
 
+  private static final Duration STOP_TIMEOUT =
+    Duration.ofSeconds(10L);
+
+  private static final int INIT_THREADS = 4;
+
   private final Server serverPrivate;
   private final PServerConfiguration configuration;
   private final Server serverPublic;
+  private final PServerController controller;
+  private final PTraceExporter traces;
+  private final PAccessLogWriter accessLog;
+  private final PTrafficRecorder traffic;
+  private final PServerHealth health;
+  private final PServerWarmup warmup;
 
   private PServerMain(
     final PServerConfiguration inConfiguration,
+    final PServerController inController,
+    final PTraceExporter inTraces,
+    final PAccessLogWriter inAccessLog,
+    final PTrafficRecorder inTraffic,
+    final PServerHealth inHealth,
+    final PServerWarmup inWarmup,
     final Server inServerPublic,
     final Server inServerPrivate)
   {
     this.configuration =
       Objects.requireNonNull(inConfiguration, "configuration");
+    this.controller =
+      Objects.requireNonNull(inController, "controller");
+    this.traces =
+      Objects.requireNonNull(inTraces, "traces");
+    this.accessLog =
+      Objects.requireNonNull(inAccessLog, "accessLog");
+    this.traffic =
+      Objects.requireNonNull(inTraffic, "traffic");
+    this.health =
+      Objects.requireNonNull(inHealth, "health");
+    this.warmup =
+      Objects.requireNonNull(inWarmup, "warmup");
     this.serverPrivate =
       Objects.requireNonNull(inServerPrivate, "server");
     this.serverPublic =
@@ -77,78 +123,467 @@ public final class PServerMain implements PServerType
   {
     Objects.requireNonNull(configuration, "configuration");
 
+    final var init =
+      Executors.newFixedThreadPool(INIT_THREADS, runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setName("com.io7m.portero.server.internal.PServerMain.init");
+        thread.setDaemon(true);
+        return thread;
+      });
+    final var resources =
+      new ArrayList<CompletableFuture<? extends AutoCloseable>>();
+
+    try {
+      return createWith(configuration, init, resources);
+    } catch (final Exception e) {
+      closeResources(resources, e);
+      throw e;
+    } finally {
+      init.shutdown();
+    }
+  }
+
+  private static PServerMain createWith(
+    final PServerConfiguration configuration,
+    final ExecutorService init,
+    final List<CompletableFuture<? extends AutoCloseable>> resources)
+    throws IOException
+  {
+    /*
+     * Loading the string and page bundles, creating the HTTP client and
+     * the object mappers, seeding the strong random number generator, and
+     * opening the log files are independent of each other and of the Jetty
+     * setup, so they are all submitted at once. The controller, which opens
+     * the token store and the audit log, is created as soon as its inputs
+     * are available. Results are only awaited once the servers have been
+     * assembled, at the point where each is needed. Every closeable
+     * resource is recorded so that it can be closed if the initialization
+     * fails.
+     */
+
+    final var stringsFuture =
+      submit(init, () -> new PServerStrings(configuration.locale()));
+    final var pagesFuture =
+      submit(init, () -> new PServerPages(configuration.locale()));
+    final var clientFuture =
+      submit(init, () -> createMatrixClient(configuration));
+    final var rngFuture =
+      submit(init, PServerController::createRandom);
+    final var signupMapperFuture =
+      submit(init, PSignupObjectMappers::createObjectMapper);
+    final var tracesFuture =
+      submit(init, () -> traceExporter(configuration));
+    final var accessLogFuture =
+      submit(init, () -> accessLogWriter(configuration));
+    final var trafficFuture =
+      submit(init, () -> trafficRecorder(configuration));
+
+    final var clusterStore =
+      new AtomicReference<PTokenStoreReplicated>();
+    final var controllerFuture =
+      CompletableFuture.allOf(stringsFuture, clientFuture, rngFuture)
+        .thenCompose(ignored -> submit(init, () -> {
+          return createController(
+            configuration,
+            stringsFuture.join(),
+            clientFuture.join(),
+            rngFuture.join(),
+            clusterStore
+          );
+        }));
+
+    resources.add(controllerFuture);
+    resources.add(tracesFuture);
+    resources.add(accessLogFuture);
+    resources.add(trafficFuture);
+
     final var publicThreadPool =
       new QueuedThreadPool(configuration.serverThreadCount(), 1);
     final var privateThreadPool =
       new QueuedThreadPool(configuration.serverThreadCount(), 1);
-
-    final var strings =
-      new PServerStrings(configuration.locale());
-    final var httpClient =
-      HttpClient.newHttpClient();
-    final var client =
-      PMatrixClient.create(
-        httpClient,
-        configuration.matrixServerAdminConnectionURI());
     final var publicServer =
       new Server(publicThreadPool);
     final var privateServer =
       new Server(privateThreadPool);
-    final var controller =
-      PServerController.create(
-        strings,
-        configuration.serverTokenExpiry(),
-        client
-      );
-
-    final var pages = new PServerPages(configuration.locale());
     final var httpConfig = new HttpConfiguration();
     httpConfig.setSendServerVersion(false);
     httpConfig.setSendXPoweredBy(false);
-
     createPublicConnectors(configuration, publicServer, httpConfig);
-    createPublicHandlers(configuration, publicServer, controller, pages);
-    createPrivateHandlers(configuration, privateServer, controller, pages);
     createPrivateConnectors(configuration, privateServer, httpConfig);
 
+    final var threadPools =
+      Map.of("public", publicThreadPool, "private", privateThreadPool);
+    final var client =
+      await(clientFuture);
+    final var health =
+      PServerHealth.create(
+        client, threadPools, configuration.serverHealthProbeInterval());
+    resources.add(CompletableFuture.completedFuture(health));
+
+    final var histograms = new PLatencyHistograms();
+    histograms.add(client.nonceLatency());
+    histograms.add(client.registerLatency());
+
+    final var pages = await(pagesFuture);
+    final var signupMapper = await(signupMapperFuture);
+    final var warmup =
+      PServerWarmup.create(configuration, pages, client, signupMapper, health);
+    resources.add(CompletableFuture.completedFuture(warmup));
+
+    final var accessLog = await(accessLogFuture);
+    final var sampling = configuration.serverAccessLogSampling();
+    final var traffic = await(trafficFuture);
+    publicServer.setRequestLog(
+      requestLog("public", accessLog, sampling, traffic));
+    privateServer.setRequestLog(
+      requestLog("private", accessLog, sampling, traffic));
+
+    final var traces = await(tracesFuture);
+    final var controller = await(controllerFuture);
+    final var publicStatistics =
+      createPublicHandlers(
+        configuration,
+        publicServer,
+        controller,
+        pages,
+        signupMapper,
+        histograms,
+        traces,
+        health
+      );
+    final var privateStatistics =
+      new StatisticsHandler();
+    final var metrics =
+      new PServerMetricsHandler(
+        controller,
+        client,
+        Map.of("public", publicStatistics, "private", privateStatistics),
+        threadPools,
+        histograms,
+        traces,
+        accessLog,
+        traffic,
+        health
+      );
+
+    createPrivateHandlers(
+      configuration,
+      privateServer,
+      controller,
+      pages,
+      clusterStore.get(),
+      privateStatistics,
+      metrics,
+      histograms,
+      traces,
+      health
+    );
+
     return new PServerMain(
       configuration,
+      controller,
+      traces,
+      accessLog,
+      traffic,
+      health,
+      warmup,
       publicServer,
       privateServer
     );
   }
 
+  private interface InitTaskType<T>
+  {
+    T execute()
+      throws IOException;
+  }
+
+  private static <T> CompletableFuture<T> submit(
+    final ExecutorService init,
+    final InitTaskType<T> task)
+  {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return task.execute();
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, init);
+  }
+
+  /**
+   * Close every resource that was created before the initialization
+   * failed, in the reverse order of creation. Resources that are still
+   * being created are waited for, so that none are left open.
+   */
+
+  private static void closeResources(
+    final List<CompletableFuture<? extends AutoCloseable>> resources,
+    final Exception failure)
+  {
+    final var reversed = new ArrayList<>(resources);
+    Collections.reverse(reversed);
+
+    for (final var future : reversed) {
+      final AutoCloseable resource;
+      try {
+        resource = future.join();
+      } catch (final CompletionException | CancellationException e) {
+        continue;
+      }
+      try {
+        resource.close();
+      } catch (final Exception e) {
+        failure.addSuppressed(e);
+      }
+    }
+  }
+
+  private static <T> T await(
+    final CompletableFuture<T> future)
+    throws IOException
+  {
+    try {
+      return future.join();
+    } catch (final CompletionException e) {
+      final var cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  static PMatrixClient createMatrixClient(
+    final PServerConfiguration configuration)
+  {
+    return PMatrixClient.create(
+      HttpClient.newHttpClient(),
+      configuration.matrixServerAdminConnectionURI());
+  }
+
+  static PServerController createController(
+    final PServerConfiguration configuration,
+    final PServerStrings strings,
+    final PMatrixClient client,
+    final SecureRandom rng,
+    final AtomicReference<PTokenStoreReplicated> clusterStore)
+    throws IOException
+  {
+    return PServerController.create(
+      PServerControllerParameters.builder()
+        .setStrings(strings)
+        .setExpiry(configuration.serverTokenExpiry())
+        .setTokenStores(tokenStores(configuration, clusterStore))
+        .setAudit(auditLog(configuration))
+        .setClient(client)
+        .setRng(rng)
+        .build()
+    );
+  }
+
+  private static PTraceExporter traceExporter(
+    final PServerConfiguration configuration)
+    throws IOException
+  {
+    final var fileOpt = configuration.serverTraceFile();
+    if (fileOpt.isPresent()) {
+      return PTraceExporter.open(
+        fileOpt.get(), PTraceExporter.DEFAULT_CAPACITY);
+    }
+    return PTraceExporter.disabled();
+  }
+
+  private static PAccessLogWriter accessLogWriter(
+    final PServerConfiguration configuration)
+    throws IOException
+  {
+    final var fileOpt = configuration.serverAccessLog();
+    if (fileOpt.isPresent()) {
+      return PAccessLogWriter.open(
+        fileOpt.get(), PAccessLogWriter.DEFAULT_CAPACITY);
+    }
+    return PAccessLogWriter.disabled();
+  }
+
+  private static PTrafficRecorder trafficRecorder(
+    final PServerConfiguration configuration)
+    throws IOException
+  {
+    final var fileOpt = configuration.serverTrafficRecording();
+    if (fileOpt.isPresent()) {
+      return PTrafficRecorder.open(
+        fileOpt.get(), PTrafficRecorder.DEFAULT_CAPACITY);
+    }
+    return PTrafficRecorder.disabled();
+  }
+
+  private static RequestLog requestLog(
+    final String server,
+    final PAccessLogWriter accessLog,
+    final Map<String, Double> sampling,
+    final PTrafficRecorder traffic)
+  {
+    final var log = new PServerAccessLog(server, accessLog, sampling);
+    if (traffic.isEnabled()) {
+      return new RequestLog.Collection(
+        log, new PServerTrafficLog(server, traffic));
+    }
+    return log;
+  }
+
+  private static PAuditLog auditLog(
+    final PServerConfiguration configuration)
+    throws IOException
+  {
+    final var fileOpt = configuration.serverAuditLog();
+    if (fileOpt.isPresent()) {
+      return PAuditLog.open(fileOpt.get());
+    }
+    return PAuditLog.disabled();
+  }
+
+  private static PTokenStoreFactoryType tokenStores(
+    final PServerConfiguration configuration,
+    final AtomicReference<PTokenStoreReplicated> clusterStore)
+    throws IOException
+  {
+    final var clusterOpt = configuration.cluster();
+    if (clusterOpt.isPresent()) {
+      final var cluster = clusterOpt.get();
+      return (expiry, onExpired) -> {
+        final var store =
+          PTokenStoreReplicated.open(cluster, expiry, onExpired);
+        clusterStore.set(store);
+        return store;
+      };
+    }
+
+    final var fileOpt = configuration.serverTokenStoreFile();
+    if (fileOpt.isPresent()) {
+      final var file = fileOpt.get();
+      return (expiry, onExpired) ->
+        PTokenStoreSharedFile.open(file, expiry, onExpired);
+    }
+    final var provider =
+      PTokenStoreProviders.find(configuration.serverTokenStore());
+    final var properties =
+      configuration.serverTokenStoreProperties();
+
+    LOG.info("using token store provider {}", provider.name());
+    return (expiry, onExpired) ->
+      provider.open(properties, expiry, onExpired);
+  }
+
   private static void createPrivateHandlers(
     final PServerConfiguration configuration,
     final Server server,
     final PServerController controller,
-    final PServerPages pages)
+    final PServerPages pages,
+    final PTokenStoreReplicated clusterStore,
+    final StatisticsHandler statistics,
+    final PServerMetricsHandler metrics,
+    final PLatencyHistograms histograms,
+    final PTraceExporter traces,
+    final PServerHealth health)
   {
-    server.setHandler(
-      new PServerInviteHandler(pages, controller, configuration));
+    final var contextInvite = new ContextHandler("/");
+    contextInvite.setHandler(
+      new PServerTimedHandler(
+        histograms.histogram("private /"),
+        new PServerInviteHandler(pages, controller, configuration)));
+
+    final var contextImport = new ContextHandler("/import");
+    contextImport.setAllowNullPathInfo(true);
+    contextImport.setHandler(
+      new PServerImportHandler(controller, configuration));
+
+    final var contextMetrics = new ContextHandler("/metrics");
+    contextMetrics.setAllowNullPathInfo(true);
+    contextMetrics.setHandler(metrics);
+
+    final var contextHealth = new ContextHandler("/health");
+    contextHealth.setHandler(new PServerHealthHandler(health));
+
+    final var contextJFR = new ContextHandler("/jfr");
+    contextJFR.setHandler(new PServerJFRHandler());
+
+    final var contextStats = new ContextHandler("/stats");
+    contextStats.setAllowNullPathInfo(true);
+    contextStats.setHandler(new PServerStatsHandler(histograms));
+
+    final var contexts = new ContextHandlerCollection();
+    contexts.addHandler(contextInvite);
+    contexts.addHandler(contextImport);
+    contexts.addHandler(contextMetrics);
+    contexts.addHandler(contextStats);
+    contexts.addHandler(contextJFR);
+    contexts.addHandler(contextHealth);
+
+    if (clusterStore != null) {
+      final var contextCluster = new ContextHandler("/cluster");
+      contextCluster.setAllowNullPathInfo(true);
+      contextCluster.setHandler(new PServerClusterHandler(clusterStore));
+      contexts.addHandler(contextCluster);
+    }
+
+    statistics.setHandler(new PServerTracingHandler(traces, contexts));
+    server.setHandler(statistics);
     server.setErrorHandler(
       new PServerErrorHandler(pages, configuration));
   }
 
-  private static void createPublicHandlers(
+  private static StatisticsHandler createPublicHandlers(
     final PServerConfiguration configuration,
     final Server server,
     final PServerController controller,
-    final PServerPages pages)
+    final PServerPages pages,
+    final ObjectMapper signupMapper,
+    final PLatencyHistograms histograms,
+    final PTraceExporter traces,
+    final PServerHealth health)
   {
     final var contextRoot = new ContextHandler("/");
-    contextRoot.setHandler(new PServerRootHandler(pages, configuration));
+    contextRoot.setHandler(
+      new PServerTimedHandler(
+        histograms.histogram("public /"),
+        new PServerRootHandler(pages, configuration)));
 
     final var contextStatic = new ContextHandler("/static");
-    contextStatic.setHandler(new PServerStaticHandler(pages, configuration));
+    contextStatic.setHandler(
+      new PServerTimedHandler(
+        histograms.histogram("public /static"),
+        new PServerStaticHandler(pages, configuration)));
 
     final var contextSignup = new ContextHandler("/signup");
     contextSignup.setHandler(
-      new PServerSignupHandler(pages, controller, configuration));
+      new PServerTimedHandler(
+        histograms.histogram("public /signup"),
+        new PServerSignupHandler(pages, controller, configuration)));
 
     final var contextSignupComplete = new ContextHandler("/signup-complete");
     contextSignupComplete.setHandler(
-      new PServerSignupCompleteHandler(pages, controller, configuration));
+      new PServerTimedHandler(
+        histograms.histogram("public /signup-complete"),
+        new PServerSignupCompleteHandler(
+          pages, controller, configuration, histograms)));
+
+    final var contextSignupAPI = new ContextHandler("/api/v1/signup");
+    contextSignupAPI.setAllowNullPathInfo(true);
+    contextSignupAPI.setHandler(
+      new PServerTimedHandler(
+        histograms.histogram("public /api/v1/signup"),
+        new PServerSignupAPIHandler(
+          controller, configuration, histograms, signupMapper)));
+
+    final var contextHealth = new ContextHandler("/health");
+    contextHealth.setHandler(new PServerHealthHandler(health));
 
     final var contexts = new ContextHandlerCollection();
     contexts.setHandlers(new Handler[]{
@@ -156,9 +591,23 @@ public final class PServerMain implements PServerType
       contextStatic,
       contextSignup,
       contextSignupComplete,
+      contextSignupAPI,
+      contextHealth,
     });
+    /*
+     * The statistics handler allows for a graceful shutdown: Connectors
+     * stop accepting new connections, and in-flight requests are allowed
+     * to complete. With shared ports, other server processes continue to
+     * accept the connections that this process no longer accepts.
+     */
+
+    final var statistics = new StatisticsHandler();
+    statistics.setHandler(new PServerTracingHandler(traces, contexts));
+
     server.setErrorHandler(new PServerErrorHandler(pages, configuration));
-    server.setHandler(contexts);
+    server.setHandler(statistics);
+    server.setStopTimeout(STOP_TIMEOUT.toMillis());
+    return statistics;
   }
 
   private static void createPrivateConnectors(
@@ -177,6 +626,7 @@ public final class PServerMain implements PServerType
       configuration.bindPrivatePort();
 
     baseConnector.setReuseAddress(true);
+    baseConnector.setReusePort(configuration.bindReusePort());
     baseConnector.setHost(bindAddress.getHostAddress());
     baseConnector.setPort(bindPort);
 
@@ -209,6 +659,7 @@ public final class PServerMain implements PServerType
       configuration.bindPublicPort();
 
     baseConnector.setReuseAddress(true);
+    baseConnector.setReusePort(configuration.bindReusePort());
     baseConnector.setHost(bindAddress.getHostAddress());
     baseConnector.setPort(bindPort);
 
@@ -229,12 +680,23 @@ public final class PServerMain implements PServerType
   public void start()
     throws Exception
   {
+    /*
+     * Both connectors are bound before either server starts, so that a
+     * port conflict on either is reported before anything else happens,
+     * and so that connections that arrive while the servers are starting
+     * wait in the accept queue rather than being refused.
+     */
+
+    openConnectors(this.serverPrivate);
+    openConnectors(this.serverPublic);
+
     LOG.info(
       "private server starting on {}:{}",
       this.configuration.bindPrivateAddress(),
       Integer.valueOf(this.configuration.bindPrivatePort())
     );
     this.serverPrivate.start();
+    this.health.start();
 
     LOG.info(
       "public server starting on {}:{}",
@@ -242,15 +704,69 @@ public final class PServerMain implements PServerType
       Integer.valueOf(this.configuration.bindPublicPort())
     );
     this.serverPublic.start();
+    this.warmup.start();
+  }
+
+  private static void openConnectors(
+    final Server server)
+    throws IOException
+  {
+    for (final var connector : server.getConnectors()) {
+      if (connector instanceof NetworkConnector) {
+        ((NetworkConnector) connector).open();
+      }
+    }
+  }
+
+  private static void closeConnectors(
+    final Server server)
+  {
+    for (final var connector : server.getConnectors()) {
+      if (connector instanceof NetworkConnector) {
+        try {
+          ((NetworkConnector) connector).close();
+        } catch (final Exception e) {
+          LOG.error("could not close connector: ", e);
+        }
+      }
+    }
   }
 
   @Override
   public void stop()
     throws Exception
   {
+    this.health.setStopping();
+    this.warmup.close();
     LOG.debug("stopping private server");
     this.serverPrivate.stop();
     LOG.debug("stopping public server");
     this.serverPublic.stop();
+
+    /*
+     * The connectors are bound before the servers start, so they must be
+     * closed explicitly in case a server failed to start.
+     */
+
+    closeConnectors(this.serverPrivate);
+    closeConnectors(this.serverPublic);
+    LOG.debug("closing token store");
+    try {
+      this.controller.close();
+    } finally {
+      try {
+        this.traces.close();
+      } finally {
+        try {
+          this.accessLog.close();
+        } finally {
+          try {
+            this.traffic.close();
+          } finally {
+            this.health.close();
+          }
+        }
+      }
+    }
   }
 }
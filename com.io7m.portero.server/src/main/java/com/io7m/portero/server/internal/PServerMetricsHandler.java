@@ -0,0 +1,596 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A handler that exposes server metrics in the Prometheus text format.
+ *
+ * Every figure is read from counters that the server maintains anyway, so
+ * producing the metrics costs nothing on the request paths; the cost of
+ * formatting is paid only when the endpoint is scraped.
+ */
+
+public final class PServerMetricsHandler extends AbstractHandler
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PServerMetricsHandler.class);
+
+  private final PServerController controller;
+  private final PMatrixClient client;
+  private final Map<String, StatisticsHandler> statistics;
+  private final Map<String, QueuedThreadPool> threadPools;
+  private final PLatencyHistograms histograms;
+  private final PTraceExporter traces;
+  private final PAccessLogWriter accessLog;
+  private final PTrafficRecorder traffic;
+  private final PServerHealth health;
+
+  PServerMetricsHandler(
+    final PServerController inController,
+    final PMatrixClient inClient,
+    final Map<String, StatisticsHandler> inStatistics,
+    final Map<String, QueuedThreadPool> inThreadPools,
+    final PLatencyHistograms inHistograms,
+    final PTraceExporter inTraces,
+    final PAccessLogWriter inAccessLog,
+    final PTrafficRecorder inTraffic,
+    final PServerHealth inHealth)
+  {
+    this.controller =
+      Objects.requireNonNull(inController, "controller");
+    this.client =
+      Objects.requireNonNull(inClient, "client");
+    this.statistics =
+      Objects.requireNonNull(inStatistics, "statistics");
+    this.threadPools =
+      Objects.requireNonNull(inThreadPools, "threadPools");
+    this.histograms =
+      Objects.requireNonNull(inHistograms, "histograms");
+    this.traces =
+      Objects.requireNonNull(inTraces, "traces");
+    this.accessLog =
+      Objects.requireNonNull(inAccessLog, "accessLog");
+    this.traffic =
+      Objects.requireNonNull(inTraffic, "traffic");
+    this.health =
+      Objects.requireNonNull(inHealth, "health");
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    if (!"GET".equals(request.getMethod())) {
+      response.setStatus(405);
+      baseRequest.setHandled(true);
+      return;
+    }
+
+    final var text = new Text();
+    this.writeHTTP(text);
+    this.writeThreads(text);
+    this.writeTokens(text);
+    this.writeEvents(text);
+    this.writeAudit(text);
+    this.writeRecorders(text);
+    this.writeMatrix(text);
+    this.writeLatencies(text);
+    writeJVM(text);
+
+    final var data = text.builder.toString().getBytes(UTF_8);
+    response.setStatus(200);
+    response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+    response.setContentLength(data.length);
+    try (var output = response.getOutputStream()) {
+      output.write(data);
+    }
+    baseRequest.setHandled(true);
+  }
+
+  private void writeHTTP(
+    final Text text)
+  {
+    text.family(
+      "portero_http_requests_total",
+      "counter",
+      "The number of HTTP requests handled");
+    for (final var entry : this.statistics.entrySet()) {
+      text.sample(
+        "portero_http_requests_total",
+        "server", entry.getKey(),
+        entry.getValue().getRequests());
+    }
+
+    text.family(
+      "portero_http_requests_active",
+      "gauge",
+      "The number of HTTP requests currently being handled");
+    for (final var entry : this.statistics.entrySet()) {
+      text.sample(
+        "portero_http_requests_active",
+        "server", entry.getKey(),
+        entry.getValue().getRequestsActive());
+    }
+
+    text.family(
+      "portero_http_responses_total",
+      "counter",
+      "The number of HTTP responses by status class");
+    for (final var entry : this.statistics.entrySet()) {
+      final var server = entry.getKey();
+      final var stats = entry.getValue();
+      text.sample2("portero_http_responses_total",
+        "server", server, "code", "1xx", stats.getResponses1xx());
+      text.sample2("portero_http_responses_total",
+        "server", server, "code", "2xx", stats.getResponses2xx());
+      text.sample2("portero_http_responses_total",
+        "server", server, "code", "3xx", stats.getResponses3xx());
+      text.sample2("portero_http_responses_total",
+        "server", server, "code", "4xx", stats.getResponses4xx());
+      text.sample2("portero_http_responses_total",
+        "server", server, "code", "5xx", stats.getResponses5xx());
+    }
+
+    text.family(
+      "portero_http_request_seconds_total",
+      "counter",
+      "The total time spent handling HTTP requests");
+    for (final var entry : this.statistics.entrySet()) {
+      text.sampleDouble(
+        "portero_http_request_seconds_total",
+        "server", entry.getKey(),
+        entry.getValue().getRequestTimeTotal() / 1000.0);
+    }
+
+    text.family(
+      "portero_http_request_seconds_max",
+      "gauge",
+      "The longest time spent handling an HTTP request");
+    for (final var entry : this.statistics.entrySet()) {
+      text.sampleDouble(
+        "portero_http_request_seconds_max",
+        "server", entry.getKey(),
+        entry.getValue().getRequestTimeMax() / 1000.0);
+    }
+  }
+
+  private void writeThreads(
+    final Text text)
+  {
+    text.family(
+      "portero_threads",
+      "gauge",
+      "The number of threads in the server thread pool");
+    for (final var entry : this.threadPools.entrySet()) {
+      text.sample(
+        "portero_threads",
+        "server", entry.getKey(),
+        entry.getValue().getThreads());
+    }
+
+    text.family(
+      "portero_threads_busy",
+      "gauge",
+      "The number of busy threads in the server thread pool");
+    for (final var entry : this.threadPools.entrySet()) {
+      text.sample(
+        "portero_threads_busy",
+        "server", entry.getKey(),
+        entry.getValue().getBusyThreads());
+    }
+
+    text.family(
+      "portero_threads_max",
+      "gauge",
+      "The maximum number of threads in the server thread pool");
+    for (final var entry : this.threadPools.entrySet()) {
+      text.sample(
+        "portero_threads_max",
+        "server", entry.getKey(),
+        entry.getValue().getMaxThreads());
+    }
+
+    text.family(
+      "portero_threads_queued_jobs",
+      "gauge",
+      "The number of jobs waiting for a thread in the server thread pool");
+    for (final var entry : this.threadPools.entrySet()) {
+      text.sample(
+        "portero_threads_queued_jobs",
+        "server", entry.getKey(),
+        entry.getValue().getQueueSize());
+    }
+  }
+
+  private void writeTokens(
+    final Text text)
+  {
+    try {
+      text.single(
+        "portero_tokens_outstanding",
+        "gauge",
+        "The number of outstanding tokens",
+        this.controller.tokenCount());
+    } catch (final IOException e) {
+      LOG.warn("could not count tokens: ", e);
+    }
+
+    text.single(
+      "portero_tokens_issued_total",
+      "counter",
+      "The number of tokens issued",
+      this.controller.tokensIssued());
+    text.single(
+      "portero_tokens_consumed_total",
+      "counter",
+      "The number of tokens consumed",
+      this.controller.tokensConsumed());
+    text.single(
+      "portero_tokens_expired_total",
+      "counter",
+      "The number of tokens that expired",
+      this.controller.tokensExpired());
+    text.single(
+      "portero_tokens_evicted_total",
+      "counter",
+      "The number of tokens evicted from a full token store",
+      this.controller.tokensEvicted());
+    text.single(
+      "portero_tokens_rejected_total",
+      "counter",
+      "The number of tokens rejected by a full token store",
+      this.controller.tokensRejected());
+    text.single(
+      "portero_users_imported_total",
+      "counter",
+      "The number of users imported without an invite",
+      this.controller.usersImported());
+  }
+
+  private void writeEvents(
+    final Text text)
+  {
+    final var expiries = this.controller.expiries();
+    text.single(
+      "portero_expiry_events_dropped_total",
+      "counter",
+      "The number of token expiry events dropped",
+      expiries.dropped());
+    text.single(
+      "portero_expiry_events_pending",
+      "gauge",
+      "The number of token expiry events waiting for delivery",
+      expiries.pending());
+
+    text.single(
+      "portero_token_events_published_total",
+      "counter",
+      "The number of token events published on the event bus",
+      this.controller.events().published());
+  }
+
+  private void writeAudit(
+    final Text text)
+  {
+    final var audit = this.controller.audit();
+    text.single(
+      "portero_audit_records_total",
+      "counter",
+      "The number of audit records written",
+      audit.written());
+    text.single(
+      "portero_audit_syncs_total",
+      "counter",
+      "The number of times the audit log was forced to storage",
+      audit.syncs());
+  }
+
+  private void writeRecorders(
+    final Text text)
+  {
+    text.single(
+      "portero_trace_spans_exported_total",
+      "counter",
+      "The number of trace spans written to the trace file",
+      this.traces.exported());
+    text.single(
+      "portero_trace_spans_dropped_total",
+      "counter",
+      "The number of trace spans dropped",
+      this.traces.dropped());
+
+    text.single(
+      "portero_access_log_written_total",
+      "counter",
+      "The number of entries written to the access log",
+      this.accessLog.written());
+    text.single(
+      "portero_access_log_dropped_total",
+      "counter",
+      "The number of access log entries dropped",
+      this.accessLog.dropped());
+
+    text.single(
+      "portero_traffic_recorded_total",
+      "counter",
+      "The number of requests written to the traffic recording",
+      this.traffic.written());
+    text.single(
+      "portero_traffic_dropped_total",
+      "counter",
+      "The number of traffic records dropped",
+      this.traffic.dropped());
+  }
+
+  private void writeMatrix(
+    final Text text)
+  {
+    text.family(
+      "portero_matrix_requests_total",
+      "counter",
+      "The number of requests made to the Matrix server");
+    text.sample(
+      "portero_matrix_requests_total",
+      "call", "nonce",
+      this.client.nonceCalls());
+    text.sample(
+      "portero_matrix_requests_total",
+      "call", "register",
+      this.client.registerCalls());
+
+    text.single(
+      "portero_matrix_failures_total",
+      "counter",
+      "The number of requests to the Matrix server that failed without a usable response",
+      this.client.failures());
+
+    text.single(
+      "portero_matrix_reachable",
+      "gauge",
+      "1 if the most recent probe of the Matrix server succeeded",
+      this.health.upstream().reachable() ? 1L : 0L);
+    text.single(
+      "portero_ready",
+      "gauge",
+      "1 if the server reports itself as ready",
+      this.health.readiness().isEmpty() ? 1L : 0L);
+
+    text.family(
+      "portero_matrix_errors_total",
+      "counter",
+      "The number of error responses from the Matrix server");
+    for (final var entry : this.client.errors().entrySet()) {
+      text.sample(
+        "portero_matrix_errors_total",
+        "errcode", entry.getKey(),
+        entry.getValue().longValue());
+    }
+  }
+
+  private void writeLatencies(
+    final Text text)
+  {
+    final var snapshots = this.histograms.snapshot();
+
+    text.family(
+      "portero_latency_seconds",
+      "summary",
+      "The latency of server routes and Matrix server requests");
+    for (final var snapshot : snapshots) {
+      final var name = snapshot.name();
+      text.quantile(name, "0.5", snapshot.p50());
+      text.quantile(name, "0.9", snapshot.p90());
+      text.quantile(name, "0.99", snapshot.p99());
+      text.quantile(name, "0.999", snapshot.p999());
+      text.sampleDouble(
+        "portero_latency_seconds_sum",
+        "name", name,
+        snapshot.mean() * snapshot.count() / 1_000_000_000.0);
+      text.sample(
+        "portero_latency_seconds_count",
+        "name", name,
+        snapshot.count());
+    }
+  }
+
+  private static void writeJVM(
+    final Text text)
+  {
+    final var memory =
+      ManagementFactory.getMemoryMXBean();
+    final var heap =
+      memory.getHeapMemoryUsage();
+    final var nonHeap =
+      memory.getNonHeapMemoryUsage();
+
+    text.family(
+      "jvm_memory_used_bytes",
+      "gauge",
+      "The amount of memory in use");
+    text.sample("jvm_memory_used_bytes", "area", "heap", heap.getUsed());
+    text.sample("jvm_memory_used_bytes", "area", "nonheap", nonHeap.getUsed());
+
+    text.family(
+      "jvm_memory_committed_bytes",
+      "gauge",
+      "The amount of memory committed");
+    text.sample(
+      "jvm_memory_committed_bytes", "area", "heap", heap.getCommitted());
+    text.sample(
+      "jvm_memory_committed_bytes", "area", "nonheap", nonHeap.getCommitted());
+
+    text.single(
+      "jvm_memory_heap_max_bytes",
+      "gauge",
+      "The maximum heap size",
+      heap.getMax());
+
+    final var collectors =
+      ManagementFactory.getGarbageCollectorMXBeans();
+
+    text.family(
+      "jvm_gc_collections_total",
+      "counter",
+      "The number of garbage collections");
+    for (final var collector : collectors) {
+      text.sample(
+        "jvm_gc_collections_total",
+        "gc", collector.getName(),
+        collector.getCollectionCount());
+    }
+
+    text.family(
+      "jvm_gc_collection_seconds_total",
+      "counter",
+      "The time spent in garbage collection");
+    for (final var collector : collectors) {
+      text.sampleDouble(
+        "jvm_gc_collection_seconds_total",
+        "gc", collector.getName(),
+        collector.getCollectionTime() / 1000.0);
+    }
+  }
+
+  private static final class Text
+  {
+    private final StringBuilder builder;
+
+    Text()
+    {
+      this.builder = new StringBuilder(4096);
+    }
+
+    void family(
+      final String name,
+      final String type,
+      final String help)
+    {
+      this.builder.append("# HELP ").append(name).append(' ').append(help);
+      this.builder.append('\n');
+      this.builder.append("# TYPE ").append(name).append(' ').append(type);
+      this.builder.append('\n');
+    }
+
+    void single(
+      final String name,
+      final String type,
+      final String help,
+      final long value)
+    {
+      this.family(name, type, help);
+      this.builder.append(name).append(' ').append(value).append('\n');
+    }
+
+    void sample(
+      final String name,
+      final String label,
+      final String labelValue,
+      final long value)
+    {
+      this.builder.append(name);
+      this.builder.append('{');
+      this.label(label, labelValue);
+      this.builder.append("} ");
+      this.builder.append(value);
+      this.builder.append('\n');
+    }
+
+    void sampleDouble(
+      final String name,
+      final String label,
+      final String labelValue,
+      final double value)
+    {
+      this.builder.append(name);
+      this.builder.append('{');
+      this.label(label, labelValue);
+      this.builder.append("} ");
+      this.builder.append(value);
+      this.builder.append('\n');
+    }
+
+    void sample2(
+      final String name,
+      final String label0,
+      final String labelValue0,
+      final String label1,
+      final String labelValue1,
+      final long value)
+    {
+      this.builder.append(name);
+      this.builder.append('{');
+      this.label(label0, labelValue0);
+      this.builder.append(',');
+      this.label(label1, labelValue1);
+      this.builder.append("} ");
+      this.builder.append(value);
+      this.builder.append('\n');
+    }
+
+    void quantile(
+      final String name,
+      final String quantile,
+      final long nanos)
+    {
+      this.builder.append("portero_latency_seconds{");
+      this.label("name", name);
+      this.builder.append(',');
+      this.label("quantile", quantile);
+      this.builder.append("} ");
+      this.builder.append(nanos / 1_000_000_000.0);
+      this.builder.append('\n');
+    }
+
+    private void label(
+      final String label,
+      final String value)
+    {
+      this.builder.append(label).append("=\"");
+      for (int index = 0; index < value.length(); ++index) {
+        final var c = value.charAt(index);
+        switch (c) {
+          case '\\' -> this.builder.append("\\\\");
+          case '"' -> this.builder.append("\\\"");
+          case '\n' -> this.builder.append("\\n");
+          default -> this.builder.append(c);
+        }
+      }
+      this.builder.append('"');
+    }
+  }
+}
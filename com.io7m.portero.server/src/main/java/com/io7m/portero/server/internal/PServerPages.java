@@ -62,7 +62,7 @@ public final class PServerPages extends JXTAbstractStrings
   public String mainPage(
     final PServerConfiguration configuration)
   {
-    return this.format(
+    return this.render(
       "mainPage",
       ESCAPE_XML10.translate(configuration.serverTitle())
     );
@@ -83,7 +83,7 @@ public final class PServerPages extends JXTAbstractStrings
     final int code,
     final String message)
   {
-    return this.format(
+    return this.render(
       "errorPage",
       ESCAPE_XML10.translate(configuration.serverTitle()),
       Integer.valueOf(code),
@@ -104,7 +104,7 @@ public final class PServerPages extends JXTAbstractStrings
     final PServerConfiguration configuration,
     final String token)
   {
-    return this.format(
+    return this.render(
       "signupPage",
       ESCAPE_XML10.translate(configuration.serverTitle()),
       ESCAPE_XML10.translate(token)
@@ -122,13 +122,30 @@ public final class PServerPages extends JXTAbstractStrings
   public String successPage(
     final PServerConfiguration configuration)
   {
-    return this.format(
+    return this.render(
       "successPage",
       ESCAPE_XML10.translate(configuration.serverTitle()),
       configuration.matrixServerPublicURI().toString()
     );
   }
 
+  private String render(
+    final String page,
+    final Object... arguments)
+  {
+    final var event = new PJFRPageRenderEvent();
+    event.begin();
+    event.page = page;
+
+    try {
+      final var text = this.format(page, arguments);
+      event.length = text.length();
+      return text;
+    } finally {
+      event.commit();
+    }
+  }
+
   /**
    * Send a page to a servlet response.
    *
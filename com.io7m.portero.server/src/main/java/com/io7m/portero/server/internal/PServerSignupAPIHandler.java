@@ -0,0 +1,335 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.server.PServerConfiguration;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.io7m.portero.server.internal.PSignupJSON.PSignupError;
+import static com.io7m.portero.server.internal.PSignupJSON.PSignupRequest;
+import static com.io7m.portero.server.internal.PSignupJSON.PSignupResponse;
+
+/**
+ * A handler that redeems invites using JSON requests and responses, for
+ * clients that do not want to use the XHTML form flow. No pages are
+ * rendered on this path. Errors carry a machine-readable code: either one
+ * of the {@code P_*} codes defined by portero, or the {@code M_*} code
+ * returned by the Matrix server.
+ */
+
+public final class PServerSignupAPIHandler extends AbstractHandler
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PServerSignupAPIHandler.class);
+
+  /**
+   * The error code used for requests that cannot be understood.
+   */
+
+  public static final String BAD_REQUEST = "P_BAD_REQUEST";
+
+  /**
+   * The largest request body accepted.
+   */
+
+  public static final int MAXIMUM_REQUEST_SIZE = 16384;
+
+  private static final Map<String, Integer> STATUS_CODES =
+    Map.ofEntries(
+      Map.entry(BAD_REQUEST, Integer.valueOf(400)),
+      Map.entry(
+        PServerControllerException.TOKEN_NONEXISTENT, Integer.valueOf(404)),
+      Map.entry(
+        PServerControllerException.TOKEN_IN_USE, Integer.valueOf(409)),
+      Map.entry(
+        PServerControllerException.IO_ERROR, Integer.valueOf(502)),
+      Map.entry("M_USER_IN_USE", Integer.valueOf(409)),
+      Map.entry("M_INVALID_USERNAME", Integer.valueOf(400)),
+      Map.entry("M_EXCLUSIVE", Integer.valueOf(400)),
+      Map.entry("M_LIMIT_EXCEEDED", Integer.valueOf(429))
+    );
+
+  private final PServerController controller;
+  private final PServerConfiguration configuration;
+  private final PLatencyHistograms histograms;
+  private final ObjectMapper mapper;
+
+  PServerSignupAPIHandler(
+    final PServerController inController,
+    final PServerConfiguration inConfiguration,
+    final PLatencyHistograms inHistograms,
+    final ObjectMapper inMapper)
+  {
+    this.controller =
+      Objects.requireNonNull(inController, "controller");
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.histograms =
+      Objects.requireNonNull(inHistograms, "histograms");
+    this.mapper =
+      Objects.requireNonNull(inMapper, "mapper");
+  }
+
+  /**
+   * Determine the HTTP status code used for an error code. Unrecognized
+   * Matrix errors are reported as a bad gateway.
+   *
+   * @param errorCode The error code
+   *
+   * @return The status code
+   */
+
+  public static int statusOf(
+    final String errorCode)
+  {
+    return STATUS_CODES.getOrDefault(errorCode, Integer.valueOf(502))
+      .intValue();
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    if (!this.checkRequest(baseRequest, request, response)) {
+      return;
+    }
+
+    final var timings = new PSignupTimings();
+    final var parseStart = System.nanoTime();
+    final var signup = this.parseRequest(baseRequest, request, response);
+    if (signup == null) {
+      return;
+    }
+
+    final var inviteRequest =
+      PInviteRequest.builder()
+        .setToken(signup.token)
+        .setPassword(signup.password)
+        .setUserName(signup.userName)
+        .setRegistrationSharedSecret(
+          this.configuration.matrixServerAdminRegistrationSecret())
+        .build();
+
+    timings.recordSince(PSignupPhase.PARSE, parseStart);
+
+    final var result = this.process(signup, inviteRequest, timings);
+
+    timings.recordInto(this.histograms);
+    LOG.info(
+      "signup timing: token={} status={} {}",
+      signup.token,
+      Integer.valueOf(result.status),
+      timings.toLogText()
+    );
+
+    if (this.configuration.serverTiming()) {
+      response.setHeader("Server-Timing", timings.toServerTiming());
+    }
+
+    this.send(baseRequest, response, result.status, result.value);
+  }
+
+  /**
+   * Check the method and content type of a request, sending an error
+   * response if either is unacceptable.
+   */
+
+  private boolean checkRequest(
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    if (!"POST".equals(request.getMethod())) {
+      response.setHeader("Allow", "POST");
+      this.sendError(
+        baseRequest, response, 405, BAD_REQUEST, "Method not allowed.");
+      return false;
+    }
+
+    final var contentType =
+      Objects.requireNonNullElse(request.getContentType(), "")
+        .toLowerCase(Locale.ROOT);
+    if (!contentType.startsWith("application/json")) {
+      this.sendError(
+        baseRequest, response, 415, BAD_REQUEST, "Expected application/json.");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Parse and validate the body of a request, sending an error response
+   * and returning {@code null} if the body is unacceptable.
+   */
+
+  private PSignupRequest parseRequest(
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    final PSignupRequest signup;
+    try (var input = request.getInputStream()) {
+      final var data = input.readNBytes(MAXIMUM_REQUEST_SIZE + 1);
+      if (data.length > MAXIMUM_REQUEST_SIZE) {
+        this.sendError(
+          baseRequest, response, 413, BAD_REQUEST, "Request too large.");
+        return null;
+      }
+      signup = this.mapper.readValue(data, PSignupRequest.class);
+    } catch (final IOException e) {
+      this.sendError(
+        baseRequest, response, 400, BAD_REQUEST, "Malformed request.");
+      return null;
+    }
+
+    if (signup.token != null) {
+      request.setAttribute(PServerTrafficLog.TOKEN_ATTRIBUTE, signup.token);
+    }
+
+    final var missing = missingField(signup);
+    if (missing != null) {
+      this.sendError(
+        baseRequest,
+        response,
+        400,
+        BAD_REQUEST,
+        String.format("Missing or invalid %s.", missing));
+      return null;
+    }
+    return signup;
+  }
+
+  /**
+   * Redeem an invite. I/O errors are logged, and reported to the client
+   * with a fixed message so that internal details are not exposed.
+   */
+
+  private Result process(
+    final PSignupRequest signup,
+    final PInviteRequest inviteRequest,
+    final PSignupTimings timings)
+  {
+    LOG.info(
+      "processing invite for token {}, user {} (api)",
+      signup.token,
+      signup.userName);
+
+    try {
+      final var created = new PSignupResponse();
+      created.userId = this.controller.processInvite(inviteRequest, timings);
+      return new Result(200, created);
+    } catch (final PServerControllerException e) {
+      final var errorCode = e.errorCode();
+      if (PServerControllerException.IO_ERROR.equals(errorCode)) {
+        LOG.error("could not process invite for token {}: ", signup.token, e);
+        return new Result(
+          statusOf(errorCode),
+          errorOf(errorCode, "The request could not be completed."));
+      }
+      return new Result(statusOf(errorCode), errorOf(errorCode, e.getMessage()));
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new Result(
+        503, errorOf(PServerControllerException.IO_ERROR, "Interrupted."));
+    }
+  }
+
+  private static PSignupError errorOf(
+    final String errorCode,
+    final String message)
+  {
+    final var error = new PSignupError();
+    error.error = errorCode;
+    error.message = message;
+    return error;
+  }
+
+  private static String missingField(
+    final PSignupRequest signup)
+  {
+    if (signup.token == null || signup.token.isBlank()) {
+      return "token";
+    }
+    if (signup.userName == null || signup.userName.isBlank()) {
+      return "user_name";
+    }
+    if (signup.password == null || signup.password.isBlank()) {
+      return "password";
+    }
+    return null;
+  }
+
+  private void sendError(
+    final Request baseRequest,
+    final HttpServletResponse response,
+    final int status,
+    final String errorCode,
+    final String message)
+    throws IOException
+  {
+    this.send(baseRequest, response, status, errorOf(errorCode, message));
+  }
+
+  private void send(
+    final Request baseRequest,
+    final HttpServletResponse response,
+    final int status,
+    final Object value)
+    throws IOException
+  {
+    final var data = this.mapper.writeValueAsBytes(value);
+    response.setStatus(status);
+    response.setContentType("application/json");
+    response.setContentLength(data.length);
+    try (var output = response.getOutputStream()) {
+      output.write(data);
+    }
+    baseRequest.setHandled(true);
+  }
+
+  private static final class Result
+  {
+    private final int status;
+    private final Object value;
+
+    Result(
+      final int inStatus,
+      final Object inValue)
+    {
+      this.status = inStatus;
+      this.value = inValue;
+    }
+  }
+}
@@ -41,11 +41,13 @@ public final class PServerSignupCompleteHandler extends AbstractHandler
   private final PServerPages pages;
   private final PServerController controller;
   private final PServerConfiguration configuration;
+  private final PLatencyHistograms histograms;
 
   PServerSignupCompleteHandler(
     final PServerPages inPages,
     final PServerController inController,
-    final PServerConfiguration inConfiguration)
+    final PServerConfiguration inConfiguration,
+    final PLatencyHistograms inHistograms)
   {
     this.pages =
       Objects.requireNonNull(inPages, "pages");
@@ -53,6 +55,8 @@ public final class PServerSignupCompleteHandler extends AbstractHandler
       Objects.requireNonNull(inController, "controller");
     this.configuration =
       Objects.requireNonNull(inConfiguration, "configuration");
+    this.histograms =
+      Objects.requireNonNull(inHistograms, "histograms");
   }
 
   @Override
@@ -63,6 +67,9 @@ public final class PServerSignupCompleteHandler extends AbstractHandler
     final HttpServletResponse response)
     throws IOException
   {
+    final var timings = new PSignupTimings();
+    final var parseStart = System.nanoTime();
+
     final var parameters = new MultiMap<String>();
     baseRequest.extractFormParameters(parameters);
 
@@ -77,6 +84,10 @@ public final class PServerSignupCompleteHandler extends AbstractHandler
     final var passwordConfirm =
       parameters.getValue("password_confirm", 0);
 
+    if (token != null) {
+      request.setAttribute(PServerTrafficLog.TOKEN_ATTRIBUTE, token);
+    }
+
     try {
       this.checkParameter(response, "token", token);
       this.checkParameter(response, "user", user);
@@ -101,30 +112,50 @@ public final class PServerSignupCompleteHandler extends AbstractHandler
       return;
     }
 
+    final var inviteRequest =
+      PInviteRequest.builder()
+        .setToken(token)
+        .setPassword(password)
+        .setUserName(user)
+        .setRegistrationSharedSecret(this.configuration.matrixServerAdminRegistrationSecret())
+        .build();
+
+    timings.recordSince(PSignupPhase.PARSE, parseStart);
+
+    int status;
+    String message;
     try {
       LOG.info("processing invite for token {}, user {}", token, user);
-
-      this.controller.processInvite(
-        PInviteRequest.builder()
-          .setToken(token)
-          .setPassword(password)
-          .setUserName(user)
-          .setRegistrationSharedSecret(this.configuration.matrixServerAdminRegistrationSecret())
-          .build()
-      );
-      this.pages.sendPage(
-        response,
-        200,
-        this.pages.successPage(this.configuration)
-      );
+      this.controller.processInvite(inviteRequest, timings);
+      status = 200;
+      message = null;
     } catch (final PServerControllerException | InterruptedException e) {
-      this.pages.sendPage(
-        response,
-        400,
-        this.pages.errorPage(this.configuration, 400, e.getMessage())
-      );
+      status = 400;
+      message = e.getMessage();
+    }
+
+    final var renderStart = System.nanoTime();
+    final String page;
+    if (status == 200) {
+      page = this.pages.successPage(this.configuration);
+    } else {
+      page = this.pages.errorPage(this.configuration, 400, message);
+    }
+    timings.recordSince(PSignupPhase.RENDER, renderStart);
+    timings.recordInto(this.histograms);
+
+    LOG.info(
+      "signup timing: token={} status={} {}",
+      token,
+      Integer.valueOf(status),
+      timings.toLogText()
+    );
+
+    if (this.configuration.serverTiming()) {
+      response.setHeader("Server-Timing", timings.toServerTiming());
     }
 
+    this.pages.sendPage(response, status, page);
     baseRequest.setHandled(true);
   }
 
@@ -69,6 +69,7 @@ public final class PServerSignupHandler extends AbstractHandler
       return;
     }
 
+    request.setAttribute(PServerTrafficLog.TOKEN_ATTRIBUTE, token);
     this.pages.sendPage(
       response,
       200,
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A handler that returns a plain text table of latency percentiles.
+ */
+
+public final class PServerStatsHandler extends AbstractHandler
+{
+  private final PLatencyHistograms histograms;
+
+  PServerStatsHandler(
+    final PLatencyHistograms inHistograms)
+  {
+    this.histograms =
+      Objects.requireNonNull(inHistograms, "histograms");
+  }
+
+  private static double millis(
+    final double nanos)
+  {
+    return nanos / 1_000_000.0;
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    final var text = new StringBuilder(1024);
+    text.append(String.format(
+      Locale.ROOT,
+      "%-24s %10s %10s %10s %10s %10s %10s%n",
+      "# name",
+      "count",
+      "p50_ms",
+      "p90_ms",
+      "p99_ms",
+      "p999_ms",
+      "max_ms"
+    ));
+
+    for (final var snapshot : this.histograms.snapshot()) {
+      text.append(String.format(
+        Locale.ROOT,
+        "%-24s %10d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+        snapshot.name(),
+        Long.valueOf(snapshot.count()),
+        Double.valueOf(millis(snapshot.p50())),
+        Double.valueOf(millis(snapshot.p90())),
+        Double.valueOf(millis(snapshot.p99())),
+        Double.valueOf(millis(snapshot.p999())),
+        Double.valueOf(millis(snapshot.max()))
+      ));
+    }
+
+    final var data = text.toString().getBytes(UTF_8);
+    response.setStatus(200);
+    response.setContentType("text/plain");
+    response.setContentLength(data.length);
+    try (var output = response.getOutputStream()) {
+      output.write(data);
+    }
+    baseRequest.setHandled(true);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A handler that opens a root trace span for every request. An incoming
+ * W3C {@code traceparent} header is honoured, so that portero's spans join
+ * a trace started by a reverse proxy.
+ */
+
+public final class PServerTracingHandler extends HandlerWrapper
+{
+  private final PTraceExporter exporter;
+
+  PServerTracingHandler(
+    final PTraceExporter inExporter,
+    final Handler inHandler)
+  {
+    this.exporter =
+      Objects.requireNonNull(inExporter, "exporter");
+    this.setHandler(Objects.requireNonNull(inHandler, "handler"));
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException, ServletException
+  {
+    final var name = request.getMethod() + " " + request.getRequestURI();
+    try (var span = PTraceSpan.openRoot(
+      this.exporter, name, request.getHeader(PTraceSpan.TRACEPARENT))) {
+      request.setAttribute(
+        PServerAccessLog.TRACE_ID_ATTRIBUTE, span.traceId());
+      try {
+        super.handle(target, baseRequest, request, response);
+      } finally {
+        span.setStatus(Integer.toString(response.getStatus()));
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.traffic.PTrafficRecord;
+import com.io7m.portero.server.traffic.PTrafficRoute;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+
+import java.util.Objects;
+
+/**
+ * A request log that submits anonymized records to a traffic recorder.
+ */
+
+public final class PServerTrafficLog implements RequestLog
+{
+  /**
+   * The request attribute that holds the invite token carried by the
+   * request, if any. Handlers that read or issue a token set this
+   * attribute so that the token can be anonymized.
+   */
+
+  public static final String TOKEN_ATTRIBUTE =
+    "com.io7m.portero.token";
+
+  private final String server;
+  private final PTrafficRecorder recorder;
+
+  /**
+   * A request log that submits anonymized records to a traffic recorder.
+   *
+   * @param inServer   The server name ({@code public} or {@code private})
+   * @param inRecorder The recorder
+   */
+
+  public PServerTrafficLog(
+    final String inServer,
+    final PTrafficRecorder inRecorder)
+  {
+    this.server =
+      Objects.requireNonNull(inServer, "server");
+    this.recorder =
+      Objects.requireNonNull(inRecorder, "recorder");
+  }
+
+  @Override
+  public void log(
+    final Request request,
+    final Response response)
+  {
+    if (!this.recorder.isEnabled()) {
+      return;
+    }
+
+    final var received = request.getTimeStamp();
+    final var token = request.getAttribute(TOKEN_ATTRIBUTE);
+    final var committed = response.getCommittedMetaData();
+    final var status =
+      committed != null ? committed.getStatus() : response.getStatus();
+
+    this.recorder.submit(
+      PTrafficRecord.builder()
+        .setTimeMicros(received * 1_000L)
+        .setRoute(PTrafficRoute.classify(this.server, request.getRequestURI()))
+        .setStatus(status)
+        .setToken(
+          token instanceof String ? this.recorder.anonymize((String) token) : 0)
+        .setRequestBytes(
+          Math.max(0L, request.getHttpInput().getContentReceived()))
+        .setResponseBytes(
+          Math.max(0L, response.getHttpChannel().getBytesWritten()))
+        .setDurationMicros(
+          Math.max(0L, System.currentTimeMillis() - received) * 1_000L)
+        .build()
+    );
+  }
+}
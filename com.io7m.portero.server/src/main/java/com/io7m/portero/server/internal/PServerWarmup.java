@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.server.PServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.io7m.portero.server.internal.PMatrixJSON.PAdminCreateUserResponse;
+import static com.io7m.portero.server.internal.PMatrixJSON.PAdminNonce;
+import static com.io7m.portero.server.internal.PMatrixJSON.PError;
+import static com.io7m.portero.server.internal.PSignupJSON.PSignupError;
+import static com.io7m.portero.server.internal.PSignupJSON.PSignupRequest;
+import static com.io7m.portero.server.internal.PSignupJSON.PSignupResponse;
+
+/**
+ * The warm-up phase run after the server starts.
+ *
+ * The warm-up repeatedly runs the CPU-bound parts of the signup path
+ * (page rendering, JSON encoding and decoding, and the registration HMAC)
+ * with made-up values, so that the classes involved are loaded and the
+ * hot methods have been compiled before the first real signup. The
+ * server's own page renderer and object mappers are used, so that any
+ * serializers they cache are built during the warm-up. It then
+ * probes the Matrix server, which both opens a connection to the server
+ * and records the upstream status used by the readiness check. The server
+ * reports itself as not ready until the warm-up completes, whether or not
+ * it succeeded.
+ */
+
+public final class PServerWarmup implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PServerWarmup.class);
+
+  private final PServerConfiguration configuration;
+  private final PServerPages pages;
+  private final PServerHealth health;
+  private final int iterations;
+  private final ObjectMapper matrixMapper;
+  private final ObjectMapper signupMapper;
+  private final ExecutorService executor;
+
+  private PServerWarmup(
+    final PServerConfiguration inConfiguration,
+    final PServerPages inPages,
+    final ObjectMapper inMatrixMapper,
+    final ObjectMapper inSignupMapper,
+    final PServerHealth inHealth,
+    final int inIterations)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.pages =
+      Objects.requireNonNull(inPages, "pages");
+    this.health =
+      Objects.requireNonNull(inHealth, "health");
+
+    if (inIterations < 0) {
+      throw new IllegalArgumentException(
+        "Warm-up iterations must be non-negative");
+    }
+    this.iterations = inIterations;
+
+    this.matrixMapper =
+      Objects.requireNonNull(inMatrixMapper, "matrixMapper");
+    this.signupMapper =
+      Objects.requireNonNull(inSignupMapper, "signupMapper");
+    this.executor =
+      Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setName("com.io7m.portero.server.internal.PServerWarmup");
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
+
+  /**
+   * Create a warm-up phase. If the configuration enables the warm-up, the
+   * server is marked as warming up immediately, so that it cannot be
+   * reported as ready before the warm-up has run.
+   *
+   * @param configuration The server configuration
+   * @param pages         The page renderer
+   * @param client        The Matrix client, whose object mapper is warmed
+   * @param signupMapper  The object mapper used by the signup API
+   * @param health        The server health
+   *
+   * @return A warm-up phase
+   */
+
+  public static PServerWarmup create(
+    final PServerConfiguration configuration,
+    final PServerPages pages,
+    final PMatrixClient client,
+    final ObjectMapper signupMapper,
+    final PServerHealth health)
+  {
+    final var warmup =
+      new PServerWarmup(
+        configuration,
+        pages,
+        client.objectMapper(),
+        signupMapper,
+        health,
+        configuration.serverWarmupIterations()
+      );
+    health.setWarmingUp(warmup.isEnabled());
+    return warmup;
+  }
+
+  /**
+   * @return {@code true} if the warm-up has any work to do
+   */
+
+  public boolean isEnabled()
+  {
+    return this.iterations > 0;
+  }
+
+  /**
+   * Run the warm-up in the background, if it is enabled.
+   */
+
+  public void start()
+  {
+    if (this.isEnabled()) {
+      this.executor.execute(this::run);
+    }
+  }
+
+  /**
+   * Run the warm-up on the current thread.
+   */
+
+  public void run()
+  {
+    LOG.info("warm-up starting ({} iterations)",
+             Integer.valueOf(this.iterations));
+
+    final var timeStart = System.nanoTime();
+    try {
+      for (int index = 0; index < this.iterations; ++index) {
+        if (Thread.currentThread().isInterrupted()) {
+          return;
+        }
+        final var token = String.format("%064x", Integer.valueOf(index));
+        this.runPages(token);
+        this.runCodecs(token);
+        this.runHMAC(token);
+      }
+      this.health.probe();
+
+      final var time = Duration.ofNanos(System.nanoTime() - timeStart);
+      LOG.info("warm-up completed in {}ms", Long.valueOf(time.toMillis()));
+    } catch (final Exception e) {
+      LOG.warn("warm-up failed: ", e);
+    } finally {
+      this.health.setWarmingUp(false);
+    }
+  }
+
+  private void runPages(
+    final String token)
+  {
+    this.pages.mainPage(this.configuration);
+    this.pages.signupPage(this.configuration, token);
+    this.pages.successPage(this.configuration);
+    this.pages.errorPage(this.configuration, 400, token);
+  }
+
+  private void runCodecs(
+    final String token)
+    throws IOException
+  {
+    final var signupRequest = new PSignupRequest();
+    signupRequest.token = token;
+    signupRequest.userName = "warmup";
+    signupRequest.password = token;
+
+    this.signupMapper.readValue(
+      this.signupMapper.writeValueAsBytes(signupRequest),
+      PSignupRequest.class);
+
+    final var signupResponse = new PSignupResponse();
+    signupResponse.userId = "@warmup:example.com";
+    this.signupMapper.writeValueAsBytes(signupResponse);
+
+    final var signupError = new PSignupError();
+    signupError.error = PServerControllerException.TOKEN_NONEXISTENT;
+    signupError.message = token;
+    this.signupMapper.writeValueAsBytes(signupError);
+
+    this.matrixMapper.readValue(
+      String.format("{\"nonce\":\"%s\"}", token),
+      PAdminNonce.class);
+    this.matrixMapper.readValue(
+      String.format(
+        "{\"access_token\":\"%s\",\"user_id\":\"@warmup:example.com\","
+          + "\"home_server\":\"example.com\",\"device_id\":\"WARMUP\"}",
+        token),
+      PAdminCreateUserResponse.class);
+    this.matrixMapper.readValue(
+      "{\"errcode\":\"M_USER_IN_USE\",\"error\":\"User ID already taken.\"}",
+      PError.class);
+  }
+
+  private void runHMAC(
+    final String token)
+  {
+    PMatrixClient.sign(token, token, "warmup", token);
+  }
+
+  @Override
+  public void close()
+  {
+    this.executor.shutdownNow();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+// CHECKSTYLE:OFF
+
+/**
+ * The messages exchanged with the JSON signup API.
+ */
+
+public final class PSignupJSON
+{
+  private PSignupJSON()
+  {
+
+  }
+
+  /**
+   * A request to redeem an invite.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PSignupRequest
+  {
+    @JsonProperty(required = true, value = "token")
+    public String token;
+    @JsonProperty(required = true, value = "user_name")
+    public String userName;
+    @JsonProperty(required = true, value = "password")
+    public String password;
+
+    public PSignupRequest()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder sb = new StringBuilder("PSignupRequest{");
+      sb.append("token='").append(this.token).append('\'');
+      sb.append(", userName='").append(this.userName).append('\'');
+      sb.append('}');
+      return sb.toString();
+    }
+  }
+
+  /**
+   * The response to a successful signup.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PSignupResponse
+  {
+    @JsonProperty(required = true, value = "user_id")
+    public String userId;
+
+    public PSignupResponse()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      return "PSignupResponse{userId='" + this.userId + "'}";
+    }
+  }
+
+  /**
+   * The response to a failed signup.
+   */
+
+  @JsonDeserialize
+  @JsonSerialize
+  public static final class PSignupError
+  {
+    @JsonProperty(required = true, value = "error")
+    public String error;
+    @JsonProperty(required = true, value = "message")
+    public String message;
+
+    public PSignupError()
+    {
+
+    }
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder sb = new StringBuilder("PSignupError{");
+      sb.append("error='").append(this.error).append('\'');
+      sb.append(", message='").append(this.message).append('\'');
+      sb.append('}');
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Set;
+
+/**
+ * JSON object mappers for the JSON signup API.
+ */
+
+public final class PSignupObjectMappers
+{
+  private PSignupObjectMappers()
+  {
+
+  }
+
+  private static Set<String> classWhitelist()
+  {
+    return Set.of(
+      "com.io7m.portero.server.internal.PSignupJSON.PSignupError",
+      "com.io7m.portero.server.internal.PSignupJSON.PSignupRequest",
+      "com.io7m.portero.server.internal.PSignupJSON.PSignupResponse",
+      "java.lang.String"
+    );
+  }
+
+  /**
+   * Create a JSON object mapper for the JSON signup API.
+   *
+   * @return A new object mapper
+   */
+
+  public static ObjectMapper createObjectMapper()
+  {
+    return PMatrixObjectMappers.createObjectMapperWith(
+      PMatrixJSONDeserializers.create(classWhitelist())
+    );
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+/**
+ * The phases of a signup request.
+ */
+
+public enum PSignupPhase
+{
+  /**
+   * Parsing and checking the submitted form.
+   */
+
+  PARSE("parse"),
+
+  /**
+   * Looking up and claiming the token.
+   */
+
+  TOKEN("token"),
+
+  /**
+   * Fetching a registration nonce from the Matrix server.
+   */
+
+  NONCE("nonce"),
+
+  /**
+   * Registering the user on the Matrix server.
+   */
+
+  REGISTER("register"),
+
+  /**
+   * Consuming the token and recording the signup in the audit log.
+   */
+
+  COMMIT("commit"),
+
+  /**
+   * Rendering the response page.
+   */
+
+  RENDER("render");
+
+  private final String metricName;
+
+  PSignupPhase(
+    final String inName)
+  {
+    this.metricName = inName;
+  }
+
+  /**
+   * @return The short name of the phase used in headers, logs, and metrics
+   */
+
+  public String metricName()
+  {
+    return this.metricName;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The time spent in each phase of a single signup request. Instances are
+ * confined to the thread handling the request.
+ */
+
+public final class PSignupTimings
+{
+  private static final PSignupPhase[] PHASES = PSignupPhase.values();
+
+  private final long[] nanos;
+  private final boolean[] recorded;
+
+  /**
+   * Create an empty set of timings.
+   */
+
+  public PSignupTimings()
+  {
+    this.nanos = new long[PHASES.length];
+    this.recorded = new boolean[PHASES.length];
+  }
+
+  /**
+   * Record the time elapsed since the given {@link System#nanoTime()} value
+   * as time spent in the given phase.
+   *
+   * @param phase      The phase
+   * @param startNanos The start time
+   *
+   * @return The current time
+   */
+
+  public long recordSince(
+    final PSignupPhase phase,
+    final long startNanos)
+  {
+    Objects.requireNonNull(phase, "phase");
+
+    final var now = System.nanoTime();
+    this.nanos[phase.ordinal()] += now - startNanos;
+    this.recorded[phase.ordinal()] = true;
+    return now;
+  }
+
+  /**
+   * @param phase The phase
+   *
+   * @return {@code true} if any time was recorded for the phase
+   */
+
+  public boolean isRecorded(
+    final PSignupPhase phase)
+  {
+    return this.recorded[phase.ordinal()];
+  }
+
+  /**
+   * @param phase The phase
+   *
+   * @return The time spent in the phase, in nanoseconds
+   */
+
+  public long nanos(
+    final PSignupPhase phase)
+  {
+    return this.nanos[phase.ordinal()];
+  }
+
+  /**
+   * Record every phase into the histograms named {@code "signup <phase>"}.
+   *
+   * @param histograms The histograms
+   */
+
+  public void recordInto(
+    final PLatencyHistograms histograms)
+  {
+    for (final var phase : PHASES) {
+      if (this.recorded[phase.ordinal()]) {
+        histograms.histogram("signup " + phase.metricName())
+          .record(this.nanos[phase.ordinal()]);
+      }
+    }
+  }
+
+  /**
+   * @return The timings as the value of a {@code Server-Timing} header
+   */
+
+  public String toServerTiming()
+  {
+    final var text = new StringBuilder(128);
+    for (final var phase : PHASES) {
+      if (this.recorded[phase.ordinal()]) {
+        if (!text.isEmpty()) {
+          text.append(", ");
+        }
+        text.append(phase.metricName());
+        text.append(";dur=");
+        text.append(millis(this.nanos[phase.ordinal()]));
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * @return The timings as a sequence of {@code name=milliseconds} pairs
+   */
+
+  public String toLogText()
+  {
+    final var text = new StringBuilder(128);
+    for (final var phase : PHASES) {
+      if (this.recorded[phase.ordinal()]) {
+        if (!text.isEmpty()) {
+          text.append(' ');
+        }
+        text.append(phase.metricName());
+        text.append("_ms=");
+        text.append(millis(this.nanos[phase.ordinal()]));
+      }
+    }
+    return text.toString();
+  }
+
+  private static String millis(
+    final long nanos)
+  {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+  }
+}
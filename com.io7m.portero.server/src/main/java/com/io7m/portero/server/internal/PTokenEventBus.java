@@ -0,0 +1,386 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.tokens.PTokenEventConsumerType;
+import com.io7m.portero.server.tokens.PTokenEventKind;
+import com.io7m.portero.server.tokens.PTokenEventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-process bus for token lifecycle events.
+ *
+ * Events are written into a fixed ring of preallocated slots, so
+ * publishing an event allocates nothing and takes no locks: A publisher
+ * claims a sequence number with a single atomic increment, and writes the
+ * event into the slot for that sequence number. Each subscriber has its own
+ * thread and its own position in the ring, and never blocks publishers. A
+ * subscriber that falls more than a ring's length behind loses the
+ * overwritten events, and is told how many events it lost.
+ */
+
+public final class PTokenEventBus implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTokenEventBus.class);
+
+  /**
+   * The default number of slots in the ring.
+   */
+
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private static final long EMPTY = -1L;
+  private static final long WRITING = Long.MIN_VALUE;
+  private static final int SPINS = 100;
+  private static final long PARK_NANOS = 1_000_000L;
+
+  private static final AtomicLongFieldUpdater<Slot> SLOT_SEQUENCE =
+    AtomicLongFieldUpdater.newUpdater(Slot.class, "sequence");
+
+  private final Slot[] slots;
+  private final long mask;
+  private final AtomicLong next;
+  private final CopyOnWriteArrayList<Subscription> subscriptions;
+
+  private static final class Slot
+  {
+    private volatile long sequence;
+    private volatile PTokenEventKind kind;
+    private volatile String token;
+    private volatile String userId;
+    private volatile long timeMillis;
+
+    Slot()
+    {
+      this.sequence = EMPTY;
+    }
+  }
+
+  private static final class View implements PTokenEventType
+  {
+    private long sequence;
+    private PTokenEventKind kind;
+    private String token;
+    private String userId;
+    private long timeMillis;
+
+    View()
+    {
+
+    }
+
+    @Override
+    public long sequence()
+    {
+      return this.sequence;
+    }
+
+    @Override
+    public PTokenEventKind kind()
+    {
+      return this.kind;
+    }
+
+    @Override
+    public String token()
+    {
+      return this.token;
+    }
+
+    @Override
+    public String userId()
+    {
+      return this.userId;
+    }
+
+    @Override
+    public long timeMillis()
+    {
+      return this.timeMillis;
+    }
+  }
+
+  private PTokenEventBus(
+    final int capacity)
+  {
+    if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+        "Capacity must be a power of two greater than one");
+    }
+
+    this.slots = new Slot[capacity];
+    for (int index = 0; index < capacity; ++index) {
+      this.slots[index] = new Slot();
+    }
+    this.mask = capacity - 1L;
+    this.next = new AtomicLong(0L);
+    this.subscriptions = new CopyOnWriteArrayList<>();
+  }
+
+  /**
+   * Create an event bus with the default capacity.
+   *
+   * @return An event bus
+   */
+
+  public static PTokenEventBus create()
+  {
+    return create(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create an event bus.
+   *
+   * @param capacity The number of slots in the ring (a power of two)
+   *
+   * @return An event bus
+   */
+
+  public static PTokenEventBus create(
+    final int capacity)
+  {
+    return new PTokenEventBus(capacity);
+  }
+
+  /**
+   * Publish an event.
+   *
+   * @param kind   The kind of event
+   * @param token  The token
+   * @param userId The Matrix user ID, if any
+   */
+
+  public void publish(
+    final PTokenEventKind kind,
+    final String token,
+    final String userId)
+  {
+    final var sequence = this.next.getAndIncrement();
+    final var slot = this.slots[(int) (sequence & this.mask)];
+
+    /*
+     * A slot is only ever contended if publishers have lapped the ring
+     * while this publisher was writing. A publisher never overwrites a
+     * newer event with an older one.
+     */
+
+    while (true) {
+      final var current = slot.sequence;
+      if (current == WRITING) {
+        Thread.onSpinWait();
+        continue;
+      }
+      if (current > sequence) {
+        return;
+      }
+      if (SLOT_SEQUENCE.compareAndSet(slot, current, WRITING)) {
+        break;
+      }
+    }
+
+    slot.kind = kind;
+    slot.token = token;
+    slot.userId = userId == null ? "" : userId;
+    slot.timeMillis = System.currentTimeMillis();
+    slot.sequence = sequence;
+  }
+
+  /**
+   * @return The number of events published
+   */
+
+  public long published()
+  {
+    return this.next.get();
+  }
+
+  /**
+   * Subscribe to events published after this method returns.
+   *
+   * @param name     The name of the subscriber, used to name its thread
+   * @param consumer The consumer
+   *
+   * @return The subscription
+   */
+
+  public Subscription subscribe(
+    final String name,
+    final PTokenEventConsumerType consumer)
+  {
+    Objects.requireNonNull(name, "name");
+    Objects.requireNonNull(consumer, "consumer");
+
+    final var subscription =
+      new Subscription(this, name, consumer, this.next.get());
+    this.subscriptions.add(subscription);
+    subscription.thread.start();
+    return subscription;
+  }
+
+  @Override
+  public void close()
+  {
+    for (final var subscription : this.subscriptions) {
+      subscription.close();
+    }
+  }
+
+  /**
+   * A subscription to the event bus.
+   */
+
+  public static final class Subscription implements AutoCloseable
+  {
+    private final PTokenEventBus bus;
+    private final PTokenEventConsumerType consumer;
+    private final Thread thread;
+    private final View view;
+    private final AtomicLong lost;
+    private volatile boolean running;
+    private volatile long cursor;
+
+    private Subscription(
+      final PTokenEventBus inBus,
+      final String name,
+      final PTokenEventConsumerType inConsumer,
+      final long inCursor)
+    {
+      this.bus = inBus;
+      this.consumer = inConsumer;
+      this.cursor = inCursor;
+      this.view = new View();
+      this.lost = new AtomicLong();
+      this.running = true;
+      this.thread = new Thread(this::run);
+      this.thread.setName(
+        "com.io7m.portero.server.internal.PTokenEventBus." + name);
+      this.thread.setDaemon(true);
+    }
+
+    /**
+     * @return The number of events this subscriber has processed or lost
+     */
+
+    public long position()
+    {
+      return this.cursor;
+    }
+
+    /**
+     * @return The number of events this subscriber has lost
+     */
+
+    public long lost()
+    {
+      return this.lost.get();
+    }
+
+    private void run()
+    {
+      var idle = 0;
+      while (this.running || this.cursor < this.bus.next.get()) {
+        if (this.poll()) {
+          idle = 0;
+          continue;
+        }
+        if (!this.running) {
+          return;
+        }
+        if (idle < SPINS) {
+          ++idle;
+          Thread.onSpinWait();
+        } else {
+          LockSupport.parkNanos(PARK_NANOS);
+        }
+      }
+    }
+
+    private boolean poll()
+    {
+      final var position = this.cursor;
+      final var slot = this.bus.slots[(int) (position & this.bus.mask)];
+
+      final var before = slot.sequence;
+      if (before == WRITING || before < position) {
+        return false;
+      }
+
+      if (before == position) {
+        this.view.sequence = position;
+        this.view.kind = slot.kind;
+        this.view.token = slot.token;
+        this.view.userId = slot.userId;
+        this.view.timeMillis = slot.timeMillis;
+
+        if (slot.sequence == position) {
+          try {
+            this.consumer.onEvent(this.view);
+          } catch (final Exception e) {
+            LOG.error("event consumer failed: ", e);
+          }
+          this.cursor = position + 1L;
+          return true;
+        }
+      }
+
+      /*
+       * The slot has been overwritten. Skip to the oldest event that
+       * could still be in the ring.
+       */
+
+      final var oldest = this.bus.next.get() - this.bus.slots.length;
+      final var resume = Math.max(position + 1L, oldest);
+      final var count = resume - position;
+      this.lost.addAndGet(count);
+      this.cursor = resume;
+
+      try {
+        this.consumer.onEventsLost(count);
+      } catch (final Exception e) {
+        LOG.error("event consumer failed: ", e);
+      }
+      return true;
+    }
+
+    /**
+     * Stop the subscription, after delivering any events already published.
+     */
+
+    @Override
+    public void close()
+    {
+      this.running = false;
+      this.bus.subscriptions.remove(this);
+      if (Thread.currentThread() != this.thread) {
+        try {
+          this.thread.join(5_000L);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
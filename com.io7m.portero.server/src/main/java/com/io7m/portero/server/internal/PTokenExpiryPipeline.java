@@ -0,0 +1,291 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.tokens.PTokenExpiryListenerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An asynchronous pipeline for token expiry events.
+ *
+ * Token stores report expired tokens from their own sweeper threads, often
+ * many tokens at once. The pipeline accepts each expired token into a
+ * bounded queue, and a single background thread drains the queue in
+ * batches, logging each batch once and passing it to every registered
+ * listener. If the queue is full, the reporting thread waits for a short
+ * time for space to become available, slowing the sweeper down; if no
+ * space becomes available, the event is dropped and counted.
+ */
+
+public final class PTokenExpiryPipeline implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTokenExpiryPipeline.class);
+
+  /**
+   * The default queue capacity.
+   */
+
+  public static final int DEFAULT_CAPACITY = 65536;
+
+  /**
+   * The default maximum batch size.
+   */
+
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+
+  /**
+   * The default time a reporting thread waits for queue space.
+   */
+
+  public static final Duration DEFAULT_OFFER_TIMEOUT = Duration.ofMillis(100L);
+
+  private final ArrayBlockingQueue<String> queue;
+  private final int batchSize;
+  private final long offerTimeoutNanos;
+  private final CopyOnWriteArrayList<PTokenExpiryListenerType> listeners;
+  private final LongAdder accepted;
+  private final LongAdder delivered;
+  private final LongAdder dropped;
+  private final AtomicBoolean closed;
+  private final Thread thread;
+
+  private PTokenExpiryPipeline(
+    final int inCapacity,
+    final int inBatchSize,
+    final Duration inOfferTimeout)
+  {
+    if (inCapacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    if (inBatchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive");
+    }
+
+    this.queue = new ArrayBlockingQueue<>(inCapacity);
+    this.batchSize = inBatchSize;
+    this.offerTimeoutNanos =
+      Objects.requireNonNull(inOfferTimeout, "offerTimeout").toNanos();
+    this.listeners = new CopyOnWriteArrayList<>();
+    this.accepted = new LongAdder();
+    this.delivered = new LongAdder();
+    this.dropped = new LongAdder();
+    this.closed = new AtomicBoolean(false);
+
+    this.thread = new Thread(this::run);
+    this.thread.setName(
+      "com.io7m.portero.server.internal.PTokenExpiryPipeline");
+    this.thread.setDaemon(true);
+  }
+
+  /**
+   * Create and start a pipeline with the default settings.
+   *
+   * @return A pipeline
+   */
+
+  public static PTokenExpiryPipeline create()
+  {
+    return create(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_OFFER_TIMEOUT);
+  }
+
+  /**
+   * Create and start a pipeline.
+   *
+   * @param capacity     The queue capacity
+   * @param batchSize    The maximum number of events delivered at once
+   * @param offerTimeout The time a reporting thread waits for queue space
+   *
+   * @return A pipeline
+   */
+
+  public static PTokenExpiryPipeline create(
+    final int capacity,
+    final int batchSize,
+    final Duration offerTimeout)
+  {
+    final var pipeline =
+      new PTokenExpiryPipeline(capacity, batchSize, offerTimeout);
+    pipeline.thread.start();
+    return pipeline;
+  }
+
+  /**
+   * Add a listener.
+   *
+   * @param listener The listener
+   */
+
+  public void addListener(
+    final PTokenExpiryListenerType listener)
+  {
+    this.listeners.add(Objects.requireNonNull(listener, "listener"));
+  }
+
+  /**
+   * Report that a token has expired. This method may block for a short
+   * time if the queue is full.
+   *
+   * @param token The token
+   */
+
+  public void submit(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+
+    if (this.closed.get()) {
+      this.dropped.increment();
+      return;
+    }
+
+    try {
+      final var offered =
+        this.queue.offer(token, this.offerTimeoutNanos, TimeUnit.NANOSECONDS);
+      if (offered) {
+        this.accepted.increment();
+        return;
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.dropped.increment();
+  }
+
+  /**
+   * @return The number of events accepted into the queue
+   */
+
+  public long accepted()
+  {
+    return this.accepted.sum();
+  }
+
+  /**
+   * @return The number of events delivered to the log and listeners
+   */
+
+  public long delivered()
+  {
+    return this.delivered.sum();
+  }
+
+  /**
+   * @return The number of events dropped because the queue was full
+   */
+
+  public long dropped()
+  {
+    return this.dropped.sum();
+  }
+
+  /**
+   * @return The number of events waiting in the queue
+   */
+
+  public int pending()
+  {
+    return this.queue.size();
+  }
+
+  private void run()
+  {
+    final var batch = new ArrayList<String>(this.batchSize);
+
+    while (true) {
+      try {
+        final var first = this.queue.poll(100L, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          if (this.closed.get()) {
+            return;
+          }
+          continue;
+        }
+        batch.add(first);
+      } catch (final InterruptedException e) {
+        if (this.closed.get()) {
+          this.queue.drainTo(batch);
+          this.deliver(batch);
+          return;
+        }
+        continue;
+      }
+
+      this.queue.drainTo(batch, this.batchSize - 1);
+      this.deliver(batch);
+      batch.clear();
+    }
+  }
+
+  private void deliver(
+    final List<String> batch)
+  {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    final var size = batch.size();
+    if (size == 1) {
+      LOG.info("token {} expired", batch.get(0));
+    } else {
+      LOG.info("{} tokens expired", Integer.valueOf(size));
+      if (LOG.isDebugEnabled()) {
+        for (final var token : batch) {
+          LOG.debug("token {} expired", token);
+        }
+      }
+    }
+
+    final var view = List.copyOf(batch);
+    for (final var listener : this.listeners) {
+      try {
+        listener.onTokensExpired(view);
+      } catch (final Exception e) {
+        LOG.error("expiry listener failed: ", e);
+      }
+    }
+    this.delivered.add(size);
+  }
+
+  /**
+   * Stop the pipeline, delivering any events remaining in the queue.
+   */
+
+  @Override
+  public void close()
+  {
+    if (this.closed.compareAndSet(false, true)) {
+      try {
+        this.thread.join(5_000L);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.tokens.PTokenStoreEvictionPolicy;
+import com.io7m.portero.server.tokens.PTokenStoreFullException;
+import com.io7m.portero.server.tokens.PTokenStoreType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static com.io7m.portero.server.tokens.PTokenStoreEvictionPolicy.EVICT_OLDEST;
+
+/**
+ * A token store that holds tokens in memory. Tokens are lost when the
+ * server process exits.
+ *
+ * Every token is issued with the same lifetime, so the order in which
+ * tokens are issued is also the order in which they expire. Tokens are
+ * held in a map that preserves insertion order: The oldest token is always
+ * at the head of the map, so both expiring and evicting tokens take
+ * constant time per token. The number of outstanding tokens is bounded.
+ * Tokens that have expired are removed before the bound is checked, and
+ * tokens issued to a full store either evict the oldest tokens or are
+ * rejected, according to the store's eviction policy. A list of tokens is
+ * checked against the bound as a whole, so either every token in the list
+ * is issued or none are. Evicted tokens are passed to the expiry function
+ * in the same way as expired tokens.
+ *
+ * All expiry decisions are made against the store's clock, so a store
+ * given a virtual clock can be driven through months of token lifetimes
+ * in moments by advancing the clock and calling {@link #expire()}.
+ */
+
+public final class PTokenStoreMemory implements PTokenStoreType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTokenStoreMemory.class);
+
+  /**
+   * The default maximum number of outstanding tokens.
+   */
+
+  public static final int DEFAULT_LIMIT = 100_000;
+
+  /**
+   * The default eviction policy.
+   */
+
+  public static final PTokenStoreEvictionPolicy DEFAULT_POLICY =
+    PTokenStoreEvictionPolicy.REJECT_NEW;
+
+  private final LinkedHashMap<String, Entry> tokens;
+  private final long expiryMillis;
+  private final int limit;
+  private final PTokenStoreEvictionPolicy policy;
+  private final Consumer<String> onExpired;
+  private final Clock clock;
+  private final ScheduledExecutorService sweeper;
+  private final AtomicLong evictions;
+  private final AtomicLong rejections;
+
+  private static final class Entry
+  {
+    private final long expires;
+    private boolean claimed;
+
+    Entry(
+      final long inExpires)
+    {
+      this.expires = inExpires;
+    }
+  }
+
+  private PTokenStoreMemory(
+    final Duration inExpiry,
+    final int inLimit,
+    final PTokenStoreEvictionPolicy inPolicy,
+    final Clock inClock,
+    final Consumer<String> inOnExpired)
+  {
+    this.expiryMillis =
+      Objects.requireNonNull(inExpiry, "inExpiry").toMillis();
+    this.policy =
+      Objects.requireNonNull(inPolicy, "policy");
+    this.clock =
+      Objects.requireNonNull(inClock, "clock");
+    this.onExpired =
+      Objects.requireNonNull(inOnExpired, "onExpired");
+
+    if (inLimit < 1) {
+      throw new IllegalArgumentException(
+        "Token limit must be positive");
+    }
+
+    this.limit = inLimit;
+    this.tokens = new LinkedHashMap<>();
+    this.evictions = new AtomicLong();
+    this.rejections = new AtomicLong();
+
+    this.sweeper =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        final var thread = new Thread(r);
+        thread.setName(
+          "com.io7m.portero.server.internal.PTokenStoreMemory.sweeper");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    final var period =
+      Math.max(100L, Math.min(60_000L, this.expiryMillis / 4L));
+
+    this.sweeper.scheduleAtFixedRate(
+      this::expire,
+      period,
+      period,
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  /**
+   * Create a new memory-based token store with the default limit and
+   * eviction policy.
+   *
+   * @param expiry    The expiration time for individual tokens
+   * @param onExpired A function called whenever a token expires
+   *
+   * @return A new token store
+   */
+
+  public static PTokenStoreType create(
+    final Duration expiry,
+    final Consumer<String> onExpired)
+  {
+    return create(expiry, DEFAULT_LIMIT, DEFAULT_POLICY, onExpired);
+  }
+
+  /**
+   * Create a new memory-based token store.
+   *
+   * @param expiry    The expiration time for individual tokens
+   * @param limit     The maximum number of outstanding tokens
+   * @param policy    The policy applied when the store is full
+   * @param onExpired A function called whenever a token expires
+   *
+   * @return A new token store
+   */
+
+  public static PTokenStoreType create(
+    final Duration expiry,
+    final int limit,
+    final PTokenStoreEvictionPolicy policy,
+    final Consumer<String> onExpired)
+  {
+    return create(expiry, limit, policy, Clock.systemUTC(), onExpired);
+  }
+
+  /**
+   * Create a new memory-based token store that reads the time from the
+   * given clock.
+   *
+   * @param expiry    The expiration time for individual tokens
+   * @param limit     The maximum number of outstanding tokens
+   * @param policy    The policy applied when the store is full
+   * @param clock     The clock
+   * @param onExpired A function called whenever a token expires
+   *
+   * @return A new token store
+   */
+
+  public static PTokenStoreMemory create(
+    final Duration expiry,
+    final int limit,
+    final PTokenStoreEvictionPolicy policy,
+    final Clock clock,
+    final Consumer<String> onExpired)
+  {
+    return new PTokenStoreMemory(expiry, limit, policy, clock, onExpired);
+  }
+
+  private boolean isLive(
+    final Entry entry)
+  {
+    return entry != null && entry.expires > this.clock.millis();
+  }
+
+  @Override
+  public boolean issue(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+    return !this.issueAll(List.of(token)).isEmpty();
+  }
+
+  @Override
+  public List<String> issueAll(
+    final List<String> newTokens)
+  {
+    Objects.requireNonNull(newTokens, "tokens");
+
+    final var removed = new ArrayList<String>();
+    try {
+      synchronized (this) {
+        return this.issueAllLocked(newTokens, removed);
+      }
+    } finally {
+      this.notifyExpired(removed);
+    }
+  }
+
+  private List<String> issueAllLocked(
+    final List<String> newTokens,
+    final ArrayList<String> removed)
+  {
+    final var timeNow = this.clock.millis();
+    this.expireHead(timeNow, removed);
+
+    final var fresh = new LinkedHashSet<String>(newTokens.size());
+    for (final var token : newTokens) {
+      if (!this.tokens.containsKey(token)) {
+        fresh.add(token);
+      }
+    }
+
+    final var excess = this.tokens.size() + fresh.size() - this.limit;
+    if (excess > 0) {
+      if (this.policy == EVICT_OLDEST && this.canEvict(excess)) {
+        this.evictOldest(excess, removed);
+        this.evictions.addAndGet(excess);
+      } else {
+        this.rejections.incrementAndGet();
+        throw new PTokenStoreFullException(
+          String.format(
+            "Too many outstanding tokens (limit %d)",
+            Integer.valueOf(this.limit))
+        );
+      }
+    }
+
+    final var expires = timeNow + this.expiryMillis;
+    for (final var token : fresh) {
+      this.tokens.put(token, new Entry(expires));
+    }
+    return List.copyOf(fresh);
+  }
+
+  /**
+   * Determine whether enough tokens that are not claimed exist to evict
+   * the given number of tokens. A claimed token is being redeemed, and
+   * evicting it would cause the redemption to fail after the user has been
+   * registered.
+   *
+   * @param count The number of tokens
+   *
+   * @return {@code true} if {@code count} tokens can be evicted
+   */
+
+  private boolean canEvict(
+    final int count)
+  {
+    var evictable = 0;
+    for (final var entry : this.tokens.values()) {
+      if (!entry.claimed && ++evictable == count) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void evictOldest(
+    final int count,
+    final ArrayList<String> removed)
+  {
+    var evicted = 0;
+    final var iterator = this.tokens.entrySet().iterator();
+    while (evicted < count && iterator.hasNext()) {
+      final var oldest = iterator.next();
+      if (!oldest.getValue().claimed) {
+        iterator.remove();
+        removed.add(oldest.getKey());
+        LOG.debug("evicted token {}", oldest.getKey());
+        ++evicted;
+      }
+    }
+  }
+
+  private void expireHead(
+    final long timeNow,
+    final ArrayList<String> removed)
+  {
+    final var iterator = this.tokens.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final var entry = iterator.next();
+      if (entry.getValue().expires > timeNow) {
+        break;
+      }
+      iterator.remove();
+      removed.add(entry.getKey());
+    }
+  }
+
+  private void notifyExpired(
+    final List<String> removed)
+  {
+    for (final var token : removed) {
+      try {
+        this.onExpired.accept(token);
+      } catch (final Exception e) {
+        LOG.error("expiry listener failed: ", e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized boolean isValid(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+    return this.isLive(this.tokens.get(token));
+  }
+
+  @Override
+  public synchronized boolean claim(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+
+    final var entry = this.tokens.get(token);
+    if (!this.isLive(entry) || entry.claimed) {
+      return false;
+    }
+    entry.claimed = true;
+    return true;
+  }
+
+  @Override
+  public synchronized void release(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+
+    final var entry = this.tokens.get(token);
+    if (entry != null) {
+      entry.claimed = false;
+    }
+  }
+
+  @Override
+  public synchronized boolean consume(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+    return this.isLive(this.tokens.remove(token));
+  }
+
+  @Override
+  public synchronized int size()
+  {
+    return this.tokens.size();
+  }
+
+  @Override
+  public long evictions()
+  {
+    return this.evictions.get();
+  }
+
+  @Override
+  public long rejections()
+  {
+    return this.rejections.get();
+  }
+
+  /**
+   * Remove every token whose expiry time has passed, and pass each one to
+   * the expiry function. This is called periodically by a background
+   * thread, but may also be called directly.
+   *
+   * @return The number of tokens that expired
+   */
+
+  public int expire()
+  {
+    final var expired = new ArrayList<String>();
+
+    synchronized (this) {
+      this.expireHead(this.clock.millis(), expired);
+    }
+
+    this.notifyExpired(expired);
+    return expired.size();
+  }
+
+  @Override
+  public void close()
+  {
+    this.sweeper.shutdown();
+    synchronized (this) {
+      this.tokens.clear();
+    }
+  }
+}
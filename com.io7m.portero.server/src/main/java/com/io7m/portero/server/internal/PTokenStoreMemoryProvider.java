@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.tokens.PTokenStoreEvictionPolicy;
+import com.io7m.portero.server.tokens.PTokenStoreProviderType;
+import com.io7m.portero.server.tokens.PTokenStoreType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The provider of memory-based token stores. This is the default provider.
+ *
+ * The provider recognizes the following properties:
+ *
+ * <ul>
+ *   <li>{@code limit}: The maximum number of outstanding tokens</li>
+ *   <li>{@code evictionPolicy}: The policy applied when the limit is
+ *   reached ({@code EVICT_OLDEST} or {@code REJECT_NEW})</li>
+ * </ul>
+ */
+
+public final class PTokenStoreMemoryProvider implements PTokenStoreProviderType
+{
+  /**
+   * The provider of memory-based token stores.
+   */
+
+  public PTokenStoreMemoryProvider()
+  {
+
+  }
+
+  @Override
+  public String name()
+  {
+    return "memory";
+  }
+
+  @Override
+  public PTokenStoreType open(
+    final Map<String, String> properties,
+    final Duration expiry,
+    final Consumer<String> onExpired)
+    throws IOException
+  {
+    final int limit;
+    final PTokenStoreEvictionPolicy policy;
+    try {
+      limit = Integer.parseInt(
+        properties.getOrDefault(
+          "limit",
+          Integer.toString(PTokenStoreMemory.DEFAULT_LIMIT))
+      );
+      policy = PTokenStoreEvictionPolicy.valueOf(
+        properties.getOrDefault(
+          "evictionPolicy",
+          PTokenStoreMemory.DEFAULT_POLICY.name())
+      );
+      return PTokenStoreMemory.create(expiry, limit, policy, onExpired);
+    } catch (final IllegalArgumentException e) {
+      throw new IOException("Invalid memory token store configuration", e);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.tokens.PTokenStoreProviderType;
+
+import java.io.IOException;
+import java.util.ServiceLoader;
+import java.util.TreeSet;
+
+/**
+ * Functions to locate token store providers.
+ */
+
+public final class PTokenStoreProviders
+{
+  private PTokenStoreProviders()
+  {
+
+  }
+
+  /**
+   * Find the token store provider with the given name.
+   *
+   * @param name The provider name
+   *
+   * @return The provider
+   *
+   * @throws IOException If no provider has the given name
+   */
+
+  public static PTokenStoreProviderType find(
+    final String name)
+    throws IOException
+  {
+    final var names = new TreeSet<String>();
+    final var providers =
+      ServiceLoader.load(PTokenStoreProviderType.class);
+    for (final var provider : providers) {
+      if (provider.name().equals(name)) {
+        return provider;
+      }
+      names.add(provider.name());
+    }
+
+    throw new IOException(
+      String.format(
+        "No token store provider named '%s' is available (available: %s)",
+        name,
+        names)
+    );
+  }
+}
@@ -0,0 +1,1080 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.server.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.server.PServerClusterConfiguration;
+import com.io7m.portero.server.tokens.PTokenStoreType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterClaim;
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterClaimResponse;
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterConsume;
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterLogEntry;
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterReplicate;
+import static com.io7m.portero.server.internal.PClusterJSON.PClusterReplicateResponse;
+
+/**
+ * A token store that replicates token events between the nodes of a
+ * cluster.
+ *
+ * Every node holds a complete copy of the token table, and appends the
+ * events that originate on the node (issue, consume, expire) to a local
+ * log. The log is pushed to every other node in order, and each node
+ * acknowledges the highest contiguous sequence number that it has applied.
+ * Entries are discarded once every other node that is not considered down
+ * has acknowledged them. A node that returns after being considered down,
+ * and has therefore missed discarded entries, is sent a snapshot of the
+ * token table instead.
+ *
+ * Consuming a token requires a claim granted by a majority of the nodes in
+ * the cluster. A node grants a claim on a token to at most one node at a
+ * time, and refuses claims on tokens that it knows to have been consumed,
+ * so two nodes can never both hold a claim on the same token. Each claim
+ * attempt carries its own identifier, and a release only clears the claim
+ * with the matching identifier, so a release that arrives late cannot
+ * clear a newer claim. A claim held by a node that fails lapses after a
+ * fixed lease. The consumption itself is sent directly to every other
+ * node, and retried until a majority of the nodes have recorded it, so a
+ * token cannot be claimed again after the lease lapses even if the
+ * consuming node fails before its log is replicated. If a majority cannot
+ * be reached, the consumption still succeeds locally, and the other nodes
+ * learn about it from the log.
+ *
+ * Nodes with nothing to replicate send each other empty batches as
+ * heartbeats, and any successful response from a node counts as contact,
+ * so an idle cluster does not consider its nodes down.
+ *
+ * A node that restarts loses its copy of the table, and only learns about
+ * events that occur after it rejoins the cluster.
+ */
+
+public final class PTokenStoreReplicated implements PTokenStoreType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTokenStoreReplicated.class);
+
+  private static final Duration CLAIM_LEASE = Duration.ofMinutes(5L);
+  private static final int BATCH_SIZE = 1000;
+  private static final int CLAIM_ATTEMPTS = 5;
+
+  private static final String TYPE_ISSUE = "issue";
+  private static final String TYPE_CONSUME = "consume";
+  private static final String TYPE_EXPIRE = "expire";
+
+  private final PServerClusterConfiguration configuration;
+  private final String nodeId;
+  private final String epoch;
+  private final long expiryMillis;
+  private final Consumer<String> onExpired;
+  private final HttpClient client;
+  private final ObjectMapper mapper;
+  private final List<Peer> peers;
+  private final ScheduledExecutorService executor;
+
+  private final HashMap<String, Entry> tokens;
+  private final HashMap<String, Origin> origins;
+  private final ArrayList<PClusterLogEntry> log;
+  private long logFirst;
+  private long logNext;
+  private int liveCount;
+
+  private static final class Entry
+  {
+    private final String origin;
+    private long expires;
+    private boolean live;
+    private boolean consumed;
+    private String holder;
+    private String holderClaim;
+    private long holderUntil;
+
+    Entry(
+      final String inOrigin)
+    {
+      this.origin = inOrigin;
+    }
+
+    boolean isClaimedBy(
+      final String node,
+      final long timeNow)
+    {
+      return this.holder != null
+        && this.holderUntil > timeNow
+        && this.holder.equals(node);
+    }
+
+    boolean isClaimedBy(
+      final String node,
+      final String claim,
+      final long timeNow)
+    {
+      return this.isClaimedBy(node, timeNow)
+        && Objects.equals(this.holderClaim, claim);
+    }
+
+    void clearHolder()
+    {
+      this.holder = null;
+      this.holderClaim = null;
+    }
+
+    boolean isClaimedByOther(
+      final String node,
+      final long timeNow)
+    {
+      return this.holder != null
+        && this.holderUntil > timeNow
+        && !this.holder.equals(node);
+    }
+  }
+
+  private enum ClaimResult
+  {
+    GRANTED,
+    REFUSED,
+    CONTENDED
+  }
+
+  private static final class Origin
+  {
+    private String epoch;
+    private long applied;
+
+    Origin()
+    {
+
+    }
+  }
+
+  private static final class Peer
+  {
+    private final URI base;
+    private final AtomicBoolean sending;
+    private volatile long acked;
+    private volatile long lastContact;
+    private volatile boolean down;
+
+    Peer(
+      final URI inBase)
+    {
+      this.base = Objects.requireNonNull(inBase, "base");
+      this.sending = new AtomicBoolean(false);
+      this.lastContact = System.currentTimeMillis();
+    }
+  }
+
+  private PTokenStoreReplicated(
+    final PServerClusterConfiguration inConfiguration,
+    final HttpClient inClient,
+    final Duration inExpiry,
+    final Consumer<String> inOnExpired)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.client =
+      Objects.requireNonNull(inClient, "client");
+    this.expiryMillis =
+      Objects.requireNonNull(inExpiry, "expiry").toMillis();
+    this.onExpired =
+      Objects.requireNonNull(inOnExpired, "onExpired");
+
+    this.nodeId = this.configuration.nodeId();
+    this.epoch = UUID.randomUUID().toString();
+    this.mapper = PClusterObjectMappers.createObjectMapper();
+    this.tokens = new HashMap<>();
+    this.origins = new HashMap<>();
+    this.log = new ArrayList<>();
+    this.logFirst = 1L;
+    this.logNext = 1L;
+
+    this.peers =
+      this.configuration.peers()
+        .stream()
+        .map(Peer::new)
+        .toList();
+
+    this.executor =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        final var thread = new Thread(r);
+        thread.setName(
+          "com.io7m.portero.server.internal.PTokenStoreReplicated."
+            + this.nodeId);
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    final var replicateMillis =
+      this.configuration.replicationInterval().toMillis();
+    this.executor.scheduleWithFixedDelay(
+      this::replicate,
+      replicateMillis,
+      replicateMillis,
+      TimeUnit.MILLISECONDS
+    );
+
+    final var sweepMillis =
+      Math.max(100L, Math.min(1_000L, this.expiryMillis / 4L));
+    this.executor.scheduleWithFixedDelay(
+      this::sweep,
+      sweepMillis,
+      sweepMillis,
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  /**
+   * Open a replicated token store.
+   *
+   * @param configuration The cluster configuration
+   * @param expiry        The expiration time for individual tokens
+   * @param onExpired     A function called whenever a token expires
+   *
+   * @return A token store
+   */
+
+  public static PTokenStoreReplicated open(
+    final PServerClusterConfiguration configuration,
+    final Duration expiry,
+    final Consumer<String> onExpired)
+  {
+    final var client =
+      HttpClient.newBuilder()
+        .connectTimeout(configuration.requestTimeout())
+        .build();
+
+    LOG.info(
+      "cluster node {} starting with {} peers",
+      configuration.nodeId(),
+      Integer.valueOf(configuration.peers().size())
+    );
+    return new PTokenStoreReplicated(configuration, client, expiry, onExpired);
+  }
+
+  private void append(
+    final String type,
+    final String token,
+    final long expires)
+  {
+    final var entry = new PClusterLogEntry();
+    entry.sequence = this.logNext;
+    entry.type = type;
+    entry.token = token;
+    entry.expires = expires;
+    this.log.add(entry);
+    ++this.logNext;
+  }
+
+  private Entry createLive(
+    final String origin,
+    final String token,
+    final long expires)
+  {
+    final var entry = new Entry(origin);
+    entry.expires = expires;
+    entry.live = true;
+    this.tokens.put(token, entry);
+    ++this.liveCount;
+    return entry;
+  }
+
+  private boolean markConsumed(
+    final String token,
+    final long expires)
+  {
+    var entry = this.tokens.get(token);
+    if (entry == null) {
+      entry = new Entry(this.nodeId);
+      this.tokens.put(token, entry);
+    }
+
+    final var wasLive = entry.live;
+    if (wasLive) {
+      --this.liveCount;
+    }
+    entry.live = false;
+    entry.consumed = true;
+    entry.clearHolder();
+    entry.expires = Math.max(entry.expires, expires);
+    return wasLive;
+  }
+
+  @Override
+  public boolean issue(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+
+    synchronized (this) {
+      if (this.tokens.containsKey(token)) {
+        return false;
+      }
+      final var expires = System.currentTimeMillis() + this.expiryMillis;
+      this.createLive(this.nodeId, token, expires);
+      this.append(TYPE_ISSUE, token, expires);
+      return true;
+    }
+  }
+
+  @Override
+  public synchronized boolean isValid(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+
+    final var entry = this.tokens.get(token);
+    return entry != null
+      && entry.live
+      && entry.expires > System.currentTimeMillis();
+  }
+
+  @Override
+  public boolean claim(
+    final String token)
+    throws IOException
+  {
+    Objects.requireNonNull(token, "token");
+
+    /*
+     * If several nodes try to claim the same token at the same time, it's
+     * possible for none of them to obtain a majority. Each node releases
+     * its partial claim and tries again after a random delay.
+     */
+
+    for (int attempt = 1; attempt <= CLAIM_ATTEMPTS; ++attempt) {
+      switch (this.tryClaim(token)) {
+        case GRANTED -> {
+          return true;
+        }
+        case REFUSED -> {
+          return false;
+        }
+        case CONTENDED -> {
+          try {
+            Thread.sleep(
+              ThreadLocalRandom.current().nextLong(10L, 50L) * attempt);
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private ClaimResult tryClaim(
+    final String token)
+    throws IOException
+  {
+    final var claimId = UUID.randomUUID().toString();
+
+    synchronized (this) {
+      final var timeNow = System.currentTimeMillis();
+      final var entry = this.tokens.get(token);
+      if (entry == null || !entry.live || entry.expires <= timeNow) {
+        return ClaimResult.REFUSED;
+      }
+      if (entry.holder != null && entry.holderUntil > timeNow) {
+        return ClaimResult.REFUSED;
+      }
+      entry.holder = this.nodeId;
+      entry.holderClaim = claimId;
+      entry.holderUntil = timeNow + CLAIM_LEASE.toMillis();
+    }
+
+    final var request = new PClusterClaim();
+    request.node = this.nodeId;
+    request.token = token;
+    request.claim = claimId;
+
+    final var body = this.mapper.writeValueAsBytes(request);
+    final var responses =
+      new ArrayList<CompletableFuture<HttpResponse<byte[]>>>();
+    for (final var peer : this.peers) {
+      responses.add(this.post(peer, "/cluster/claim", body));
+    }
+
+    var granted = 1;
+    for (final var future : responses) {
+      if (this.claimGranted(future)) {
+        ++granted;
+      }
+    }
+
+    if (granted >= this.majority()) {
+      LOG.debug(
+        "claim on {} granted by {}/{} nodes",
+        token,
+        Integer.valueOf(granted),
+        Integer.valueOf(this.peers.size() + 1)
+      );
+      return ClaimResult.GRANTED;
+    }
+
+    LOG.debug(
+      "claim on {} granted by only {}/{} nodes",
+      token,
+      Integer.valueOf(granted),
+      Integer.valueOf(this.peers.size() + 1)
+    );
+    this.releaseClaim(token, claimId);
+    return ClaimResult.CONTENDED;
+  }
+
+  private int majority()
+  {
+    return ((this.peers.size() + 1) / 2) + 1;
+  }
+
+  private HttpResponse<byte[]> await(
+    final CompletableFuture<HttpResponse<byte[]>> future)
+  {
+    try {
+      final var response =
+        future.get(
+          this.configuration.requestTimeout().toMillis(),
+          TimeUnit.MILLISECONDS
+        );
+      if (response.statusCode() != 200) {
+        LOG.debug(
+          "request to {} failed: status {}",
+          response.uri(),
+          Integer.valueOf(response.statusCode()));
+        return null;
+      }
+      return response;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (final ExecutionException | TimeoutException e) {
+      LOG.debug("request failed: ", e);
+      return null;
+    }
+  }
+
+  private boolean claimGranted(
+    final CompletableFuture<HttpResponse<byte[]>> future)
+  {
+    final var response = this.await(future);
+    if (response == null) {
+      return false;
+    }
+
+    try {
+      return this.mapper.readValue(
+        response.body(),
+        PClusterClaimResponse.class
+      ).granted;
+    } catch (final IOException e) {
+      LOG.debug("claim response was malformed: ", e);
+      return false;
+    }
+  }
+
+  @Override
+  public void release(
+    final String token)
+    throws IOException
+  {
+    Objects.requireNonNull(token, "token");
+
+    final String claimId;
+    synchronized (this) {
+      final var entry = this.tokens.get(token);
+      if (entry == null || !this.nodeId.equals(entry.holder)) {
+        return;
+      }
+      claimId = entry.holderClaim;
+    }
+    this.releaseClaim(token, claimId);
+  }
+
+  private void releaseClaim(
+    final String token,
+    final String claimId)
+    throws IOException
+  {
+    synchronized (this) {
+      final var entry = this.tokens.get(token);
+      if (entry != null && entry.consumed) {
+        /*
+         * A token that was consumed here but whose consumption did not
+         * reach a majority keeps its claims on the other nodes until the
+         * lease lapses, giving the log time to deliver the consumption.
+         */
+
+        return;
+      }
+      if (entry != null
+        && this.nodeId.equals(entry.holder)
+        && Objects.equals(entry.holderClaim, claimId)) {
+        entry.clearHolder();
+      }
+    }
+
+    final var request = new PClusterClaim();
+    request.node = this.nodeId;
+    request.token = token;
+    request.claim = claimId;
+
+    final var body = this.mapper.writeValueAsBytes(request);
+    for (final var peer : this.peers) {
+      this.post(peer, "/cluster/release", body);
+    }
+  }
+
+  @Override
+  public boolean consume(
+    final String token)
+    throws IOException
+  {
+    Objects.requireNonNull(token, "token");
+
+    final var request = new PClusterConsume();
+    request.node = this.nodeId;
+    request.token = token;
+
+    final boolean consumed;
+    synchronized (this) {
+      final var expires = System.currentTimeMillis() + this.expiryMillis;
+      consumed = this.markConsumed(token, expires);
+      this.append(TYPE_CONSUME, token, expires);
+      request.expires = expires;
+    }
+
+    final var body = this.mapper.writeValueAsBytes(request);
+    var acknowledged = 1;
+    for (int attempt = 1; attempt <= CLAIM_ATTEMPTS; ++attempt) {
+      final var responses =
+        new ArrayList<CompletableFuture<HttpResponse<byte[]>>>();
+      for (final var peer : this.peers) {
+        responses.add(this.post(peer, "/cluster/consume", body));
+      }
+
+      acknowledged = 1;
+      for (final var future : responses) {
+        if (this.await(future) != null) {
+          ++acknowledged;
+        }
+      }
+      if (acknowledged >= this.majority()) {
+        return consumed;
+      }
+
+      try {
+        Thread.sleep(
+          ThreadLocalRandom.current().nextLong(10L, 50L) * attempt);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    /*
+     * The consumption is recorded here and in the log, so the other nodes
+     * will learn about it once they can be reached. Failing here would
+     * tell the caller that the token was not consumed when it was.
+     */
+
+    LOG.warn(
+      "consumption of token {} was recorded by only {}/{} nodes",
+      token,
+      Integer.valueOf(acknowledged),
+      Integer.valueOf(this.peers.size() + 1)
+    );
+    return consumed;
+  }
+
+  @Override
+  public synchronized int size()
+  {
+    return this.liveCount;
+  }
+
+  /**
+   * Handle a claim request from another node.
+   *
+   * @param request The request
+   *
+   * @return The response
+   */
+
+  public synchronized PClusterClaimResponse onClaim(
+    final PClusterClaim request)
+  {
+    Objects.requireNonNull(request, "request");
+
+    final var timeNow = System.currentTimeMillis();
+    final var response = new PClusterClaimResponse();
+
+    var entry = this.tokens.get(request.token);
+    if (entry == null) {
+      /*
+       * The token may have been issued on a node whose events have not yet
+       * reached this node. Record the claim so that no other node can be
+       * granted a claim on the token in the meantime.
+       */
+
+      entry = new Entry(request.node);
+      entry.expires = timeNow + CLAIM_LEASE.toMillis();
+      this.tokens.put(request.token, entry);
+    }
+
+    if (entry.consumed || entry.isClaimedByOther(request.node, timeNow)) {
+      response.granted = false;
+      return response;
+    }
+
+    entry.holder = request.node;
+    entry.holderClaim = request.claim;
+    entry.holderUntil = timeNow + CLAIM_LEASE.toMillis();
+    response.granted = true;
+    return response;
+  }
+
+  /**
+   * Handle a consumption on another node.
+   *
+   * @param request The request
+   */
+
+  public synchronized void onConsume(
+    final PClusterConsume request)
+  {
+    Objects.requireNonNull(request, "request");
+    this.markConsumed(request.token, request.expires);
+  }
+
+  /**
+   * @return The number of events held in the log for other nodes
+   */
+
+  public synchronized int logSize()
+  {
+    return this.log.size();
+  }
+
+  /**
+   * Handle a claim release from another node.
+   *
+   * @param request The request
+   */
+
+  public synchronized void onRelease(
+    final PClusterClaim request)
+  {
+    Objects.requireNonNull(request, "request");
+
+    final var entry = this.tokens.get(request.token);
+    if (entry != null
+      && entry.isClaimedBy(
+      request.node, request.claim, System.currentTimeMillis())) {
+      entry.clearHolder();
+    }
+  }
+
+  /**
+   * Handle a batch of log entries from another node.
+   *
+   * @param request The request
+   *
+   * @return The response
+   */
+
+  public PClusterReplicateResponse onReplicate(
+    final PClusterReplicate request)
+  {
+    Objects.requireNonNull(request, "request");
+
+    final var expired = new ArrayList<String>();
+    final var response = new PClusterReplicateResponse();
+
+    synchronized (this) {
+      final var origin =
+        this.origins.computeIfAbsent(request.node, k -> new Origin());
+
+      if (request.snapshot) {
+        this.applySnapshot(origin, request, expired);
+      } else {
+        this.applyEntries(origin, request, expired);
+      }
+      response.applied = origin.applied;
+    }
+
+    for (final var token : expired) {
+      this.onExpired.accept(token);
+    }
+    return response;
+  }
+
+  private void applySnapshot(
+    final Origin origin,
+    final PClusterReplicate request,
+    final ArrayList<String> expired)
+  {
+    origin.epoch = request.epoch;
+    for (final var entry : request.entries) {
+      this.apply(request.node, entry, expired);
+    }
+    origin.applied = request.sequence;
+  }
+
+  private void applyEntries(
+    final Origin origin,
+    final PClusterReplicate request,
+    final ArrayList<String> expired)
+  {
+    if (!Objects.equals(origin.epoch, request.epoch)) {
+      /*
+       * The origin node is new to us, or has restarted. Accept its log
+       * from whatever point it currently starts.
+       */
+
+      origin.epoch = request.epoch;
+      origin.applied =
+        request.entries.isEmpty()
+          ? request.sequence
+          : request.entries.get(0).sequence - 1L;
+    }
+
+    for (final var entry : request.entries) {
+      if (entry.sequence <= origin.applied) {
+        continue;
+      }
+      if (entry.sequence != origin.applied + 1L) {
+        break;
+      }
+      this.apply(request.node, entry, expired);
+      origin.applied = entry.sequence;
+    }
+  }
+
+  private void apply(
+    final String origin,
+    final PClusterLogEntry entry,
+    final ArrayList<String> expired)
+  {
+    switch (entry.type) {
+      case TYPE_ISSUE -> {
+        final var existing = this.tokens.get(entry.token);
+        if (existing == null) {
+          this.createLive(origin, entry.token, entry.expires);
+        } else if (!existing.live && !existing.consumed) {
+          /*
+           * The token was claimed before its issue event arrived.
+           */
+
+          final var created =
+            this.createLive(origin, entry.token, entry.expires);
+          created.holder = existing.holder;
+          created.holderClaim = existing.holderClaim;
+          created.holderUntil = existing.holderUntil;
+        }
+      }
+      case TYPE_CONSUME -> {
+        this.markConsumed(entry.token, entry.expires);
+      }
+      case TYPE_EXPIRE -> {
+        final var existing = this.tokens.get(entry.token);
+        if (existing != null && existing.live) {
+          this.tokens.remove(entry.token);
+          --this.liveCount;
+          expired.add(entry.token);
+        }
+      }
+      default -> {
+        LOG.warn("ignoring unrecognized log entry type {}", entry.type);
+      }
+    }
+  }
+
+  private void sweep()
+  {
+    final var expired = new ArrayList<String>();
+
+    synchronized (this) {
+      final var timeNow = System.currentTimeMillis();
+      final var iterator = this.tokens.entrySet().iterator();
+      while (iterator.hasNext()) {
+        final var mapEntry = iterator.next();
+        final var entry = mapEntry.getValue();
+        if (entry.expires > timeNow) {
+          continue;
+        }
+        if (entry.live) {
+          --this.liveCount;
+          expired.add(mapEntry.getKey());
+          if (this.nodeId.equals(entry.origin)) {
+            this.append(TYPE_EXPIRE, mapEntry.getKey(), entry.expires);
+          }
+        }
+        iterator.remove();
+      }
+    }
+
+    for (final var token : expired) {
+      try {
+        this.onExpired.accept(token);
+      } catch (final Exception e) {
+        LOG.error("expiry listener failed: ", e);
+      }
+    }
+  }
+
+  private CompletableFuture<HttpResponse<byte[]>> post(
+    final Peer peer,
+    final String path,
+    final byte[] body)
+  {
+    final var request =
+      HttpRequest.newBuilder(peer.base.resolve(path))
+        .timeout(this.configuration.requestTimeout())
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+        .build();
+
+    return this.client.sendAsync(
+      request,
+      HttpResponse.BodyHandlers.ofByteArray()
+    ).whenComplete((response, exception) -> {
+      if (response != null && response.statusCode() == 200) {
+        this.contacted(peer);
+      }
+    });
+  }
+
+  private void contacted(
+    final Peer peer)
+  {
+    peer.lastContact = System.currentTimeMillis();
+    if (peer.down) {
+      peer.down = false;
+      LOG.info("peer {} is responding again", peer.base);
+    }
+  }
+
+  private void replicate()
+  {
+    final var heartbeatMillis =
+      this.configuration.peerTimeout().toMillis() / 4L;
+
+    for (final var peer : this.peers) {
+      if (!peer.sending.compareAndSet(false, true)) {
+        continue;
+      }
+
+      try {
+        /*
+         * An empty batch is still sent as a heartbeat if the peer has not
+         * been heard from recently, so that an idle peer is not mistaken
+         * for a failed one.
+         */
+
+        final var batch = this.batchFor(peer);
+        final var idleMillis = System.currentTimeMillis() - peer.lastContact;
+        if (!batch.snapshot
+          && batch.entries.isEmpty()
+          && idleMillis < heartbeatMillis) {
+          peer.sending.set(false);
+          continue;
+        }
+
+        final var body = this.mapper.writeValueAsBytes(batch);
+        this.post(peer, "/cluster/replicate", body)
+          .whenComplete((response, exception) -> {
+            try {
+              this.onReplicated(peer, response, exception);
+            } finally {
+              peer.sending.set(false);
+            }
+          });
+      } catch (final Exception e) {
+        LOG.error("replication to {} failed: ", peer.base, e);
+        peer.sending.set(false);
+      }
+    }
+
+    this.truncateLog();
+  }
+
+  private synchronized PClusterReplicate batchFor(
+    final Peer peer)
+  {
+    final var batch = new PClusterReplicate();
+    batch.node = this.nodeId;
+    batch.epoch = this.epoch;
+
+    if (peer.acked + 1L < this.logFirst) {
+      return this.snapshot(batch);
+    }
+
+    final var start =
+      (int) Math.max(0L, (peer.acked + 1L) - this.logFirst);
+    final var end =
+      Math.min(this.log.size(), start + BATCH_SIZE);
+
+    if (start < end) {
+      batch.entries = new ArrayList<>(this.log.subList(start, end));
+    } else {
+      batch.sequence = this.logNext - 1L;
+    }
+    return batch;
+  }
+
+  private PClusterReplicate snapshot(
+    final PClusterReplicate batch)
+  {
+    /*
+     * The table reflects every event in the log, so the receiving node can
+     * continue from the end of the log. Only tokens issued here are sent
+     * as live; the receiving node learns about the others from the nodes
+     * that issued them.
+     */
+
+    batch.snapshot = true;
+    batch.sequence = this.logNext - 1L;
+
+    for (final var mapEntry : this.tokens.entrySet()) {
+      final var entry = mapEntry.getValue();
+      final String type;
+      if (entry.consumed) {
+        type = TYPE_CONSUME;
+      } else if (entry.live && this.nodeId.equals(entry.origin)) {
+        type = TYPE_ISSUE;
+      } else {
+        continue;
+      }
+
+      final var logEntry = new PClusterLogEntry();
+      logEntry.type = type;
+      logEntry.token = mapEntry.getKey();
+      logEntry.expires = entry.expires;
+      batch.entries.add(logEntry);
+    }
+
+    LOG.info(
+      "sending a snapshot of {} tokens to a node that missed events",
+      Integer.valueOf(batch.entries.size()));
+    return batch;
+  }
+
+  private void onReplicated(
+    final Peer peer,
+    final HttpResponse<byte[]> response,
+    final Throwable exception)
+  {
+    if (exception != null) {
+      LOG.debug("replication to {} failed: ", peer.base, exception);
+      return;
+    }
+
+    if (response.statusCode() != 200) {
+      LOG.warn(
+        "replication to {} failed: status {}",
+        peer.base,
+        Integer.valueOf(response.statusCode())
+      );
+      return;
+    }
+
+    try {
+      final var result =
+        this.mapper.readValue(
+          response.body(),
+          PClusterReplicateResponse.class
+        );
+      peer.acked = result.applied;
+      this.contacted(peer);
+    } catch (final IOException e) {
+      LOG.warn("replication to {} failed: ", peer.base, e);
+      return;
+    }
+
+    this.truncateLog();
+  }
+
+  private synchronized void truncateLog()
+  {
+    final var timeNow = System.currentTimeMillis();
+    final var timeout = this.configuration.peerTimeout().toMillis();
+
+    var minimum = this.logNext - 1L;
+    for (final var peer : this.peers) {
+      if (timeNow - peer.lastContact > timeout) {
+        if (!peer.down) {
+          peer.down = true;
+          LOG.warn(
+            "peer {} has not responded for {}ms and is considered down",
+            peer.base,
+            Long.valueOf(timeNow - peer.lastContact));
+        }
+        continue;
+      }
+      minimum = Math.min(minimum, peer.acked);
+    }
+
+    final var count = (int) Math.max(0L, (minimum + 1L) - this.logFirst);
+    if (count > 0) {
+      this.log.subList(0, Math.min(count, this.log.size())).clear();
+      this.logFirst += count;
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    this.executor.shutdown();
+    try {
+      this.executor.awaitTermination(5L, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "[PTokenStoreReplicated %s %s]",
+      this.nodeId,
+      this.epoch
+    );
+  }
+}
@@ -0,0 +1,713 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.tokens.PTokenStoreFullException;
+import com.io7m.portero.server.tokens.PTokenStoreType;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A token store that holds tokens in a memory-mapped file. Any number of
+ * server processes on the same host may open the same file, and each process
+ * can then validate, claim, and consume tokens issued by any other process.
+ *
+ * The file contains a fixed-size open-addressing hash table. Every operation
+ * holds an exclusive lock on the file for its duration, so operations are
+ * atomic with respect to all processes sharing the file.
+ */
+
+public final class PTokenStoreSharedFile implements PTokenStoreType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTokenStoreSharedFile.class);
+
+  /**
+   * The default number of token slots in a newly created file.
+   */
+
+  public static final int DEFAULT_SLOTS = 65536;
+
+  /**
+   * The maximum duration of a claim. A claim held by a process that dies
+   * before releasing or consuming the token lapses after this duration.
+   * Each claim records a random holder ID, so that a process whose claim
+   * lapsed and was taken over by another process cannot release the newer
+   * claim.
+   */
+
+  private static final Duration CLAIM_LEASE = Duration.ofMinutes(5L);
+
+  private static final int MAGIC = 0x504f5254;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 64;
+  private static final int HEADER_MAGIC = 0;
+  private static final int HEADER_VERSION = 4;
+  private static final int HEADER_SLOTS = 8;
+  private static final int HEADER_COUNT = 12;
+
+  private static final int TOKEN_SIZE = 32;
+  private static final int SLOT_SIZE = 64;
+  private static final int SLOT_STATE = 0;
+  private static final int SLOT_EXPIRES = 8;
+  private static final int SLOT_CLAIMED = 16;
+  private static final int SLOT_HOLDER = 24;
+  private static final int SLOT_TOKEN = 32;
+
+  private static final int STATE_EMPTY = 0;
+  private static final int STATE_LIVE = 1;
+
+  /**
+   * File locks are held on behalf of the entire JVM, so instances within
+   * the same JVM that share a file must additionally be serialized with
+   * respect to each other.
+   */
+
+  private static final ConcurrentHashMap<Path, Object> JVM_LOCKS =
+    new ConcurrentHashMap<>();
+
+  private final Path file;
+  private final FileChannel channel;
+  private final MappedByteBuffer map;
+  private final Object jvmLock;
+  private final long expiryMillis;
+  private final int slots;
+  private final Consumer<String> onExpired;
+  private final ScheduledExecutorService sweeper;
+  private final AtomicLong rejections;
+  private final SecureRandom rng;
+  private final ConcurrentHashMap<String, Long> holders;
+
+  private PTokenStoreSharedFile(
+    final Path inFile,
+    final FileChannel inChannel,
+    final MappedByteBuffer inMap,
+    final Duration inExpiry,
+    final int inSlots,
+    final Consumer<String> inOnExpired)
+  {
+    this.file =
+      Objects.requireNonNull(inFile, "file");
+    this.channel =
+      Objects.requireNonNull(inChannel, "channel");
+    this.map =
+      Objects.requireNonNull(inMap, "map");
+    this.expiryMillis =
+      Objects.requireNonNull(inExpiry, "expiry").toMillis();
+    this.onExpired =
+      Objects.requireNonNull(inOnExpired, "onExpired");
+    this.slots = inSlots;
+    this.jvmLock =
+      JVM_LOCKS.computeIfAbsent(this.file, ignored -> new Object());
+    this.rejections =
+      new AtomicLong();
+    this.rng =
+      new SecureRandom();
+    this.holders =
+      new ConcurrentHashMap<>();
+
+    this.sweeper =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        final var thread = new Thread(r);
+        thread.setName(
+          "com.io7m.portero.server.internal.PTokenStoreSharedFile.sweeper");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    final var sweepMillis =
+      Math.max(100L, Math.min(60_000L, this.expiryMillis / 4L));
+    this.sweeper.scheduleWithFixedDelay(
+      this::sweepLogged,
+      sweepMillis,
+      sweepMillis,
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  /**
+   * Open a shared token store, creating the file if it does not exist.
+   *
+   * @param file      The file
+   * @param expiry    The expiration time for individual tokens
+   * @param onExpired A function called whenever a token expires
+   *
+   * @return A token store
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static PTokenStoreType open(
+    final Path file,
+    final Duration expiry,
+    final Consumer<String> onExpired)
+    throws IOException
+  {
+    return open(file, DEFAULT_SLOTS, expiry, onExpired);
+  }
+
+  /**
+   * Open a shared token store, creating the file if it does not exist. If
+   * the file already exists, the number of slots is taken from the file.
+   *
+   * @param file      The file
+   * @param slots     The number of token slots in a new file
+   * @param expiry    The expiration time for individual tokens
+   * @param onExpired A function called whenever a token expires
+   *
+   * @return A token store
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static PTokenStoreType open(
+    final Path file,
+    final int slots,
+    final Duration expiry,
+    final Consumer<String> onExpired)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(expiry, "expiry");
+    Objects.requireNonNull(onExpired, "onExpired");
+
+    if (slots <= 0) {
+      throw new IllegalArgumentException("Slot count must be positive");
+    }
+
+    final var absolute = file.toAbsolutePath().normalize();
+    final var channel = FileChannel.open(absolute, CREATE, READ, WRITE);
+    try {
+      final var jvmLock =
+        JVM_LOCKS.computeIfAbsent(absolute, ignored -> new Object());
+
+      synchronized (jvmLock) {
+        try (var ignored = channel.lock()) {
+          final int fileSlots = initializeOrCheck(absolute, channel, slots);
+          final var size = HEADER_SIZE + ((long) fileSlots * SLOT_SIZE);
+          final var map = channel.map(READ_WRITE, 0L, size);
+          map.order(ByteOrder.BIG_ENDIAN);
+
+          LOG.debug(
+            "opened shared token store {} ({} slots)",
+            absolute,
+            Integer.valueOf(fileSlots)
+          );
+          return new PTokenStoreSharedFile(
+            absolute,
+            channel,
+            map,
+            expiry,
+            fileSlots,
+            onExpired
+          );
+        }
+      }
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static int initializeOrCheck(
+    final Path file,
+    final FileChannel channel,
+    final int slots)
+    throws IOException
+  {
+    if (channel.size() == 0L) {
+      final var size = HEADER_SIZE + ((long) slots * SLOT_SIZE);
+      final var header = ByteBuffer.allocate(HEADER_SIZE);
+      header.order(ByteOrder.BIG_ENDIAN);
+      header.putInt(HEADER_MAGIC, MAGIC);
+      header.putInt(HEADER_VERSION, VERSION);
+      header.putInt(HEADER_SLOTS, slots);
+      header.putInt(HEADER_COUNT, 0);
+      channel.write(header, 0L);
+      channel.write(ByteBuffer.allocate(1), size - 1L);
+      channel.force(true);
+      return slots;
+    }
+
+    final var header = ByteBuffer.allocate(HEADER_SIZE);
+    header.order(ByteOrder.BIG_ENDIAN);
+    channel.read(header, 0L);
+
+    if (header.getInt(HEADER_MAGIC) != MAGIC) {
+      throw new IOException(
+        String.format("%s: Not a token store file", file));
+    }
+    final var version = header.getInt(HEADER_VERSION);
+    if (version != VERSION) {
+      throw new IOException(
+        String.format("%s: Unsupported token store version %d",
+                      file, Integer.valueOf(version)));
+    }
+
+    final var fileSlots = header.getInt(HEADER_SLOTS);
+    final var expected = HEADER_SIZE + ((long) fileSlots * SLOT_SIZE);
+    if (fileSlots <= 0 || channel.size() < expected) {
+      throw new IOException(
+        String.format("%s: Token store file is truncated", file));
+    }
+    return fileSlots;
+  }
+
+  private static byte[] tokenBytes(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+
+    if (token.length() != TOKEN_SIZE * 2) {
+      return null;
+    }
+    try {
+      return Hex.decodeHex(token);
+    } catch (final DecoderException e) {
+      return null;
+    }
+  }
+
+  private int home(
+    final byte[] token)
+  {
+    final var buffer = ByteBuffer.wrap(token);
+    final var hash = buffer.getLong(0) ^ buffer.getLong(8);
+    return (int) Math.floorMod(hash, (long) this.slots);
+  }
+
+  private int slotOffset(
+    final int slot)
+  {
+    return HEADER_SIZE + (slot * SLOT_SIZE);
+  }
+
+  private int state(
+    final int slot)
+  {
+    return this.map.getInt(this.slotOffset(slot) + SLOT_STATE);
+  }
+
+  private long expires(
+    final int slot)
+  {
+    return this.map.getLong(this.slotOffset(slot) + SLOT_EXPIRES);
+  }
+
+  private long claimed(
+    final int slot)
+  {
+    return this.map.getLong(this.slotOffset(slot) + SLOT_CLAIMED);
+  }
+
+  private byte[] token(
+    final int slot)
+  {
+    final var data = new byte[TOKEN_SIZE];
+    this.map.get(this.slotOffset(slot) + SLOT_TOKEN, data);
+    return data;
+  }
+
+  private boolean tokenEquals(
+    final int slot,
+    final byte[] token)
+  {
+    final var base = this.slotOffset(slot) + SLOT_TOKEN;
+    for (int index = 0; index < TOKEN_SIZE; ++index) {
+      if (this.map.get(base + index) != token[index]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int count()
+  {
+    return this.map.getInt(HEADER_COUNT);
+  }
+
+  private void setCount(
+    final int count)
+  {
+    this.map.putInt(HEADER_COUNT, count);
+  }
+
+  /**
+   * Find the slot holding the given token.
+   *
+   * @return The slot, or -1 if the token is not present
+   */
+
+  private int find(
+    final byte[] token)
+  {
+    var slot = this.home(token);
+    for (int probe = 0; probe < this.slots; ++probe) {
+      if (this.state(slot) == STATE_EMPTY) {
+        return -1;
+      }
+      if (this.tokenEquals(slot, token)) {
+        return slot;
+      }
+      slot = (slot + 1) % this.slots;
+    }
+    return -1;
+  }
+
+  /**
+   * Find a live, unexpired slot holding the given token, expiring the token
+   * if it is present but has expired.
+   */
+
+  private int findLive(
+    final byte[] token,
+    final long timeNow,
+    final ArrayList<String> expired)
+  {
+    final var slot = this.find(token);
+    if (slot == -1) {
+      return -1;
+    }
+    if (this.expires(slot) <= timeNow) {
+      expired.add(Hex.encodeHexString(token, true));
+      this.delete(slot);
+      return -1;
+    }
+    return slot;
+  }
+
+  /**
+   * Delete the given slot using backward-shift deletion, so that probe
+   * sequences never need tombstones.
+   */
+
+  private void delete(
+    final int slot)
+  {
+    var hole = slot;
+    var next = slot;
+    while (true) {
+      next = (next + 1) % this.slots;
+      if (this.state(next) == STATE_EMPTY) {
+        break;
+      }
+
+      final var home = this.home(this.token(next));
+      final boolean movable;
+      if (hole <= next) {
+        movable = home <= hole || home > next;
+      } else {
+        movable = home <= hole && home > next;
+      }
+
+      if (movable) {
+        this.copySlot(next, hole);
+        hole = next;
+      }
+    }
+
+    this.clearSlot(hole);
+    this.setCount(this.count() - 1);
+  }
+
+  private void copySlot(
+    final int source,
+    final int target)
+  {
+    final var sourceOffset = this.slotOffset(source);
+    final var targetOffset = this.slotOffset(target);
+    for (int index = 0; index < SLOT_SIZE; ++index) {
+      this.map.put(targetOffset + index, this.map.get(sourceOffset + index));
+    }
+  }
+
+  private void clearSlot(
+    final int slot)
+  {
+    final var offset = this.slotOffset(slot);
+    for (int index = 0; index < SLOT_SIZE; ++index) {
+      this.map.put(offset + index, (byte) 0);
+    }
+  }
+
+  private interface LockedOperationType<T>
+  {
+    T execute(ArrayList<String> expired);
+  }
+
+  private <T> T locked(
+    final LockedOperationType<T> operation)
+    throws IOException
+  {
+    final var expired = new ArrayList<String>();
+    final T result;
+    synchronized (this.jvmLock) {
+      try (var ignored = this.channel.lock()) {
+        result = operation.execute(expired);
+      }
+    }
+    for (final var token : expired) {
+      this.onExpired.accept(token);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean issue(
+    final String token)
+    throws IOException
+  {
+    final var data = tokenBytes(token);
+    if (data == null) {
+      throw new IllegalArgumentException(
+        "Tokens must be 64 hexadecimal characters");
+    }
+
+    return this.locked(expired -> {
+      final var timeNow = System.currentTimeMillis();
+      if (this.findLive(data, timeNow, expired) != -1) {
+        return Boolean.FALSE;
+      }
+      if (this.count() >= this.slots - 1) {
+        this.rejections.incrementAndGet();
+        throw new PTokenStoreFullException(
+          String.format(
+            "Token store %s is full (%d slots)",
+            this.file,
+            Integer.valueOf(this.slots))
+        );
+      }
+
+      var slot = this.home(data);
+      while (this.state(slot) != STATE_EMPTY) {
+        slot = (slot + 1) % this.slots;
+      }
+
+      final var offset = this.slotOffset(slot);
+      this.map.putInt(offset + SLOT_STATE, STATE_LIVE);
+      this.map.putLong(offset + SLOT_EXPIRES, timeNow + this.expiryMillis);
+      this.map.putLong(offset + SLOT_CLAIMED, 0L);
+      this.map.putLong(offset + SLOT_HOLDER, 0L);
+      this.map.put(offset + SLOT_TOKEN, data);
+      this.setCount(this.count() + 1);
+      return Boolean.TRUE;
+    }).booleanValue();
+  }
+
+  @Override
+  public boolean isValid(
+    final String token)
+    throws IOException
+  {
+    final var data = tokenBytes(token);
+    if (data == null) {
+      return false;
+    }
+
+    return this.locked(expired -> {
+      final var timeNow = System.currentTimeMillis();
+      return Boolean.valueOf(this.findLive(data, timeNow, expired) != -1);
+    }).booleanValue();
+  }
+
+  @Override
+  public boolean claim(
+    final String token)
+    throws IOException
+  {
+    final var data = tokenBytes(token);
+    if (data == null) {
+      return false;
+    }
+
+    final var holder = this.newHolder();
+    final var claimed = this.locked(expired -> {
+      final var timeNow = System.currentTimeMillis();
+      final var slot = this.findLive(data, timeNow, expired);
+      if (slot == -1) {
+        return Boolean.FALSE;
+      }
+      if (this.claimed(slot) > timeNow) {
+        return Boolean.FALSE;
+      }
+      final var offset = this.slotOffset(slot);
+      this.map.putLong(offset + SLOT_CLAIMED, timeNow + CLAIM_LEASE.toMillis());
+      this.map.putLong(offset + SLOT_HOLDER, holder);
+      return Boolean.TRUE;
+    }).booleanValue();
+
+    if (claimed) {
+      this.holders.put(token, Long.valueOf(holder));
+    }
+    return claimed;
+  }
+
+  private long newHolder()
+  {
+    while (true) {
+      final var holder = this.rng.nextLong();
+      if (holder != 0L) {
+        return holder;
+      }
+    }
+  }
+
+  @Override
+  public void release(
+    final String token)
+    throws IOException
+  {
+    final var data = tokenBytes(token);
+    if (data == null) {
+      return;
+    }
+
+    final var holder = this.holders.remove(token);
+    if (holder == null) {
+      return;
+    }
+
+    this.locked(expired -> {
+      final var slot = this.find(data);
+      if (slot != -1) {
+        final var offset = this.slotOffset(slot);
+        if (this.map.getLong(offset + SLOT_HOLDER) == holder.longValue()) {
+          this.map.putLong(offset + SLOT_CLAIMED, 0L);
+          this.map.putLong(offset + SLOT_HOLDER, 0L);
+        }
+      }
+      return null;
+    });
+  }
+
+  @Override
+  public boolean consume(
+    final String token)
+    throws IOException
+  {
+    final var data = tokenBytes(token);
+    if (data == null) {
+      return false;
+    }
+
+    this.holders.remove(token);
+    return this.locked(expired -> {
+      final var slot = this.find(data);
+      if (slot == -1) {
+        return Boolean.FALSE;
+      }
+      this.delete(slot);
+      return Boolean.TRUE;
+    }).booleanValue();
+  }
+
+  @Override
+  public int size()
+    throws IOException
+  {
+    return this.locked(expired -> Integer.valueOf(this.count())).intValue();
+  }
+
+  @Override
+  public long rejections()
+  {
+    return this.rejections.get();
+  }
+
+  private void sweepLogged()
+  {
+    try {
+      this.sweep();
+    } catch (final Exception e) {
+      LOG.error("token sweep failed: ", e);
+    }
+  }
+
+  /**
+   * Remove all expired tokens from the store.
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void sweep()
+    throws IOException
+  {
+    this.locked(expired -> {
+      final var timeNow = System.currentTimeMillis();
+      var slot = 0;
+      while (slot < this.slots) {
+        if (this.state(slot) == STATE_LIVE
+          && this.expires(slot) <= timeNow) {
+          expired.add(Hex.encodeHexString(this.token(slot), true));
+          this.delete(slot);
+          continue;
+        }
+        ++slot;
+      }
+      return null;
+    });
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    this.sweeper.shutdown();
+    try {
+      this.sweeper.awaitTermination(5L, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    this.map.force();
+    this.channel.close();
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "[PTokenStoreSharedFile %s %d]",
+      this.file,
+      Integer.valueOf(this.slots)
+    );
+  }
+}
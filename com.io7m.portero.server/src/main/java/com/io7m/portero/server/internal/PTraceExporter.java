@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An exporter that writes completed trace spans to a local file.
+ *
+ * Spans are offered to a {@link PBatchWriter} without blocking; a span
+ * that does not fit in its queue is dropped and counted, so tracing never
+ * slows down request handling. Each span is written as one tab-separated
+ * line:
+ *
+ * <pre>
+ * start-micros  duration-micros  trace-id  span-id  parent-span-id  name  status
+ * </pre>
+ */
+
+public final class PTraceExporter implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTraceExporter.class);
+
+  /**
+   * The default queue capacity.
+   */
+
+  public static final int DEFAULT_CAPACITY = 16384;
+
+  private static final int BATCH_SIZE = 1024;
+
+  private static final PTraceExporter DISABLED =
+    new PTraceExporter(null, 1);
+
+  private final BufferedWriter writer;
+  private final LongAdder exported;
+  private final LongAdder dropped;
+  private final PBatchWriter<PTraceSpan> batches;
+
+  private PTraceExporter(
+    final BufferedWriter inWriter,
+    final int inCapacity)
+  {
+    this.writer = inWriter;
+    this.exported = new LongAdder();
+    this.dropped = new LongAdder();
+
+    if (inWriter != null) {
+      this.batches = PBatchWriter.start(
+        "com.io7m.portero.server.internal.PTraceExporter",
+        inCapacity,
+        BATCH_SIZE,
+        this::write
+      );
+    } else {
+      this.batches = null;
+    }
+  }
+
+  /**
+   * @return An exporter that discards all spans
+   */
+
+  public static PTraceExporter disabled()
+  {
+    return DISABLED;
+  }
+
+  /**
+   * Open an exporter that appends spans to the given file.
+   *
+   * @param file     The file
+   * @param capacity The queue capacity
+   *
+   * @return An exporter
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static PTraceExporter open(
+    final Path file,
+    final int capacity)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+
+    final var writer =
+      Files.newBufferedWriter(file, UTF_8, CREATE, WRITE, APPEND);
+    final var exporter = new PTraceExporter(writer, capacity);
+    LOG.info("trace file {}", file);
+    return exporter;
+  }
+
+  /**
+   * @return {@code true} if spans are being exported
+   */
+
+  public boolean isEnabled()
+  {
+    return this.writer != null;
+  }
+
+  /**
+   * Export a completed span. This method never blocks.
+   *
+   * @param span The span
+   */
+
+  public void export(
+    final PTraceSpan span)
+  {
+    if (this.writer == null) {
+      return;
+    }
+    if (!this.batches.offer(span)) {
+      this.dropped.increment();
+    }
+  }
+
+  /**
+   * @return The number of spans written
+   */
+
+  public long exported()
+  {
+    return this.exported.sum();
+  }
+
+  /**
+   * @return The number of spans dropped because the queue was full
+   */
+
+  public long dropped()
+  {
+    return this.dropped.sum();
+  }
+
+  private void write(
+    final List<PTraceSpan> batch)
+  {
+    try {
+      for (final var span : batch) {
+        this.writer.write(Long.toString(span.startMicros()));
+        this.writer.write('\t');
+        this.writer.write(Long.toString(span.durationMicros()));
+        this.writer.write('\t');
+        this.writer.write(span.traceId());
+        this.writer.write('\t');
+        this.writer.write(span.spanId());
+        this.writer.write('\t');
+        this.writer.write(span.parentSpanId().orElse("-"));
+        this.writer.write('\t');
+        this.writer.write(span.name());
+        this.writer.write('\t');
+        this.writer.write(span.status());
+        this.writer.write('\n');
+      }
+      this.writer.flush();
+      this.exported.add(batch.size());
+    } catch (final IOException e) {
+      LOG.error("could not write trace spans: ", e);
+      this.dropped.add(batch.size());
+    }
+  }
+
+  /**
+   * Close the exporter, writing any spans remaining in the queue.
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (this.writer == null) {
+      return;
+    }
+
+    if (!this.batches.isClosed()) {
+      try {
+        this.dropped.add(this.batches.closeAndDrain().size());
+      } finally {
+        this.writer.close();
+      }
+    }
+  }
+}
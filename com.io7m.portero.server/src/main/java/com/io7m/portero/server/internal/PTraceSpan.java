@@ -0,0 +1,282 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import org.slf4j.MDC;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * A trace span: a named, timed piece of work within a trace.
+ *
+ * The span that is currently open on a thread is available from
+ * {@link #current()}, so that the trace ID flows from the HTTP handlers
+ * through the controller into the Matrix client without being passed
+ * explicitly. While a trace is open on a thread, the trace ID is also
+ * held in the logging MDC under the key {@link #MDC_TRACE_ID}. Spans
+ * must be closed on the thread that opened them, in the reverse order
+ * of opening.
+ */
+
+public final class PTraceSpan implements AutoCloseable
+{
+  /**
+   * The MDC key that holds the current trace ID.
+   */
+
+  public static final String MDC_TRACE_ID = "trace_id";
+
+  /**
+   * The name of the W3C trace context header.
+   */
+
+  public static final String TRACEPARENT = "traceparent";
+
+  private static final Pattern TRACEPARENT_PATTERN =
+    Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-[0-9a-f]{2}");
+
+  private static final ThreadLocal<PTraceSpan> CURRENT =
+    new ThreadLocal<>();
+
+  private final PTraceExporter exporter;
+  private final PTraceSpan parent;
+  private final String traceId;
+  private final String spanId;
+  private final String parentSpanId;
+  private final String name;
+  private final long startMicros;
+  private final long startNanos;
+  private long durationMicros;
+  private String status;
+  private boolean closed;
+
+  private PTraceSpan(
+    final PTraceExporter inExporter,
+    final PTraceSpan inParent,
+    final String inTraceId,
+    final String inParentSpanId,
+    final String inName)
+  {
+    this.exporter = inExporter;
+    this.parent = inParent;
+    this.traceId = inTraceId;
+    this.spanId = randomHex(8);
+    this.parentSpanId = inParentSpanId;
+    this.name = inName;
+    this.startMicros =
+      ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    this.startNanos = System.nanoTime();
+    this.status = "ok";
+  }
+
+  private static String randomHex(
+    final int bytes)
+  {
+    final var rng = ThreadLocalRandom.current();
+    final var text = new StringBuilder(bytes * 2);
+    for (int index = 0; index < bytes; ++index) {
+      final var value = rng.nextInt(256);
+      text.append(Character.forDigit(value >>> 4, 16));
+      text.append(Character.forDigit(value & 0xf, 16));
+    }
+    return text.toString();
+  }
+
+  /**
+   * Open a new root span on the current thread. If a valid W3C
+   * {@code traceparent} value is given, the span joins the trace it
+   * describes; otherwise, a new trace is started.
+   *
+   * @param exporter    The exporter that receives the span when closed
+   * @param name        The span name
+   * @param traceparent The incoming {@code traceparent} value, if any
+   *
+   * @return A span
+   */
+
+  public static PTraceSpan openRoot(
+    final PTraceExporter exporter,
+    final String name,
+    final String traceparent)
+  {
+    Objects.requireNonNull(exporter, "exporter");
+    Objects.requireNonNull(name, "name");
+
+    String traceId = null;
+    String parentSpanId = null;
+    if (traceparent != null) {
+      final var matcher = TRACEPARENT_PATTERN.matcher(traceparent.trim());
+      if (matcher.matches()) {
+        traceId = matcher.group(1);
+        parentSpanId = matcher.group(2);
+      }
+    }
+    if (traceId == null) {
+      traceId = randomHex(16);
+    }
+
+    final var span =
+      new PTraceSpan(exporter, CURRENT.get(), traceId, parentSpanId, name);
+    CURRENT.set(span);
+    MDC.put(MDC_TRACE_ID, traceId);
+    return span;
+  }
+
+  /**
+   * Open a span as a child of the span currently open on this thread. If
+   * no span is open, a new trace is started that is not exported.
+   *
+   * @param name The span name
+   *
+   * @return A span
+   */
+
+  public static PTraceSpan open(
+    final String name)
+  {
+    Objects.requireNonNull(name, "name");
+
+    final var current = CURRENT.get();
+    if (current == null) {
+      return openRoot(PTraceExporter.disabled(), name, null);
+    }
+
+    final var span =
+      new PTraceSpan(
+        current.exporter, current, current.traceId, current.spanId, name);
+    CURRENT.set(span);
+    return span;
+  }
+
+  /**
+   * @return The span currently open on this thread, if any
+   */
+
+  public static Optional<PTraceSpan> current()
+  {
+    return Optional.ofNullable(CURRENT.get());
+  }
+
+  /**
+   * @return The trace ID
+   */
+
+  public String traceId()
+  {
+    return this.traceId;
+  }
+
+  /**
+   * @return The span ID
+   */
+
+  public String spanId()
+  {
+    return this.spanId;
+  }
+
+  /**
+   * @return The ID of the parent span, if any
+   */
+
+  public Optional<String> parentSpanId()
+  {
+    return Optional.ofNullable(this.parentSpanId);
+  }
+
+  /**
+   * @return The span name
+   */
+
+  public String name()
+  {
+    return this.name;
+  }
+
+  /**
+   * @return The start time in microseconds since the epoch
+   */
+
+  public long startMicros()
+  {
+    return this.startMicros;
+  }
+
+  /**
+   * @return The duration in microseconds; only valid once closed
+   */
+
+  public long durationMicros()
+  {
+    return this.durationMicros;
+  }
+
+  /**
+   * @return The span status
+   */
+
+  public String status()
+  {
+    return this.status;
+  }
+
+  /**
+   * Set the span status.
+   *
+   * @param inStatus The status
+   */
+
+  public void setStatus(
+    final String inStatus)
+  {
+    this.status = Objects.requireNonNull(inStatus, "status");
+  }
+
+  /**
+   * @return A W3C {@code traceparent} value that identifies this span
+   */
+
+  public String traceparent()
+  {
+    return "00-" + this.traceId + "-" + this.spanId + "-01";
+  }
+
+  @Override
+  public void close()
+  {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+
+    this.durationMicros = (System.nanoTime() - this.startNanos) / 1000L;
+    CURRENT.set(this.parent);
+    if (this.parent == null) {
+      CURRENT.remove();
+      MDC.remove(MDC_TRACE_ID);
+    } else if (!Objects.equals(this.parent.traceId, this.traceId)) {
+      MDC.put(MDC_TRACE_ID, this.parent.traceId);
+    }
+    this.exporter.export(this);
+  }
+}
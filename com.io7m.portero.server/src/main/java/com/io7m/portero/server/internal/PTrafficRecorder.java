@@ -0,0 +1,255 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.internal;
+
+import com.io7m.portero.server.traffic.PTrafficRecord;
+import com.io7m.portero.server.traffic.PTrafficRecordings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A recorder that appends traffic records to a binary recording.
+ *
+ * Records are offered to a {@link PBatchWriter} without blocking, and are
+ * dropped and counted when its queue is full. Tokens are replaced with
+ * identifiers derived from a keyed hash whose key is generated when the
+ * recorder is opened and never stored, so identifiers cannot be traced back
+ * to tokens.
+ */
+
+public final class PTrafficRecorder implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTrafficRecorder.class);
+
+  /**
+   * The default queue capacity.
+   */
+
+  public static final int DEFAULT_CAPACITY = 16384;
+
+  private static final int BATCH_SIZE = 1024;
+
+  private static final PTrafficRecorder DISABLED =
+    new PTrafficRecorder(null, 1);
+
+  private final DataOutputStream output;
+  private final LongAdder written;
+  private final LongAdder dropped;
+  private final PBatchWriter<PTrafficRecord> batches;
+  private final ThreadLocal<Mac> anonymizer;
+
+  private PTrafficRecorder(
+    final DataOutputStream inOutput,
+    final int inCapacity)
+  {
+    this.output = inOutput;
+    this.written = new LongAdder();
+    this.dropped = new LongAdder();
+
+    final var key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    final var keySpec = new SecretKeySpec(key, "HmacSHA256");
+    this.anonymizer = ThreadLocal.withInitial(() -> {
+      try {
+        final var mac = Mac.getInstance("HmacSHA256");
+        mac.init(keySpec);
+        return mac;
+      } catch (final GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+
+    if (inOutput != null) {
+      this.batches = PBatchWriter.start(
+        "com.io7m.portero.server.internal.PTrafficRecorder",
+        inCapacity,
+        BATCH_SIZE,
+        this::writeAll
+      );
+    } else {
+      this.batches = null;
+    }
+  }
+
+  /**
+   * @return A recorder that discards all records
+   */
+
+  public static PTrafficRecorder disabled()
+  {
+    return DISABLED;
+  }
+
+  /**
+   * Open a recorder that appends records to the given file. A header is
+   * written if the file is empty.
+   *
+   * @param file     The file
+   * @param capacity The queue capacity
+   *
+   * @return A recorder
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static PTrafficRecorder open(
+    final Path file,
+    final int capacity)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+
+    final var output =
+      new DataOutputStream(
+        new BufferedOutputStream(
+          Files.newOutputStream(file, CREATE, WRITE, APPEND)));
+
+    if (Files.size(file) == 0L) {
+      PTrafficRecordings.writeHeader(output);
+      output.flush();
+    }
+
+    final var recorder = new PTrafficRecorder(output, capacity);
+    LOG.info("traffic recording {}", file);
+    return recorder;
+  }
+
+  /**
+   * @return {@code true} if records are being written
+   */
+
+  public boolean isEnabled()
+  {
+    return this.output != null;
+  }
+
+  /**
+   * Derive the anonymous identifier of a token. The identifier is stable
+   * for the lifetime of the recorder, and is never {@code 0}.
+   *
+   * @param token The token
+   *
+   * @return The identifier
+   */
+
+  public int anonymize(
+    final String token)
+  {
+    Objects.requireNonNull(token, "token");
+
+    final var hash =
+      this.anonymizer.get().doFinal(token.getBytes(UTF_8));
+    final var id = ByteBuffer.wrap(hash).getInt();
+    return id == 0 ? 1 : id;
+  }
+
+  /**
+   * Submit a record for writing. This method never blocks.
+   *
+   * @param record The record
+   */
+
+  public void submit(
+    final PTrafficRecord record)
+  {
+    Objects.requireNonNull(record, "record");
+
+    if (this.output == null) {
+      return;
+    }
+    if (!this.batches.offer(record)) {
+      this.dropped.increment();
+    }
+  }
+
+  /**
+   * @return The number of records written
+   */
+
+  public long written()
+  {
+    return this.written.sum();
+  }
+
+  /**
+   * @return The number of records dropped because the queue was full
+   */
+
+  public long dropped()
+  {
+    return this.dropped.sum();
+  }
+
+  private void writeAll(
+    final List<PTrafficRecord> batch)
+  {
+    try {
+      for (final var record : batch) {
+        PTrafficRecordings.writeRecord(this.output, record);
+      }
+      this.output.flush();
+      this.written.add(batch.size());
+    } catch (final IOException e) {
+      LOG.error("could not write traffic records: ", e);
+      this.dropped.add(batch.size());
+    }
+  }
+
+  /**
+   * Close the recorder, writing any records remaining in the queue.
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (this.output == null) {
+      return;
+    }
+
+    if (!this.batches.isClosed()) {
+      try {
+        this.dropped.add(this.batches.closeAndDrain().size());
+      } finally {
+        this.output.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.tokens;
+
+/**
+ * A token lifecycle event.
+ *
+ * Events are delivered to consumers through a reusable view, in order to
+ * avoid allocating an object per event. The values returned by an event
+ * are only valid during the call to
+ * {@link PTokenEventConsumerType#onEvent(PTokenEventType)}; consumers that
+ * need to retain an event must copy its values.
+ */
+
+public interface PTokenEventType
+{
+  /**
+   * @return The sequence number of the event
+   */
+
+  long sequence();
+
+  /**
+   * @return The kind of event
+   */
+
+  PTokenEventKind kind();
+
+  /**
+   * @return The token
+   */
+
+  String token();
+
+  /**
+   * @return The Matrix user ID created using the token, for
+   * {@link PTokenEventKind#CONSUMED} events, or the empty string otherwise
+   */
+
+  String userId();
+
+  /**
+   * @return The time of the event, in milliseconds since the epoch
+   */
+
+  long timeMillis();
+}
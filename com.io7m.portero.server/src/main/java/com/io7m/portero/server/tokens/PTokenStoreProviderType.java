@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.tokens;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A provider of token stores. Providers are discovered using
+ * {@link java.util.ServiceLoader}, and are selected by name using the
+ * {@code server.tokenStore} configuration property.
+ */
+
+public interface PTokenStoreProviderType
+{
+  /**
+   * @return The unique name of the provider (such as {@code memory})
+   */
+
+  String name();
+
+  /**
+   * Open a token store.
+   *
+   * @param properties The provider-specific configuration properties (the
+   *                   {@code tokenStore.*} properties, without the prefix)
+   * @param expiry     The expiration time for individual tokens
+   * @param onExpired  A function called whenever a token expires
+   *
+   * @return A token store
+   *
+   * @throws IOException On I/O errors
+   */
+
+  PTokenStoreType open(
+    Map<String, String> properties,
+    Duration expiry,
+    Consumer<String> onExpired)
+    throws IOException;
+}
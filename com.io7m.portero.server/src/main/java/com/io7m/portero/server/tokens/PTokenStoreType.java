@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.server.tokens;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A store of outstanding invite tokens.
+ *
+ * A token moves through a simple lifecycle: It is <i>issued</i>, it may then
+ * be <i>claimed</i> by exactly one registration attempt, and the claim is
+ * either <i>released</i> (the attempt failed, and the token may be used
+ * again) or the token is <i>consumed</i> (the attempt succeeded). Tokens that
+ * are not consumed before the store's expiry period elapses are expired.
+ */
+
+public interface PTokenStoreType extends AutoCloseable
+{
+  /**
+   * Issue a token. The operation fails if the token already exists.
+   *
+   * @param token The token
+   *
+   * @return {@code true} if the token did not already exist
+   *
+   * @throws IOException               On I/O errors
+   * @throws PTokenStoreFullException If the store is full
+   */
+
+  boolean issue(String token)
+    throws IOException;
+
+  /**
+   * Issue a list of tokens. Stores that can issue tokens in bulk more
+   * cheaply than one at a time should override this method.
+   *
+   * @param tokens The tokens
+   *
+   * @return The tokens that did not already exist, and were therefore issued
+   *
+   * @throws IOException On I/O errors
+   */
+
+  default List<String> issueAll(
+    final List<String> tokens)
+    throws IOException
+  {
+    Objects.requireNonNull(tokens, "tokens");
+
+    final var issued = new ArrayList<String>(tokens.size());
+    for (final var token : tokens) {
+      if (this.issue(token)) {
+        issued.add(token);
+      }
+    }
+    return issued;
+  }
+
+  /**
+   * @param token The token
+   *
+   * @return {@code true} if the token exists and has not expired
+   *
+   * @throws IOException On I/O errors
+   */
+
+  boolean isValid(String token)
+    throws IOException;
+
+  /**
+   * Claim a token for a registration attempt. At most one claim can be held
+   * on a given token at any given time.
+   *
+   * @param token The token
+   *
+   * @return {@code true} if the token exists and was not already claimed
+   *
+   * @throws IOException On I/O errors
+   */
+
+  boolean claim(String token)
+    throws IOException;
+
+  /**
+   * Release a claim on a token, allowing the token to be claimed again.
+   *
+   * @param token The token
+   *
+   * @throws IOException On I/O errors
+   */
+
+  void release(String token)
+    throws IOException;
+
+  /**
+   * Consume a token, removing it from the store.
+   *
+   * @param token The token
+   *
+   * @return {@code true} if the token existed
+   *
+   * @throws IOException On I/O errors
+   */
+
+  boolean consume(String token)
+    throws IOException;
+
+  /**
+   * Return the number of outstanding tokens. This is used for metrics and
+   * logging, and must be cheap: stores that would need to query an
+   * external system may return a cached, approximate count instead.
+   *
+   * @return The number of outstanding tokens
+   *
+   * @throws IOException On I/O errors
+   */
+
+  int size()
+    throws IOException;
+
+  /**
+   * @return The number of tokens evicted to make room for new tokens
+   */
+
+  default long evictions()
+  {
+    return 0L;
+  }
+
+  /**
+   * @return The number of tokens rejected because the store was full
+   */
+
+  default long rejections()
+  {
+    return 0L;
+  }
+
+  @Override
+  void close()
+    throws IOException;
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.traffic;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+/**
+ * A single recorded request. Recordings never contain tokens or
+ * passwords: requests that carry a token are instead labelled with an
+ * anonymous identifier that is the same for every request carrying the
+ * same token within a recording, so that the requests belonging to one
+ * invite can be replayed in order.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PTrafficRecordType
+{
+  /**
+   * @return The time the request was received, in microseconds since the
+   * epoch
+   */
+
+  long timeMicros();
+
+  /**
+   * @return The route of the request
+   */
+
+  PTrafficRoute route();
+
+  /**
+   * @return The response status
+   */
+
+  int status();
+
+  /**
+   * @return The anonymous token identifier, or {@code 0} if the request did
+   * not carry a token
+   */
+
+  int token();
+
+  /**
+   * @return The number of request body bytes read
+   */
+
+  long requestBytes();
+
+  /**
+   * @return The number of response bytes written
+   */
+
+  long responseBytes();
+
+  /**
+   * @return The time taken to handle the request, in microseconds
+   */
+
+  long durationMicros();
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    if (this.requestBytes() < 0L || this.responseBytes() < 0L) {
+      throw new IllegalArgumentException("Sizes must be non-negative");
+    }
+    if (this.durationMicros() < 0L) {
+      throw new IllegalArgumentException("Duration must be non-negative");
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.traffic;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Functions to read and write traffic recordings.
+ *
+ * A recording is a header followed by any number of fixed-size records,
+ * all big-endian:
+ *
+ * <pre>
+ * header:  magic (int, 'PTRC'), version (int)
+ * record:  time_us (long), route (byte), reserved (byte), status (short),
+ *          token (int), request_bytes (int), response_bytes (int),
+ *          duration_us (long)
+ * </pre>
+ *
+ * Records are appended in the order in which requests complete. A record
+ * truncated by a crash at the end of a recording is ignored.
+ */
+
+public final class PTrafficRecordings
+{
+  /**
+   * The magic number at the start of every recording.
+   */
+
+  public static final int MAGIC = 0x50545243;
+
+  /**
+   * The current format version.
+   */
+
+  public static final int VERSION = 1;
+
+  /**
+   * The size of the header in bytes.
+   */
+
+  public static final int HEADER_SIZE = 8;
+
+  /**
+   * The size of a record in bytes.
+   */
+
+  public static final int RECORD_SIZE = 32;
+
+  private PTrafficRecordings()
+  {
+
+  }
+
+  /**
+   * Write a recording header.
+   *
+   * @param output The output
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static void writeHeader(
+    final DataOutput output)
+    throws IOException
+  {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+  }
+
+  /**
+   * Write a record.
+   *
+   * @param output The output
+   * @param record The record
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static void writeRecord(
+    final DataOutput output,
+    final PTrafficRecord record)
+    throws IOException
+  {
+    output.writeLong(record.timeMicros());
+    output.writeByte(record.route().code());
+    output.writeByte(0);
+    output.writeShort(record.status());
+    output.writeInt(record.token());
+    output.writeInt(clamp(record.requestBytes()));
+    output.writeInt(clamp(record.responseBytes()));
+    output.writeLong(record.durationMicros());
+  }
+
+  private static int clamp(
+    final long x)
+  {
+    return (int) Math.min(Integer.MAX_VALUE, x);
+  }
+
+  /**
+   * Read a recording from a file.
+   *
+   * @param file The file
+   *
+   * @return The records, in the order in which the requests were received
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static List<PTrafficRecord> read(
+    final Path file)
+    throws IOException
+  {
+    try (var stream = Files.newInputStream(file)) {
+      return read(stream);
+    }
+  }
+
+  /**
+   * Read a recording from a stream.
+   *
+   * @param stream The stream
+   *
+   * @return The records, in the order in which the requests were received
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static List<PTrafficRecord> read(
+    final InputStream stream)
+    throws IOException
+  {
+    Objects.requireNonNull(stream, "stream");
+
+    final var input =
+      new DataInputStream(new BufferedInputStream(stream));
+
+    final var magic = input.readInt();
+    if (magic != MAGIC) {
+      throw new IOException(
+        String.format(
+          "Not a traffic recording (magic 0x%08x, expected 0x%08x)",
+          Integer.valueOf(magic),
+          Integer.valueOf(MAGIC)));
+    }
+    final var version = input.readInt();
+    if (version != VERSION) {
+      throw new IOException(
+        String.format(
+          "Unsupported traffic recording version %d",
+          Integer.valueOf(version)));
+    }
+
+    final var records = new ArrayList<PTrafficRecord>();
+    final var buffer = new byte[RECORD_SIZE];
+    while (true) {
+      try {
+        input.readFully(buffer);
+      } catch (final EOFException e) {
+        break;
+      }
+      records.add(decode(buffer));
+    }
+
+    records.sort(Comparator.comparingLong(PTrafficRecord::timeMicros));
+    return records;
+  }
+
+  private static PTrafficRecord decode(
+    final byte[] buffer)
+    throws IOException
+  {
+    final var data = ByteBuffer.wrap(buffer);
+    try {
+      final var time = data.getLong();
+      final var route = PTrafficRoute.ofCode(data.get());
+      data.get();
+      final var status = Short.toUnsignedInt(data.getShort());
+      final var token = data.getInt();
+      final var requestBytes = Integer.toUnsignedLong(data.getInt());
+      final var responseBytes = Integer.toUnsignedLong(data.getInt());
+      final var duration = data.getLong();
+
+      return PTrafficRecord.builder()
+        .setTimeMicros(time)
+        .setRoute(route)
+        .setStatus(status)
+        .setToken(token)
+        .setRequestBytes(requestBytes)
+        .setResponseBytes(responseBytes)
+        .setDurationMicros(duration)
+        .build();
+    } catch (final IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.server.traffic;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The routes distinguished in traffic recordings. Each route has a
+ * representative request that is sent when the route is replayed, and
+ * (except for the catch-all route of each server) a context path that
+ * requests are classified by.
+ */
+
+public enum PTrafficRoute
+{
+  /**
+   * The main page.
+   */
+
+  PUBLIC_ROOT(
+    0,
+    "public",
+    "/",
+    "GET",
+    "/"),
+
+  /**
+   * Static resources.
+   */
+
+  PUBLIC_STATIC(
+    1,
+    "public",
+    "/static",
+    "GET",
+    "/static/style.css"),
+
+  /**
+   * The signup form.
+   */
+
+  PUBLIC_SIGNUP(
+    2,
+    "public",
+    "/signup",
+    "GET",
+    "/signup/"),
+
+  /**
+   * Signup form submissions.
+   */
+
+  PUBLIC_SIGNUP_COMPLETE(
+    3,
+    "public",
+    "/signup-complete",
+    "POST",
+    "/signup-complete/"),
+
+  /**
+   * Health checks on the public server.
+   */
+
+  PUBLIC_HEALTH(
+    4,
+    "public",
+    "/health",
+    "GET",
+    "/health/ready"),
+
+  /**
+   * Any other request to the public server.
+   */
+
+  PUBLIC_OTHER(
+    5,
+    "public",
+    null,
+    "GET",
+    "/unknown"),
+
+  /**
+   * JSON signup requests.
+   */
+
+  PUBLIC_API_SIGNUP(
+    6,
+    "public",
+    "/api/v1/signup",
+    "POST",
+    "/api/v1/signup"),
+
+  /**
+   * Invite generation.
+   */
+
+  PRIVATE_INVITE(
+    16,
+    "private",
+    "/",
+    "GET",
+    "/"),
+
+  /**
+   * Metrics.
+   */
+
+  PRIVATE_METRICS(
+    17,
+    "private",
+    "/metrics",
+    "GET",
+    "/metrics"),
+
+  /**
+   * Statistics.
+   */
+
+  PRIVATE_STATS(
+    18,
+    "private",
+    "/stats",
+    "GET",
+    "/stats"),
+
+  /**
+   * Health checks on the private server.
+   */
+
+  PRIVATE_HEALTH(
+    19,
+    "private",
+    "/health",
+    "GET",
+    "/health/ready"),
+
+  /**
+   * Any other request to the private server.
+   */
+
+  PRIVATE_OTHER(
+    20,
+    "private",
+    null,
+    "GET",
+    "/unknown");
+
+  private static final List<PTrafficRoute> PUBLIC_ROUTES =
+    routesOf("public");
+  private static final List<PTrafficRoute> PRIVATE_ROUTES =
+    routesOf("private");
+
+  private final int code;
+  private final String server;
+  private final String context;
+  private final String method;
+  private final String path;
+
+  PTrafficRoute(
+    final int inCode,
+    final String inServer,
+    final String inContext,
+    final String inMethod,
+    final String inPath)
+  {
+    this.code = inCode;
+    this.server = Objects.requireNonNull(inServer, "server");
+    this.context = inContext;
+    this.method = Objects.requireNonNull(inMethod, "method");
+    this.path = Objects.requireNonNull(inPath, "path");
+  }
+
+  private static List<PTrafficRoute> routesOf(
+    final String server)
+  {
+    return List.of(values())
+      .stream()
+      .filter(route -> route.server.equals(server))
+      .filter(route -> route.context != null)
+      .toList();
+  }
+
+  /**
+   * @return The code used for the route in recordings
+   */
+
+  public int code()
+  {
+    return this.code;
+  }
+
+  /**
+   * @return The server ({@code public} or {@code private})
+   */
+
+  public String server()
+  {
+    return this.server;
+  }
+
+  /**
+   * @return The method of the representative request
+   */
+
+  public String method()
+  {
+    return this.method;
+  }
+
+  /**
+   * @return The path of the representative request
+   */
+
+  public String path()
+  {
+    return this.path;
+  }
+
+  /**
+   * @param code The route code
+   *
+   * @return The route with the given code
+   *
+   * @throws IllegalArgumentException If no route has the given code
+   */
+
+  public static PTrafficRoute ofCode(
+    final int code)
+  {
+    for (final var route : values()) {
+      if (route.code == code) {
+        return route;
+      }
+    }
+    throw new IllegalArgumentException(
+      String.format("Unrecognized route code %d", Integer.valueOf(code)));
+  }
+
+  /**
+   * Classify a request.
+   *
+   * @param server The server ({@code public} or {@code private})
+   * @param path   The request path
+   *
+   * @return The route of the request
+   */
+
+  public static PTrafficRoute classify(
+    final String server,
+    final String path)
+  {
+    Objects.requireNonNull(server, "server");
+    Objects.requireNonNull(path, "path");
+
+    final var isPrivate = "private".equals(server);
+    final var routes = isPrivate ? PRIVATE_ROUTES : PUBLIC_ROUTES;
+    for (final var route : routes) {
+      if (isUnder(path, route.context)) {
+        return route;
+      }
+    }
+    return isPrivate ? PRIVATE_OTHER : PUBLIC_OTHER;
+  }
+
+  private static boolean isUnder(
+    final String path,
+    final String context)
+  {
+    if (path.equals(context)) {
+      return true;
+    }
+    return !"/".equals(context) && path.startsWith(context + "/");
+  }
+}
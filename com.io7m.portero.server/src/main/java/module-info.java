@@ -25,6 +25,14 @@ module com.io7m.portero.server
   requires static org.osgi.annotation.bundle;
   requires static org.osgi.annotation.versioning;
 
+  /*
+   * HdrHistogram is only needed at compile time. The packaged module
+   * contains a copy relocated into the unexported package
+   * com.io7m.portero.server.internal.hdrhistogram.
+   */
+
+  requires static HdrHistogram;
+
   requires com.fasterxml.jackson.annotation;
   requires com.fasterxml.jackson.core;
   requires com.fasterxml.jackson.databind;
@@ -32,13 +40,22 @@ module com.io7m.portero.server
   requires com.io7m.jproperties.core;
   requires com.io7m.jxtrand.api;
   requires com.io7m.jxtrand.vanilla;
-  requires expiringmap;
+  requires java.management;
   requires java.net.http;
+  requires jdk.jfr;
   requires org.apache.commons.codec;
   requires org.apache.commons.text;
   requires org.eclipse.jetty.http;
   requires org.eclipse.jetty.server;
   requires org.slf4j;
 
+  uses com.io7m.portero.server.tokens.PTokenStoreProviderType;
+
+  provides com.io7m.portero.server.tokens.PTokenStoreProviderType
+    with com.io7m.portero.server.internal.PTokenStoreMemoryProvider;
+
   exports com.io7m.portero.server;
+  exports com.io7m.portero.server.audit;
+  exports com.io7m.portero.server.tokens;
+  exports com.io7m.portero.server.traffic;
 }
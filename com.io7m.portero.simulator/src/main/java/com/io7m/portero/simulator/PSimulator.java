@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.simulator;
+
+import com.io7m.portero.simulator.internal.PSimulatorHandler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An in-process simulator of the Synapse shared-secret registration API.
+ *
+ * The simulator issues single-use nonces, verifies registration HMACs
+ * exactly as Synapse does, rejects duplicate user names, and can be
+ * configured to add latency, fail a fraction of requests, rate limit
+ * requests, and send response bodies slowly.
+ */
+
+public final class PSimulator implements AutoCloseable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PSimulator.class);
+
+  private final Server server;
+  private final ServerConnector connector;
+  private final PSimulatorHandler handler;
+
+  private PSimulator(
+    final PSimulatorConfiguration configuration)
+  {
+    final var threads = new QueuedThreadPool(200, 8);
+    threads.setName("com.io7m.portero.simulator");
+    threads.setDaemon(true);
+
+    this.server = new Server(threads);
+    this.connector = new ServerConnector(this.server);
+    this.connector.setHost(configuration.bindAddress().getHostAddress());
+    this.connector.setPort(configuration.bindPort());
+    this.server.addConnector(this.connector);
+    this.handler = new PSimulatorHandler(configuration);
+    this.server.setHandler(this.handler);
+  }
+
+  /**
+   * Start a simulator.
+   *
+   * @param configuration The simulator configuration
+   *
+   * @return A running simulator
+   *
+   * @throws Exception On errors
+   */
+
+  public static PSimulator start(
+    final PSimulatorConfiguration configuration)
+    throws Exception
+  {
+    final var simulator =
+      new PSimulator(Objects.requireNonNull(configuration, "configuration"));
+    simulator.server.start();
+    LOG.debug("simulator started on {}", simulator.uri());
+    return simulator;
+  }
+
+  /**
+   * @return The base URI of the simulator's admin API, suitable for use as
+   * the Matrix server admin URI in a server configuration
+   */
+
+  public URI uri()
+  {
+    return URI.create(
+      String.format(
+        "http://%s:%d/",
+        this.connector.getHost(),
+        Integer.valueOf(this.connector.getLocalPort())));
+  }
+
+  /**
+   * @return The number of nonce requests received
+   */
+
+  public long nonceRequests()
+  {
+    return this.handler.nonceRequests();
+  }
+
+  /**
+   * @return The number of registration requests received
+   */
+
+  public long registerRequests()
+  {
+    return this.handler.registerRequests();
+  }
+
+  /**
+   * @return The number of users registered
+   */
+
+  public int registered()
+  {
+    return this.handler.registered();
+  }
+
+  /**
+   * @param userName The user name
+   *
+   * @return {@code true} if the user has been registered
+   */
+
+  public boolean isRegistered(
+    final String userName)
+  {
+    return this.handler.isRegistered(userName);
+  }
+
+  /**
+   * @return The number of error responses sent, by Matrix error code
+   */
+
+  public Map<String, Long> errors()
+  {
+    return this.handler.errors();
+  }
+
+  @Override
+  public void close()
+    throws Exception
+  {
+    this.server.stop();
+  }
+}
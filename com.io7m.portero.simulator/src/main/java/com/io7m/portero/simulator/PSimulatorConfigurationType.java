@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.simulator;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The configuration of a Synapse simulator.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface PSimulatorConfigurationType
+{
+  /**
+   * @return The address to which the simulator binds
+   */
+
+  @Value.Default
+  default InetAddress bindAddress()
+  {
+    return InetAddress.getLoopbackAddress();
+  }
+
+  /**
+   * @return The port to which the simulator binds, or 0 for any free port
+   */
+
+  @Value.Default
+  default int bindPort()
+  {
+    return 0;
+  }
+
+  /**
+   * @return The registration shared secret used to verify request HMACs
+   */
+
+  String sharedSecret();
+
+  /**
+   * @return The server name used in registered user IDs
+   */
+
+  @Value.Default
+  default String serverName()
+  {
+    return "localhost";
+  }
+
+  /**
+   * @return The latency of nonce requests
+   */
+
+  @Value.Default
+  default PSimulatorLatencyType nonceLatency()
+  {
+    return PSimulatorLatencies.none();
+  }
+
+  /**
+   * @return The latency of registration requests
+   */
+
+  @Value.Default
+  default PSimulatorLatencyType registerLatency()
+  {
+    return PSimulatorLatencies.none();
+  }
+
+  /**
+   * @return The fraction of requests, in {@code [0, 1]}, that fail with a
+   * 500 error
+   */
+
+  @Value.Default
+  default double errorRate()
+  {
+    return 0.0;
+  }
+
+  /**
+   * @return The rate limit, if any, beyond which requests fail with 429
+   */
+
+  Optional<PSimulatorRateLimit> rateLimit();
+
+  /**
+   * @return The fraction of responses, in {@code [0, 1]}, whose bodies are
+   * sent slowly
+   */
+
+  @Value.Default
+  default double slowBodyRate()
+  {
+    return 0.0;
+  }
+
+  /**
+   * @return The time over which a slow response body is sent
+   */
+
+  @Value.Default
+  default Duration slowBodyDuration()
+  {
+    return Duration.ofSeconds(1L);
+  }
+
+  /**
+   * @return The time for which an unused nonce remains valid
+   */
+
+  @Value.Default
+  default Duration nonceExpiry()
+  {
+    return Duration.ofSeconds(60L);
+  }
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    if (!(this.errorRate() >= 0.0 && this.errorRate() <= 1.0)) {
+      throw new IllegalArgumentException("Error rate must be in [0, 1]");
+    }
+    if (!(this.slowBodyRate() >= 0.0 && this.slowBodyRate() <= 1.0)) {
+      throw new IllegalArgumentException("Slow body rate must be in [0, 1]");
+    }
+    if (this.slowBodyDuration().isNegative()) {
+      throw new IllegalArgumentException(
+        "Slow body duration must be non-negative");
+    }
+    if (this.nonceExpiry().isNegative() || this.nonceExpiry().isZero()) {
+      throw new IllegalArgumentException("Nonce expiry must be positive");
+    }
+  }
+}
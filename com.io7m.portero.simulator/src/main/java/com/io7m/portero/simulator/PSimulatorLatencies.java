@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.simulator;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Standard latency distributions.
+ */
+
+public final class PSimulatorLatencies
+{
+  private static final PSimulatorLatencyType NONE =
+    random -> Duration.ZERO;
+
+  private PSimulatorLatencies()
+  {
+
+  }
+
+  /**
+   * @return A distribution that always yields zero
+   */
+
+  public static PSimulatorLatencyType none()
+  {
+    return NONE;
+  }
+
+  /**
+   * @param latency The latency
+   *
+   * @return A distribution that always yields {@code latency}
+   */
+
+  public static PSimulatorLatencyType fixed(
+    final Duration latency)
+  {
+    checkNonNegative(latency, "latency");
+    return random -> latency;
+  }
+
+  /**
+   * @param minimum The minimum latency
+   * @param maximum The maximum latency
+   *
+   * @return A distribution uniform over {@code [minimum, maximum]}
+   */
+
+  public static PSimulatorLatencyType uniform(
+    final Duration minimum,
+    final Duration maximum)
+  {
+    checkNonNegative(minimum, "minimum");
+    checkNonNegative(maximum, "maximum");
+    if (maximum.compareTo(minimum) < 0) {
+      throw new IllegalArgumentException(
+        "Maximum latency must be >= minimum latency");
+    }
+
+    final var min = minimum.toNanos();
+    final var max = maximum.toNanos();
+    return random -> Duration.ofNanos(random.nextLong(min, max + 1L));
+  }
+
+  /**
+   * @param mean The mean latency
+   *
+   * @return An exponential distribution with the given mean
+   */
+
+  public static PSimulatorLatencyType exponential(
+    final Duration mean)
+  {
+    checkNonNegative(mean, "mean");
+
+    final var meanNanos = (double) mean.toNanos();
+    return random -> Duration.ofNanos(
+      (long) (meanNanos * random.nextExponential()));
+  }
+
+  /**
+   * A log-normal distribution, which models the long tail of real
+   * homeserver response times well: most responses take around the
+   * median, and a few take many times longer.
+   *
+   * @param median The median latency
+   * @param sigma  The standard deviation of the logarithm of the latency
+   *
+   * @return A log-normal distribution
+   */
+
+  public static PSimulatorLatencyType logNormal(
+    final Duration median,
+    final double sigma)
+  {
+    checkNonNegative(median, "median");
+    if (!(sigma >= 0.0)) {
+      throw new IllegalArgumentException("Sigma must be non-negative");
+    }
+
+    final var medianNanos = (double) median.toNanos();
+    return random -> Duration.ofNanos(
+      (long) (medianNanos * Math.exp(sigma * random.nextGaussian())));
+  }
+
+  private static void checkNonNegative(
+    final Duration duration,
+    final String name)
+  {
+    Objects.requireNonNull(duration, name);
+    if (duration.isNegative()) {
+      throw new IllegalArgumentException(
+        String.format("The %s latency must be non-negative", name));
+    }
+  }
+}
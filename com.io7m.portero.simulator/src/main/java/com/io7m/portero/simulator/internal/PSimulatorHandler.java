@@ -0,0 +1,445 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.simulator.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import com.io7m.portero.simulator.PSimulatorLatencyType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The request handler for the Synapse simulator.
+ */
+
+public final class PSimulatorHandler extends AbstractHandler
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PSimulatorHandler.class);
+
+  private static final String REGISTER =
+    "/_synapse/admin/v1/register";
+  private static final String SERVER_VERSION =
+    "/_synapse/admin/v1/server_version";
+
+  private static final Pattern VALID_USERNAME =
+    Pattern.compile("[a-z0-9._=\\-/]+");
+
+  private static final int SLOW_BODY_CHUNKS = 10;
+
+  private final PSimulatorConfiguration configuration;
+  private final ObjectMapper mapper;
+  private final PSimulatorNonces nonces;
+  private final PSimulatorTokenBucket bucket;
+  private final Set<String> users;
+  private final LongAdder nonceRequests;
+  private final LongAdder registerRequests;
+  private final ConcurrentHashMap<String, LongAdder> errors;
+
+  /**
+   * The request handler for the Synapse simulator.
+   *
+   * @param inConfiguration The simulator configuration
+   */
+
+  public PSimulatorHandler(
+    final PSimulatorConfiguration inConfiguration)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.mapper =
+      new ObjectMapper();
+    this.nonces =
+      new PSimulatorNonces(inConfiguration.nonceExpiry());
+    this.bucket =
+      inConfiguration.rateLimit()
+        .map(limit -> new PSimulatorTokenBucket(limit, System.nanoTime()))
+        .orElse(null);
+    this.users =
+      ConcurrentHashMap.newKeySet();
+    this.nonceRequests =
+      new LongAdder();
+    this.registerRequests =
+      new LongAdder();
+    this.errors =
+      new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return The number of nonce requests received
+   */
+
+  public long nonceRequests()
+  {
+    return this.nonceRequests.sum();
+  }
+
+  /**
+   * @return The number of registration requests received
+   */
+
+  public long registerRequests()
+  {
+    return this.registerRequests.sum();
+  }
+
+  /**
+   * @return The number of users registered
+   */
+
+  public int registered()
+  {
+    return this.users.size();
+  }
+
+  /**
+   * @param userName The user name
+   *
+   * @return {@code true} if the user has been registered
+   */
+
+  public boolean isRegistered(
+    final String userName)
+  {
+    return this.users.contains(userName);
+  }
+
+  /**
+   * @return The number of error responses sent, by error code
+   */
+
+  public Map<String, Long> errors()
+  {
+    final var results = new TreeMap<String, Long>();
+    for (final var entry : this.errors.entrySet()) {
+      results.put(entry.getKey(), Long.valueOf(entry.getValue().sum()));
+    }
+    return results;
+  }
+
+  /**
+   * Compute the registration HMAC in the same way as Synapse.
+   *
+   * @param sharedSecret The registration shared secret
+   * @param nonce        The nonce
+   * @param userName     The user name
+   * @param password     The password
+   * @param admin        {@code true} if the user is an admin
+   *
+   * @return The HMAC-SHA1 digest
+   */
+
+  public static byte[] hmac(
+    final String sharedSecret,
+    final String nonce,
+    final String userName,
+    final String password,
+    final boolean admin)
+  {
+    try {
+      final var mac = Mac.getInstance("HmacSHA1");
+      mac.init(new SecretKeySpec(sharedSecret.getBytes(UTF_8), "HmacSHA1"));
+      mac.update(nonce.getBytes(UTF_8));
+      mac.update((byte) 0x0);
+      mac.update(userName.getBytes(UTF_8));
+      mac.update((byte) 0x0);
+      mac.update(password.getBytes(UTF_8));
+      mac.update((byte) 0x0);
+      mac.update((admin ? "admin" : "notadmin").getBytes(UTF_8));
+      return mac.doFinal();
+    } catch (final GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void handle(
+    final String target,
+    final Request baseRequest,
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    baseRequest.setHandled(true);
+
+    if (this.bucket != null) {
+      final var retryAfter = this.bucket.tryAcquire(System.nanoTime());
+      if (retryAfter > 0L) {
+        final var body = this.error("M_LIMIT_EXCEEDED", "Too Many Requests");
+        body.put("retry_after_ms", retryAfter);
+        this.send(response, 429, body);
+        return;
+      }
+    }
+
+    final var method = request.getMethod();
+    if (REGISTER.equals(target) && "GET".equals(method)) {
+      this.nonceRequests.increment();
+      this.delay(this.configuration.nonceLatency());
+      if (this.injectError(response)) {
+        return;
+      }
+      final var body = this.mapper.createObjectNode();
+      body.put("nonce", this.nonces.issue(System.nanoTime()));
+      this.send(response, 200, body);
+      return;
+    }
+
+    if (REGISTER.equals(target) && "POST".equals(method)) {
+      this.registerRequests.increment();
+      this.delay(this.configuration.registerLatency());
+      if (this.injectError(response)) {
+        return;
+      }
+      this.register(request, response);
+      return;
+    }
+
+    if (SERVER_VERSION.equals(target) && "GET".equals(method)) {
+      final var body = this.mapper.createObjectNode();
+      body.put("server_version", "portero-simulator");
+      this.send(response, 200, body);
+      return;
+    }
+
+    this.send(
+      response, 404, this.error("M_UNRECOGNIZED", "Unrecognized request"));
+  }
+
+  private void register(
+    final HttpServletRequest request,
+    final HttpServletResponse response)
+    throws IOException
+  {
+    final JsonNode body;
+    try (var input = request.getInputStream()) {
+      body = this.mapper.readTree(input);
+    } catch (final IOException e) {
+      this.send(response, 400, this.error("M_NOT_JSON", "Content not JSON."));
+      return;
+    }
+
+    final var nonce = text(body, "nonce");
+    final var userName = text(body, "username");
+    final var password = text(body, "password");
+    final var mac = text(body, "mac");
+    final var admin = flag(body, "admin");
+
+    if (anyNull(nonce, userName, password, mac)) {
+      this.send(response, 400, this.error(
+        "M_MISSING_PARAM",
+        "nonce, username, password and mac must be specified"));
+      return;
+    }
+
+    /*
+     * Like Synapse, the nonce is consumed before the HMAC is checked, so
+     * that a nonce cannot be reused even if the request is invalid.
+     */
+
+    if (!this.nonces.consume(nonce, System.nanoTime())) {
+      this.send(response, 400, this.error("M_UNKNOWN", "unrecognised nonce"));
+      return;
+    }
+
+    if (!VALID_USERNAME.matcher(userName).matches()) {
+      this.send(response, 400, this.error(
+        "M_INVALID_USERNAME",
+        "User ID can only contain characters a-z, 0-9, or '=_-./'"));
+      return;
+    }
+
+    if (!this.macIsValid(nonce, userName, password, admin, mac)) {
+      this.send(response, 403, this.error("M_FORBIDDEN", "HMAC incorrect"));
+      return;
+    }
+
+    if (!this.users.add(userName)) {
+      this.send(response, 400, this.error(
+        "M_USER_IN_USE", "User ID already taken."));
+      return;
+    }
+
+    this.send(response, 200, this.registered(nonce, userName));
+  }
+
+  private boolean macIsValid(
+    final String nonce,
+    final String userName,
+    final String password,
+    final boolean admin,
+    final String mac)
+  {
+    final var expected =
+      hmac(this.configuration.sharedSecret(), nonce, userName, password, admin);
+    final byte[] received;
+    try {
+      received = HexFormat.of().parseHex(mac.toLowerCase());
+    } catch (final IllegalArgumentException e) {
+      return false;
+    }
+    return MessageDigest.isEqual(expected, received);
+  }
+
+  private ObjectNode registered(
+    final String nonce,
+    final String userName)
+  {
+    final var serverName = this.configuration.serverName();
+    final var result = this.mapper.createObjectNode();
+    result.put("access_token", "syt_" + nonce.substring(0, 16));
+    result.put("user_id", String.format("@%s:%s", userName, serverName));
+    result.put("home_server", serverName);
+    result.put("device_id", "SIMULATOR");
+    return result;
+  }
+
+  private static boolean anyNull(
+    final String... values)
+  {
+    for (final var value : values) {
+      if (value == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean flag(
+    final JsonNode node,
+    final String name)
+  {
+    return node != null && node.path(name).asBoolean(false);
+  }
+
+  private static String text(
+    final JsonNode node,
+    final String name)
+  {
+    if (node == null) {
+      return null;
+    }
+    final var field = node.get(name);
+    if (field == null || !field.isTextual()) {
+      return null;
+    }
+    return field.asText();
+  }
+
+  private boolean injectError(
+    final HttpServletResponse response)
+    throws IOException
+  {
+    final var rate = this.configuration.errorRate();
+    if (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate) {
+      this.send(
+        response, 500, this.error("M_UNKNOWN", "Internal server error"));
+      return true;
+    }
+    return false;
+  }
+
+  private void delay(
+    final PSimulatorLatencyType latency)
+  {
+    final var time = latency.sample(ThreadLocalRandom.current());
+    if (time.isZero() || time.isNegative()) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(time.toNanos());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private ObjectNode error(
+    final String code,
+    final String message)
+  {
+    this.errors.computeIfAbsent(code, k -> new LongAdder()).increment();
+
+    final var node = this.mapper.createObjectNode();
+    node.put("errcode", code);
+    node.put("error", message);
+    return node;
+  }
+
+  private void send(
+    final HttpServletResponse response,
+    final int status,
+    final ObjectNode body)
+    throws IOException
+  {
+    final var data = this.mapper.writeValueAsBytes(body);
+    response.setStatus(status);
+    response.setContentType("application/json");
+    response.setContentLength(data.length);
+
+    final var slowRate = this.configuration.slowBodyRate();
+    final var slow =
+      slowRate > 0.0 && ThreadLocalRandom.current().nextDouble() < slowRate;
+
+    try (var output = response.getOutputStream()) {
+      if (!slow) {
+        output.write(data);
+        return;
+      }
+
+      final var pause =
+        this.configuration.slowBodyDuration().toNanos() / SLOW_BODY_CHUNKS;
+      final var chunk =
+        Math.max(1, (data.length + SLOW_BODY_CHUNKS - 1) / SLOW_BODY_CHUNKS);
+
+      for (int offset = 0; offset < data.length; offset += chunk) {
+        output.write(data, offset, Math.min(chunk, data.length - offset));
+        output.flush();
+        try {
+          TimeUnit.NANOSECONDS.sleep(pause);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          LOG.debug("slow body interrupted");
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.simulator.internal;
+
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The set of outstanding registration nonces. A nonce can be used once,
+ * and only before it expires.
+ */
+
+public final class PSimulatorNonces
+{
+  private static final int PURGE_THRESHOLD = 10_000;
+
+  private final long expiryNanos;
+  private final Map<String, Long> nonces;
+
+  /**
+   * The set of outstanding registration nonces.
+   *
+   * @param expiry The time for which an unused nonce remains valid
+   */
+
+  public PSimulatorNonces(
+    final Duration expiry)
+  {
+    this.expiryNanos = expiry.toNanos();
+    this.nonces = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Issue a new nonce.
+   *
+   * @param timeNow The current time in nanoseconds
+   *
+   * @return The nonce
+   */
+
+  public String issue(
+    final long timeNow)
+  {
+    if (this.nonces.size() > PURGE_THRESHOLD) {
+      this.nonces.values().removeIf(time -> timeNow - time > this.expiryNanos);
+    }
+
+    final var bytes = new byte[32];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    final var nonce = HexFormat.of().formatHex(bytes);
+    this.nonces.put(nonce, Long.valueOf(timeNow));
+    return nonce;
+  }
+
+  /**
+   * Consume a nonce.
+   *
+   * @param nonce   The nonce
+   * @param timeNow The current time in nanoseconds
+   *
+   * @return {@code true} if the nonce was outstanding and had not expired
+   */
+
+  public boolean consume(
+    final String nonce,
+    final long timeNow)
+  {
+    final var issued = this.nonces.remove(nonce);
+    if (issued == null) {
+      return false;
+    }
+    return timeNow - issued.longValue() <= this.expiryNanos;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.simulator.internal;
+
+import com.io7m.portero.simulator.PSimulatorRateLimit;
+
+import java.util.Objects;
+
+/**
+ * A token bucket.
+ */
+
+public final class PSimulatorTokenBucket
+{
+  private final double ratePerNano;
+  private final double capacity;
+  private double tokens;
+  private long timeLast;
+
+  /**
+   * A token bucket.
+   *
+   * @param limit   The rate limit
+   * @param timeNow The current time in nanoseconds
+   */
+
+  public PSimulatorTokenBucket(
+    final PSimulatorRateLimit limit,
+    final long timeNow)
+  {
+    Objects.requireNonNull(limit, "limit");
+    this.ratePerNano = limit.rate() / 1_000_000_000.0;
+    this.capacity = limit.burst();
+    this.tokens = this.capacity;
+    this.timeLast = timeNow;
+  }
+
+  /**
+   * Try to take a token from the bucket.
+   *
+   * @param timeNow The current time in nanoseconds
+   *
+   * @return 0 if a token was taken, or the number of milliseconds until a
+   * token will be available
+   */
+
+  public synchronized long tryAcquire(
+    final long timeNow)
+  {
+    final var elapsed = Math.max(0L, timeNow - this.timeLast);
+    this.timeLast = timeNow;
+    this.tokens =
+      Math.min(this.capacity, this.tokens + (elapsed * this.ratePerNano));
+
+    if (this.tokens >= 1.0) {
+      this.tokens -= 1.0;
+      return 0L;
+    }
+
+    final var waitNanos = (1.0 - this.tokens) / this.ratePerNano;
+    return Math.max(1L, (long) Math.ceil(waitNanos / 1_000_000.0));
+  }
+}
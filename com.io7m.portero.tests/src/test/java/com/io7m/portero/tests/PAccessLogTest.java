@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.server.internal.PAccessLogWriter;
+import com.io7m.portero.server.internal.PServerAccessLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class PAccessLogTest
+{
+  private Path directory;
+  private Path file;
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    this.directory = Files.createTempDirectory("portero");
+    this.file = this.directory.resolve("access.log");
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(this.file);
+    Files.deleteIfExists(this.directory);
+  }
+
+  private static PAccessLogWriter.Entry entry(
+    final int index)
+  {
+    return new PAccessLogWriter.Entry(
+      Instant.ofEpochMilli(1_000_000L + index),
+      "public",
+      "GET",
+      "/signup",
+      "token=REDACTED",
+      200,
+      3L,
+      128L,
+      "127.0.0.1",
+      index % 2 == 0 ? "0af7651916cd43dd8448eb211c80319c" : null
+    );
+  }
+
+  /**
+   * Submitted entries are written as one JSON object per line.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testWrite()
+    throws Exception
+  {
+    try (var writer = PAccessLogWriter.open(this.file, 1024)) {
+      for (int index = 0; index < 100; ++index) {
+        writer.submit(entry(index));
+      }
+    }
+
+    final var mapper = new ObjectMapper();
+    final var lines = Files.readAllLines(this.file, UTF_8);
+    assertEquals(100, lines.size());
+
+    for (int index = 0; index < lines.size(); ++index) {
+      final var node = mapper.readTree(lines.get(index));
+      assertEquals("public", node.get("server").asText());
+      assertEquals("GET", node.get("method").asText());
+      assertEquals("/signup", node.get("path").asText());
+      assertEquals("token=REDACTED", node.get("query").asText());
+      assertEquals(200, node.get("status").asInt());
+      assertEquals(3L, node.get("duration_ms").asLong());
+      assertEquals(128L, node.get("bytes").asLong());
+      if (index % 2 == 0) {
+        assertEquals(
+          "0af7651916cd43dd8448eb211c80319c",
+          node.get("trace_id").asText());
+      } else {
+        assertNull(node.get("trace_id"));
+      }
+    }
+  }
+
+  /**
+   * The disabled writer discards everything.
+   */
+
+  @Test
+  public void testDisabled()
+  {
+    final var writer = PAccessLogWriter.disabled();
+    assertFalse(writer.isEnabled());
+    writer.submit(entry(0));
+    assertEquals(0L, writer.written());
+    assertEquals(0L, writer.dropped());
+  }
+
+  /**
+   * Every entry is either written or counted as dropped.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testBounded()
+    throws Exception
+  {
+    final PAccessLogWriter writer;
+    try (var w = PAccessLogWriter.open(this.file, 1)) {
+      writer = w;
+      for (int index = 0; index < 10_000; ++index) {
+        w.submit(entry(index));
+      }
+    }
+
+    assertEquals(10_000L, writer.written() + writer.dropped());
+    assertEquals(
+      writer.written(),
+      Files.readAllLines(this.file, UTF_8).size());
+  }
+
+  /**
+   * Token parameters are redacted.
+   */
+
+  @Test
+  public void testRedact()
+  {
+    assertNull(PServerAccessLog.redact(null));
+    assertEquals("", PServerAccessLog.redact(""));
+    assertEquals("a=b", PServerAccessLog.redact("a=b"));
+    assertEquals(
+      "token=REDACTED",
+      PServerAccessLog.redact("token=abcd"));
+    assertEquals(
+      "a=b&token=REDACTED&c=d",
+      PServerAccessLog.redact("a=b&token=abcd&c=d"));
+    assertEquals(
+      "token=REDACTED",
+      PServerAccessLog.redact("token"));
+    assertEquals(
+      "tokens=abcd",
+      PServerAccessLog.redact("tokens=abcd"));
+  }
+
+  /**
+   * Token parameters are redacted regardless of case and URL encoding.
+   */
+
+  @Test
+  public void testRedactEncoded()
+  {
+    assertEquals(
+      "TOKEN=REDACTED",
+      PServerAccessLog.redact("TOKEN=abcd"));
+    assertEquals(
+      "a=b&Token=REDACTED",
+      PServerAccessLog.redact("a=b&Token=abcd"));
+    assertEquals(
+      "%74oken=REDACTED",
+      PServerAccessLog.redact("%74oken=abcd"));
+    assertEquals(
+      "%54%4F%4B%45%4E=REDACTED",
+      PServerAccessLog.redact("%54%4F%4B%45%4E=abcd"));
+    assertEquals(
+      "tok%zz=REDACTED",
+      PServerAccessLog.redact("tok%zz=abcd"));
+    assertEquals(
+      "a%3Dtoken=abcd",
+      PServerAccessLog.redact("a%3Dtoken=abcd"));
+  }
+
+  /**
+   * The longest matching route determines the sampling rate.
+   */
+
+  @Test
+  public void testSamplingRate()
+  {
+    final var log =
+      new PServerAccessLog(
+        "public",
+        PAccessLogWriter.disabled(),
+        Map.of(
+          "/", Double.valueOf(0.5),
+          "/static", Double.valueOf(0.01),
+          "/static/main.css", Double.valueOf(0.0)
+        )
+      );
+
+    assertEquals(0.5, log.samplingRate("/"));
+    assertEquals(0.5, log.samplingRate("/signup"));
+    assertEquals(0.01, log.samplingRate("/static/x.png"));
+    assertEquals(0.0, log.samplingRate("/static/main.css"));
+
+    final var unsampled =
+      new PServerAccessLog("public", PAccessLogWriter.disabled(), Map.of());
+    assertEquals(1.0, unsampled.samplingRate("/anything"));
+  }
+}
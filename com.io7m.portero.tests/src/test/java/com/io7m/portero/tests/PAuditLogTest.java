@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.audit.PAuditLogs;
+import com.io7m.portero.server.audit.PAuditRecord;
+import com.io7m.portero.server.internal.PAuditLog;
+import com.io7m.portero.server.tokens.PTokenEventKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PAuditLogTest
+{
+  private Path directory;
+  private Path file;
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    this.directory = Files.createTempDirectory("portero");
+    this.file = this.directory.resolve("audit.log");
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(this.file);
+    Files.deleteIfExists(this.directory);
+  }
+
+  private static PAuditRecord record(
+    final PTokenEventKind kind,
+    final String token,
+    final String user)
+  {
+    return PAuditRecord.builder()
+      .setTime(OffsetDateTime.parse("2026-01-01T00:00:00Z"))
+      .setEvent(kind)
+      .setToken(token)
+      .setUserId(Optional.ofNullable(user))
+      .build();
+  }
+
+  /**
+   * Records survive a round trip through the file, one per line, and
+   * records are appended to an existing file.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRoundTrip()
+    throws Exception
+  {
+    final var r0 = record(PTokenEventKind.ISSUED, "a", null);
+    final var r1 = record(PTokenEventKind.CONSUMED, "a", "@u:example.com");
+    final var r2 = record(PTokenEventKind.EXPIRED, "b", null);
+
+    try (var log = PAuditLog.open(this.file)) {
+      log.append(r0).get(10L, TimeUnit.SECONDS);
+      log.append(r1).get(10L, TimeUnit.SECONDS);
+    }
+    try (var log = PAuditLog.open(this.file)) {
+      log.append(r2).get(10L, TimeUnit.SECONDS);
+    }
+
+    final var lines = Files.readAllLines(this.file, UTF_8);
+    assertEquals(3, lines.size());
+    assertEquals(r0, PAuditLogs.parse(lines.get(0)));
+    assertEquals(r1, PAuditLogs.parse(lines.get(1)));
+    assertEquals(r2, PAuditLogs.parse(lines.get(2)));
+  }
+
+  /**
+   * Concurrent appends share flushes, and every record is written exactly
+   * once.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testGroupCommit()
+    throws Exception
+  {
+    final var executor = Executors.newFixedThreadPool(16);
+    try (var log = PAuditLog.open(this.file)) {
+      final var futures = new ArrayList<CompletableFuture<Void>>();
+      for (int index = 0; index < 2000; ++index) {
+        final var token = Integer.toString(index);
+        futures.add(
+          CompletableFuture.supplyAsync(
+            () -> log.append(record(PTokenEventKind.ISSUED, token, null)),
+            executor
+          ).thenCompose(f -> f));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .get(30L, TimeUnit.SECONDS);
+
+      assertEquals(2000L, log.written());
+      assertTrue(log.syncs() <= log.written());
+    } finally {
+      executor.shutdown();
+    }
+
+    final var tokens = new HashSet<String>();
+    for (final var line : Files.readAllLines(this.file, UTF_8)) {
+      tokens.add(PAuditLogs.parse(line).token());
+    }
+    assertEquals(2000, tokens.size());
+  }
+
+  /**
+   * Records appended after, or concurrently with, closing the log fail
+   * rather than leaving the caller waiting forever.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testAppendAfterClose()
+    throws Exception
+  {
+    final var executor = Executors.newFixedThreadPool(16);
+    final var futures = new ArrayList<CompletableFuture<Void>>();
+    try {
+      final var log = PAuditLog.open(this.file);
+      for (int index = 0; index < 2000; ++index) {
+        final var token = Integer.toString(index);
+        futures.add(
+          CompletableFuture.supplyAsync(
+            () -> log.append(record(PTokenEventKind.ISSUED, token, null)),
+            executor
+          ).thenCompose(f -> f));
+        if (index == 1000) {
+          log.close();
+        }
+      }
+
+      final var late = log.append(record(PTokenEventKind.ISSUED, "x", null));
+      final var ex =
+        assertThrows(ExecutionException.class, () -> {
+          late.get(10L, TimeUnit.SECONDS);
+        });
+      assertInstanceOf(IllegalStateException.class, ex.getCause());
+    } finally {
+      executor.shutdown();
+    }
+
+    for (final var future : futures) {
+      try {
+        future.get(10L, TimeUnit.SECONDS);
+      } catch (final ExecutionException e) {
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Malformed lines are rejected.
+   */
+
+  @Test
+  public void testMalformed()
+  {
+    assertThrows(IOException.class, () -> {
+      PAuditLogs.parse("{\"time\":\"x\",\"event\":\"ISSUED\",\"token\":\"a\"}");
+    });
+    assertThrows(IOException.class, () -> {
+      PAuditLogs.parse("{\"time\":\"2026-01-01T00:00:00Z\",\"event\":\"Q\",\"token\":\"a\"}");
+    });
+    assertThrows(IOException.class, () -> {
+      PAuditLogs.parse("not json");
+    });
+  }
+}
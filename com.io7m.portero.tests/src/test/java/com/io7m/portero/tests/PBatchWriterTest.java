@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PBatchWriter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PBatchWriterTest
+{
+  /**
+   * Every item offered before closing is consumed, in order, in batches no
+   * larger than the batch size.
+   */
+
+  @Test
+  public void testBatches()
+  {
+    final var consumed = Collections.synchronizedList(new ArrayList<Integer>());
+    final var sizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    final var writer =
+      PBatchWriter.<Integer>start("test", 1000, 10, batch -> {
+        sizes.add(batch.size());
+        consumed.addAll(batch);
+      });
+
+    for (int index = 0; index < 1000; ++index) {
+      assertTrue(writer.offer(Integer.valueOf(index)));
+    }
+    assertEquals(List.of(), writer.closeAndDrain());
+
+    assertEquals(1000, consumed.size());
+    for (int index = 0; index < 1000; ++index) {
+      assertEquals(index, consumed.get(index).intValue());
+    }
+    assertTrue(sizes.stream().allMatch(size -> size <= 10));
+  }
+
+  /**
+   * Offering to a full queue fails without blocking.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testOfferFull()
+    throws Exception
+  {
+    final var blocked = new CountDownLatch(1);
+    final var release = new CountDownLatch(1);
+
+    final var writer =
+      PBatchWriter.<Integer>start("test", 1, 1, batch -> {
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+
+    assertTrue(writer.offer(Integer.valueOf(0)));
+    blocked.await();
+    assertTrue(writer.offer(Integer.valueOf(1)));
+    assertFalse(writer.offer(Integer.valueOf(2)));
+
+    release.countDown();
+    writer.close();
+  }
+
+  /**
+   * A closed writer refuses items.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testClosed()
+    throws Exception
+  {
+    final var writer =
+      PBatchWriter.<Integer>start("test", 1, 1, batch -> {
+      });
+
+    writer.close();
+    assertTrue(writer.isClosed());
+    assertFalse(writer.offer(Integer.valueOf(0)));
+    assertFalse(writer.put(Integer.valueOf(0)));
+  }
+
+  /**
+   * A failing consumer does not stop the writer.
+   */
+
+  @Test
+  public void testConsumerFails()
+  {
+    final var consumed = Collections.synchronizedList(new ArrayList<Integer>());
+
+    final var writer =
+      PBatchWriter.<Integer>start("test", 10, 1, batch -> {
+        if (batch.get(0).intValue() == 0) {
+          throw new IllegalStateException("Failed");
+        }
+        consumed.addAll(batch);
+      });
+
+    assertTrue(writer.offer(Integer.valueOf(0)));
+    assertTrue(writer.offer(Integer.valueOf(1)));
+    writer.close();
+    assertEquals(List.of(Integer.valueOf(1)), consumed);
+  }
+
+  /**
+   * Capacities and batch sizes must be positive.
+   */
+
+  @Test
+  public void testInvalid()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      PBatchWriter.<Integer>start("test", 0, 1, batch -> {
+      });
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      PBatchWriter.<Integer>start("test", 1, 0, batch -> {
+      });
+    });
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.PServerClusterConfiguration;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.internal.PServerMain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.MediaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public final class PClusterTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PClusterTest.class);
+
+  private static final int NODES = 3;
+
+  private List<PServerMain> servers;
+  private HttpClient client;
+  private ClientAndServer mockServer;
+
+  private static int publicPort(
+    final int node)
+  {
+    return 20000 + (node * 10);
+  }
+
+  private static int privatePort(
+    final int node)
+  {
+    return 20001 + (node * 10);
+  }
+
+  private static URI publicURI(
+    final int node)
+  {
+    return URI.create("http://127.0.0.1:" + publicPort(node) + "/");
+  }
+
+  private static URI privateURI(
+    final int node)
+  {
+    return URI.create("http://127.0.0.1:" + privatePort(node) + "/");
+  }
+
+  private String generateToken(
+    final int node)
+    throws IOException, InterruptedException
+  {
+    final var request =
+      HttpRequest.newBuilder(privateURI(node))
+        .build();
+
+    final var response =
+      this.client.send(request, HttpResponse.BodyHandlers.ofString());
+
+    assertEquals(200, response.statusCode());
+
+    final var tokenURI =
+      response.body();
+    final var tokenPieces =
+      tokenURI.split("\\s+");
+    final var tokenTrimmed =
+      tokenPieces[0].substring(tokenURI.indexOf('=') + 1).trim();
+
+    LOG.debug("generated token {} on node {}", tokenTrimmed, node);
+    return tokenTrimmed;
+  }
+
+  private HttpRequest signupRequest(
+    final int node,
+    final String token)
+  {
+    final var bodyBuilder = new StringBuilder(128);
+    bodyBuilder.append("token=");
+    bodyBuilder.append(token);
+    bodyBuilder.append("&user_name=user");
+    bodyBuilder.append("&email=user@example.com");
+    bodyBuilder.append("&password=password");
+    bodyBuilder.append("&password_confirm=password");
+    final var bodyBytes = bodyBuilder.toString().getBytes(UTF_8);
+
+    return HttpRequest.newBuilder(publicURI(node).resolve("/signup-complete/"))
+      .header("content-type", "application/x-www-form-urlencoded")
+      .POST(HttpRequest.BodyPublishers.ofByteArray(bodyBytes))
+      .build();
+  }
+
+  private void expectRegistrations()
+    throws IOException
+  {
+    this.mockServer
+      .when(request("/_synapse/admin/v1/register"))
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.APPLICATION_JSON)
+          .withBody(PTestResources.resourceText("matrix-nonce-0.json")));
+
+    this.mockServer
+      .when(request("/_synapse/admin/v1/register"))
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.APPLICATION_JSON)
+          .withBody(PTestResources.resourceText("matrix-create-user-0.json")));
+  }
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.client = HttpClient.newHttpClient();
+
+    this.mockServer = startClientAndServer(10000);
+    assertTrue(this.mockServer.hasStarted(100, 5L, TimeUnit.SECONDS));
+
+    this.servers = new ArrayList<>();
+    for (int node = 0; node < NODES; ++node) {
+      final var cluster =
+        PServerClusterConfiguration.builder()
+          .setNodeId("node" + node)
+          .setReplicationInterval(Duration.ofMillis(50L));
+
+      for (int peer = 0; peer < NODES; ++peer) {
+        if (peer != node) {
+          cluster.addPeers(privateURI(peer));
+        }
+      }
+
+      final var config =
+        PServerConfiguration.builder()
+          .setMatrixServerAdminConnectionURI(
+            URI.create("http://127.0.0.1:10000/"))
+          .setMatrixServerAdminRegistrationSecret(
+            "b07b6614ecb96d689f835e4798f24e05b552d12aedfbda2ff54fb610cd2b0e29")
+          .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+          .setBindPrivatePort(privatePort(node))
+          .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+          .setBindPublicPort(publicPort(node))
+          .setServerTitle("chat.example.com")
+          .setPublicURI(URI.create("http://invite.example.com"))
+          .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+          .setCluster(cluster.build())
+          .build();
+
+      final var server = PServerMain.create(config);
+      server.start();
+      this.servers.add(server);
+    }
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    for (final var server : this.servers) {
+      server.stop();
+    }
+
+    this.mockServer.stop();
+    assertTrue(this.mockServer.hasStopped(100, 5L, TimeUnit.SECONDS));
+    this.mockServer.close();
+    assertTrue(this.mockServer.hasStopped(100, 5L, TimeUnit.SECONDS));
+  }
+
+  /**
+   * A token issued on one node can be redeemed on another node, and can
+   * then not be redeemed again on any node.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRedeemElsewhere()
+    throws Exception
+  {
+    this.expectRegistrations();
+
+    final var token = this.generateToken(0);
+    Thread.sleep(500L);
+
+    final var response0 =
+      this.client.send(
+        this.signupRequest(1, token),
+        HttpResponse.BodyHandlers.ofString());
+
+    LOG.debug("received: {}", response0.body());
+    assertEquals(200, response0.statusCode());
+    assertTrue(response0.body().contains("Registration successful"));
+
+    Thread.sleep(500L);
+
+    for (int node = 0; node < NODES; ++node) {
+      final var response1 =
+        this.client.send(
+          this.signupRequest(node, token),
+          HttpResponse.BodyHandlers.ofString());
+      LOG.debug("received: {}", response1.body());
+      assertEquals(400, response1.statusCode());
+    }
+  }
+
+  /**
+   * A token redeemed concurrently on every node is redeemed exactly once.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRedeemConcurrently()
+    throws Exception
+  {
+    this.expectRegistrations();
+
+    final var token = this.generateToken(0);
+    Thread.sleep(500L);
+
+    final var futures =
+      new ArrayList<CompletableFuture<HttpResponse<String>>>();
+    for (int node = 0; node < NODES; ++node) {
+      futures.add(
+        this.client.sendAsync(
+          this.signupRequest(node, token),
+          HttpResponse.BodyHandlers.ofString()));
+    }
+
+    var succeeded = 0;
+    for (final var future : futures) {
+      final var response = future.get(10L, TimeUnit.SECONDS);
+      LOG.debug("received: {}", response.body());
+      if (response.statusCode() == 200) {
+        ++succeeded;
+      }
+    }
+    assertEquals(1, succeeded);
+  }
+}
@@ -29,8 +29,20 @@ public final class PEqualsTest
   public Stream<DynamicTest> testEquals()
   {
     return Stream.of(
+      com.io7m.portero.loadtest.PLoadTestConfiguration.class,
+      com.io7m.portero.loadtest.PLoadTestLatency.class,
+      com.io7m.portero.loadtest.PLoadTestReplayConfiguration.class,
+      com.io7m.portero.loadtest.PLoadTestReport.class,
+      com.io7m.portero.server.audit.PAuditRecord.class,
       com.io7m.portero.server.internal.PInviteRequest.class,
-      com.io7m.portero.server.PServerConfiguration.class)
+      com.io7m.portero.server.internal.PLatencySnapshot.class,
+      com.io7m.portero.server.internal.PUpstreamStatus.class,
+      com.io7m.portero.server.PServerClusterConfiguration.class,
+      com.io7m.portero.server.PServerConfiguration.class,
+      com.io7m.portero.server.PServerInvite.class,
+      com.io7m.portero.server.traffic.PTrafficRecord.class,
+      com.io7m.portero.simulator.PSimulatorConfiguration.class,
+      com.io7m.portero.simulator.PSimulatorRateLimit.class)
       .map(this::testOf);
   }
 
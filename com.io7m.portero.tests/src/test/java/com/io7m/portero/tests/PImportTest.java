@@ -0,0 +1,374 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.cmdline.Main;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.PServerType;
+import com.io7m.portero.server.PServers;
+import com.io7m.portero.server.internal.PServerImportReader;
+import com.io7m.portero.simulator.PSimulator;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PImportTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PImportTest.class);
+
+  private static final URI IMPORT_URI =
+    URI.create("http://127.0.0.1:20031/import");
+
+  private PSimulator simulator;
+  private PServerType server;
+  private HttpClient client;
+  private ObjectMapper mapper;
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.simulator =
+      PSimulator.start(
+        PSimulatorConfiguration.builder()
+          .setSharedSecret("secret")
+          .build());
+
+    this.server =
+      PServers.createServer(
+        PServerConfiguration.builder()
+          .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+          .setMatrixServerAdminConnectionURI(this.simulator.uri())
+          .setMatrixServerAdminRegistrationSecret("secret")
+          .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+          .setBindPrivatePort(20031)
+          .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+          .setBindPublicPort(20030)
+          .setServerTitle("chat.example.com")
+          .setPublicURI(URI.create("http://127.0.0.1:20030/"))
+          .build());
+    this.server.start();
+
+    this.client = HttpClient.newHttpClient();
+    this.mapper = new ObjectMapper();
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    this.server.close();
+    this.simulator.close();
+  }
+
+  private HttpResponse<String> post(
+    final String query,
+    final String contentType,
+    final String body)
+    throws Exception
+  {
+    return this.client.send(
+      HttpRequest.newBuilder(URI.create(IMPORT_URI + query))
+        .header("Content-Type", contentType)
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build(),
+      HttpResponse.BodyHandlers.ofString());
+  }
+
+  private Map<Long, JsonNode> resultsOf(
+    final String body)
+    throws IOException
+  {
+    final var results = new ArrayList<JsonNode>();
+    for (final var line : body.lines().toList()) {
+      results.add(this.mapper.readTree(line));
+    }
+    LOG.debug("results: {}", results);
+    return results.stream()
+      .collect(Collectors.toMap(
+        n -> Long.valueOf(n.get("line").asLong()),
+        Function.identity()));
+  }
+
+  /**
+   * Users given as CSV are registered.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testImportCSV()
+    throws Exception
+  {
+    final var text = new StringBuilder();
+    text.append("user_name,password\n");
+    for (int index = 0; index < 20; ++index) {
+      text.append("user").append(index).append(",password").append(index);
+      text.append('\n');
+    }
+    text.append("quoted,\"pass,word\"\"\"\n");
+
+    final var response =
+      this.post("?rate=1000&parallelism=8", "text/csv", text.toString());
+    assertEquals(200, response.statusCode());
+    assertEquals(
+      "application/x-ndjson",
+      response.headers().firstValue("Content-Type").orElseThrow());
+
+    final var results = this.resultsOf(response.body());
+    assertEquals(21, results.size());
+    for (final var result : results.values()) {
+      assertEquals("registered", result.get("status").asText());
+      assertTrue(result.get("user_id").asText().startsWith("@"));
+    }
+    assertEquals("user0", results.get(Long.valueOf(2L)).get("user_name").asText());
+
+    for (int index = 0; index < 20; ++index) {
+      assertTrue(this.simulator.isRegistered("user" + index));
+    }
+    assertTrue(this.simulator.isRegistered("quoted"));
+    assertEquals(21, this.simulator.registered());
+  }
+
+  /**
+   * Users given as NDJSON are registered, and malformed lines and failed
+   * registrations are reported without stopping the import.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testImportNDJSON()
+    throws Exception
+  {
+    final var text =
+      String.join(
+        "\n",
+        "{\"user_name\":\"alice\",\"password\":\"x\"}",
+        "{\"user_name\":\"bob\",\"password\":\"y\"}",
+        "not json",
+        "{\"user_name\":\"alice\",\"password\":\"z\"}",
+        "{\"user_name\":\"carol\"}",
+        "");
+
+    final var response =
+      this.post("?rate=1000&parallelism=1", "application/x-ndjson", text);
+    assertEquals(200, response.statusCode());
+
+    final var results = this.resultsOf(response.body());
+    assertEquals(5, results.size());
+    assertEquals("registered", results.get(Long.valueOf(1L)).get("status").asText());
+    assertEquals("registered", results.get(Long.valueOf(2L)).get("status").asText());
+    assertEquals("invalid", results.get(Long.valueOf(3L)).get("status").asText());
+    assertNull(results.get(Long.valueOf(3L)).get("user_name"));
+    assertEquals("failed", results.get(Long.valueOf(4L)).get("status").asText());
+    assertTrue(results.get(Long.valueOf(4L)).get("error").asText().contains("M_USER_IN_USE"));
+    assertEquals("invalid", results.get(Long.valueOf(5L)).get("status").asText());
+    assertEquals("carol", results.get(Long.valueOf(5L)).get("user_name").asText());
+
+    assertEquals(2, this.simulator.registered());
+  }
+
+  /**
+   * Registrations are started no faster than the requested rate.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testImportRate()
+    throws Exception
+  {
+    final var text = new StringBuilder();
+    for (int index = 0; index < 11; ++index) {
+      text.append("rate").append(index).append(",password\n");
+    }
+
+    final var timeStart = System.nanoTime();
+    final var response =
+      this.post("?rate=20&parallelism=8", "text/csv", text.toString());
+    final var elapsed = System.nanoTime() - timeStart;
+
+    assertEquals(200, response.statusCode());
+    assertEquals(11, this.resultsOf(response.body()).size());
+    assertTrue(
+      elapsed >= 450_000_000L,
+      "10 intervals at 20/s must take at least 0.5s (took " + elapsed + "ns)");
+  }
+
+  /**
+   * Bad requests are rejected before anything is imported.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testImportRejected()
+    throws Exception
+  {
+    assertEquals(400, this.post("?rate=0", "text/csv", "a,b\n").statusCode());
+    assertEquals(400, this.post("?rate=x", "text/csv", "a,b\n").statusCode());
+    assertEquals(
+      400, this.post("?parallelism=0", "text/csv", "a,b\n").statusCode());
+    assertEquals(
+      400, this.post("?parallelism=65", "text/csv", "a,b\n").statusCode());
+    assertEquals(415, this.post("", "text/plain", "a,b\n").statusCode());
+
+    final var get =
+      this.client.send(
+        HttpRequest.newBuilder(IMPORT_URI).build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertEquals(405, get.statusCode());
+    assertEquals(0, this.simulator.registered());
+  }
+
+  /**
+   * CSV quoting and malformed lines are handled.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testReadCSV()
+    throws Exception
+  {
+    final var entries =
+      PServerImportReader.readCSV(
+        new BufferedReader(new StringReader(String.join(
+          "\n",
+          "a,b",
+          "",
+          "\"c\",\"d,\"\"e\"",
+          "f",
+          "g,h,i",
+          "\"j,k",
+          ",l"
+        ))),
+        100);
+
+    assertEquals(6, entries.size());
+    assertEquals("a", entries.get(0).user().userName);
+    assertEquals("b", entries.get(0).user().password);
+    assertNull(entries.get(0).error());
+    assertEquals(3L, entries.get(1).line());
+    assertEquals("c", entries.get(1).user().userName);
+    assertEquals("d,\"e", entries.get(1).user().password);
+    assertTrue(entries.get(2).error().contains("Expected 2 fields"));
+    assertTrue(entries.get(3).error().contains("Expected 2 fields"));
+    assertEquals("Unterminated quote", entries.get(4).error());
+    assertEquals("Missing user name", entries.get(5).error());
+
+    assertThrows(IOException.class, () -> {
+      PServerImportReader.readCSV(
+        new BufferedReader(new StringReader("a,b\nc,d\n")), 1);
+    });
+  }
+
+  /**
+   * The import command prints a result for each user.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testImportCommand()
+    throws Exception
+  {
+    final var directory = Files.createTempDirectory("portero");
+    final var configFile = directory.resolve("server.conf");
+    final var usersFile = directory.resolve("users.csv");
+
+    Files.write(configFile, List.of(
+      "matrix.adminSharedSecret = secret",
+      "matrix.adminURL = " + this.simulator.uri(),
+      "matrix.publicURL = https://chat.example.com",
+      "server.privateAddress = 127.0.0.1",
+      "server.privatePort = 20031",
+      "server.publicAddress = 127.0.0.1",
+      "server.publicPort = 20030",
+      "server.publicURL = https://invite.example.com/",
+      "server.title = chat.example.com"
+    ), UTF_8);
+    Files.write(usersFile, List.of("cmd0,password", "cmd1,password"), UTF_8);
+
+    final var out = new ByteArrayOutputStream();
+    final var outOld = System.out;
+    final Main main;
+    try {
+      System.setOut(new PrintStream(out, true, UTF_8));
+      main = new Main(new String[]{
+        "import",
+        "--configuration-file",
+        configFile.toString(),
+        "--file",
+        usersFile.toString(),
+        "--rate",
+        "100"
+      });
+      main.run();
+    } finally {
+      System.setOut(outOld);
+      deleteAll(List.of(configFile, usersFile, directory));
+    }
+
+    assertEquals(0, main.exitCode());
+    final var results = this.resultsOf(out.toString(UTF_8));
+    assertEquals(2, results.size());
+    assertTrue(this.simulator.isRegistered("cmd0"));
+    assertTrue(this.simulator.isRegistered("cmd1"));
+  }
+
+  private static void deleteAll(
+    final List<Path> paths)
+    throws IOException
+  {
+    for (final var path : paths) {
+      Files.deleteIfExists(path);
+    }
+  }
+}
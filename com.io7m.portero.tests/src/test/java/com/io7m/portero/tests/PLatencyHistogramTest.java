@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PLatencyHistogram;
+import com.io7m.portero.server.internal.PLatencyHistograms;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PLatencyHistogramTest
+{
+  private static boolean near(
+    final long expected,
+    final long received)
+  {
+    return Math.abs(expected - received) <= expected / 100L;
+  }
+
+  /**
+   * Percentiles reflect the slow tail of the recorded values.
+   */
+
+  @Test
+  public void testPercentiles()
+  {
+    final var histogram = new PLatencyHistogram("x");
+    for (int index = 1; index <= 10000; ++index) {
+      histogram.record(index * 1000L);
+    }
+
+    final var first = histogram.snapshot();
+    assertEquals(10000L, first.count());
+    assertTrue(near(5_000_000L, first.p50()), Long.toString(first.p50()));
+    assertTrue(near(9_000_000L, first.p90()), Long.toString(first.p90()));
+    assertTrue(near(9_900_000L, first.p99()), Long.toString(first.p99()));
+    assertTrue(near(9_990_000L, first.p999()), Long.toString(first.p999()));
+    assertTrue(near(10_000_000L, first.max()), Long.toString(first.max()));
+
+    histogram.record(PLatencyHistogram.HIGHEST_TRACKABLE * 2L);
+    histogram.record(-1L);
+
+    final var second = histogram.snapshot();
+    assertEquals(10002L, second.count());
+    assertTrue(second.max() >= PLatencyHistogram.HIGHEST_TRACKABLE);
+  }
+
+  /**
+   * Values recorded concurrently are all counted.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testConcurrent()
+    throws Exception
+  {
+    final var histograms = new PLatencyHistograms();
+    final var histogram = histograms.histogram("y");
+
+    final List<Thread> threads = new ArrayList<>();
+    for (int index = 0; index < 8; ++index) {
+      threads.add(new Thread(() -> {
+        for (int value = 0; value < 10000; ++value) {
+          histogram.record(value);
+          if (value % 1000 == 0) {
+            histograms.snapshot();
+          }
+        }
+      }));
+    }
+    for (final var thread : threads) {
+      thread.start();
+    }
+    for (final var thread : threads) {
+      thread.join();
+    }
+
+    final var snapshots = histograms.snapshot();
+    assertEquals(1, snapshots.size());
+    assertEquals(80000L, snapshots.get(0).count());
+  }
+}
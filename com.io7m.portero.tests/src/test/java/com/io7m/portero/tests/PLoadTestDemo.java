@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.loadtest.PLoadTestConfiguration;
+import com.io7m.portero.loadtest.PLoadTests;
+import com.io7m.portero.server.PServerConfiguration;
+
+import java.net.InetAddress;
+import java.net.URI;
+
+public final class PLoadTestDemo
+{
+  private PLoadTestDemo()
+  {
+
+  }
+
+  /**
+   * Run a load test.
+   *
+   * Usage: invites rate concurrency server-threads
+   *
+   * @param args The command-line arguments
+   *
+   * @throws Exception On errors
+   */
+
+  public static void main(
+    final String[] args)
+    throws Exception
+  {
+    final var invites =
+      args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    final var rate =
+      args.length > 1 ? Double.parseDouble(args[1]) : 100.0;
+    final var concurrency =
+      args.length > 2 ? Integer.parseInt(args[2]) : 16;
+    final var threads =
+      args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+    final var config =
+      PServerConfiguration.builder()
+        .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+        .setMatrixServerAdminConnectionURI(URI.create("http://127.0.0.1/"))
+        .setMatrixServerAdminRegistrationSecret("secret")
+        .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+        .setBindPrivatePort(20011)
+        .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+        .setBindPublicPort(20010)
+        .setServerTitle("chat.example.com")
+        .setServerThreadCount(threads)
+        .setPublicURI(URI.create("http://127.0.0.1:20010/"))
+        .build();
+
+    final var report =
+      PLoadTests.run(
+        PLoadTestConfiguration.builder()
+          .setServer(config)
+          .setInvites(invites)
+          .setRate(rate)
+          .setConcurrency(concurrency)
+          .build()
+      );
+
+    System.out.print(PLoadTests.format(report));
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.loadtest.PLoadTestConfiguration;
+import com.io7m.portero.loadtest.PLoadTests;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PLoadTestTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PLoadTestTest.class);
+
+  private static PServerConfiguration serverConfiguration()
+    throws Exception
+  {
+    return PServerConfiguration.builder()
+      .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+      .setMatrixServerAdminConnectionURI(URI.create("http://127.0.0.1/"))
+      .setMatrixServerAdminRegistrationSecret("secret")
+      .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPrivatePort(20011)
+      .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPublicPort(20010)
+      .setServerTitle("chat.example.com")
+      .setPublicURI(URI.create("http://127.0.0.1:20010/"))
+      .build();
+  }
+
+  /**
+   * A small load test completes every signup and reports latencies.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLoad()
+    throws Exception
+  {
+    final var report =
+      PLoadTests.run(
+        PLoadTestConfiguration.builder()
+          .setServer(serverConfiguration())
+          .setInvites(100)
+          .setRate(200.0)
+          .setConcurrency(8)
+          .build()
+      );
+
+    LOG.debug("report:\n{}", PLoadTests.format(report));
+
+    assertEquals(100L, report.attempted());
+    assertEquals(100L, report.succeeded());
+    assertEquals(0L, report.failed());
+    assertEquals(0.0, report.errorRate());
+    assertTrue(report.failures().isEmpty());
+    assertTrue(report.throughput() > 0.0);
+    assertEquals(3, report.latencies().size());
+    for (final var latency : report.latencies()) {
+      assertEquals(100L, latency.count());
+      assertTrue(latency.p50() <= latency.p99());
+      assertTrue(latency.p99() <= latency.max());
+    }
+  }
+
+  /**
+   * Failures injected by the simulator are reported as failed signups.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLoadFaulty()
+    throws Exception
+  {
+    final var report =
+      PLoadTests.run(
+        PLoadTestConfiguration.builder()
+          .setServer(serverConfiguration())
+          .setSimulator(
+            PSimulatorConfiguration.builder()
+              .setSharedSecret("replaced")
+              .setErrorRate(1.0)
+              .build())
+          .setInvites(20)
+          .setRate(200.0)
+          .setConcurrency(4)
+          .build()
+      );
+
+    LOG.debug("report:\n{}", PLoadTests.format(report));
+
+    assertEquals(20L, report.attempted());
+    assertEquals(0L, report.succeeded());
+    assertEquals(20L, report.failed());
+    assertEquals(1.0, report.errorRate());
+    assertFalse(report.failures().isEmpty());
+  }
+
+  /**
+   * Nonsensical configurations are rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testConfigurationInvalid()
+    throws Exception
+  {
+    final var server = serverConfiguration();
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      PLoadTestConfiguration.builder()
+        .setServer(server)
+        .setInvites(0)
+        .build();
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      PLoadTestConfiguration.builder()
+        .setServer(server)
+        .setRate(0.0)
+        .build();
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      PLoadTestConfiguration.builder()
+        .setServer(server)
+        .setConcurrency(0)
+        .build();
+    });
+  }
+}
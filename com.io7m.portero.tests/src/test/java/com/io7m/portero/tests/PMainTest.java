@@ -231,6 +231,85 @@ public final class PMainTest
     Assertions.assertTrue(this.outText.contains("https://result/?token=abcd"));
   }
 
+  @Test
+  public void testInviteBulkCSV()
+    throws IOException
+  {
+    final var configFile =
+      writeStandardConfigurationFile(10000, 10001);
+
+    this.mockServer
+      .when(request())
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.TEXT_PLAIN)
+          .withBody(String.join(
+            "\n",
+            "https://result/?token=abcd",
+            "https://result/?token=efgh",
+            "",
+            "The token will expire at 2026-01-01T00:00:00Z")));
+
+    this.execute(new String[]{
+      "invite",
+      "--configuration-file",
+      configFile.toString(),
+      "--count",
+      "7",
+      "--batch-size",
+      "2",
+      "--parallelism",
+      "3",
+      "--format",
+      "csv"
+    }, 0);
+
+    final var lines = this.outText.lines().toList();
+    Assertions.assertEquals(8, lines.size());
+    Assertions.assertEquals("url,token,expires", lines.get(0));
+    for (final var line : lines.subList(1, lines.size())) {
+      Assertions.assertTrue(
+        line.equals("https://result/?token=abcd,abcd,2026-01-01T00:00:00Z")
+        || line.equals("https://result/?token=efgh,efgh,2026-01-01T00:00:00Z"),
+        line);
+    }
+  }
+
+  @Test
+  public void testInviteBulkJSON()
+    throws IOException
+  {
+    final var configFile =
+      writeStandardConfigurationFile(10000, 10001);
+
+    this.mockServer
+      .when(request())
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.TEXT_PLAIN)
+          .withBody("https://result/?token=abcd"));
+
+    this.execute(new String[]{
+      "invite",
+      "--configuration-file",
+      configFile.toString(),
+      "--count",
+      "3",
+      "--format",
+      "json"
+    }, 0);
+
+    final var lines = this.outText.lines().toList();
+    Assertions.assertEquals(3, lines.size());
+    for (final var line : lines) {
+      Assertions.assertEquals(
+        "{\"url\":\"https://result/?token=abcd\",\"token\":\"abcd\",\"expires\":\"\"}",
+        line);
+    }
+  }
+
   @Test
   public void testInviteServerFails()
     throws IOException
@@ -0,0 +1,435 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.loadtest.PLoadTestConfiguration;
+import com.io7m.portero.loadtest.PLoadTests;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.internal.PMatrixClient;
+import com.io7m.portero.server.internal.PServerController;
+import com.io7m.portero.server.internal.PServerControllerParameters;
+import com.io7m.portero.server.internal.PServerPages;
+import com.io7m.portero.server.internal.PServerStrings;
+import com.io7m.portero.server.internal.PTokenStoreMemory;
+import com.io7m.portero.server.tokens.PTokenStoreEvictionPolicy;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Performance regression tests. Each test measures the throughput and 99th
+ * percentile latency of an operation, and fails if either is worse than
+ * the baseline by more than a tolerance.
+ *
+ * Absolute throughput and latency depend on the machine, so every
+ * measurement is divided by the same measurement of a fixed calibration
+ * workload taken on the same machine during the same run. The resulting
+ * ratios are largely independent of the speed of the machine, and are
+ * compared against the baseline committed in
+ * {@code performance-baseline.properties}. The
+ * {@code portero.performance.baseline} system property names a baseline
+ * file to use instead. Setting the {@code portero.performance.record}
+ * system property to a file name writes the measured ratios to that file
+ * in the baseline format.
+ *
+ * The tests are tagged {@code performance} and only run in the
+ * {@code performance} profile.
+ */
+
+@Tag("performance")
+public final class PPerformanceRegressionTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PPerformanceRegressionTest.class);
+
+  private static final Duration WARMUP =
+    Duration.ofSeconds(2L);
+
+  private static final Duration MEASUREMENT =
+    Duration.ofSeconds(5L);
+
+  private static final double DEFAULT_TOLERANCE_THROUGHPUT = 0.35;
+  private static final double DEFAULT_TOLERANCE_P99 = 0.75;
+
+  private static final String BASELINE_RESOURCE =
+    "/com/io7m/portero/tests/performance-baseline.properties";
+
+  private static Properties BASELINE;
+  private static Map<String, Double> RESULTS;
+  private static Measurement CALIBRATION;
+
+  private static final class Measurement
+  {
+    private final double throughput;
+    private final double p99Micros;
+
+    Measurement(
+      final double inThroughput,
+      final double inP99Micros)
+    {
+      this.throughput = inThroughput;
+      this.p99Micros = inP99Micros;
+    }
+  }
+
+  @BeforeAll
+  public static void setupOnce()
+    throws Exception
+  {
+    BASELINE = new Properties();
+
+    final var file = System.getProperty("portero.performance.baseline");
+    if (file == null) {
+      try (var stream =
+             PPerformanceRegressionTest.class.getResourceAsStream(
+               BASELINE_RESOURCE)) {
+        BASELINE.load(stream);
+      }
+    } else {
+      try (var reader = Files.newBufferedReader(Path.of(file), UTF_8)) {
+        BASELINE.load(reader);
+      }
+    }
+    RESULTS = new TreeMap<>();
+
+    final var digest = MessageDigest.getInstance("SHA-256");
+    final var data = new byte[1024];
+    CALIBRATION = measure(() -> digest.digest(data));
+
+    LOG.info(
+      "calibration: throughput {} ops/s, p99 {} us",
+      format(CALIBRATION.throughput),
+      format(CALIBRATION.p99Micros)
+    );
+  }
+
+  @AfterAll
+  public static void tearDownOnce()
+    throws IOException
+  {
+    final var file = System.getProperty("portero.performance.record");
+    if (file == null) {
+      return;
+    }
+
+    final var output = new Properties();
+    final var toleranceThroughput =
+      tolerance("tolerance.throughput", DEFAULT_TOLERANCE_THROUGHPUT);
+    final var toleranceP99 =
+      tolerance("tolerance.p99", DEFAULT_TOLERANCE_P99);
+    output.setProperty(
+      "tolerance.throughput", Double.toString(toleranceThroughput));
+    output.setProperty(
+      "tolerance.p99", Double.toString(toleranceP99));
+    for (final var entry : RESULTS.entrySet()) {
+      output.setProperty(
+        entry.getKey(),
+        String.format(Locale.ROOT, "%.4g", entry.getValue()));
+    }
+
+    try (Writer writer = Files.newBufferedWriter(Path.of(file), UTF_8)) {
+      output.store(writer, "Recorded by PPerformanceRegressionTest");
+    }
+    LOG.info("recorded results to {}", file);
+  }
+
+  private static PServerConfiguration serverConfiguration(
+    final int publicPort,
+    final int privatePort)
+    throws Exception
+  {
+    return PServerConfiguration.builder()
+      .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+      .setMatrixServerAdminConnectionURI(URI.create("http://127.0.0.1/"))
+      .setMatrixServerAdminRegistrationSecret("secret")
+      .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPrivatePort(privatePort)
+      .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPublicPort(publicPort)
+      .setServerTitle("chat.example.com")
+      .setPublicURI(
+        URI.create(String.format("http://127.0.0.1:%d/", publicPort)))
+      .build();
+  }
+
+  /**
+   * Issuing a single token through the controller.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTokenIssue()
+    throws Exception
+  {
+    try (var controller = PServerController.create(
+      PServerControllerParameters.builder()
+        .setStrings(new PServerStrings(Locale.ROOT))
+        .setExpiry(Duration.ofHours(48L))
+        .setTokenStores((expiry, onExpired) -> {
+          return PTokenStoreMemory.create(
+            expiry,
+            PTokenStoreMemory.DEFAULT_LIMIT,
+            PTokenStoreEvictionPolicy.EVICT_OLDEST,
+            onExpired
+          );
+        })
+        .setClient(PMatrixClient.create(
+          HttpClient.newHttpClient(),
+          URI.create("http://127.0.0.1/")))
+        .build())) {
+
+      check("token.issue", measure(controller::generateToken));
+    }
+  }
+
+  /**
+   * Rendering the signup page.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testPageRender()
+    throws Exception
+  {
+    final var pages =
+      new PServerPages(Locale.ROOT);
+    final var configuration =
+      serverConfiguration(0, 0);
+
+    check("page.signup", measure(() -> {
+      pages.signupPage(
+        configuration, "QxJRgS6xMc3Hd0Lg2dXc0pVGxGyYqKxJBsTVSrwE0mE");
+    }));
+  }
+
+  /**
+   * A complete signup through the public port, against the Synapse
+   * simulator. Signups are offered faster than the server can complete
+   * them, so the throughput is the server's capacity. The latency is that
+   * of the signup completion request, which includes the round trip to the
+   * simulator; the end-to-end latency from the scheduled start time
+   * measures queueing at saturation rather than the server.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSignupRoundTrip()
+    throws Exception
+  {
+    final var report =
+      PLoadTests.run(
+        PLoadTestConfiguration.builder()
+          .setServer(serverConfiguration(freePort(), freePort()))
+          .setInvites(2000)
+          .setRate(2000.0)
+          .setConcurrency(8)
+          .build()
+      );
+
+    LOG.info("signup round trip:\n{}", PLoadTests.format(report));
+    assertTrue(report.failures().isEmpty(), report.failures().toString());
+
+    final var complete =
+      report.latencies()
+        .stream()
+        .filter(l -> "signup-complete".equals(l.name()))
+        .findFirst()
+        .orElseThrow();
+
+    check(
+      "signup.roundtrip",
+      new Measurement(report.throughput(), complete.p99() / 1_000.0)
+    );
+  }
+
+  private static int freePort()
+    throws IOException
+  {
+    try (var socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  interface OperationType
+  {
+    void execute()
+      throws Exception;
+  }
+
+  private static Measurement measure(
+    final OperationType operation)
+    throws Exception
+  {
+    runFor(WARMUP, operation, null);
+
+    final var histogram =
+      new Histogram(TimeUnit.SECONDS.toNanos(10L), 3);
+    final var timeThen =
+      System.nanoTime();
+    final var count =
+      runFor(MEASUREMENT, operation, histogram);
+    final var elapsed =
+      (System.nanoTime() - timeThen) / 1.0e9;
+
+    return new Measurement(
+      count / elapsed,
+      histogram.getValueAtPercentile(99.0) / 1_000.0
+    );
+  }
+
+  private static long runFor(
+    final Duration duration,
+    final OperationType operation,
+    final Histogram histogram)
+    throws Exception
+  {
+    final var deadline = System.nanoTime() + duration.toNanos();
+    long count = 0L;
+    while (true) {
+      final var timeThen = System.nanoTime();
+      if (timeThen >= deadline) {
+        return count;
+      }
+      operation.execute();
+      if (histogram != null) {
+        histogram.recordValue(System.nanoTime() - timeThen);
+      }
+      ++count;
+    }
+  }
+
+  private static void check(
+    final String name,
+    final Measurement measurement)
+  {
+    final var throughput =
+      measurement.throughput / CALIBRATION.throughput;
+    final var p99 =
+      measurement.p99Micros / CALIBRATION.p99Micros;
+
+    RESULTS.put(name + ".throughput", Double.valueOf(throughput));
+    RESULTS.put(name + ".p99", Double.valueOf(p99));
+
+    LOG.info(
+      "{}: throughput {} ops/s ({} relative), p99 {} us ({} relative)",
+      name,
+      format(measurement.throughput),
+      formatRatio(throughput),
+      format(measurement.p99Micros),
+      formatRatio(p99)
+    );
+
+    final var baseThroughput =
+      baseline(name + ".throughput");
+    final var baseP99 =
+      baseline(name + ".p99");
+    final var toleranceThroughput =
+      tolerance("tolerance.throughput", DEFAULT_TOLERANCE_THROUGHPUT);
+    final var toleranceP99 =
+      tolerance("tolerance.p99", DEFAULT_TOLERANCE_P99);
+
+    final var minThroughput = baseThroughput * (1.0 - toleranceThroughput);
+    final var maxP99 = baseP99 * (1.0 + toleranceP99);
+
+    LOG.info(
+      "{}: minimum relative throughput {}, maximum relative p99 {}",
+      name,
+      formatRatio(minThroughput),
+      formatRatio(maxP99)
+    );
+
+    assertTrue(
+      throughput >= minThroughput,
+      String.format(
+        "%s: Relative throughput %s regressed below %s (baseline %s)",
+        name,
+        formatRatio(throughput),
+        formatRatio(minThroughput),
+        formatRatio(baseThroughput))
+    );
+    assertTrue(
+      p99 <= maxP99,
+      String.format(
+        "%s: Relative p99 latency %s regressed above %s (baseline %s)",
+        name,
+        formatRatio(p99),
+        formatRatio(maxP99),
+        formatRatio(baseP99))
+    );
+  }
+
+  private static double baseline(
+    final String name)
+  {
+    final var value = BASELINE.getProperty(name);
+    if (value == null) {
+      throw new IllegalStateException(
+        String.format("Missing baseline value '%s'", name));
+    }
+    return Double.parseDouble(value);
+  }
+
+  private static double tolerance(
+    final String name,
+    final double defaultValue)
+  {
+    final var value = BASELINE.getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    return Double.parseDouble(value);
+  }
+
+  private static String format(
+    final double x)
+  {
+    return String.format("%.1f", Double.valueOf(x));
+  }
+
+  private static String formatRatio(
+    final double x)
+  {
+    return String.format(Locale.ROOT, "%.4g", Double.valueOf(x));
+  }
+}
@@ -16,36 +16,125 @@
 
 package com.io7m.portero.tests;
 
+import com.io7m.portero.server.audit.PAuditLogs;
+import com.io7m.portero.server.internal.PAuditLog;
 import com.io7m.portero.server.internal.PMatrixClient;
 import com.io7m.portero.server.internal.PServerController;
+import com.io7m.portero.server.internal.PServerControllerParameters;
 import com.io7m.portero.server.internal.PServerStrings;
+import com.io7m.portero.server.internal.PTokenStoreMemory;
+import com.io7m.portero.server.tokens.PTokenEventKind;
 import org.junit.jupiter.api.Test;
 
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public final class PServerControllerTest
 {
+  /**
+   * Tokens expire once the store's clock passes their expiry time.
+   *
+   * @throws Exception On errors
+   */
+
   @Test
   public void testExpiration()
     throws Exception
+  {
+    try (var test = PTestController.create(
+      Duration.ofSeconds(1L),
+      PTokenStoreMemory.DEFAULT_LIMIT,
+      PAuditLog.disabled())) {
+      final var controller = test.controller();
+
+      final var token = controller.generateToken();
+      assertEquals(1, controller.tokenCount());
+
+      test.clock().advance(Duration.ofMillis(999L));
+      assertEquals(0, test.store().expire());
+      assertTrue(controller.tokenIsValid(token));
+
+      test.clock().advance(Duration.ofMillis(1L));
+      assertFalse(controller.tokenIsValid(token));
+      assertEquals(1, test.store().expire());
+      assertEquals(0, controller.tokenCount());
+    }
+  }
+
+  @Test
+  public void testGenerateTokens()
+    throws Exception
   {
     final var controller =
       PServerController.create(
-        new PServerStrings(Locale.getDefault()),
-        Duration.ofSeconds(1L),
-        PMatrixClient.create(
-          HttpClient.newHttpClient(),
-          URI.create("http://example.com/"))
+        PServerControllerParameters.builder()
+          .setStrings(new PServerStrings(Locale.getDefault()))
+          .setExpiry(Duration.ofHours(1L))
+          .setClient(PMatrixClient.create(
+            HttpClient.newHttpClient(),
+            URI.create("http://example.com/")))
+          .build()
       );
 
-    controller.generateToken();
-    assertEquals(1, controller.tokenCount());
-    Thread.sleep(Duration.ofSeconds(2L).toMillis());
-    assertEquals(0, controller.tokenCount());
+    final var tokens = controller.generateTokens(100);
+    assertEquals(100, tokens.size());
+    assertEquals(100, new HashSet<>(tokens).size());
+    assertEquals(100, controller.tokenCount());
+  }
+
+  /**
+   * Issued and expired tokens are recorded in the audit log.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testAudit()
+    throws Exception
+  {
+    final var directory = Files.createTempDirectory("portero");
+    final var file = directory.resolve("audit.log");
+
+    final String token;
+    try (var test = PTestController.create(
+      Duration.ofSeconds(1L),
+      PTokenStoreMemory.DEFAULT_LIMIT,
+      PAuditLog.open(file))) {
+      token = test.controller().generateToken();
+      test.clock().advance(Duration.ofSeconds(1L));
+      assertEquals(1, test.store().expire());
+    }
+
+    final var events =
+      Files.readAllLines(file, UTF_8)
+        .stream()
+        .map(line -> {
+          try {
+            return PAuditLogs.parse(line);
+          } catch (final Exception e) {
+            throw new IllegalStateException(e);
+          }
+        })
+        .toList();
+
+    assertEquals(2, events.size());
+    assertEquals(
+      List.of(PTokenEventKind.ISSUED, PTokenEventKind.EXPIRED),
+      events.stream().map(e -> e.event()).toList());
+    assertEquals(token, events.get(0).token());
+    assertEquals(token, events.get(1).token());
+
+    Files.delete(file);
+    Files.delete(directory);
   }
 }
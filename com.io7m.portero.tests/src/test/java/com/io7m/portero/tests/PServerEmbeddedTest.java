@@ -0,0 +1,272 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.PServerClusterConfiguration;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.PServerEmbeddedException;
+import com.io7m.portero.server.PServerEmbeddedType;
+import com.io7m.portero.server.PServerInvite;
+import com.io7m.portero.server.PServers;
+import com.io7m.portero.simulator.PSimulator;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PServerEmbeddedTest
+{
+  private PSimulator simulator;
+  private PServerEmbeddedType embedded;
+
+  private PServerConfiguration configuration()
+    throws Exception
+  {
+    return PServerConfiguration.builder()
+      .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+      .setMatrixServerAdminConnectionURI(this.simulator.uri())
+      .setMatrixServerAdminRegistrationSecret("secret")
+      .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPrivatePort(20041)
+      .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPublicPort(20040)
+      .setServerTitle("chat.example.com")
+      .setPublicURI(URI.create("https://invite.example.com/"))
+      .setServerTokenExpiry(Duration.ofHours(1L))
+      .build();
+  }
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.simulator =
+      PSimulator.start(
+        PSimulatorConfiguration.builder()
+          .setSharedSecret("secret")
+          .build());
+    this.embedded =
+      PServers.createEmbedded(this.configuration());
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    this.embedded.close();
+    this.simulator.close();
+  }
+
+  /**
+   * An issued invite can be validated and redeemed exactly once.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testIssueRedeem()
+    throws Exception
+  {
+    final var timeThen = OffsetDateTime.now();
+    final var invite = this.embedded.issueInvite().get();
+
+    assertEquals(
+      URI.create("https://invite.example.com/signup/?token=" + invite.token()),
+      invite.uri());
+    assertTrue(invite.expires().isAfter(timeThen.plusMinutes(59L)));
+    assertTrue(this.embedded.isInviteValid(invite.token()).get());
+
+    final var userId =
+      this.embedded.redeemInvite(invite.token(), "grouch", "password").get();
+
+    assertTrue(userId.startsWith("@grouch"));
+    assertTrue(this.simulator.isRegistered("grouch"));
+    assertFalse(this.embedded.isInviteValid(invite.token()).get());
+
+    final var ex =
+      assertThrows(ExecutionException.class, () -> {
+        this.embedded.redeemInvite(invite.token(), "other", "password").get();
+      });
+    assertInstanceOf(PServerEmbeddedException.class, ex.getCause());
+    assertEquals(
+      "P_TOKEN_NONEXISTENT",
+      ((PServerEmbeddedException) ex.getCause()).errorCode());
+    assertFalse(this.simulator.isRegistered("other"));
+  }
+
+  /**
+   * Nonexistent invites cannot be redeemed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRedeemNonexistent()
+    throws Exception
+  {
+    assertFalse(this.embedded.isInviteValid("abcd").get());
+
+    final var ex =
+      assertThrows(ExecutionException.class, () -> {
+        this.embedded.redeemInvite("abcd", "grouch", "password").get();
+      });
+    assertInstanceOf(PServerEmbeddedException.class, ex.getCause());
+    assertEquals(0, this.simulator.registered());
+  }
+
+  /**
+   * A failed registration leaves the invite redeemable.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRedeemRegistrationFails()
+    throws Exception
+  {
+    final var first = this.embedded.issueInvite().get();
+    final var second = this.embedded.issueInvite().get();
+
+    this.embedded.redeemInvite(first.token(), "grouch", "password").get();
+
+    final var ex =
+      assertThrows(ExecutionException.class, () -> {
+        this.embedded.redeemInvite(second.token(), "grouch", "password").get();
+      });
+    assertInstanceOf(PServerEmbeddedException.class, ex.getCause());
+    assertEquals(
+      "M_USER_IN_USE",
+      ((PServerEmbeddedException) ex.getCause()).errorCode());
+    assertTrue(this.embedded.isInviteValid(second.token()).get());
+
+    this.embedded.redeemInvite(second.token(), "oscar", "password").get();
+    assertEquals(2, this.simulator.registered());
+  }
+
+  /**
+   * Invites issued in bulk are distinct and can all be redeemed
+   * concurrently.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testIssueManyRedeemConcurrently()
+    throws Exception
+  {
+    final var invites = this.embedded.issueInvites(100).get();
+    assertEquals(100, invites.size());
+    assertEquals(
+      100L,
+      invites.stream().map(PServerInvite::token).distinct().count());
+
+    final var futures = new ArrayList<CompletableFuture<String>>();
+    for (int index = 0; index < invites.size(); ++index) {
+      futures.add(
+        this.embedded.redeemInvite(
+          invites.get(index).token(), "user" + index, "password"));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+      .get(30L, TimeUnit.SECONDS);
+
+    assertEquals(100, this.simulator.registered());
+    for (final var invite : invites) {
+      assertFalse(this.embedded.isInviteValid(invite.token()).get());
+    }
+  }
+
+  /**
+   * Operations run on a caller-supplied executor, which is left running
+   * when the instance is closed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testExecutor()
+    throws Exception
+  {
+    final var executor = Executors.newSingleThreadExecutor();
+    try {
+      final var threads = new ArrayList<String>();
+      try (var other =
+             PServers.createEmbedded(this.configuration(), executor)) {
+        final var invite =
+          other.issueInvite()
+            .whenComplete((x, e) -> threads.add(Thread.currentThread().getName()))
+            .get();
+        assertTrue(other.isInviteValid(invite.token()).get());
+        assertFalse(this.embedded.isInviteValid(invite.token()).get());
+      }
+      assertFalse(executor.isShutdown());
+      assertEquals(1, threads.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Closed instances reject operations, and clustered configurations are
+   * rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRejected()
+    throws Exception
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      this.embedded.issueInvites(-1);
+    });
+
+    this.embedded.close();
+    assertThrows(IllegalStateException.class, () -> {
+      this.embedded.issueInvite();
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      PServers.createEmbedded(
+        PServerConfiguration.builder()
+          .from(this.configuration())
+          .setCluster(
+            PServerClusterConfiguration.builder()
+              .setNodeId("a")
+              .setPeers(List.of(URI.create("http://127.0.0.1:20051/")))
+              .build())
+          .build());
+    });
+  }
+}
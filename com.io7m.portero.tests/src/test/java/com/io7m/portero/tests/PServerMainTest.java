@@ -18,12 +18,14 @@ package com.io7m.portero.tests;
 
 import com.io7m.portero.server.PServerConfiguration;
 import com.io7m.portero.server.internal.PServerMain;
+import jdk.jfr.consumer.RecordingFile;
 import org.apache.commons.io.input.CharSequenceInputStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockserver.integration.ClientAndServer;
 import org.mockserver.model.MediaType;
+import org.mockserver.verify.VerificationTimes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -35,11 +37,17 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static javax.xml.XMLConstants.FEATURE_SECURE_PROCESSING;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockserver.integration.ClientAndServer.startClientAndServer;
 import static org.mockserver.model.HttpRequest.request;
@@ -56,6 +64,8 @@ public final class PServerMainTest
   private URI privateBaseUri;
   private URI matrixBaseUri;
   private ClientAndServer mockServer;
+  private Path directory;
+  private Path accessLog;
 
   private static Document parseXML(
     final String text)
@@ -112,6 +122,8 @@ public final class PServerMainTest
     throws Exception
   {
     this.client = HttpClient.newHttpClient();
+    this.directory = Files.createTempDirectory("portero");
+    this.accessLog = this.directory.resolve("access.log");
 
     this.publicBaseUri =
       URI.create("http://127.0.0.1:20000/");
@@ -135,6 +147,10 @@ public final class PServerMainTest
         .setServerTitle("chat.example.com")
         .setPublicURI(URI.create("http://invite.example.com"))
         .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+        .setServerTiming(true)
+        .setServerAccessLog(this.accessLog)
+        .setServerHealthProbeInterval(Duration.ofMillis(250L))
+        .putServerAccessLogSampling("/static", Double.valueOf(0.0))
         .build();
 
     this.server = PServerMain.create(this.config);
@@ -153,6 +169,8 @@ public final class PServerMainTest
     this.mockServer.close();
     assertTrue(this.mockServer.hasStopped(100, 5L, TimeUnit.SECONDS));
 
+    Files.deleteIfExists(this.accessLog);
+    Files.deleteIfExists(this.directory);
     LOG.debug("tore down");
   }
 
@@ -267,6 +285,60 @@ public final class PServerMainTest
     assertTrue(body.startsWith("http://invite.example.com/signup/?token="));
   }
 
+  /**
+   * The generation URI provides batches of distinct tokens.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testInviteGenerationBatch()
+    throws Exception
+  {
+    final var request =
+      HttpRequest.newBuilder(this.privateBaseUri.resolve("/?count=50"))
+        .build();
+
+    final var response =
+      this.client.send(request, HttpResponse.BodyHandlers.ofString());
+
+    assertEquals(200, response.statusCode());
+
+    final var lines = response.body().lines().toList();
+    LOG.debug("received: {}", lines);
+
+    final var urls = lines.subList(0, lines.indexOf(""));
+    assertEquals(50, urls.size());
+    assertEquals(50L, urls.stream().distinct().count());
+    for (final var url : urls) {
+      assertTrue(url.startsWith("http://invite.example.com/signup/?token="));
+    }
+    assertTrue(lines.get(lines.size() - 1).startsWith("The token will expire"));
+  }
+
+  /**
+   * Invalid batch sizes are rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testInviteGenerationBatchInvalid()
+    throws Exception
+  {
+    for (final var count : List.of("0", "1001", "-1", "many")) {
+      final var request =
+        HttpRequest.newBuilder(
+            this.privateBaseUri.resolve("/?count=" + count))
+          .build();
+
+      final var response =
+        this.client.send(request, HttpResponse.BodyHandlers.ofString());
+
+      assertEquals(400, response.statusCode());
+    }
+  }
+
   /**
    * The signup page can't work without a token.
    *
@@ -384,6 +456,86 @@ public final class PServerMainTest
     assertTrue(body.contains("Registration successful"));
   }
 
+  /**
+   * A completed signup reports the time spent in each phase.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSignupServerTiming()
+    throws Exception
+  {
+    final String token = this.generateToken();
+
+    this.mockServer
+      .when(request("/_synapse/admin/v1/register"))
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.APPLICATION_JSON)
+          .withBody(PTestResources.resourceText("matrix-nonce-0.json")));
+
+    this.mockServer
+      .when(request("/_synapse/admin/v1/register"))
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.APPLICATION_JSON)
+          .withBody(PTestResources.resourceText("matrix-create-user-0.json")));
+
+    final var bodyBuilder = new StringBuilder(128);
+    bodyBuilder.append("token=");
+    bodyBuilder.append(token);
+    bodyBuilder.append("&user_name=user");
+    bodyBuilder.append("&email=user@example.com");
+    bodyBuilder.append("&password=password");
+    bodyBuilder.append("&password_confirm=password");
+    final var bodyBytes = bodyBuilder.toString().getBytes(UTF_8);
+
+    final var request =
+      HttpRequest.newBuilder(this.publicBaseUri.resolve("/signup-complete/"))
+        .header("content-type", "application/x-www-form-urlencoded")
+        .header(
+          "traceparent",
+          "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(bodyBytes))
+        .build();
+
+    final var response =
+      this.client.send(request, HttpResponse.BodyHandlers.ofString());
+
+    assertEquals(200, response.statusCode());
+
+    final var timing =
+      response.headers().firstValue("Server-Timing").orElseThrow();
+    LOG.debug("Server-Timing: {}", timing);
+
+    for (final var phase : List.of(
+      "parse", "token", "nonce", "register", "commit", "render")) {
+      assertTrue(timing.contains(phase + ";dur="), timing);
+    }
+
+    final var stats =
+      this.client.send(
+        HttpRequest.newBuilder(this.privateBaseUri.resolve("/stats")).build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertTrue(stats.body().contains("signup register"));
+
+    /*
+     * The trace ID of the incoming request is passed on to the Matrix
+     * server.
+     */
+
+    this.mockServer.verify(
+      request("/_synapse/admin/v1/register")
+        .withHeader(
+          "traceparent",
+          "00-0af7651916cd43dd8448eb211c80319c-[0-9a-f]{16}-01"),
+      VerificationTimes.exactly(2)
+    );
+  }
+
   /**
    * The complete signup procedure fails if the Matrix server fails.
    *
@@ -487,6 +639,265 @@ public final class PServerMainTest
       "The Matrix server returned an error: M_BAD_JSON: Bad JSON"));
   }
 
+  /**
+   * The metrics endpoint reports token and Matrix server figures.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testMetrics()
+    throws Exception
+  {
+    this.testSignupCompleteMatrixServerError();
+
+    final var request =
+      HttpRequest.newBuilder(this.privateBaseUri.resolve("/metrics"))
+        .build();
+
+    final var response =
+      this.client.send(request, HttpResponse.BodyHandlers.ofString());
+
+    assertEquals(200, response.statusCode());
+    assertTrue(
+      response.headers()
+        .firstValue("Content-Type")
+        .orElseThrow()
+        .startsWith("text/plain"));
+
+    final var body = response.body();
+    LOG.debug("received: {}", body);
+    assertTrue(body.contains("portero_tokens_issued_total 1\n"));
+    assertTrue(body.contains("portero_tokens_outstanding 1\n"));
+    assertTrue(body.contains("portero_tokens_consumed_total 0\n"));
+    assertTrue(body.contains(
+      "portero_matrix_requests_total{call=\"nonce\"} 1\n"));
+    assertTrue(body.contains(
+      "portero_matrix_errors_total{errcode=\"M_BAD_JSON\"} 1\n"));
+    assertTrue(body.contains(
+      "portero_http_responses_total{server=\"public\",code=\"4xx\"} 1\n"));
+    assertTrue(body.contains("jvm_memory_used_bytes{area=\"heap\"}"));
+  }
+
+  /**
+   * The liveness check always succeeds, and the readiness check follows
+   * the cached probe of the Matrix server.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testHealth()
+    throws Exception
+  {
+    final var live =
+      this.client.send(
+        HttpRequest.newBuilder(this.publicBaseUri.resolve("/health/live"))
+          .build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, live.statusCode());
+
+    final var notReady =
+      this.client.send(
+        HttpRequest.newBuilder(this.publicBaseUri.resolve("/health/ready"))
+          .build(),
+        HttpResponse.BodyHandlers.ofString());
+    LOG.debug("received: {}", notReady.body());
+    assertEquals(503, notReady.statusCode());
+    assertTrue(notReady.body().contains("Matrix server"));
+
+    this.mockServer
+      .when(request("/_synapse/admin/v1/server_version"))
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.APPLICATION_JSON)
+          .withBody("{\"server_version\": \"1.0.0\"}"));
+
+    HttpResponse<String> ready = null;
+    for (int index = 0; index < 50; ++index) {
+      ready =
+        this.client.send(
+          HttpRequest.newBuilder(this.privateBaseUri.resolve("/health/ready"))
+            .build(),
+          HttpResponse.BodyHandlers.ofString());
+      if (ready.statusCode() == 200) {
+        break;
+      }
+      Thread.sleep(100L);
+    }
+
+    assertEquals(200, ready.statusCode());
+    assertEquals("ready\n", ready.body());
+  }
+
+  /**
+   * Requests are written to the access log, token parameters are redacted,
+   * and routes with a sampling rate of zero are not logged.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testAccessLog()
+    throws Exception
+  {
+    this.client.send(
+      HttpRequest.newBuilder(this.publicBaseUri.resolve("/static/main.css"))
+        .build(),
+      HttpResponse.BodyHandlers.ofString());
+
+    final var response =
+      this.client.send(
+        HttpRequest.newBuilder(
+            this.publicBaseUri.resolve("/signup/?token=abcd"))
+          .header("traceparent",
+                  "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01")
+          .build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, response.statusCode());
+
+    this.server.stop();
+
+    final var text = Files.readString(this.accessLog, UTF_8);
+    LOG.debug("access log: {}", text);
+    assertTrue(text.contains("\"path\":\"/signup/\""));
+    assertTrue(text.contains("\"query\":\"token=REDACTED\""));
+    assertTrue(text.contains(
+      "\"trace_id\":\"0af7651916cd43dd8448eb211c80319c\""));
+    assertFalse(text.contains("abcd"));
+    assertFalse(text.contains("/static"));
+  }
+
+  /**
+   * The stats endpoint reports latencies for routes and Matrix requests.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testStats()
+    throws Exception
+  {
+    this.testSignupCompleteMatrixServerError();
+
+    final var request =
+      HttpRequest.newBuilder(this.privateBaseUri.resolve("/stats"))
+        .build();
+
+    final var response =
+      this.client.send(request, HttpResponse.BodyHandlers.ofString());
+
+    assertEquals(200, response.statusCode());
+
+    final var body = response.body();
+    LOG.debug("received: {}", body);
+    assertTrue(body.contains("matrix nonce"));
+    assertTrue(body.contains("matrix register"));
+    assertTrue(body.contains("private /"));
+    assertTrue(body.contains("public /signup-complete"));
+  }
+
+  /**
+   * Flight recordings can be started, dumped, and stopped, and contain
+   * the invite pipeline events.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testFlightRecording()
+    throws Exception
+  {
+    final var start =
+      this.client.send(
+        HttpRequest.newBuilder(this.privateBaseUri.resolve("/jfr/start"))
+          .POST(HttpRequest.BodyPublishers.noBody())
+          .build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, start.statusCode());
+
+    this.testSignupCompleteMatrixServerError();
+
+    final var file = Files.createTempFile("portero-", ".jfr");
+    try {
+      final var dump =
+        this.client.send(
+          HttpRequest.newBuilder(this.privateBaseUri.resolve("/jfr/dump"))
+            .build(),
+          HttpResponse.BodyHandlers.ofFile(file));
+      assertEquals(200, dump.statusCode());
+
+      final var names = new HashSet<String>();
+      for (final var event : RecordingFile.readAllEvents(file)) {
+        names.add(event.getEventType().getName());
+      }
+      assertTrue(
+        names.contains("com.io7m.portero.TokenGenerate"), names::toString);
+      assertTrue(
+        names.contains("com.io7m.portero.TokenValidate"), names::toString);
+      assertTrue(
+        names.contains("com.io7m.portero.MatrixNonce"), names::toString);
+      assertTrue(
+        names.contains("com.io7m.portero.PageRender"), names::toString);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    final var stop =
+      this.client.send(
+        HttpRequest.newBuilder(this.privateBaseUri.resolve("/jfr/stop"))
+          .POST(HttpRequest.BodyPublishers.noBody())
+          .build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, stop.statusCode());
+  }
+
+  /**
+   * A recording started with a duration no longer blocks new recordings
+   * once it has stopped by itself.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testFlightRecordingTimed()
+    throws Exception
+  {
+    final var startTimed =
+      HttpRequest.newBuilder(
+          this.privateBaseUri.resolve("/jfr/start?duration=PT1S"))
+        .POST(HttpRequest.BodyPublishers.noBody())
+        .build();
+
+    assertEquals(
+      200,
+      this.client.send(startTimed, HttpResponse.BodyHandlers.ofString())
+        .statusCode());
+    assertEquals(
+      409,
+      this.client.send(startTimed, HttpResponse.BodyHandlers.ofString())
+        .statusCode());
+
+    final var deadline = System.nanoTime() + Duration.ofSeconds(10L).toNanos();
+    var status = 409;
+    while (status == 409 && System.nanoTime() < deadline) {
+      Thread.sleep(100L);
+      status =
+        this.client.send(startTimed, HttpResponse.BodyHandlers.ofString())
+          .statusCode();
+    }
+    assertEquals(200, status);
+
+    final var stop =
+      this.client.send(
+        HttpRequest.newBuilder(this.privateBaseUri.resolve("/jfr/stop"))
+          .POST(HttpRequest.BodyPublishers.noBody())
+          .build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, stop.statusCode());
+  }
+
   /**
    * The signup completion page requires all data to be present.
    *
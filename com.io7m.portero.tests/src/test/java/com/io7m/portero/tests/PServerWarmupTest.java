@@ -0,0 +1,323 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.PServerType;
+import com.io7m.portero.server.PServers;
+import com.io7m.portero.server.internal.PMatrixClient;
+import com.io7m.portero.server.internal.PServerHealth;
+import com.io7m.portero.server.internal.PServerPages;
+import com.io7m.portero.server.internal.PServerWarmup;
+import com.io7m.portero.server.internal.PSignupObjectMappers;
+import com.io7m.portero.simulator.PSimulator;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PServerWarmupTest
+{
+  private PSimulator simulator;
+  private PServerType server;
+  private PServerHealth health;
+  private PMatrixClient client;
+
+  private PServerConfiguration.Builder configuration(
+    final URI matrix)
+    throws Exception
+  {
+    return PServerConfiguration.builder()
+      .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+      .setMatrixServerAdminConnectionURI(matrix)
+      .setMatrixServerAdminRegistrationSecret("secret")
+      .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPrivatePort(20071)
+      .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPublicPort(20070)
+      .setServerTitle("chat.example.com")
+      .setPublicURI(URI.create("http://127.0.0.1:20070/"));
+  }
+
+  private PServerHealth health(
+    final URI matrix)
+  {
+    this.client =
+      PMatrixClient.create(HttpClient.newHttpClient(), matrix);
+    this.health =
+      PServerHealth.create(
+        this.client,
+        Map.of(),
+        Duration.ofSeconds(10L));
+    return this.health;
+  }
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.simulator =
+      PSimulator.start(
+        PSimulatorConfiguration.builder()
+          .setSharedSecret("secret")
+          .build());
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    if (this.server != null) {
+      this.server.close();
+    }
+    if (this.health != null) {
+      this.health.close();
+    }
+    this.simulator.close();
+  }
+
+  /**
+   * The server is not ready while it warms up, and the warm-up probes the
+   * Matrix server so that the server is ready as soon as it completes.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testWarmupReadiness()
+    throws Exception
+  {
+    final var health = this.health(this.simulator.uri());
+    final var configuration =
+      this.configuration(this.simulator.uri())
+        .setServerWarmupIterations(100)
+        .build();
+
+    try (var warmup =
+           PServerWarmup.create(
+             configuration,
+             new PServerPages(Locale.ROOT),
+             this.client,
+             PSignupObjectMappers.createObjectMapper(),
+             health)) {
+      assertTrue(warmup.isEnabled());
+      assertTrue(health.readiness().contains("server is warming up"));
+
+      warmup.run();
+      assertEquals(0, this.simulator.registered());
+      assertTrue(health.upstream().reachable());
+      assertEquals(0, health.readiness().size(), health.readiness()::toString);
+    }
+  }
+
+  /**
+   * A disabled warm-up does not affect readiness.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testWarmupDisabled()
+    throws Exception
+  {
+    final var health = this.health(this.simulator.uri());
+    final var configuration =
+      this.configuration(this.simulator.uri())
+        .build();
+
+    try (var warmup =
+           PServerWarmup.create(
+             configuration,
+             new PServerPages(Locale.ROOT),
+             this.client,
+             PSignupObjectMappers.createObjectMapper(),
+             health)) {
+      assertFalse(warmup.isEnabled());
+      assertFalse(health.readiness().contains("server is warming up"));
+    }
+  }
+
+  /**
+   * A warm-up that cannot reach the Matrix server still completes, and
+   * readiness then reports the Matrix server as the problem.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testWarmupUnreachable()
+    throws Exception
+  {
+    final var matrix = URI.create("http://127.0.0.1:20079/");
+    final var health = this.health(matrix);
+    final var configuration =
+      this.configuration(matrix)
+        .setServerWarmupIterations(10)
+        .build();
+
+    try (var warmup =
+           PServerWarmup.create(
+             configuration,
+             new PServerPages(Locale.ROOT),
+             this.client,
+             PSignupObjectMappers.createObjectMapper(),
+             health)) {
+      warmup.run();
+
+      final var problems = health.readiness();
+      assertFalse(problems.contains("server is warming up"));
+      assertTrue(
+        problems.stream().anyMatch(p -> p.contains("Matrix server")),
+        problems::toString);
+    }
+  }
+
+  /**
+   * A server with a warm-up becomes ready once the warm-up completes.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testServerWarmup()
+    throws Exception
+  {
+    this.server =
+      PServers.createServer(
+        this.configuration(this.simulator.uri())
+          .setServerWarmupIterations(1000)
+          .build());
+    this.server.start();
+
+    final var client = HttpClient.newHttpClient();
+    HttpResponse<String> ready = null;
+    for (int index = 0; index < 300; ++index) {
+      ready =
+        client.send(
+          HttpRequest.newBuilder(
+            URI.create("http://127.0.0.1:20071/health/ready")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      if (ready.statusCode() == 200) {
+        break;
+      }
+      Thread.sleep(100L);
+    }
+
+    assertEquals(200, ready.statusCode());
+    assertEquals("ready\n", ready.body());
+  }
+
+  /**
+   * If part of the initialization fails, the resources that were already
+   * created are closed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testServerInitFailureCloses()
+    throws Exception
+  {
+    final var directory = Files.createTempDirectory("portero");
+    final var accessLog = directory.resolve("access.log");
+
+    try {
+      assertThrows(IOException.class, () -> {
+        PServers.createServer(
+          this.configuration(this.simulator.uri())
+            .setServerAccessLog(accessLog)
+            .setServerAuditLog(directory.resolve("missing/audit.log"))
+            .build());
+      });
+
+      final var writers =
+        Thread.getAllStackTraces()
+          .keySet()
+          .stream()
+          .filter(t -> t.getName().endsWith("PAccessLogWriter"))
+          .toList();
+      assertEquals(List.of(), writers);
+    } finally {
+      Files.deleteIfExists(accessLog);
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  /**
+   * Both connectors are bound before either server starts, and a server
+   * that fails to bind releases the port it did bind when stopped.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testServerBindConflict()
+    throws Exception
+  {
+    this.server =
+      PServers.createServer(
+        this.configuration(this.simulator.uri())
+          .build());
+
+    try (var socket = new ServerSocket()) {
+      socket.bind(new InetSocketAddress("127.0.0.1", 20070));
+      assertThrows(Exception.class, () -> this.server.start());
+    }
+
+    this.server.stop();
+    this.server = null;
+
+    try (var socket = new ServerSocket()) {
+      socket.setReuseAddress(true);
+      socket.bind(new InetSocketAddress("127.0.0.1", 20071));
+    }
+  }
+
+  /**
+   * The number of warm-up iterations cannot be negative.
+   */
+
+  @Test
+  public void testConfigurationInvalid()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      this.configuration(this.simulator.uri())
+        .setServerWarmupIterations(-1)
+        .build();
+    });
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.PServerType;
+import com.io7m.portero.server.PServers;
+import com.io7m.portero.simulator.PSimulator;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PSignupAPITest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PSignupAPITest.class);
+
+  private static final URI API_URI =
+    URI.create("http://127.0.0.1:20060/api/v1/signup");
+  private static final URI INVITE_URI =
+    URI.create("http://127.0.0.1:20061/");
+
+  private final HttpClient client = HttpClient.newHttpClient();
+  private final ObjectMapper mapper = new ObjectMapper();
+  private PSimulator simulator;
+  private PServerType server;
+
+  private void start(
+    final PSimulatorConfiguration simulatorConfiguration)
+    throws Exception
+  {
+    this.simulator = PSimulator.start(simulatorConfiguration);
+    this.server =
+      PServers.createServer(
+        PServerConfiguration.builder()
+          .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+          .setMatrixServerAdminConnectionURI(this.simulator.uri())
+          .setMatrixServerAdminRegistrationSecret("secret")
+          .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+          .setBindPrivatePort(20061)
+          .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+          .setBindPublicPort(20060)
+          .setServerTitle("chat.example.com")
+          .setPublicURI(URI.create("http://127.0.0.1:20060/"))
+          .build());
+    this.server.start();
+  }
+
+  private void start()
+    throws Exception
+  {
+    this.start(
+      PSimulatorConfiguration.builder()
+        .setSharedSecret("secret")
+        .build());
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    if (this.server != null) {
+      this.server.close();
+    }
+    if (this.simulator != null) {
+      this.simulator.close();
+    }
+  }
+
+  private String invite()
+    throws Exception
+  {
+    final var response =
+      this.client.send(
+        HttpRequest.newBuilder(INVITE_URI).build(),
+        HttpResponse.BodyHandlers.ofString());
+    final var line = response.body().lines().findFirst().orElseThrow();
+    return line.substring(line.indexOf("token=") + "token=".length()).trim();
+  }
+
+  private HttpResponse<String> post(
+    final String contentType,
+    final String body)
+    throws Exception
+  {
+    final var response =
+      this.client.send(
+        HttpRequest.newBuilder(API_URI)
+          .header("Content-Type", contentType)
+          .POST(HttpRequest.BodyPublishers.ofString(body))
+          .build(),
+        HttpResponse.BodyHandlers.ofString());
+    LOG.debug("{} {}", Integer.valueOf(response.statusCode()), response.body());
+    return response;
+  }
+
+  private HttpResponse<String> signup(
+    final String token,
+    final String user)
+    throws Exception
+  {
+    return this.post(
+      "application/json",
+      String.format(
+        "{\"token\":\"%s\",\"user_name\":\"%s\",\"password\":\"12345678\"}",
+        token,
+        user));
+  }
+
+  private JsonNode errorOf(
+    final HttpResponse<String> response,
+    final int status,
+    final String code)
+    throws Exception
+  {
+    assertEquals(status, response.statusCode());
+    assertEquals(
+      "application/json",
+      response.headers().firstValue("Content-Type").orElseThrow());
+    final var node = this.mapper.readTree(response.body());
+    assertEquals(code, node.get("error").asText());
+    assertFalse(node.get("message").asText().isEmpty());
+    return node;
+  }
+
+  /**
+   * A valid invite is redeemed, and the response is compact JSON.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSignup()
+    throws Exception
+  {
+    this.start();
+
+    final var response = this.signup(this.invite(), "grouch");
+    assertEquals(200, response.statusCode());
+    assertEquals(
+      "application/json",
+      response.headers().firstValue("Content-Type").orElseThrow());
+    assertTrue(response.body().length() < 64, response.body());
+
+    final var node = this.mapper.readTree(response.body());
+    assertTrue(node.get("user_id").asText().startsWith("@grouch"));
+    assertTrue(this.simulator.isRegistered("grouch"));
+  }
+
+  /**
+   * Token errors have portero error codes.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSignupTokenErrors()
+    throws Exception
+  {
+    this.start();
+
+    this.errorOf(
+      this.signup("abcd", "grouch"), 404, "P_TOKEN_NONEXISTENT");
+
+    final var token = this.invite();
+    assertEquals(200, this.signup(token, "grouch").statusCode());
+    this.errorOf(
+      this.signup(token, "oscar"), 404, "P_TOKEN_NONEXISTENT");
+    assertEquals(1, this.simulator.registered());
+  }
+
+  /**
+   * Matrix errors are passed on with their Matrix error codes, and leave
+   * the invite usable.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSignupMatrixErrors()
+    throws Exception
+  {
+    this.start();
+
+    assertEquals(200, this.signup(this.invite(), "grouch").statusCode());
+
+    final var token = this.invite();
+    this.errorOf(this.signup(token, "grouch"), 409, "M_USER_IN_USE");
+    this.errorOf(this.signup(token, "GROUCH!"), 400, "M_INVALID_USERNAME");
+    assertEquals(200, this.signup(token, "oscar").statusCode());
+  }
+
+  /**
+   * Unrecognized Matrix errors are reported as a bad gateway.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSignupMatrixFailing()
+    throws Exception
+  {
+    this.start(
+      PSimulatorConfiguration.builder()
+        .setSharedSecret("secret")
+        .setErrorRate(1.0)
+        .build());
+
+    this.errorOf(this.signup(this.invite(), "grouch"), 502, "M_UNKNOWN");
+  }
+
+  /**
+   * I/O errors are reported with a fixed message that does not reveal
+   * internal details.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSignupMatrixUnreachable()
+    throws Exception
+  {
+    this.start();
+
+    final var token = this.invite();
+    this.simulator.close();
+    this.simulator = null;
+
+    final var node =
+      this.errorOf(this.signup(token, "grouch"), 502, "P_IO_ERROR");
+    assertEquals(
+      "The request could not be completed.",
+      node.get("message").asText());
+  }
+
+  /**
+   * Malformed requests are rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSignupMalformed()
+    throws Exception
+  {
+    this.start();
+
+    this.errorOf(
+      this.post("application/json", "{"), 400, "P_BAD_REQUEST");
+    this.errorOf(
+      this.post("application/json", "{\"token\":\"abcd\"}"),
+      400,
+      "P_BAD_REQUEST");
+    this.errorOf(
+      this.post("application/json", "[]"), 400, "P_BAD_REQUEST");
+    this.errorOf(
+      this.post("application/x-www-form-urlencoded", "token=abcd"),
+      415,
+      "P_BAD_REQUEST");
+    this.errorOf(
+      this.post("application/json", "{\"token\":\"" + "x".repeat(20000) + "\"}"),
+      413,
+      "P_BAD_REQUEST");
+
+    final var get =
+      this.client.send(
+        HttpRequest.newBuilder(API_URI).build(),
+        HttpResponse.BodyHandlers.ofString());
+    this.errorOf(get, 405, "P_BAD_REQUEST");
+    assertEquals(0, this.simulator.registered());
+  }
+}
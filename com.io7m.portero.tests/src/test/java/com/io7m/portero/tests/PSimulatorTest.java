@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PMatrixClient;
+import com.io7m.portero.simulator.PSimulator;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import com.io7m.portero.simulator.PSimulatorLatencies;
+import com.io7m.portero.simulator.PSimulatorRateLimit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import static com.io7m.portero.server.internal.PMatrixJSON.PAdminCreateUserResponse;
+import static com.io7m.portero.server.internal.PMatrixJSON.PAdminNonce;
+import static com.io7m.portero.server.internal.PMatrixJSON.PError;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PSimulatorTest
+{
+  private PSimulator simulator;
+  private PMatrixClient client;
+
+  private void start(
+    final PSimulatorConfiguration configuration)
+    throws Exception
+  {
+    this.simulator =
+      PSimulator.start(configuration);
+    this.client =
+      PMatrixClient.create(HttpClient.newHttpClient(), this.simulator.uri());
+  }
+
+  private static PSimulatorConfiguration.Builder configuration()
+  {
+    return PSimulatorConfiguration.builder()
+      .setSharedSecret("secret")
+      .setServerName("chat.example.com");
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    if (this.simulator != null) {
+      this.simulator.close();
+    }
+  }
+
+  /**
+   * A correctly signed registration succeeds.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRegisterOK()
+    throws Exception
+  {
+    this.start(configuration().build());
+
+    final var nonce = (PAdminNonce) this.client.nonce();
+    final var response = (PAdminCreateUserResponse)
+      this.client.register("secret", nonce.nonce, "grouch", "12345678");
+
+    assertEquals("@grouch:chat.example.com", response.userId);
+    assertEquals("chat.example.com", response.homeServer);
+    assertTrue(this.simulator.isRegistered("grouch"));
+    assertEquals(1, this.simulator.registered());
+    assertEquals(1L, this.simulator.nonceRequests());
+    assertEquals(1L, this.simulator.registerRequests());
+  }
+
+  /**
+   * A registration signed with the wrong secret is rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRegisterWrongSecret()
+    throws Exception
+  {
+    this.start(configuration().build());
+
+    final var nonce = (PAdminNonce) this.client.nonce();
+    final var error = (PError)
+      this.client.register("wrong", nonce.nonce, "grouch", "12345678");
+
+    assertEquals("M_FORBIDDEN", error.errorCode);
+    assertFalse(this.simulator.isRegistered("grouch"));
+    assertEquals(Long.valueOf(1L), this.simulator.errors().get("M_FORBIDDEN"));
+  }
+
+  /**
+   * Nonces cannot be reused.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testNonceReused()
+    throws Exception
+  {
+    this.start(configuration().build());
+
+    final var nonce = (PAdminNonce) this.client.nonce();
+    this.client.register("secret", nonce.nonce, "grouch", "12345678");
+
+    final var error = (PError)
+      this.client.register("secret", nonce.nonce, "other", "12345678");
+    assertEquals("M_UNKNOWN", error.errorCode);
+    assertFalse(this.simulator.isRegistered("other"));
+  }
+
+  /**
+   * Users cannot be registered twice.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testUserInUse()
+    throws Exception
+  {
+    this.start(configuration().build());
+
+    final var nonce0 = (PAdminNonce) this.client.nonce();
+    this.client.register("secret", nonce0.nonce, "grouch", "12345678");
+
+    final var nonce1 = (PAdminNonce) this.client.nonce();
+    final var error = (PError)
+      this.client.register("secret", nonce1.nonce, "grouch", "12345678");
+    assertEquals("M_USER_IN_USE", error.errorCode);
+    assertEquals(1, this.simulator.registered());
+  }
+
+  /**
+   * Invalid user names are rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testUserInvalid()
+    throws Exception
+  {
+    this.start(configuration().build());
+
+    final var nonce = (PAdminNonce) this.client.nonce();
+    final var error = (PError)
+      this.client.register("secret", nonce.nonce, "Grouch!", "12345678");
+    assertEquals("M_INVALID_USERNAME", error.errorCode);
+  }
+
+  /**
+   * Injected errors are returned as server errors.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testErrorInjection()
+    throws Exception
+  {
+    this.start(configuration().setErrorRate(1.0).build());
+
+    for (int index = 0; index < 10; ++index) {
+      final var error = (PError) this.client.nonce();
+      assertEquals("M_UNKNOWN", error.errorCode);
+    }
+    assertEquals(Long.valueOf(10L), this.simulator.errors().get("M_UNKNOWN"));
+  }
+
+  /**
+   * Requests exceeding the rate limit are rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRateLimited()
+    throws Exception
+  {
+    this.start(
+      configuration()
+        .setRateLimit(
+          PSimulatorRateLimit.builder()
+            .setRate(0.1)
+            .setBurst(2)
+            .build())
+        .build()
+    );
+
+    assertTrue(this.client.nonce() instanceof PAdminNonce);
+    assertTrue(this.client.nonce() instanceof PAdminNonce);
+
+    final var error = (PError) this.client.nonce();
+    assertEquals("M_LIMIT_EXCEEDED", error.errorCode);
+    assertEquals(
+      Long.valueOf(1L),
+      this.simulator.errors().get("M_LIMIT_EXCEEDED"));
+  }
+
+  /**
+   * Configured latency is observed by clients.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLatency()
+    throws Exception
+  {
+    this.start(
+      configuration()
+        .setNonceLatency(PSimulatorLatencies.fixed(Duration.ofMillis(200L)))
+        .build()
+    );
+
+    final var timeThen = System.nanoTime();
+    assertTrue(this.client.nonce() instanceof PAdminNonce);
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeThen);
+    assertTrue(
+      elapsed.compareTo(Duration.ofMillis(200L)) >= 0,
+      "Elapsed " + elapsed);
+  }
+
+  /**
+   * Slowly delivered response bodies are still complete.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSlowBody()
+    throws Exception
+  {
+    this.start(
+      configuration()
+        .setSlowBodyRate(1.0)
+        .setSlowBodyDuration(Duration.ofMillis(500L))
+        .build()
+    );
+
+    final var timeThen = System.nanoTime();
+    final var nonce = (PAdminNonce) this.client.nonce();
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeThen);
+
+    assertEquals(64, nonce.nonce.length());
+    assertTrue(
+      elapsed.compareTo(Duration.ofMillis(400L)) >= 0,
+      "Elapsed " + elapsed);
+  }
+
+  /**
+   * Invalid configurations are rejected.
+   */
+
+  @Test
+  public void testConfigurationInvalid()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      configuration().setErrorRate(1.5).build();
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      configuration().setSlowBodyRate(-0.1).build();
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      PSimulatorRateLimit.builder()
+        .setRate(0.0)
+        .setBurst(1)
+        .build();
+    });
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when it is told to.
+ */
+
+public final class PTestClock extends Clock
+{
+  private final AtomicLong timeMillis;
+  private final ZoneId zone;
+
+  private PTestClock(
+    final AtomicLong inTimeMillis,
+    final ZoneId inZone)
+  {
+    this.timeMillis =
+      Objects.requireNonNull(inTimeMillis, "timeMillis");
+    this.zone =
+      Objects.requireNonNull(inZone, "zone");
+  }
+
+  /**
+   * @param start The initial time
+   *
+   * @return A clock starting at the given time
+   */
+
+  public static PTestClock startingAt(
+    final Instant start)
+  {
+    return new PTestClock(
+      new AtomicLong(start.toEpochMilli()),
+      ZoneOffset.UTC
+    );
+  }
+
+  /**
+   * Advance the clock.
+   *
+   * @param duration The amount of time by which to advance the clock
+   */
+
+  public void advance(
+    final Duration duration)
+  {
+    this.timeMillis.addAndGet(duration.toMillis());
+  }
+
+  @Override
+  public ZoneId getZone()
+  {
+    return this.zone;
+  }
+
+  @Override
+  public Clock withZone(
+    final ZoneId newZone)
+  {
+    return new PTestClock(this.timeMillis, newZone);
+  }
+
+  @Override
+  public long millis()
+  {
+    return this.timeMillis.get();
+  }
+
+  @Override
+  public Instant instant()
+  {
+    return Instant.ofEpochMilli(this.millis());
+  }
+}
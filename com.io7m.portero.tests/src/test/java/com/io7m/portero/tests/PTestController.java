@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PAuditLog;
+import com.io7m.portero.server.internal.PMatrixClient;
+import com.io7m.portero.server.internal.PServerController;
+import com.io7m.portero.server.internal.PServerControllerParameters;
+import com.io7m.portero.server.internal.PServerStrings;
+import com.io7m.portero.server.internal.PTokenStoreMemory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A server controller backed by an in-memory token store, with both the
+ * controller and the store driven by a virtual clock.
+ */
+
+public final class PTestController implements AutoCloseable
+{
+  private final PTestClock clock;
+  private final PTokenStoreMemory store;
+  private final PServerController controller;
+
+  private PTestController(
+    final PTestClock inClock,
+    final PTokenStoreMemory inStore,
+    final PServerController inController)
+  {
+    this.clock =
+      Objects.requireNonNull(inClock, "clock");
+    this.store =
+      Objects.requireNonNull(inStore, "store");
+    this.controller =
+      Objects.requireNonNull(inController, "controller");
+  }
+
+  /**
+   * Create a controller. The clock starts at the beginning of 2026, and
+   * the store rejects new tokens once it is full.
+   *
+   * @param expiry The expiration time for individual tokens
+   * @param limit  The maximum number of outstanding tokens
+   * @param audit  The audit log
+   *
+   * @return A controller
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static PTestController create(
+    final Duration expiry,
+    final int limit,
+    final PAuditLog audit)
+    throws IOException
+  {
+    final var clock =
+      PTestClock.startingAt(Instant.parse("2026-01-01T00:00:00Z"));
+    final var store =
+      new AtomicReference<PTokenStoreMemory>();
+
+    final var controller =
+      PServerController.create(
+        PServerControllerParameters.builder()
+          .setStrings(new PServerStrings(Locale.getDefault()))
+          .setExpiry(expiry)
+          .setTokenStores((inExpiry, onExpired) -> {
+            store.set(PTokenStoreMemory.create(
+              inExpiry,
+              limit,
+              PTokenStoreMemory.DEFAULT_POLICY,
+              clock,
+              onExpired
+            ));
+            return store.get();
+          })
+          .setAudit(audit)
+          .setClock(clock)
+          .setClient(PMatrixClient.create(
+            HttpClient.newHttpClient(),
+            URI.create("http://example.com/")))
+          .build()
+      );
+
+    return new PTestController(clock, store.get(), controller);
+  }
+
+  /**
+   * @return The clock
+   */
+
+  public PTestClock clock()
+  {
+    return this.clock;
+  }
+
+  /**
+   * @return The token store
+   */
+
+  public PTokenStoreMemory store()
+  {
+    return this.store;
+  }
+
+  /**
+   * @return The controller
+   */
+
+  public PServerController controller()
+  {
+    return this.controller;
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    this.controller.close();
+  }
+}
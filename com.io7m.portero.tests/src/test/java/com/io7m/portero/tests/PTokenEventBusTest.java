@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PMatrixClient;
+import com.io7m.portero.server.internal.PServerController;
+import com.io7m.portero.server.internal.PServerControllerParameters;
+import com.io7m.portero.server.internal.PServerStrings;
+import com.io7m.portero.server.internal.PTokenEventBus;
+import com.io7m.portero.server.tokens.PTokenEventConsumerType;
+import com.io7m.portero.server.tokens.PTokenEventType;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.io7m.portero.server.tokens.PTokenEventKind.EXPIRED;
+import static com.io7m.portero.server.tokens.PTokenEventKind.ISSUED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PTokenEventBusTest
+{
+  /**
+   * Events from several publishers are all delivered, in sequence order.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testPublishers()
+    throws Exception
+  {
+    final var sequences =
+      Collections.synchronizedList(new ArrayList<Long>());
+    final var tokens =
+      Collections.synchronizedSet(new HashSet<String>());
+
+    try (var bus = PTokenEventBus.create(8192)) {
+      final var subscription = bus.subscribe("test", event -> {
+        sequences.add(Long.valueOf(event.sequence()));
+        tokens.add(event.token());
+      });
+
+      final var threads = new ArrayList<Thread>();
+      for (int t = 0; t < 4; ++t) {
+        final var prefix = Integer.toString(t);
+        threads.add(Thread.ofPlatform().start(() -> {
+          for (int index = 0; index < 1000; ++index) {
+            bus.publish(ISSUED, prefix + ":" + index, null);
+          }
+        }));
+      }
+      for (final var thread : threads) {
+        thread.join();
+      }
+
+      subscription.close();
+      assertEquals(0L, subscription.lost());
+    }
+
+    assertEquals(4000, sequences.size());
+    assertEquals(4000, tokens.size());
+    for (int index = 0; index < sequences.size(); ++index) {
+      assertEquals(index, sequences.get(index).longValue());
+    }
+  }
+
+  /**
+   * A slow subscriber loses overwritten events, and is told about them.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSlowSubscriber()
+    throws Exception
+  {
+    final var blocked = new CountDownLatch(1);
+    final var release = new CountDownLatch(1);
+    final var received = new AtomicLong();
+    final var lost = new AtomicLong();
+
+    try (var bus = PTokenEventBus.create(16)) {
+      final var subscription =
+        bus.subscribe("slow", new PTokenEventConsumerType()
+        {
+          @Override
+          public void onEvent(
+            final PTokenEventType event)
+          {
+            blocked.countDown();
+            try {
+              release.await();
+            } catch (final InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            received.incrementAndGet();
+          }
+
+          @Override
+          public void onEventsLost(
+            final long count)
+          {
+            lost.addAndGet(count);
+          }
+        });
+
+      bus.publish(ISSUED, "first", null);
+      assertTrue(blocked.await(5L, TimeUnit.SECONDS));
+      for (int index = 0; index < 99; ++index) {
+        bus.publish(ISSUED, Integer.toString(index), null);
+      }
+      release.countDown();
+
+      subscription.close();
+      assertEquals(100L, bus.published());
+      assertEquals(100L, received.get() + lost.get());
+      assertEquals(lost.get(), subscription.lost());
+      assertTrue(lost.get() > 0L);
+    }
+  }
+
+  /**
+   * The controller publishes lifecycle events.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testController()
+    throws Exception
+  {
+    final var kinds =
+      Collections.synchronizedList(new ArrayList<String>());
+
+    try (var controller =
+           PServerController.create(
+             PServerControllerParameters.builder()
+               .setStrings(new PServerStrings(Locale.getDefault()))
+               .setExpiry(Duration.ofMillis(500L))
+               .setClient(PMatrixClient.create(
+                 HttpClient.newHttpClient(),
+                 URI.create("http://example.com/")))
+               .build())) {
+
+      controller.events().subscribe("test", event -> {
+        kinds.add(event.kind() + " " + event.token());
+      });
+
+      final var token = controller.generateToken();
+      Thread.sleep(1_500L);
+
+      assertEquals(List.of(ISSUED + " " + token, EXPIRED + " " + token), kinds);
+    }
+  }
+}
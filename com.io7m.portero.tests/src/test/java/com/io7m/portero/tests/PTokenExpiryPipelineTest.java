@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PTokenExpiryPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PTokenExpiryPipelineTest
+{
+  /**
+   * Every accepted event is delivered, in order, in bounded batches.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testBatches()
+    throws Exception
+  {
+    final var received =
+      Collections.synchronizedList(new ArrayList<String>());
+    final var batchSizes =
+      Collections.synchronizedList(new ArrayList<Integer>());
+
+    final var expected = new ArrayList<String>();
+    try (var pipeline =
+           PTokenExpiryPipeline.create(1000, 100, Duration.ofSeconds(1L))) {
+      pipeline.addListener(tokens -> {
+        batchSizes.add(Integer.valueOf(tokens.size()));
+        received.addAll(tokens);
+      });
+
+      for (int index = 0; index < 5000; ++index) {
+        final var token = Integer.toString(index);
+        expected.add(token);
+        pipeline.submit(token);
+      }
+    }
+
+    assertEquals(expected, received);
+    for (final var size : batchSizes) {
+      assertTrue(size.intValue() <= 100);
+    }
+  }
+
+  /**
+   * Events are dropped and counted when the queue stays full.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testDrops()
+    throws Exception
+  {
+    final var blocked = new CountDownLatch(1);
+    final var release = new CountDownLatch(1);
+    final var received =
+      Collections.synchronizedList(new ArrayList<String>());
+
+    try (var pipeline =
+           PTokenExpiryPipeline.create(4, 4, Duration.ofMillis(10L))) {
+      pipeline.addListener(tokens -> {
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        received.addAll(tokens);
+      });
+
+      pipeline.submit("first");
+      assertTrue(blocked.await(5L, TimeUnit.SECONDS));
+
+      for (int index = 0; index < 10; ++index) {
+        pipeline.submit(Integer.toString(index));
+      }
+
+      assertEquals(5L, pipeline.accepted());
+      assertEquals(6L, pipeline.dropped());
+      release.countDown();
+    }
+
+    assertEquals(List.of("first", "0", "1", "2", "3"), received);
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PAuditLog;
+import com.io7m.portero.server.internal.PServerController;
+import com.io7m.portero.server.internal.PTokenStoreMemory;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A soak test that drives the in-memory token store through a year of
+ * invites using a virtual clock.
+ *
+ * The number of tokens and the number of simulated days can be changed
+ * with the {@code portero.soak.tokens} and {@code portero.soak.days}
+ * system properties.
+ */
+
+public final class PTokenSoakTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTokenSoakTest.class);
+
+  private static final Duration EXPIRY =
+    Duration.ofHours(48L);
+
+  private static final Duration STEP =
+    Duration.ofHours(1L);
+
+  private static final Duration DRAIN_TIMEOUT =
+    Duration.ofSeconds(60L);
+
+  /**
+   * A full token store costs a bounded amount of heap per token, and
+   * expiring every token returns the store to empty.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testHeapPerToken()
+    throws Exception
+  {
+    final var count = PTokenStoreMemory.DEFAULT_LIMIT;
+
+    try (var test =
+           PTestController.create(EXPIRY, count, PAuditLog.disabled())) {
+      final var controller = test.controller();
+      final var heapBefore = usedHeap();
+      controller.generateTokens(count);
+      assertEquals(count, controller.tokenCount());
+      final var heapAfter = usedHeap();
+
+      final var perToken = (double) (heapAfter - heapBefore) / count;
+
+      test.clock().advance(EXPIRY);
+      final var gcBefore = GCStats.now();
+      final var timeThen = System.nanoTime();
+      assertEquals(count, test.store().expire());
+      awaitExpired(controller, count);
+      final var elapsed = Duration.ofNanos(System.nanoTime() - timeThen);
+      final var gc = GCStats.now().minus(gcBefore);
+
+      LOG.info("tokens              {}", Integer.valueOf(count));
+      LOG.info("heap per token      {} bytes", format(perToken));
+      LOG.info("expiry throughput   {} tokens/s", format(rate(count, elapsed)));
+      LOG.info("expiry GC           {}", gc);
+
+      assertEquals(0, controller.tokenCount());
+      assertTrue(perToken < 1024.0, "Heap per token " + perToken);
+    }
+  }
+
+  /**
+   * A year of invites, issued hourly and expiring after the default token
+   * lifetime, never holds more than the lifetime's worth of tokens, and
+   * every token eventually expires.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testYearOfInvites()
+    throws Exception
+  {
+    final var total =
+      Integer.getInteger("portero.soak.tokens", 1_000_000).intValue();
+    final var days =
+      Integer.getInteger("portero.soak.days", 365).intValue();
+    final var steps =
+      Math.toIntExact(Duration.ofDays(days).dividedBy(STEP));
+    final var stepsPerExpiry =
+      Math.toIntExact(EXPIRY.dividedBy(STEP));
+    final var perStep =
+      (total + steps - 1) / steps;
+
+    try (var test =
+           PTestController.create(EXPIRY, Integer.MAX_VALUE, PAuditLog.disabled())) {
+      final var controller = test.controller();
+      final var gcBefore = GCStats.now();
+      final var timeThen = System.nanoTime();
+
+      long issued = 0L;
+      long expired = 0L;
+      int peak = 0;
+      long expiryNanos = 0L;
+
+      for (int step = 0; step < steps && issued < total; ++step) {
+        final var count = (int) Math.min(perStep, total - issued);
+        controller.generateTokens(count);
+        issued += count;
+        peak = Math.max(peak, controller.tokenCount());
+
+        test.clock().advance(STEP);
+        final var expireThen = System.nanoTime();
+        expired += test.store().expire();
+        expiryNanos += System.nanoTime() - expireThen;
+      }
+
+      test.clock().advance(EXPIRY);
+      final var expireThen = System.nanoTime();
+      expired += test.store().expire();
+      expiryNanos += System.nanoTime() - expireThen;
+
+      awaitExpired(controller, issued);
+
+      final var elapsed = Duration.ofNanos(System.nanoTime() - timeThen);
+      final var gc = GCStats.now().minus(gcBefore);
+      final var expiry = Duration.ofNanos(expiryNanos);
+
+      LOG.info("simulated           {} days", Integer.valueOf(days));
+      LOG.info("tokens              {}", Long.valueOf(issued));
+      LOG.info("peak outstanding    {}", Integer.valueOf(peak));
+      LOG.info("elapsed             {}", elapsed);
+      LOG.info(
+        "expiry throughput   {} tokens/s", format(rate(expired, expiry)));
+      LOG.info("GC                  {}", gc);
+
+      assertEquals(issued, expired);
+      assertEquals(issued, controller.tokensExpired());
+      assertEquals(0L, controller.expiries().dropped());
+      assertEquals(0, controller.tokenCount());
+      assertTrue(
+        peak <= perStep * (stepsPerExpiry + 1),
+        "Peak outstanding tokens " + peak);
+    }
+  }
+
+  private static void awaitExpired(
+    final PServerController controller,
+    final long count)
+    throws InterruptedException
+  {
+    final var deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+    final var expiries = controller.expiries();
+    while (controller.tokensExpired() + expiries.dropped() < count) {
+      if (System.nanoTime() > deadline) {
+        break;
+      }
+      Thread.sleep(1L);
+    }
+  }
+
+  private static long usedHeap()
+    throws InterruptedException
+  {
+    final var memory = ManagementFactory.getMemoryMXBean();
+    for (int index = 0; index < 4; ++index) {
+      System.gc();
+      Thread.sleep(50L);
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  private static double rate(
+    final long count,
+    final Duration elapsed)
+  {
+    return count / Math.max(1.0e-9, elapsed.toNanos() / 1.0e9);
+  }
+
+  private static String format(
+    final double x)
+  {
+    return String.format("%.2f", Double.valueOf(x));
+  }
+
+  private static final class GCStats
+  {
+    private final long collections;
+    private final long timeMillis;
+
+    private GCStats(
+      final long inCollections,
+      final long inTimeMillis)
+    {
+      this.collections = inCollections;
+      this.timeMillis = inTimeMillis;
+    }
+
+    static GCStats now()
+    {
+      long collections = 0L;
+      long time = 0L;
+      for (final GarbageCollectorMXBean bean :
+        ManagementFactory.getGarbageCollectorMXBeans()) {
+        collections += Math.max(0L, bean.getCollectionCount());
+        time += Math.max(0L, bean.getCollectionTime());
+      }
+      return new GCStats(collections, time);
+    }
+
+    GCStats minus(
+      final GCStats other)
+    {
+      return new GCStats(
+        this.collections - other.collections,
+        this.timeMillis - other.timeMillis
+      );
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format(
+        "%d collections, %d ms",
+        Long.valueOf(this.collections),
+        Long.valueOf(this.timeMillis));
+    }
+  }
+}
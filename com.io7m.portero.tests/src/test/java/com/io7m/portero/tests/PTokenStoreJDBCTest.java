@@ -0,0 +1,297 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.jdbc.PTokenStoreJDBC;
+import com.io7m.portero.jdbc.PTokenStoreJDBCProvider;
+import com.io7m.portero.server.internal.PTokenStoreProviders;
+import com.io7m.portero.server.tokens.PTokenStoreFullException;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PTokenStoreJDBCTest
+{
+  private Map<String, String> properties;
+  private SecureRandom rng;
+
+  @BeforeEach
+  public void setup()
+  {
+    this.rng = new SecureRandom();
+    this.properties = Map.of(
+      "url",
+      "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+      "poolSize",
+      "2"
+    );
+  }
+
+  private String token()
+  {
+    final var data = new byte[32];
+    this.rng.nextBytes(data);
+    return Hex.encodeHexString(data, true);
+  }
+
+  /**
+   * The providers are discoverable by name.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testProviders()
+    throws Exception
+  {
+    assertEquals("jdbc", PTokenStoreProviders.find("jdbc").name());
+    assertEquals("memory", PTokenStoreProviders.find("memory").name());
+    assertThrows(IOException.class, () -> {
+      PTokenStoreProviders.find("nonexistent");
+    });
+  }
+
+  /**
+   * A URL is required.
+   */
+
+  @Test
+  public void testMissingURL()
+  {
+    assertThrows(IOException.class, () -> {
+      new PTokenStoreJDBCProvider()
+        .open(Map.of(), Duration.ofHours(1L), t -> { });
+    });
+  }
+
+  /**
+   * Tokens move through the expected lifecycle.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLifecycle()
+    throws Exception
+  {
+    try (var store = new PTokenStoreJDBCProvider()
+      .open(this.properties, Duration.ofHours(1L), t -> { })) {
+
+      final var token = this.token();
+      assertFalse(store.isValid(token));
+      assertTrue(store.issue(token));
+      assertFalse(store.issue(token));
+      assertTrue(store.isValid(token));
+      assertEquals(1, store.size());
+
+      assertTrue(store.claim(token));
+      assertFalse(store.claim(token));
+      store.release(token);
+      assertTrue(store.claim(token));
+
+      assertTrue(store.consume(token));
+      assertFalse(store.consume(token));
+      assertFalse(store.isValid(token));
+      assertEquals(0, store.size());
+    }
+  }
+
+  /**
+   * Tokens issued in bulk are all issued, and collisions with existing
+   * tokens are handled.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testIssueAll()
+    throws Exception
+  {
+    try (var store = new PTokenStoreJDBCProvider()
+      .open(this.properties, Duration.ofHours(1L), t -> { })) {
+
+      final var tokens = new ArrayList<String>();
+      for (int index = 0; index < 1200; ++index) {
+        tokens.add(this.token());
+      }
+
+      assertEquals(tokens, store.issueAll(tokens));
+      assertEquals(1200, store.size());
+
+      final var fresh = this.token();
+      final var issued = store.issueAll(List.of(tokens.get(0), fresh));
+      assertEquals(List.of(fresh), issued);
+      assertEquals(1201, store.size());
+    }
+  }
+
+  /**
+   * Two stores sharing a database see the same tokens.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testShared()
+    throws Exception
+  {
+    final var provider = new PTokenStoreJDBCProvider();
+    try (var store0 =
+           provider.open(this.properties, Duration.ofHours(1L), t -> { });
+         var store1 =
+           provider.open(this.properties, Duration.ofHours(1L), t -> { })) {
+
+      final var token = this.token();
+      assertTrue(store0.issue(token));
+      assertTrue(store1.isValid(token));
+      assertTrue(store1.claim(token));
+      assertFalse(store0.claim(token));
+      assertTrue(store1.consume(token));
+      assertFalse(store0.isValid(token));
+    }
+  }
+
+  /**
+   * Expired tokens are swept and reported.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testExpiration()
+    throws Exception
+  {
+    final var expired =
+      Collections.synchronizedList(new ArrayList<String>());
+
+    try (var store = new PTokenStoreJDBCProvider()
+      .open(this.properties, Duration.ofMillis(500L), expired::add)) {
+
+      final var token = this.token();
+      assertTrue(store.issue(token));
+      Thread.sleep(1_000L);
+      assertFalse(store.isValid(token));
+
+      assertInstanceOf(PTokenStoreJDBC.class, store);
+      ((PTokenStoreJDBC) store).sweep();
+      assertEquals(List.of(token), expired);
+      assertEquals(0, store.size());
+    }
+  }
+
+  /**
+   * The limit on outstanding tokens is enforced.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLimit()
+    throws Exception
+  {
+    final var limited = new HashMap<>(this.properties);
+    limited.put("limit", "3");
+
+    try (var store = new PTokenStoreJDBCProvider()
+      .open(limited, Duration.ofHours(1L), t -> { })) {
+
+      assertEquals(2, store.issueAll(List.of(this.token(), this.token())).size());
+      final var token = this.token();
+      assertTrue(store.issue(token));
+      assertThrows(PTokenStoreFullException.class, () -> {
+        store.issue(this.token());
+      });
+      assertThrows(PTokenStoreFullException.class, () -> {
+        store.issueAll(List.of(this.token(), this.token()));
+      });
+
+      assertTrue(store.consume(token));
+      final var rejected = List.of(this.token(), this.token());
+      assertThrows(PTokenStoreFullException.class, () -> {
+        store.issueAll(rejected);
+      });
+      assertFalse(store.isValid(rejected.get(0)));
+      assertTrue(store.issue(this.token()));
+    }
+  }
+
+  /**
+   * Invalid limits and unsupported eviction policies are rejected.
+   */
+
+  @Test
+  public void testLimitInvalid()
+  {
+    final var badLimit = new HashMap<>(this.properties);
+    badLimit.put("limit", "0");
+    assertThrows(IOException.class, () -> {
+      new PTokenStoreJDBCProvider()
+        .open(badLimit, Duration.ofHours(1L), t -> { });
+    });
+
+    final var badPolicy = new HashMap<>(this.properties);
+    badPolicy.put("evictionPolicy", "EVICT_OLDEST");
+    assertThrows(IOException.class, () -> {
+      new PTokenStoreJDBCProvider()
+        .open(badPolicy, Duration.ofHours(1L), t -> { });
+    });
+  }
+
+  /**
+   * The count of outstanding tokens is not queried on each call, and
+   * includes tokens issued by other stores once it is refreshed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testCountShared()
+    throws Exception
+  {
+    final var provider = new PTokenStoreJDBCProvider();
+    try (var store0 =
+           provider.open(this.properties, Duration.ofHours(1L), t -> { });
+         var store1 =
+           provider.open(this.properties, Duration.ofHours(1L), t -> { })) {
+
+      assertTrue(store0.issue(this.token()));
+      assertTrue(store0.issue(this.token()));
+      assertEquals(2, store0.size());
+      assertEquals(0, store1.size());
+
+      ((PTokenStoreJDBC) store1).recount();
+      assertEquals(2, store1.size());
+    }
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PTokenStoreMemory;
+import com.io7m.portero.server.internal.PTokenStoreMemoryProvider;
+import com.io7m.portero.server.tokens.PTokenStoreFullException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.io7m.portero.server.tokens.PTokenStoreEvictionPolicy.EVICT_OLDEST;
+import static com.io7m.portero.server.tokens.PTokenStoreEvictionPolicy.REJECT_NEW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PTokenStoreMemoryTest
+{
+  /**
+   * A full store evicts the oldest tokens.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testEvictOldest()
+    throws Exception
+  {
+    try (var store = PTokenStoreMemory.create(
+      Duration.ofHours(1L), 3, EVICT_OLDEST, t -> { })) {
+
+      assertTrue(store.issue("a"));
+      assertTrue(store.issue("b"));
+      assertTrue(store.issue("c"));
+      assertTrue(store.issue("d"));
+      assertTrue(store.issue("e"));
+
+      assertEquals(3, store.size());
+      assertFalse(store.isValid("a"));
+      assertFalse(store.isValid("b"));
+      assertTrue(store.isValid("c"));
+      assertTrue(store.isValid("e"));
+      assertEquals(2L, store.evictions());
+      assertEquals(0L, store.rejections());
+    }
+  }
+
+  /**
+   * A full store never evicts a token that is being redeemed, and rejects
+   * new tokens if every token is being redeemed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testEvictOldestSkipsClaimed()
+    throws Exception
+  {
+    try (var store = PTokenStoreMemory.create(
+      Duration.ofHours(1L), 2, EVICT_OLDEST, t -> { })) {
+
+      assertTrue(store.issue("a"));
+      assertTrue(store.issue("b"));
+      assertTrue(store.claim("a"));
+
+      assertTrue(store.issue("c"));
+      assertTrue(store.isValid("a"));
+      assertFalse(store.isValid("b"));
+      assertTrue(store.consume("a"));
+
+      assertTrue(store.issue("d"));
+      assertTrue(store.claim("c"));
+      assertTrue(store.claim("d"));
+      assertThrows(PTokenStoreFullException.class, () -> store.issue("e"));
+      assertTrue(store.isValid("c"));
+      assertTrue(store.isValid("d"));
+      assertEquals(1L, store.evictions());
+      assertEquals(1L, store.rejections());
+    }
+  }
+
+  /**
+   * A full store rejects new tokens.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRejectNew()
+    throws Exception
+  {
+    try (var store = PTokenStoreMemory.create(
+      Duration.ofHours(1L), 2, REJECT_NEW, t -> { })) {
+
+      assertTrue(store.issue("a"));
+      assertTrue(store.issue("b"));
+      assertThrows(PTokenStoreFullException.class, () -> store.issue("c"));
+      assertThrows(PTokenStoreFullException.class, () -> store.issue("d"));
+
+      assertEquals(2, store.size());
+      assertTrue(store.isValid("a"));
+      assertFalse(store.isValid("c"));
+      assertEquals(0L, store.evictions());
+      assertEquals(2L, store.rejections());
+
+      assertTrue(store.consume("a"));
+      assertTrue(store.issue("c"));
+    }
+  }
+
+  /**
+   * A list of tokens that would exceed the limit is rejected as a whole,
+   * and none of its tokens are issued.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testIssueAllRejectNew()
+    throws Exception
+  {
+    try (var store = PTokenStoreMemory.create(
+      Duration.ofHours(1L), 3, REJECT_NEW, t -> { })) {
+
+      assertEquals(List.of("a", "b"), store.issueAll(List.of("a", "b")));
+      assertThrows(
+        PTokenStoreFullException.class,
+        () -> store.issueAll(List.of("c", "d")));
+
+      assertEquals(2, store.size());
+      assertFalse(store.isValid("c"));
+      assertFalse(store.isValid("d"));
+      assertEquals(1L, store.rejections());
+
+      assertEquals(List.of("c"), store.issueAll(List.of("a", "c")));
+    }
+  }
+
+  /**
+   * A list of tokens issued to a full store evicts as many of the oldest
+   * tokens as necessary, and each evicted token is passed to the expiry
+   * function.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testIssueAllEvictOldest()
+    throws Exception
+  {
+    final var expired = new ArrayList<String>();
+
+    try (var store = PTokenStoreMemory.create(
+      Duration.ofHours(1L), 3, EVICT_OLDEST, expired::add)) {
+
+      assertEquals(
+        List.of("a", "b", "c"),
+        store.issueAll(List.of("a", "b", "c")));
+      assertTrue(store.claim("a"));
+      assertEquals(List.of("d", "e"), store.issueAll(List.of("d", "e")));
+
+      assertEquals(3, store.size());
+      assertTrue(store.isValid("a"));
+      assertTrue(store.isValid("d"));
+      assertTrue(store.isValid("e"));
+      assertEquals(List.of("b", "c"), expired);
+      assertEquals(2L, store.evictions());
+
+      assertThrows(
+        PTokenStoreFullException.class,
+        () -> store.issueAll(List.of("f", "g", "h")));
+      assertEquals(3, store.size());
+      assertEquals(List.of("b", "c"), expired);
+    }
+  }
+
+  /**
+   * Tokens that have expired, but that have not yet been swept, do not
+   * count towards the limit.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testExpiredNotCounted()
+    throws Exception
+  {
+    final var clock =
+      PTestClock.startingAt(Instant.parse("2026-01-01T00:00:00Z"));
+    final var expired = new ArrayList<String>();
+
+    try (var store = PTokenStoreMemory.create(
+      Duration.ofHours(1L), 2, REJECT_NEW, clock, expired::add)) {
+
+      assertTrue(store.issue("a"));
+      assertTrue(store.issue("b"));
+      clock.advance(Duration.ofHours(2L));
+
+      assertTrue(store.issue("c"));
+      assertEquals(1, store.size());
+      assertEquals(List.of("a", "b"), expired);
+      assertEquals(0L, store.rejections());
+    }
+  }
+
+  /**
+   * Tokens expire in the order in which they were issued.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testExpiration()
+    throws Exception
+  {
+    final var expired =
+      Collections.synchronizedList(new ArrayList<String>());
+
+    try (var store = PTokenStoreMemory.create(
+      Duration.ofMillis(400L), 10, REJECT_NEW, expired::add)) {
+
+      assertTrue(store.issue("a"));
+      assertTrue(store.issue("b"));
+      assertTrue(store.claim("b"));
+      assertFalse(store.claim("b"));
+      Thread.sleep(1_000L);
+
+      assertFalse(store.isValid("a"));
+      assertFalse(store.claim("a"));
+      assertEquals(0, store.size());
+      assertEquals(List.of("a", "b"), expired);
+    }
+  }
+
+  /**
+   * The provider reads the limit and policy from its properties.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testProvider()
+    throws Exception
+  {
+    final var provider = new PTokenStoreMemoryProvider();
+    try (var store = provider.open(
+      Map.of("limit", "1", "evictionPolicy", "EVICT_OLDEST"),
+      Duration.ofHours(1L),
+      t -> { })) {
+      assertTrue(store.issue("a"));
+      assertTrue(store.issue("b"));
+      assertEquals(1, store.size());
+      assertEquals(1L, store.evictions());
+    }
+
+    assertThrows(IOException.class, () -> {
+      provider.open(
+        Map.of("evictionPolicy", "NONSENSE"),
+        Duration.ofHours(1L),
+        t -> { });
+    });
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.PServerClusterConfiguration;
+import com.io7m.portero.server.internal.PClusterJSON;
+import com.io7m.portero.server.internal.PTokenStoreReplicated;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.MediaType;
+import org.mockserver.verify.VerificationTimes;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public final class PTokenStoreReplicatedTest
+{
+  private ClientAndServer mockServer;
+  private PTokenStoreReplicated store;
+
+  private static PServerClusterConfiguration.Builder cluster(
+    final URI peer)
+  {
+    return PServerClusterConfiguration.builder()
+      .setNodeId("node0")
+      .addPeers(peer)
+      .setRequestTimeout(Duration.ofMillis(500L))
+      .setReplicationInterval(Duration.ofHours(1L));
+  }
+
+  @BeforeEach
+  public void setup()
+  {
+    this.mockServer = startClientAndServer(10000);
+    assertTrue(this.mockServer.hasStarted(100, 5L, TimeUnit.SECONDS));
+  }
+
+  @AfterEach
+  public void tearDown()
+  {
+    if (this.store != null) {
+      this.store.close();
+    }
+    this.mockServer.stop();
+    assertTrue(this.mockServer.hasStopped(100, 5L, TimeUnit.SECONDS));
+  }
+
+  private void expectClaims()
+  {
+    this.mockServer
+      .when(request("/cluster/claim"))
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.APPLICATION_JSON)
+          .withBody("{\"granted\":true}"));
+  }
+
+  /**
+   * A consumption is sent directly to the other nodes, and completes once
+   * a majority has recorded it.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testConsumeAcknowledged()
+    throws Exception
+  {
+    this.expectClaims();
+    this.mockServer
+      .when(request("/cluster/consume"))
+      .respond(response().withStatusCode(200));
+
+    this.store =
+      PTokenStoreReplicated.open(
+        cluster(URI.create("http://127.0.0.1:10000/")).build(),
+        Duration.ofHours(1L),
+        token -> {
+        });
+
+    assertTrue(this.store.issue("abcd"));
+    assertTrue(this.store.claim("abcd"));
+    assertTrue(this.store.consume("abcd"));
+    assertFalse(this.store.isValid("abcd"));
+
+    this.mockServer.verify(
+      request("/cluster/consume").withMethod("POST"),
+      VerificationTimes.exactly(1));
+  }
+
+  /**
+   * A consumption that a majority of the nodes did not record still
+   * succeeds, and is left in the log for the other nodes.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testConsumeUnacknowledged()
+    throws Exception
+  {
+    this.expectClaims();
+    this.mockServer
+      .when(request("/cluster/consume"))
+      .respond(response().withStatusCode(503));
+
+    this.store =
+      PTokenStoreReplicated.open(
+        cluster(URI.create("http://127.0.0.1:10000/")).build(),
+        Duration.ofHours(1L),
+        token -> {
+        });
+
+    assertTrue(this.store.issue("abcd"));
+    assertTrue(this.store.claim("abcd"));
+    assertTrue(this.store.consume("abcd"));
+    assertFalse(this.store.isValid("abcd"));
+    assertEquals(2, this.store.logSize());
+  }
+
+  /**
+   * A release that arrives after the same node has claimed the token again
+   * does not clear the newer claim.
+   */
+
+  @Test
+  public void testReleaseStale()
+  {
+    this.store =
+      PTokenStoreReplicated.open(
+        cluster(URI.create("http://127.0.0.1:10000/")).build(),
+        Duration.ofHours(1L),
+        token -> {
+        });
+
+    assertTrue(this.store.onClaim(claim("node1", "abcd", "c0")).granted);
+    assertTrue(this.store.onClaim(claim("node1", "abcd", "c1")).granted);
+
+    this.store.onRelease(claim("node1", "abcd", "c0"));
+    assertFalse(this.store.onClaim(claim("node2", "abcd", "c2")).granted);
+
+    this.store.onRelease(claim("node1", "abcd", "c1"));
+    assertTrue(this.store.onClaim(claim("node2", "abcd", "c2")).granted);
+  }
+
+  /**
+   * An idle node sends heartbeats to the other nodes.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testHeartbeat()
+    throws Exception
+  {
+    this.mockServer
+      .when(request("/cluster/replicate"))
+      .respond(
+        response()
+          .withStatusCode(200)
+          .withContentType(MediaType.APPLICATION_JSON)
+          .withBody("{\"applied\":0}"));
+
+    this.store =
+      PTokenStoreReplicated.open(
+        cluster(URI.create("http://127.0.0.1:10000/"))
+          .setReplicationInterval(Duration.ofMillis(50L))
+          .setPeerTimeout(Duration.ofMillis(250L))
+          .build(),
+        Duration.ofHours(1L),
+        token -> {
+        });
+
+    Thread.sleep(1_000L);
+
+    this.mockServer.verify(
+      request("/cluster/replicate").withMethod("POST"),
+      VerificationTimes.atLeast(2));
+  }
+
+  /**
+   * A heartbeat from a node that is new to this node is accepted from the
+   * end of that node's log.
+   */
+
+  @Test
+  public void testHeartbeatReceived()
+  {
+    this.store =
+      PTokenStoreReplicated.open(
+        cluster(URI.create("http://127.0.0.1:10000/")).build(),
+        Duration.ofHours(1L),
+        token -> {
+        });
+
+    final var expires = System.currentTimeMillis() + 3_600_000L;
+
+    final var heartbeat = new PClusterJSON.PClusterReplicate();
+    heartbeat.node = "node1";
+    heartbeat.epoch = "e0";
+    heartbeat.sequence = 10L;
+    assertEquals(10L, this.store.onReplicate(heartbeat).applied);
+    assertEquals(10L, this.store.onReplicate(heartbeat).applied);
+
+    final var batch = new PClusterJSON.PClusterReplicate();
+    batch.node = "node1";
+    batch.epoch = "e0";
+    batch.entries.add(entry(11L, "issue", "a", expires));
+    assertEquals(11L, this.store.onReplicate(batch).applied);
+    assertTrue(this.store.isValid("a"));
+  }
+
+  /**
+   * A node that stops responding no longer prevents the log from being
+   * truncated.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTruncationPeerDown()
+    throws Exception
+  {
+    this.store =
+      PTokenStoreReplicated.open(
+        cluster(URI.create("http://127.0.0.1:20099/"))
+          .setReplicationInterval(Duration.ofMillis(50L))
+          .setPeerTimeout(Duration.ofMillis(250L))
+          .build(),
+        Duration.ofHours(1L),
+        token -> {
+        });
+
+    for (int index = 0; index < 10; ++index) {
+      assertTrue(this.store.issue("token" + index));
+    }
+    assertEquals(10, this.store.logSize());
+
+    for (int index = 0; index < 100; ++index) {
+      if (this.store.logSize() == 0) {
+        break;
+      }
+      Thread.sleep(50L);
+    }
+    assertEquals(0, this.store.logSize());
+  }
+
+  /**
+   * A snapshot replaces the events that a node missed, and replication
+   * continues from the end of the snapshot.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSnapshot()
+    throws Exception
+  {
+    this.store =
+      PTokenStoreReplicated.open(
+        cluster(URI.create("http://127.0.0.1:10000/")).build(),
+        Duration.ofHours(1L),
+        token -> {
+        });
+
+    final var expires = System.currentTimeMillis() + 3_600_000L;
+
+    final var snapshot = new PClusterJSON.PClusterReplicate();
+    snapshot.node = "node1";
+    snapshot.epoch = "e0";
+    snapshot.snapshot = true;
+    snapshot.sequence = 100L;
+    snapshot.entries.add(entry(0L, "issue", "a", expires));
+    snapshot.entries.add(entry(0L, "consume", "b", expires));
+
+    assertEquals(100L, this.store.onReplicate(snapshot).applied);
+    assertTrue(this.store.isValid("a"));
+    assertFalse(this.store.isValid("b"));
+
+    final var batch = new PClusterJSON.PClusterReplicate();
+    batch.node = "node1";
+    batch.epoch = "e0";
+    batch.entries.add(entry(100L, "issue", "c", expires));
+    batch.entries.add(entry(101L, "issue", "d", expires));
+
+    assertEquals(101L, this.store.onReplicate(batch).applied);
+    assertFalse(this.store.isValid("c"));
+    assertTrue(this.store.isValid("d"));
+  }
+
+  private static PClusterJSON.PClusterClaim claim(
+    final String node,
+    final String token,
+    final String claim)
+  {
+    final var request = new PClusterJSON.PClusterClaim();
+    request.node = node;
+    request.token = token;
+    request.claim = claim;
+    return request;
+  }
+
+  private static PClusterJSON.PClusterLogEntry entry(
+    final long sequence,
+    final String type,
+    final String token,
+    final long expires)
+  {
+    final var entry = new PClusterJSON.PClusterLogEntry();
+    entry.sequence = sequence;
+    entry.type = type;
+    entry.token = token;
+    entry.expires = expires;
+    return entry;
+  }
+}
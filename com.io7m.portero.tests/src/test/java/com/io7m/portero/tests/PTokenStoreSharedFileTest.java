@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PTokenStoreSharedFile;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PTokenStoreSharedFileTest
+{
+  private Path directory;
+  private Path file;
+  private SecureRandom rng;
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    this.directory = Files.createTempDirectory("portero");
+    this.file = this.directory.resolve("tokens.dat");
+    this.rng = new SecureRandom();
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(this.file);
+    Files.deleteIfExists(this.directory);
+  }
+
+  private String token()
+  {
+    final var data = new byte[32];
+    this.rng.nextBytes(data);
+    return Hex.encodeHexString(data, true);
+  }
+
+  /**
+   * Tokens issued by one store are visible to another store sharing the
+   * same file, and can only be consumed once.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testSharedVisibility()
+    throws Exception
+  {
+    try (var store0 = PTokenStoreSharedFile.open(
+      this.file, Duration.ofHours(1L), t -> { });
+         var store1 = PTokenStoreSharedFile.open(
+           this.file, Duration.ofHours(1L), t -> { })) {
+
+      final var token = this.token();
+      assertTrue(store0.issue(token));
+      assertFalse(store1.issue(token));
+      assertTrue(store1.isValid(token));
+      assertEquals(1, store1.size());
+
+      assertTrue(store1.claim(token));
+      assertFalse(store0.claim(token));
+      store1.release(token);
+      assertTrue(store0.claim(token));
+
+      assertTrue(store0.consume(token));
+      assertFalse(store1.consume(token));
+      assertFalse(store1.isValid(token));
+      assertEquals(0, store0.size());
+    }
+  }
+
+  /**
+   * A store cannot release a claim that is held by another store.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testReleaseOtherHolder()
+    throws Exception
+  {
+    try (var store0 = PTokenStoreSharedFile.open(
+      this.file, Duration.ofHours(1L), t -> { });
+         var store1 = PTokenStoreSharedFile.open(
+           this.file, Duration.ofHours(1L), t -> { })) {
+
+      final var token = this.token();
+      assertTrue(store0.issue(token));
+      assertTrue(store0.claim(token));
+
+      store1.release(token);
+      assertFalse(store1.claim(token));
+
+      store0.release(token);
+      assertTrue(store1.claim(token));
+
+      store0.release(token);
+      assertFalse(store0.claim(token));
+    }
+  }
+
+  /**
+   * Tokens survive the store being closed and reopened.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testPersistent()
+    throws Exception
+  {
+    final var token = this.token();
+    try (var store = PTokenStoreSharedFile.open(
+      this.file, Duration.ofHours(1L), t -> { })) {
+      assertTrue(store.issue(token));
+    }
+    try (var store = PTokenStoreSharedFile.open(
+      this.file, Duration.ofHours(1L), t -> { })) {
+      assertTrue(store.isValid(token));
+    }
+  }
+
+  /**
+   * Tokens expire.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testExpiration()
+    throws Exception
+  {
+    final var expired =
+      Collections.synchronizedList(new ArrayList<String>());
+
+    try (var store = PTokenStoreSharedFile.open(
+      this.file, Duration.ofMillis(500L), expired::add)) {
+      final var token = this.token();
+      assertTrue(store.issue(token));
+      Thread.sleep(1_000L);
+      assertFalse(store.isValid(token));
+      assertEquals(0, store.size());
+      assertEquals(List.of(token), expired);
+    }
+  }
+
+  /**
+   * A nearly full table with many deletions still finds every remaining
+   * token.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testCollisions()
+    throws Exception
+  {
+    try (var store = PTokenStoreSharedFile.open(
+      this.file, 64, Duration.ofHours(1L), t -> { })) {
+
+      final var tokens = new ArrayList<String>();
+      for (int index = 0; index < 63; ++index) {
+        final var token = this.token();
+        assertTrue(store.issue(token));
+        tokens.add(token);
+      }
+
+      assertThrows(IllegalStateException.class, () -> {
+        store.issue(this.token());
+      });
+
+      final var removed = new HashSet<String>();
+      for (int index = 0; index < tokens.size(); index += 2) {
+        final var token = tokens.get(index);
+        assertTrue(store.consume(token));
+        removed.add(token);
+      }
+
+      for (final var token : tokens) {
+        assertEquals(!removed.contains(token), store.isValid(token));
+      }
+      assertEquals(tokens.size() - removed.size(), store.size());
+    }
+  }
+
+  /**
+   * Malformed tokens are never valid.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testMalformed()
+    throws Exception
+  {
+    try (var store = PTokenStoreSharedFile.open(
+      this.file, Duration.ofHours(1L), t -> { })) {
+      assertFalse(store.isValid("abcd"));
+      assertFalse(store.claim("not hex"));
+      assertThrows(IllegalArgumentException.class, () -> {
+        store.issue("abcd");
+      });
+    }
+  }
+}
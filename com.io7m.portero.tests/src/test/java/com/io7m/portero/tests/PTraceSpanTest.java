@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.server.internal.PTraceExporter;
+import com.io7m.portero.server.internal.PTraceSpan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PTraceSpanTest
+{
+  private Path directory;
+  private Path file;
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    this.directory = Files.createTempDirectory("portero");
+    this.file = this.directory.resolve("traces.tsv");
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(this.file);
+    Files.deleteIfExists(this.directory);
+  }
+
+  /**
+   * Child spans share the trace of their parent, the trace ID is held in
+   * the MDC while the trace is open, and closed spans are written to the
+   * trace file.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testNestedSpans()
+    throws Exception
+  {
+    final String traceId;
+    final String rootId;
+    final String childId;
+
+    try (var exporter = PTraceExporter.open(this.file, 16)) {
+      try (var root = PTraceSpan.openRoot(exporter, "GET /", null)) {
+        traceId = root.traceId();
+        rootId = root.spanId();
+        assertEquals(32, traceId.length());
+        assertEquals(traceId, MDC.get(PTraceSpan.MDC_TRACE_ID));
+
+        try (var child = PTraceSpan.open("child")) {
+          childId = child.spanId();
+          assertEquals(traceId, child.traceId());
+          assertEquals(rootId, child.parentSpanId().orElseThrow());
+          assertEquals(child, PTraceSpan.current().orElseThrow());
+          child.setStatus("failed");
+        }
+
+        assertEquals(root, PTraceSpan.current().orElseThrow());
+      }
+
+      assertTrue(PTraceSpan.current().isEmpty());
+      assertNull(MDC.get(PTraceSpan.MDC_TRACE_ID));
+    }
+
+    final var lines = Files.readAllLines(this.file, UTF_8);
+    assertEquals(2, lines.size());
+
+    final var child = lines.get(0).split("\t");
+    assertEquals(traceId, child[2]);
+    assertEquals(childId, child[3]);
+    assertEquals(rootId, child[4]);
+    assertEquals("child", child[5]);
+    assertEquals("failed", child[6]);
+
+    final var root = lines.get(1).split("\t");
+    assertEquals(traceId, root[2]);
+    assertEquals(rootId, root[3]);
+    assertEquals("-", root[4]);
+    assertEquals("GET /", root[5]);
+  }
+
+  /**
+   * An incoming traceparent header is honoured, and an invalid one is
+   * ignored.
+   */
+
+  @Test
+  public void testTraceparent()
+  {
+    final var incoming =
+      "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+    try (var span =
+           PTraceSpan.openRoot(PTraceExporter.disabled(), "x", incoming)) {
+      assertEquals("0af7651916cd43dd8448eb211c80319c", span.traceId());
+      assertEquals("b7ad6b7169203331", span.parentSpanId().orElseThrow());
+      assertTrue(span.traceparent().startsWith(
+        "00-0af7651916cd43dd8448eb211c80319c-"));
+      assertNotEquals("b7ad6b7169203331", span.spanId());
+    }
+
+    try (var span =
+           PTraceSpan.openRoot(PTraceExporter.disabled(), "x", "garbage")) {
+      assertEquals(32, span.traceId().length());
+      assertTrue(span.parentSpanId().isEmpty());
+    }
+  }
+}
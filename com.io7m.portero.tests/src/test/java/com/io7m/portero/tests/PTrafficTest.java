@@ -0,0 +1,410 @@
+/*
+ * Copyright © 2026 Mark Raynsford <code@io7m.com> https://www.io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.portero.tests;
+
+import com.io7m.portero.loadtest.PLoadTestReplayConfiguration;
+import com.io7m.portero.loadtest.PLoadTests;
+import com.io7m.portero.server.PServerConfiguration;
+import com.io7m.portero.server.PServers;
+import com.io7m.portero.server.internal.PTrafficRecorder;
+import com.io7m.portero.server.traffic.PTrafficRecord;
+import com.io7m.portero.server.traffic.PTrafficRecordings;
+import com.io7m.portero.server.traffic.PTrafficRoute;
+import com.io7m.portero.simulator.PSimulator;
+import com.io7m.portero.simulator.PSimulatorConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PTrafficTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTrafficTest.class);
+
+  private Path directory;
+  private Path file;
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    this.directory = Files.createTempDirectory("portero");
+    this.file = this.directory.resolve("traffic.bin");
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(this.file);
+    Files.deleteIfExists(this.directory);
+  }
+
+  private static PTrafficRecord record(
+    final long time,
+    final PTrafficRoute route,
+    final int token)
+  {
+    return PTrafficRecord.builder()
+      .setTimeMicros(time)
+      .setRoute(route)
+      .setStatus(200)
+      .setToken(token)
+      .setRequestBytes(64L)
+      .setResponseBytes(1024L)
+      .setDurationMicros(350L)
+      .build();
+  }
+
+  private static PServerConfiguration serverConfiguration(
+    final URI matrix,
+    final Optional<Path> recording)
+    throws Exception
+  {
+    return PServerConfiguration.builder()
+      .setMatrixServerPublicURI(URI.create("http://chat.example.com"))
+      .setMatrixServerAdminConnectionURI(matrix)
+      .setMatrixServerAdminRegistrationSecret("secret")
+      .setBindPrivateAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPrivatePort(20021)
+      .setBindPublicAddress(InetAddress.getByName("127.0.0.1"))
+      .setBindPublicPort(20020)
+      .setServerTitle("chat.example.com")
+      .setPublicURI(URI.create("http://127.0.0.1:20020/"))
+      .setServerTrafficRecording(recording)
+      .build();
+  }
+
+  /**
+   * Records survive a write and read, and a truncated final record is
+   * ignored.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRoundTrip()
+    throws Exception
+  {
+    final var records = List.of(
+      record(2_000L, PTrafficRoute.PUBLIC_SIGNUP, 23),
+      record(1_000L, PTrafficRoute.PRIVATE_INVITE, 23),
+      record(3_000L, PTrafficRoute.PUBLIC_SIGNUP_COMPLETE, 23),
+      record(4_000L, PTrafficRoute.PUBLIC_STATIC, 0)
+    );
+
+    final var bytes = new ByteArrayOutputStream();
+    final var output = new DataOutputStream(bytes);
+    PTrafficRecordings.writeHeader(output);
+    for (final var r : records) {
+      PTrafficRecordings.writeRecord(output, r);
+    }
+    output.write(new byte[PTrafficRecordings.RECORD_SIZE / 2]);
+    output.flush();
+
+    assertEquals(
+      PTrafficRecordings.HEADER_SIZE
+        + (records.size() * PTrafficRecordings.RECORD_SIZE)
+        + (PTrafficRecordings.RECORD_SIZE / 2),
+      bytes.size());
+
+    final var read =
+      PTrafficRecordings.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+    assertEquals(
+      List.of(records.get(1), records.get(0), records.get(2), records.get(3)),
+      read);
+  }
+
+  /**
+   * Files that are not recordings are rejected.
+   */
+
+  @Test
+  public void testNotRecording()
+  {
+    assertThrows(IOException.class, () -> {
+      PTrafficRecordings.read(
+        new ByteArrayInputStream("{\"server\":\"public\"}\n".getBytes(UTF_8)));
+    });
+  }
+
+  /**
+   * Requests are classified by server and path.
+   */
+
+  @Test
+  public void testClassify()
+  {
+    assertEquals(
+      PTrafficRoute.PRIVATE_INVITE,
+      PTrafficRoute.classify("private", "/"));
+    assertEquals(
+      PTrafficRoute.PRIVATE_METRICS,
+      PTrafficRoute.classify("private", "/metrics"));
+    assertEquals(
+      PTrafficRoute.PRIVATE_OTHER,
+      PTrafficRoute.classify("private", "/metricsx"));
+    assertEquals(
+      PTrafficRoute.PUBLIC_ROOT,
+      PTrafficRoute.classify("public", "/"));
+    assertEquals(
+      PTrafficRoute.PUBLIC_SIGNUP,
+      PTrafficRoute.classify("public", "/signup/"));
+    assertEquals(
+      PTrafficRoute.PUBLIC_SIGNUP_COMPLETE,
+      PTrafficRoute.classify("public", "/signup-complete/"));
+    assertEquals(
+      PTrafficRoute.PUBLIC_API_SIGNUP,
+      PTrafficRoute.classify("public", "/api/v1/signup"));
+    assertEquals(
+      PTrafficRoute.PUBLIC_OTHER,
+      PTrafficRoute.classify("public", "/nonexistent"));
+    assertEquals(
+      PTrafficRoute.PUBLIC_STATIC,
+      PTrafficRoute.classify("public", "/static/style.css"));
+    assertEquals(
+      PTrafficRoute.PRIVATE_HEALTH,
+      PTrafficRoute.classify("private", "/health/ready"));
+    assertEquals(
+      PTrafficRoute.PUBLIC_OTHER,
+      PTrafficRoute.classify("public", "//signup"));
+
+    for (final var route : PTrafficRoute.values()) {
+      assertEquals(route, PTrafficRoute.ofCode(route.code()));
+    }
+    assertThrows(IllegalArgumentException.class, () -> {
+      PTrafficRoute.ofCode(255);
+    });
+  }
+
+  /**
+   * Token identifiers are stable within a recorder, nonzero, and
+   * unrelated across recorders.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testAnonymize()
+    throws Exception
+  {
+    try (var recorder0 = PTrafficRecorder.open(this.file, 16)) {
+      try (var recorder1 = PTrafficRecorder.open(this.file, 16)) {
+        final var id0 = recorder0.anonymize("abcd");
+        assertEquals(id0, recorder0.anonymize("abcd"));
+        assertNotEquals(0, id0);
+        assertNotEquals(id0, recorder0.anonymize("abce"));
+        assertNotEquals(id0, recorder1.anonymize("abcd"));
+      }
+    }
+  }
+
+  /**
+   * Traffic through a running server is recorded without tokens, and the
+   * recording can be replayed against a fresh server.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRecordAndReplay()
+    throws Exception
+  {
+    final var client =
+      HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(5L))
+        .build();
+
+    final var tokens = new ArrayList<String>();
+
+    try (var synapse = PSimulator.start(
+      PSimulatorConfiguration.builder()
+        .setSharedSecret("secret")
+        .build())) {
+      final var configuration =
+        serverConfiguration(synapse.uri(), Optional.of(this.file));
+
+      try (var server = PServers.createServer(configuration)) {
+        server.start();
+
+        for (int index = 0; index < 3; ++index) {
+          final var invite =
+            client.send(
+              HttpRequest.newBuilder(URI.create("http://127.0.0.1:20021/"))
+                .build(),
+              HttpResponse.BodyHandlers.ofString());
+          assertEquals(200, invite.statusCode());
+
+          final var line = invite.body().lines().findFirst().orElseThrow();
+          final var token =
+            line.substring(line.indexOf("token=") + "token=".length()).trim();
+          tokens.add(token);
+
+          final var query = "?token=" + URLEncoder.encode(token, UTF_8);
+          final var signup =
+            client.send(
+              HttpRequest.newBuilder(
+                  URI.create("http://127.0.0.1:20020/signup/" + query))
+                .build(),
+              HttpResponse.BodyHandlers.discarding());
+          assertEquals(200, signup.statusCode());
+
+          final var user = "traffic" + index;
+          final var form =
+            String.join(
+              "&",
+              "token=" + URLEncoder.encode(token, UTF_8),
+              "user_name=" + user,
+              "email=" + user + "%40example.com",
+              "password=12345678",
+              "password_confirm=12345678");
+
+          final var complete =
+            client.send(
+              HttpRequest.newBuilder(
+                  URI.create("http://127.0.0.1:20020/signup-complete/"))
+                .header("content-type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(),
+              HttpResponse.BodyHandlers.discarding());
+          assertEquals(200, complete.statusCode());
+        }
+
+        final var style =
+          client.send(
+            HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:20020/static/style.css"))
+              .build(),
+            HttpResponse.BodyHandlers.discarding());
+        assertEquals(200, style.statusCode());
+      }
+    }
+
+    final var text = new String(Files.readAllBytes(this.file), UTF_8);
+    for (final var token : tokens) {
+      assertFalse(text.contains(token), "Recording must not contain tokens");
+    }
+
+    final var records = PTrafficRecordings.read(this.file);
+    LOG.debug("records: {}", records);
+    assertEquals(10, records.size());
+
+    final var byToken =
+      records.stream()
+        .filter(r -> r.token() != 0)
+        .collect(Collectors.groupingBy(
+          PTrafficRecord::token,
+          Collectors.mapping(PTrafficRecord::route, Collectors.toList())));
+
+    assertEquals(3, byToken.size());
+    for (final var routes : byToken.values()) {
+      assertEquals(
+        Arrays.asList(
+          PTrafficRoute.PRIVATE_INVITE,
+          PTrafficRoute.PUBLIC_SIGNUP,
+          PTrafficRoute.PUBLIC_SIGNUP_COMPLETE),
+        routes);
+    }
+
+    for (final var r : records) {
+      assertEquals(200, r.status());
+      assertTrue(r.responseBytes() > 0L);
+    }
+
+    final var report =
+      PLoadTests.replay(
+        PLoadTestReplayConfiguration.builder()
+          .setServer(serverConfiguration(
+            URI.create("http://127.0.0.1/"),
+            Optional.empty()))
+          .setRecords(records)
+          .setSpeed(10.0)
+          .setConcurrency(4)
+          .build()
+      );
+
+    LOG.debug("report:\n{}", PLoadTests.format(report));
+
+    assertEquals(10L, report.attempted());
+    assertEquals(10L, report.succeeded());
+    assertEquals("requests", report.unit());
+    assertTrue(report.failures().isEmpty());
+  }
+
+  /**
+   * Nonsensical replay configurations are rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testReplayConfigurationInvalid()
+    throws Exception
+  {
+    final var server =
+      serverConfiguration(URI.create("http://127.0.0.1/"), Optional.empty());
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      PLoadTestReplayConfiguration.builder()
+        .setServer(server)
+        .setSpeed(0.0)
+        .build();
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      PLoadTestReplayConfiguration.builder()
+        .setServer(server)
+        .setConcurrency(0)
+        .build();
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      PLoadTestReplayConfiguration.builder()
+        .setServer(server)
+        .setMaximumGap(Duration.ofSeconds(-1L))
+        .build();
+    });
+  }
+}